@@ -8,12 +8,14 @@ package com.actiontech.dble;
 import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.backend.datasource.PhysicalDBNode;
 import com.actiontech.dble.backend.datasource.PhysicalDBPool;
+import com.actiontech.dble.backend.datasource.PhysicalDatasource;
 import com.actiontech.dble.backend.mysql.xa.*;
 import com.actiontech.dble.backend.mysql.xa.recovery.Repository;
 import com.actiontech.dble.backend.mysql.xa.recovery.impl.FileSystemRepository;
 import com.actiontech.dble.backend.mysql.xa.recovery.impl.KVStoreRepository;
 import com.actiontech.dble.buffer.BufferPool;
 import com.actiontech.dble.buffer.DirectByteBufferPool;
+import com.actiontech.dble.buffer.ThreadArenaBufferPool;
 import com.actiontech.dble.cache.CacheService;
 import com.actiontech.dble.cluster.ClusterParamCfg;
 import com.actiontech.dble.config.ConfigInitializer;
@@ -74,6 +76,9 @@ public final class DbleServer {
     private static final long TIME_UPDATE_PERIOD = 20L;
     private static final long DEFAULT_SQL_STAT_RECYCLE_PERIOD = 5 * 1000L;
     private static final long DEFAULT_OLD_CONNECTION_CLEAR_PERIOD = 5 * 1000L;
+    private static final long DEFAULT_CONNECTION_WAIT_CHECK_PERIOD = 100L;
+    private static final String BUSINESS_EXECUTOR_NAME = "BusinessExecutor";
+    private static final String BACKEND_BUSINESS_EXECUTOR_NAME = "backendBusinessExecutor";
 
     private static final DbleServer INSTANCE = new DbleServer();
     private static final Logger LOGGER = LoggerFactory.getLogger("Server");
@@ -115,6 +120,7 @@ public final class DbleServer {
     private ExecutorService businessExecutor;
     private ExecutorService backendBusinessExecutor;
     private ExecutorService complexQueryExecutor;
+    private ExecutorService complexQueryWorkerExecutor;
     private ExecutorService timerExecutor;
     private InterProcessMutex dnIndexLock;
     private long totalNetWorkBufferSize = 0;
@@ -165,6 +171,10 @@ public final class DbleServer {
         return complexQueryExecutor;
     }
 
+    public ExecutorService getComplexQueryWorkerExecutor() {
+        return complexQueryWorkerExecutor;
+    }
+
     public AtomicBoolean getBackupLocked() {
         return backupLocked;
     }
@@ -322,11 +332,17 @@ public final class DbleServer {
         if (totalNetWorkBufferSize > Platform.getMaxDirectMemory()) {
             throw new IOException("Direct BufferPool size lager than MaxDirectMemory");
         }
-        bufferPool = new DirectByteBufferPool(bufferPoolPageSize, bufferPoolChunkSize, bufferPoolPageNumber);
+        if (system.getBufferPoolType() == SystemConfig.BUFFER_POOL_TYPE_THREAD_ARENA) {
+            bufferPool = new ThreadArenaBufferPool(bufferPoolPageSize, bufferPoolChunkSize, bufferPoolPageNumber,
+                    DirectByteBufferPool.LOCAL_BUF_THREAD_PREX, BUSINESS_EXECUTOR_NAME, BACKEND_BUSINESS_EXECUTOR_NAME);
+        } else {
+            bufferPool = new DirectByteBufferPool(bufferPoolPageSize, bufferPoolChunkSize, bufferPoolPageNumber);
+        }
 
-        businessExecutor = ExecutorUtil.createFixed("BusinessExecutor", system.getProcessorExecutor());
-        backendBusinessExecutor = ExecutorUtil.createFixed("backendBusinessExecutor", system.getBackendProcessorExecutor());
+        businessExecutor = ExecutorUtil.createFixed(BUSINESS_EXECUTOR_NAME, system.getProcessorExecutor());
+        backendBusinessExecutor = ExecutorUtil.createFixed(BACKEND_BUSINESS_EXECUTOR_NAME, system.getBackendProcessorExecutor());
         complexQueryExecutor = ExecutorUtil.createCached("complexQueryExecutor", system.getComplexExecutor());
+        complexQueryWorkerExecutor = ExecutorUtil.createFixed("complexQueryWorker", system.getComplexQueryWorker());
         timerExecutor = ExecutorUtil.createFixed("Timer", 1);
         if (system.getUsePerformanceMode() == 1) {
             concurrentFrontHandlerQueue = new ConcurrentLinkedQueue<>();
@@ -437,6 +453,7 @@ public final class DbleServer {
         //dataHost heartBeat  will be influence by dataHostWithoutWR
         scheduler.scheduleAtFixedRate(dataNodeHeartbeat(), 0L, system.getDataNodeHeartbeatPeriod(), TimeUnit.MILLISECONDS);
         scheduler.scheduleAtFixedRate(dataSourceOldConsClear(), 0L, DEFAULT_OLD_CONNECTION_CLEAR_PERIOD, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(dataSourceWaitTimeoutCheck(), 0L, DEFAULT_CONNECTION_WAIT_CHECK_PERIOD, TimeUnit.MILLISECONDS);
         scheduler.scheduleWithFixedDelay(xaSessionCheck(), 0L, system.getXaSessionCheckPeriod(), TimeUnit.MILLISECONDS);
         scheduler.scheduleWithFixedDelay(xaLogClean(), 0L, system.getXaLogCleanPeriod(), TimeUnit.MILLISECONDS);
         scheduler.scheduleWithFixedDelay(resultSetMapClear(), 0L, system.getClearBigSqLResultSetMapMs(), TimeUnit.MILLISECONDS);
@@ -507,7 +524,7 @@ public final class DbleServer {
                 if (tmpManager.getMetaCount() > 0) {
                     continue;
                 }
-                ProxyMetaManager newManager = new ProxyMetaManager();
+                ProxyMetaManager newManager = new ProxyMetaManager(tmpManager.getVersion() + 1);
                 newManager.initMeta(conf);
                 tmManager = newManager;
                 tmpManager.terminate();
@@ -850,6 +867,26 @@ public final class DbleServer {
         };
     }
 
+    // fail the requests waiting for backend connections too long
+    private Runnable dataSourceWaitTimeoutCheck() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                timerExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Map<String, PhysicalDBPool> nodes = DbleServer.getInstance().getConfig().getDataHosts();
+                        for (PhysicalDBPool node : nodes.values()) {
+                            for (PhysicalDatasource ds : node.getAllDataSources()) {
+                                ds.checkWaitTimeout();
+                            }
+                        }
+                    }
+                });
+            }
+        };
+    }
+
     // heartbeat for idle connection
     private Runnable dataNodeConHeartBeatCheck(final long heartPeriod) {
         return new Runnable() {
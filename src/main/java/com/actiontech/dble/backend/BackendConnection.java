@@ -69,4 +69,12 @@ public interface BackendConnection extends ClosableConnection {
     void terminate(String reason);
 
     String compactInfo();
+
+    /**
+     * pause reading the result until enableRead, if the rows are produced faster than consumed.
+     * the pauses are counted, the reading goes on after every pause is resumed by one enableRead
+     */
+    void disableRead();
+
+    void enableRead();
 }
@@ -9,6 +9,7 @@ import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.backend.datasource.PhysicalDatasource;
 import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
 import com.actiontech.dble.net.NIOProcessor;
+import com.actiontech.dble.server.ServerConnection;
 
 import java.util.Collection;
 import java.util.Iterator;
@@ -30,15 +31,18 @@ public class ConMap {
         return queue;
     }
 
-    public BackendConnection tryTakeCon(final String schema, boolean autoCommit) {
+    /**
+     * @param sc the front connection whose state is preferred, may be null
+     */
+    public BackendConnection tryTakeCon(final String schema, boolean autoCommit, ServerConnection sc) {
         final ConQueue queue = items.get(schema);
-        BackendConnection con = tryTakeCon(queue, autoCommit);
+        BackendConnection con = tryTakeCon(queue, autoCommit, sc);
         if (con != null) {
             return con;
         } else {
             for (ConQueue queue2 : items.values()) {
                 if (queue != queue2) {
-                    con = tryTakeCon(queue2, autoCommit);
+                    con = tryTakeCon(queue2, autoCommit, sc);
                     if (con != null) {
                         return con;
                     }
@@ -49,10 +53,10 @@ public class ConMap {
 
     }
 
-    private BackendConnection tryTakeCon(ConQueue queue, boolean autoCommit) {
+    private BackendConnection tryTakeCon(ConQueue queue, boolean autoCommit, ServerConnection sc) {
 
         BackendConnection con = null;
-        if (queue != null && ((con = queue.takeIdleCon(autoCommit)) != null)) {
+        if (queue != null && ((con = queue.takeIdleCon(autoCommit, sc)) != null)) {
             return con;
         } else {
             return null;
@@ -81,22 +85,6 @@ public class ConMap {
         return total;
     }
 
-    public int getActiveCountForDs(PhysicalDatasource dataSource) {
-        int total = 0;
-        for (NIOProcessor processor : DbleServer.getInstance().getBackendProcessors()) {
-            for (BackendConnection con : processor.getBackends().values()) {
-                if (con instanceof MySQLConnection) {
-                    MySQLConnection mysqlCon = (MySQLConnection) con;
-
-                    if (mysqlCon.getPool() == dataSource && mysqlCon.isBorrowed() && !mysqlCon.isClosed()) {
-                        total++;
-                    }
-                }
-            }
-        }
-        return total;
-    }
-
     public void clearConnections(String reason, PhysicalDatasource dataSource) {
         for (NIOProcessor processor : DbleServer.getInstance().getBackendProcessors()) {
             ConcurrentMap<Long, BackendConnection> map = processor.getBackends();
@@ -5,15 +5,24 @@
 
 package com.actiontech.dble.backend;
 
+import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
+import com.actiontech.dble.server.ServerConnection;
+
 import java.util.ArrayList;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class ConQueue {
+    /* the idle connections looked for the one in the same state as the front connection */
+    private static final int MAX_STATE_LOOKUP = 16;
     private final ConcurrentLinkedQueue<BackendConnection> autoCommitCons = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<BackendConnection> manCommitCons = new ConcurrentLinkedQueue<>();
     private long executeCount;
 
-    public BackendConnection takeIdleCon(boolean autoCommit) {
+    /**
+     * @param sc the front connection, the idle connection which needs no synchronization for it is preferred.
+     *           may be null
+     */
+    public BackendConnection takeIdleCon(boolean autoCommit, ServerConnection sc) {
         ConcurrentLinkedQueue<BackendConnection> f1 = autoCommitCons;
         ConcurrentLinkedQueue<BackendConnection> f2 = manCommitCons;
 
@@ -22,7 +31,10 @@ public class ConQueue {
             f2 = autoCommitCons;
 
         }
-        BackendConnection con = f1.poll();
+        BackendConnection con = sc == null ? null : takeSameStateCon(f1, sc);
+        if (con == null) {
+            con = f1.poll();
+        }
         if (con == null || con.isClosedOrQuit()) {
             con = f2.poll();
         }
@@ -34,6 +46,21 @@ public class ConQueue {
 
     }
 
+    private BackendConnection takeSameStateCon(ConcurrentLinkedQueue<BackendConnection> cons, ServerConnection sc) {
+        int looked = 0;
+        for (BackendConnection con : cons) {
+            if (++looked > MAX_STATE_LOOKUP) {
+                return null;
+            }
+            // the remove fails if another taker got it first
+            if (con instanceof MySQLConnection && !con.isClosedOrQuit() &&
+                    ((MySQLConnection) con).isSameState(sc) && cons.remove(con)) {
+                return con;
+            }
+        }
+        return null;
+    }
+
     public long getExecuteCount() {
         return executeCount;
     }
@@ -9,6 +9,7 @@ import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.backend.mysql.nio.handler.ResponseHandler;
 import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.server.ServerConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,24 +73,32 @@ public class PhysicalDBNode {
 
     public void getConnection(String schema, boolean isMustWrite, boolean autoCommit, RouteResultsetNode rrs,
                               ResponseHandler handler, Object attachment) throws Exception {
+        getConnection(schema, isMustWrite, autoCommit, null, rrs, handler, attachment);
+    }
+
+    /**
+     * @param sc the front connection, the idle connection in the same state is preferred to save the synchronization
+     */
+    public void getConnection(String schema, boolean isMustWrite, boolean autoCommit, ServerConnection sc, RouteResultsetNode rrs,
+                              ResponseHandler handler, Object attachment) throws Exception {
         checkRequest(schema);
         if (dbPool.isInitSuccess()) {
             if (isMustWrite) {
                 PhysicalDatasource writeSource = dbPool.getSource();
                 writeSource.setWriteCount();
-                writeSource.getConnection(schema, autoCommit, handler, attachment);
+                writeSource.getConnection(schema, autoCommit, sc, handler, attachment);
                 return;
             }
             LOGGER.debug("rrs.getRunOnSlave() " + rrs.getRunOnSlave());
             if (rrs.getRunOnSlave() != null) {  // hint like /*db_type=master/slave*/
                 // the hint is slave
                 if (rrs.getRunOnSlave()) {
-                    if (!dbPool.getReadCon(schema, autoCommit, handler, attachment)) {
+                    if (!dbPool.getReadCon(schema, autoCommit, sc, handler, attachment)) {
                         LOGGER.info("Do not have slave connection to use, " +
                                 "use master connection instead.");
                         PhysicalDatasource writeSource = dbPool.getSource();
                         writeSource.setWriteCount();
-                        writeSource.getConnection(schema, autoCommit, handler, attachment);
+                        writeSource.getConnection(schema, autoCommit, sc, handler, attachment);
                         rrs.setRunOnSlave(false);
                         rrs.setCanRunInReadDB(false);
                     }
@@ -97,17 +106,17 @@ public class PhysicalDBNode {
                     LOGGER.debug("rrs.getRunOnSlave() " + rrs.getRunOnSlave());
                     PhysicalDatasource writeSource = dbPool.getSource();
                     writeSource.setReadCount();
-                    writeSource.getConnection(schema, autoCommit, handler, attachment);
+                    writeSource.getConnection(schema, autoCommit, sc, handler, attachment);
                     rrs.setCanRunInReadDB(false);
                 }
             } else {    // without hint like /*db_type=master/slave*/
                 LOGGER.debug("rrs.getRunOnSlave() " + rrs.getRunOnSlave());
                 if (rrs.canRunINReadDB(autoCommit)) {
-                    dbPool.getRWBalanceCon(schema, autoCommit, handler, attachment);
+                    dbPool.getRWBalanceCon(schema, autoCommit, sc, handler, attachment);
                 } else {
                     PhysicalDatasource writeSource = dbPool.getSource();
                     writeSource.setWriteCount();
-                    writeSource.getConnection(schema, autoCommit, handler, attachment);
+                    writeSource.getConnection(schema, autoCommit, sc, handler, attachment);
                 }
             }
 
@@ -13,6 +13,7 @@ import com.actiontech.dble.backend.mysql.nio.handler.ResponseHandler;
 import com.actiontech.dble.config.Alarms;
 import com.actiontech.dble.config.model.DataHostConfig;
 import com.actiontech.dble.log.alarm.AlarmCode;
+import com.actiontech.dble.server.ServerConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +31,9 @@ public class PhysicalDBPool {
     private static final int BALANCE_ALL = 2;
     private static final int BALANCE_ALL_READ = 3;
 
+    public static final int BALANCE_TYPE_RANDOM = 0;
+    public static final int BALANCE_TYPE_LOAD = 1;
+
     public static final int WEIGHT = 0;
 
     private final String hostName;
@@ -492,51 +496,68 @@ public class PhysicalDBPool {
      *
      * @param schema     schema
      * @param autocommit autocommit
+     * @param sc         the front connection whose state is preferred, may be null
      * @param handler    handler
      * @param attachment attachment
      * @throws Exception Exception
      */
-    void getRWBalanceCon(String schema, boolean autocommit, ResponseHandler handler, Object attachment) throws Exception {
+    void getRWBalanceCon(String schema, boolean autocommit, ServerConnection sc, ResponseHandler handler, Object attachment) throws Exception {
         PhysicalDatasource theNode = getRWBalanceNode();
-        theNode.getConnection(schema, autocommit, handler, attachment);
+        theNode.getConnection(schema, autocommit, sc, handler, attachment);
     }
 
     PhysicalDatasource getRWBalanceNode() {
-        PhysicalDatasource theNode;
-        ArrayList<PhysicalDatasource> okSources;
+        PhysicalDatasource theNode = selectReadSource(getBalanceSources());
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("select read source " + theNode.getName() + " for dataHost:" + this.getHostName());
+        }
+        theNode.setReadCount();
+        return theNode;
+    }
+
+    /**
+     * @return the sources for read by the balance, empty means the current write source
+     */
+    private ArrayList<PhysicalDatasource> getBalanceSources() {
         switch (balance) {
-            case BALANCE_ALL_BACK: {
+            case BALANCE_ALL_BACK:
                 // all read nodes and the stand by masters
-                okSources = getAllActiveRWSources(true, false, checkSlaveSynStatus());
-                if (okSources.isEmpty()) {
-                    theNode = this.getSource();
-
-                } else {
-                    theNode = randomSelect(okSources);
-                }
-                break;
-            }
-            case BALANCE_ALL: {
-                okSources = getAllActiveRWSources(true, true, checkSlaveSynStatus());
-                theNode = randomSelect(okSources);
-                break;
-            }
-            case BALANCE_ALL_READ: {
-                okSources = getAllActiveRWSources(false, false, checkSlaveSynStatus());
-                theNode = randomSelect(okSources);
-                break;
-            }
+                return getAllActiveRWSources(true, false, checkSlaveSynStatus());
+            case BALANCE_ALL:
+                return getAllActiveRWSources(true, true, checkSlaveSynStatus());
+            case BALANCE_ALL_READ:
+                return getAllActiveRWSources(false, false, checkSlaveSynStatus());
             case BALANCE_NONE:
             default:
                 // return default write data source
-                theNode = this.getSource();
+                return new ArrayList<>();
         }
+    }
 
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("select read source " + theNode.getName() + " for dataHost:" + this.getHostName());
+    private PhysicalDatasource selectReadSource(ArrayList<PhysicalDatasource> okSources) {
+        if (dataHostConfig.getBalanceType() == BALANCE_TYPE_LOAD) {
+            return loadSelect(okSources);
         }
-        theNode.setReadCount();
-        return theNode;
+        return randomSelect(okSources);
+    }
+
+    /**
+     * @return the least load cost of the sources for read, used to compare the dataHosts
+     */
+    public double getReadLoadCost() {
+        ArrayList<PhysicalDatasource> okSources = getBalanceSources();
+        if (okSources.isEmpty()) {
+            return this.getSource().getLoadCost();
+        }
+        double cost = Double.MAX_VALUE;
+        for (PhysicalDatasource okSource : okSources) {
+            cost = Math.min(cost, okSource.getLoadCost());
+        }
+        return cost;
+    }
+
+    public int getBalanceType() {
+        return dataHostConfig.getBalanceType();
     }
 
 
@@ -545,11 +566,12 @@ public class PhysicalDBPool {
      *
      * @param schema     schema
      * @param autocommit autocommit
+     * @param sc         the front connection whose state is preferred, may be null
      * @param handler    handler
      * @param attachment attachment
      * @throws Exception Exception
      */
-    boolean getReadCon(String schema, boolean autocommit, ResponseHandler handler, Object attachment) throws Exception {
+    boolean getReadCon(String schema, boolean autocommit, ServerConnection sc, ResponseHandler handler, Object attachment) throws Exception {
 
         PhysicalDatasource theNode = null;
         Map<Integer, PhysicalDatasource[]> rs;
@@ -588,7 +610,7 @@ public class PhysicalDBPool {
             }
             if (theNode != null) {
                 theNode.setReadCount();
-                theNode.getConnection(schema, autocommit, handler, attachment);
+                theNode.getConnection(schema, autocommit, sc, handler, attachment);
                 return true;
             } else {
                 LOGGER.info("read host is not available.");
@@ -648,6 +670,31 @@ public class PhysicalDBPool {
         }
     }
 
+    /**
+     * power of two choices: pick two sources randomly and select the one of less load cost,
+     * which avoids both the herd on the least loaded one and the slow one picked by random
+     *
+     * @param okSources okSources
+     * @return PhysicalDatasource
+     */
+    public PhysicalDatasource loadSelect(ArrayList<PhysicalDatasource> okSources) {
+        if (okSources.isEmpty()) {
+            return this.getSource();
+        }
+        int length = okSources.size();
+        if (length == 1) {
+            return okSources.get(0);
+        }
+        int first = random.nextInt(length);
+        int second = random.nextInt(length - 1);
+        if (second >= first) {
+            second++;
+        }
+        PhysicalDatasource firstSource = okSources.get(first);
+        PhysicalDatasource secondSource = okSources.get(second);
+        return firstSource.getLoadCost() <= secondSource.getLoadCost() ? firstSource : secondSource;
+    }
+
     private boolean isAlive(PhysicalDatasource theSource) {
         return theSource.isAlive();
     }
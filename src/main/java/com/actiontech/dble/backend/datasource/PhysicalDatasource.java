@@ -18,21 +18,29 @@ import com.actiontech.dble.backend.mysql.nio.handler.ResponseHandler;
 import com.actiontech.dble.config.Alarms;
 import com.actiontech.dble.config.model.DBHostConfig;
 import com.actiontech.dble.config.model.DataHostConfig;
+import com.actiontech.dble.config.model.SystemConfig;
 import com.actiontech.dble.log.alarm.AlarmCode;
+import com.actiontech.dble.server.ServerConnection;
 import com.actiontech.dble.util.TimeUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class PhysicalDatasource {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PhysicalDatasource.class);
+    /* the weight of the latest sample in the EWMA of response time */
+    private static final double RESPONSE_TIME_DECAY = 0.2;
 
     private final String name;
     private final int size;
@@ -49,6 +57,26 @@ public abstract class PhysicalDatasource {
 
     private AtomicLong writeCount = new AtomicLong(0);
 
+    /* the borrowed connections which are not closed */
+    private final AtomicInteger activeConCount = new AtomicInteger(0);
+    /* the connections which are being created */
+    private final AtomicInteger creatingCount = new AtomicInteger(0);
+
+    /* the requests waiting for connections when the datasource reaches maxCon, in order of arrival */
+    private final ArrayDeque<ConnectionWaiter> waiters = new ArrayDeque<>();
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private volatile int waitingCount = 0;
+    private final AtomicLong waitCount = new AtomicLong(0);
+    private final AtomicLong waitTime = new AtomicLong(0);
+    private final AtomicLong waitTimeoutCount = new AtomicLong(0);
+
+    /* the queries sent by the connections, and those which synchronized the connection state before */
+    private final AtomicLong queryCount = new AtomicLong(0);
+    private final AtomicLong syncCount = new AtomicLong(0);
+
+    /* the EWMA of response time in milliseconds of the queries sent to the backend connections (the heartbeat included), negative before any sample */
+    private final AtomicLong responseTimeBits = new AtomicLong(Double.doubleToLongBits(-1));
+
     public PhysicalDatasource(DBHostConfig config, DataHostConfig hostConfig, boolean isReadNode) {
         this.size = config.getMaxCon();
         this.config = config;
@@ -235,7 +263,7 @@ public abstract class PhysicalDatasource {
                 break;
             }
         }
-        if (this.conMap.getActiveCountForDs(this) == 0) {
+        if (this.getActiveCount() == 0) {
             this.dbPool.delRDs(this);
         }
     }
@@ -262,7 +290,7 @@ public abstract class PhysicalDatasource {
 
         final String[] schemas = dbPool.getSchemas();
         for (int i = 0; i < createCount; i++) {
-            if (this.getActiveCount() + this.getIdleCount() >= size) {
+            if (this.getActiveCount() + this.getIdleCount() >= size || !tryReserveNewConnection()) {
                 break;
             }
             NewConnectionRespHandler simpleHandler = new NewConnectionRespHandler();
@@ -277,7 +305,91 @@ public abstract class PhysicalDatasource {
     }
 
     public int getActiveCount() {
-        return this.conMap.getActiveCountForDs(this);
+        return activeConCount.get();
+    }
+
+    public void increaseActiveCount() {
+        activeConCount.incrementAndGet();
+    }
+
+    public void decreaseActiveCount() {
+        activeConCount.decrementAndGet();
+    }
+
+    /**
+     * @return the count of the requests waiting for connections now
+     */
+    public int getWaitingCount() {
+        return waitingCount;
+    }
+
+    /**
+     * @return the count of the requests which have waited for connections
+     */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    /**
+     * @return the total milliseconds the requests have waited for connections
+     */
+    public long getWaitTime() {
+        return waitTime.get();
+    }
+
+    public long getWaitTimeoutCount() {
+        return waitTimeoutCount.get();
+    }
+
+    public void recordQuery(boolean synced) {
+        queryCount.incrementAndGet();
+        if (synced) {
+            syncCount.incrementAndGet();
+        }
+    }
+
+    public long getQueryCount() {
+        return queryCount.get();
+    }
+
+    /**
+     * @return the count of the queries which synchronized the schema, charset, isolation, autocommit or variables
+     */
+    public long getSyncCount() {
+        return syncCount.get();
+    }
+
+    public void recordResponseTime(long millis) {
+        while (true) {
+            long oldBits = responseTimeBits.get();
+            double old = Double.longBitsToDouble(oldBits);
+            double responseTime = old < 0 ? millis : old + RESPONSE_TIME_DECAY * (millis - old);
+            if (responseTimeBits.compareAndSet(oldBits, Double.doubleToLongBits(responseTime))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the EWMA of response time in milliseconds
+     */
+    public double getResponseTime() {
+        return Math.max(Double.longBitsToDouble(responseTimeBits.get()), 0);
+    }
+
+    /**
+     * the cost to read from it, less is better:
+     * (response time + slave delay) * (active connections + waiting requests + 1) / weight
+     */
+    public double getLoadCost() {
+        double latency = getResponseTime() + 1;
+        Integer slaveBehindMaster = heartbeat.getSlaveBehindMaster();
+        if (slaveBehindMaster != null && slaveBehindMaster > 0) {
+            latency += slaveBehindMaster * 1000d;
+        }
+        double cost = latency * (getActiveCount() + waitingCount + 1);
+        int weight = config.getWeight();
+        return weight > 0 ? cost / weight : cost;
     }
 
     public void clearCons(String reason) {
@@ -329,24 +441,47 @@ public abstract class PhysicalDatasource {
         return conn;
     }
 
+    /**
+     * reserve a connection to create if the active and creating connections are less than maxCon
+     */
+    private boolean tryReserveNewConnection() {
+        while (true) {
+            int creating = creatingCount.get();
+            if (activeConCount.get() + creating + 1 > size) {
+                return false;
+            }
+            if (creatingCount.compareAndSet(creating, creating + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * the new connection must be reserved by tryReserveNewConnection
+     */
     private void createNewConnection(final ResponseHandler handler, final Object attachment,
                                      final String schema) throws IOException {
         // aysn create connection
-        DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
+        getExecutor().execute(new Runnable() {
             public void run() {
                 try {
                     createNewConnection(new DelegateResponseHandler(handler) {
                         @Override
                         public void connectionError(Throwable e, BackendConnection conn) {
+                            creatingCount.decrementAndGet();
                             handler.connectionError(e, conn);
                         }
 
                         @Override
                         public void connectionAcquired(BackendConnection conn) {
+                            // count it as active before it is not creating
+                            conn.setBorrowed(true);
+                            creatingCount.decrementAndGet();
                             takeCon(conn, handler, attachment, schema);
                         }
                     }, schema);
                 } catch (IOException e) {
+                    creatingCount.decrementAndGet();
                     handler.connectionError(e, null);
                 }
             }
@@ -357,42 +492,55 @@ public abstract class PhysicalDatasource {
 
     public void getConnection(String schema, boolean autocommit, final ResponseHandler handler,
                               final Object attachment) throws IOException {
+        getConnection(schema, autocommit, null, handler, attachment);
+    }
+
+    /**
+     * @param sc the front connection whose state is preferred when taking an idle connection, may be null
+     */
+    public void getConnection(String schema, boolean autocommit, ServerConnection sc, final ResponseHandler handler,
+                              final Object attachment) throws IOException {
         if (dying.get()) {
             closeByDyingAll();
             LOGGER.info(this.name + "will to die");
             throw new IOException(this.name + "will to die");
         }
 
-        BackendConnection con = this.conMap.tryTakeCon(schema, autocommit);
+        BackendConnection con = this.conMap.tryTakeCon(schema, autocommit, sc);
         if (con != null) {
             takeCon(con, handler, attachment, schema);
-            return;
-        } else {
-            int activeCons = this.getActiveCount();
-            if (activeCons + 1 > size) {
-                LOGGER.warn(AlarmCode.CORE_PERFORMANCE_WARN + "the max activeConnnections size can not be max than maxconnections");
-                throw new IOException("the max activeConnnections size can not be max than maxconnections");
-            } else { // create connection
-                LOGGER.info("no idle connection in pool,create new connection for " +
-                        this.name + " of schema " + schema);
-                createNewConnection(handler, attachment, schema);
-            }
+        } else if (tryReserveNewConnection()) { // create connection
+            LOGGER.info("no idle connection in pool,create new connection for " +
+                    this.name + " of schema " + schema);
+            createNewConnection(handler, attachment, schema);
+        } else if (!addWaiter(new ConnectionWaiter(schema, autocommit, sc, handler, attachment))) {
+            LOGGER.warn(AlarmCode.CORE_PERFORMANCE_WARN + "the max activeConnnections size can not be max than maxconnections");
+            throw new IOException("the max activeConnnections size can not be max than maxconnections");
         }
     }
 
     public BackendConnection getConnection(String schema, boolean autocommit) throws IOException {
-        BackendConnection con = this.conMap.tryTakeCon(schema, autocommit);
+        BackendConnection con = this.conMap.tryTakeCon(schema, autocommit, null);
         if (con == null) {
-            int activeCons = this.getActiveCount(); // the max active
-            if (activeCons + 1 > size) {
-                LOGGER.warn(AlarmCode.CORE_PERFORMANCE_WARN + "the max activeConnnections size can not be max than maxconnections");
-                throw new IOException("the max activeConnnections size can not be max than maxconnections");
-            } else { // create connection
+            if (tryReserveNewConnection()) { // create connection
                 LOGGER.info(
                         "no ilde connection in pool,create new connection for " + this.name + " of schema " + schema);
                 NewConnectionRespHandler simpleHandler = new NewConnectionRespHandler();
-                this.createNewConnection(simpleHandler, schema);
-                con = simpleHandler.getBackConn();
+                try {
+                    this.createNewConnection(simpleHandler, schema);
+                    con = simpleHandler.getBackConn();
+                    con.setBorrowed(true);
+                } finally {
+                    creatingCount.decrementAndGet();
+                }
+            } else {
+                NewConnectionRespHandler waitHandler = new NewConnectionRespHandler();
+                if (!addWaiter(new ConnectionWaiter(schema, autocommit, null, waitHandler, null))) {
+                    LOGGER.warn(AlarmCode.CORE_PERFORMANCE_WARN + "the max activeConnnections size can not be max than maxconnections");
+                    throw new IOException("the max activeConnnections size can not be max than maxconnections");
+                }
+                // the connection is taken for the waiter
+                return waitHandler.getBackConn();
             }
         }
         return takeCon(con, schema);
@@ -402,6 +550,7 @@ public abstract class PhysicalDatasource {
                                   final Object attachment) throws IOException {
         LOGGER.info("create new connection for " +
                 this.name + " of schema " + schema);
+        creatingCount.incrementAndGet();
         createNewConnection(handler, attachment, schema);
     }
 
@@ -411,6 +560,14 @@ public abstract class PhysicalDatasource {
             closeByDyingAll();
             return;
         }
+        if (waitingCount > 0) {
+            ConnectionWaiter waiter = pollWaiter();
+            if (waiter != null) {
+                // hand over to the waiter directly, it is still active
+                giveToWaiter(c, waiter);
+                return;
+            }
+        }
 
         c.setAttachment(null);
         c.setBorrowed(false);
@@ -428,9 +585,140 @@ public abstract class PhysicalDatasource {
 
             LOGGER.info("can't return to pool ,so close con " + c);
             c.close("can't return to pool ");
+        } else if (waitingCount > 0) {
+            // the waiter may be added before the connection is returned
+            serveWaiters();
+        }
+    }
+
+    /**
+     * @return false if the waiting is not allowed or the waiting queue is full
+     */
+    private boolean addWaiter(ConnectionWaiter waiter) {
+        SystemConfig system = getSystemConfig();
+        if (system.getConnectionWaitTimeout() <= 0) {
+            return false;
+        }
+        waiter.deadline = waiter.startTime + system.getConnectionWaitTimeout();
+        waitLock.lock();
+        try {
+            if (waiters.size() >= system.getConnectionWaitQueueSize()) {
+                return false;
+            }
+            waiters.offer(waiter);
+            waitingCount = waiters.size();
+        } finally {
+            waitLock.unlock();
+        }
+        waitCount.incrementAndGet();
+        // a connection may be returned or closed before the waiter is added
+        serveWaiters();
+        return true;
+    }
+
+    private ConnectionWaiter pollWaiter() {
+        waitLock.lock();
+        try {
+            ConnectionWaiter waiter = waiters.poll();
+            waitingCount = waiters.size();
+            return waiter;
+        } finally {
+            waitLock.unlock();
         }
     }
 
+    /**
+     * serve the first waiter by an idle connection or a new connection
+     */
+    private void serveWaiters() {
+        ConnectionWaiter waiter = pollWaiter();
+        if (waiter == null) {
+            return;
+        }
+        BackendConnection con = this.conMap.tryTakeCon(waiter.schema, waiter.autocommit, waiter.sc);
+        if (con != null) {
+            con.setBorrowed(true);
+            giveToWaiter(con, waiter);
+        } else if (tryReserveNewConnection()) {
+            recordWaitTime(waiter);
+            try {
+                createNewConnection(waiter.handler, waiter.attachment, waiter.schema);
+            } catch (IOException e) {
+                creatingCount.decrementAndGet();
+                waiter.handler.connectionError(e, null);
+            }
+        } else {
+            putBackWaiter(waiter);
+        }
+    }
+
+    private void putBackWaiter(ConnectionWaiter waiter) {
+        waitLock.lock();
+        try {
+            waiters.offerFirst(waiter);
+            waitingCount = waiters.size();
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    private void giveToWaiter(final BackendConnection con, final ConnectionWaiter waiter) {
+        recordWaitTime(waiter);
+        // the waiter's handler may take the lock of other session, don't call it in the returning thread
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                takeCon(con, waiter.handler, waiter.attachment, waiter.schema);
+            }
+        });
+    }
+
+    private void recordWaitTime(ConnectionWaiter waiter) {
+        waitTime.addAndGet(TimeUtil.currentTimeMillis() - waiter.startTime);
+    }
+
+    /**
+     * fail the requests which wait longer than connectionWaitTimeout
+     */
+    public void checkWaitTimeout() {
+        if (waitingCount == 0) {
+            return;
+        }
+        long now = TimeUtil.currentTimeMillis();
+        List<ConnectionWaiter> expired = new ArrayList<>();
+        waitLock.lock();
+        try {
+            while (!waiters.isEmpty() && waiters.peek().deadline <= now) {
+                expired.add(waiters.poll());
+            }
+            waitingCount = waiters.size();
+        } finally {
+            waitLock.unlock();
+        }
+        for (final ConnectionWaiter waiter : expired) {
+            waitTimeoutCount.incrementAndGet();
+            recordWaitTime(waiter);
+            LOGGER.warn(AlarmCode.CORE_PERFORMANCE_WARN + "wait for connection of " + name + " timeout, maxCon is " + size);
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    waiter.handler.connectionError(new IOException("the max activeConnnections size can not be max than maxconnections, wait timeout"), null);
+                }
+            });
+        }
+    }
+
+    /**
+     * the executor to create the connections and to notify the waiters
+     */
+    Executor getExecutor() {
+        return DbleServer.getInstance().getComplexQueryExecutor();
+    }
+
+    SystemConfig getSystemConfig() {
+        return DbleServer.getInstance().getConfig().getSystem();
+    }
+
     public void releaseChannel(BackendConnection c) {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("release channel " + c);
@@ -444,6 +732,10 @@ public abstract class PhysicalDatasource {
         if (queue != null) {
             queue.removeCon(conn);
         }
+        if (waitingCount > 0 && !dying.get()) {
+            // the closed connection may be active, create a new one for the waiter
+            serveWaiters();
+        }
     }
 
     /**
@@ -466,4 +758,23 @@ public abstract class PhysicalDatasource {
     public boolean isAlive() {
         return (getHeartbeat().getStatus() == DBHeartbeat.OK_STATUS) && !getDying();
     }
+
+    private static final class ConnectionWaiter {
+        private final String schema;
+        private final boolean autocommit;
+        private final ServerConnection sc;
+        private final ResponseHandler handler;
+        private final Object attachment;
+        private final long startTime;
+        private long deadline;
+
+        private ConnectionWaiter(String schema, boolean autocommit, ServerConnection sc, ResponseHandler handler, Object attachment) {
+            this.schema = schema;
+            this.autocommit = autocommit;
+            this.sc = sc;
+            this.handler = handler;
+            this.attachment = attachment;
+            this.startTime = TimeUtil.currentTimeMillis();
+        }
+    }
 }
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql;
+
+import com.actiontech.dble.net.BackendAIOConnection;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * the rows of load data sent to a data node while they are parsed.
+ * <p>
+ * The rows are packed into packets of packSize bytes, the packets are kept until the backend requests the file and
+ * written to the backend connection after that. The input of the rows is paused while the data node can't take
+ * more, and it is resumed by writeQueueAvailable() which is called when the connection has written its packets.
+ */
+public final class LoadDataStream {
+    /* the bytes kept before the backend requests the file are not more than it, the input is paused otherwise */
+    static final int MAX_UNSENT_SIZE = 1024 * 1024;
+    /* the packets waiting for writing are not more than it, the input is paused otherwise */
+    static final int MAX_WRITE_QUEUE_SIZE = 16;
+    private static final int PACKET_HEADER_SIZE = 4;
+
+    private final Input input;
+    private final int packSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    /* the packet filled now, the header is written when it is sent */
+    private byte[] chunk;
+    private int chunkLength = 0;
+    private final ArrayDeque<byte[]> unsentPackets = new ArrayDeque<>();
+    private volatile int unsentSize = 0;
+    private volatile BackendAIOConnection conn;
+    private byte packId;
+    private boolean finished = false;
+    private volatile boolean closed = false;
+    /* the backend connection is closed when it requests the file if it is not null */
+    private String abortReason;
+    private final AtomicBoolean paused = new AtomicBoolean(false);
+
+    public LoadDataStream(Input input, int packSize) {
+        this.input = input;
+        this.packSize = packSize;
+        this.chunk = new byte[PACKET_HEADER_SIZE + packSize];
+    }
+
+    /**
+     * append a line of the file, called by the thread parsing the rows
+     */
+    public void append(byte[] line, byte[] lineEnd) {
+        lock.lock();
+        try {
+            if (closed || finished) {
+                return;
+            }
+            put(line);
+            put(lineEnd);
+        } finally {
+            lock.unlock();
+        }
+        pauseIfBusy();
+    }
+
+    /**
+     * the backend requests the file, the kept packets are written to it
+     *
+     * @param requestPackId the packet id of the request of the file
+     */
+    public void connect(byte requestPackId, BackendAIOConnection backendConn) {
+        String reason;
+        lock.lock();
+        try {
+            reason = abortReason;
+            if (reason == null) {
+                packId = requestPackId;
+                conn = backendConn;
+                if (closed) {
+                    writeEmptyPacket();
+                    return;
+                }
+                byte[] packet;
+                while ((packet = unsentPackets.poll()) != null) {
+                    writePacket(packet);
+                }
+                unsentSize = 0;
+                if (finished) {
+                    writeRest();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (reason != null) {
+            backendConn.close(reason);
+            return;
+        }
+        writeQueueAvailable();
+    }
+
+    /**
+     * all the lines are appended, the backend gets the end of the file after the lines
+     */
+    public void finish() {
+        lock.lock();
+        try {
+            if (closed || finished) {
+                return;
+            }
+            finished = true;
+            if (conn != null) {
+                writeRest();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * the backend connection doesn't take the file any more, the lines are discarded
+     */
+    public void close() {
+        lock.lock();
+        try {
+            discard();
+        } finally {
+            lock.unlock();
+        }
+        resume();
+    }
+
+    /**
+     * the load data fails before all the lines are appended, the backend connection is closed for the loading can't
+     * be finished
+     */
+    public void abort(String reason) {
+        BackendAIOConnection backendConn;
+        lock.lock();
+        try {
+            if (closed || finished) {
+                return;
+            }
+            discard();
+            abortReason = reason;
+            backendConn = conn;
+        } finally {
+            lock.unlock();
+        }
+        resume();
+        if (backendConn != null) {
+            backendConn.close(reason);
+        }
+    }
+
+    /**
+     * the input is resumed if the data node can take more, called when the backend connection has written its packets
+     */
+    public void writeQueueAvailable() {
+        if (paused.get() && !isBusy()) {
+            resume();
+        }
+    }
+
+    boolean isPaused() {
+        return paused.get();
+    }
+
+    private boolean isBusy() {
+        if (closed) {
+            return false;
+        }
+        BackendAIOConnection backendConn = conn;
+        if (backendConn == null) {
+            return unsentSize > MAX_UNSENT_SIZE;
+        }
+        return backendConn.getWriteQueue().size() > MAX_WRITE_QUEUE_SIZE;
+    }
+
+    private void pauseIfBusy() {
+        if (paused.get() || !isBusy()) {
+            return;
+        }
+        input.pause();
+        if (!paused.compareAndSet(false, true)) {
+            input.resume();
+            return;
+        }
+        // the packets may be written before paused is set
+        writeQueueAvailable();
+    }
+
+    private void resume() {
+        if (paused.compareAndSet(true, false)) {
+            input.resume();
+        }
+    }
+
+    private void put(byte[] data) {
+        int offset = 0;
+        while (offset < data.length) {
+            int length = Math.min(data.length - offset, packSize - chunkLength);
+            System.arraycopy(data, offset, chunk, PACKET_HEADER_SIZE + chunkLength, length);
+            chunkLength += length;
+            offset += length;
+            if (chunkLength == packSize) {
+                if (conn != null) {
+                    writePacket(chunk);
+                } else {
+                    unsentPackets.add(chunk);
+                    unsentSize += chunk.length;
+                    chunk = new byte[PACKET_HEADER_SIZE + packSize];
+                }
+                chunkLength = 0;
+            }
+        }
+    }
+
+    private void writeRest() {
+        if (chunkLength > 0) {
+            writePacket(Arrays.copyOf(chunk, PACKET_HEADER_SIZE + chunkLength));
+            chunkLength = 0;
+        }
+        writeEmptyPacket();
+    }
+
+    private void writePacket(byte[] packet) {
+        int length = packet.length - PACKET_HEADER_SIZE;
+        packet[0] = (byte) (length & 0xff);
+        packet[1] = (byte) (length >>> 8);
+        packet[2] = (byte) (length >>> 16);
+        packet[3] = ++packId;
+        conn.write(packet);
+    }
+
+    private void writeEmptyPacket() {
+        conn.write(new byte[]{0, 0, 0, ++packId});
+    }
+
+    private void discard() {
+        closed = true;
+        unsentPackets.clear();
+        unsentSize = 0;
+        chunkLength = 0;
+    }
+
+    /**
+     * the source of the rows, every pause is resumed by one resume
+     */
+    public interface Input {
+        void pause();
+
+        void resume();
+    }
+}
@@ -9,6 +9,7 @@ import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.net.BackendAIOConnection;
 import com.actiontech.dble.net.mysql.BinaryPacket;
+import com.actiontech.dble.route.RouteResultset;
 import com.actiontech.dble.route.RouteResultsetNode;
 import com.actiontech.dble.sqlengine.mpp.LoadData;
 
@@ -28,6 +29,11 @@ public final class LoadDataUtil {
         BackendAIOConnection backendAIOConnection = (BackendAIOConnection) conn;
         RouteResultsetNode rrn = (RouteResultsetNode) conn.getAttachment();
         LoadData loadData = rrn.getLoadData();
+        if (loadData.getStream() != null) {
+            // the lines parsed are written now, the others are written while they are parsed
+            loadData.getStream().connect(packId, backendAIOConnection);
+            return;
+        }
         List<String> loadDataData = loadData.getData();
         try {
             if (loadDataData != null && loadDataData.size() > 0) {
@@ -45,9 +51,6 @@ public final class LoadDataUtil {
 
                 packId = writeToBackConnection(packId, new ByteArrayInputStream(bos.toByteArray()), backendAIOConnection);
 
-            } else {
-                packId = writeToBackConnection(packId, new BufferedInputStream(new FileInputStream(loadData.getFileName())), backendAIOConnection);
-
             }
         } catch (IOException e) {
 
@@ -62,6 +65,42 @@ public final class LoadDataUtil {
 
     }
 
+    /**
+     * the input of the lines is resumed if the data node can take more lines
+     */
+    public static void writeQueueAvailable(RouteResultset rrs) {
+        for (RouteResultsetNode node : rrs.getNodes()) {
+            LoadDataStream stream = getStream(node);
+            if (stream != null) {
+                stream.writeQueueAvailable();
+            }
+        }
+    }
+
+    /**
+     * stop sending the lines because the load data fails, the lines of conn are discarded and the loading of the
+     * other data nodes is aborted
+     *
+     * @param conn the connection failed, null if no connection is got
+     */
+    public static void stopStreams(RouteResultset rrs, BackendConnection conn, String reason) {
+        LoadDataStream failed = conn == null || !(conn.getAttachment() instanceof RouteResultsetNode) ? null :
+                getStream((RouteResultsetNode) conn.getAttachment());
+        if (failed != null) {
+            failed.close();
+        }
+        for (RouteResultsetNode node : rrs.getNodes()) {
+            LoadDataStream stream = getStream(node);
+            if (stream != null && stream != failed) {
+                stream.abort(reason);
+            }
+        }
+    }
+
+    private static LoadDataStream getStream(RouteResultsetNode node) {
+        return node.getLoadData() == null ? null : node.getLoadData().getStream();
+    }
+
     public static byte writeToBackConnection(byte packID, InputStream inputStream, BackendAIOConnection backendAIOConnection) throws IOException {
         try {
             int packSize = DbleServer.getInstance().getConfig().getSystem().getBufferPoolChunkSize() - 5;
@@ -5,6 +5,8 @@
 */
 package com.actiontech.dble.backend.mysql;
 
+import com.actiontech.dble.server.PreparedPlan;
+
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.HashMap;
@@ -28,6 +30,10 @@ public class PreparedStatement {
      * </pre>
      */
     private Map<Long, ByteArrayOutputStream> longDataMap;
+    /**
+     * null if the statement is not routed by plan
+     */
+    private PreparedPlan plan;
 
     public PreparedStatement(long id, String statement, int columnsNumber, int parametersNumber) {
         this.id = id;
@@ -38,6 +44,14 @@ public class PreparedStatement {
         this.longDataMap = new HashMap<>();
     }
 
+    public PreparedPlan getPlan() {
+        return plan;
+    }
+
+    public void setPlan(PreparedPlan plan) {
+        this.plan = plan;
+    }
+
     public long getId() {
         return id;
     }
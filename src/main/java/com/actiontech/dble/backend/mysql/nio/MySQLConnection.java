@@ -30,6 +30,7 @@ import java.math.BigDecimal;
 import java.nio.channels.NetworkChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -38,8 +39,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class MySQLConnection extends BackendAIOConnection {
     private static final Logger LOGGER = LoggerFactory.getLogger(MySQLConnection.class);
-    private static final long CLIENT_FLAGS = initClientFlags();
     private volatile long lastTime;
+    // System.nanoTime() when the query was sent, 0 if no query is waiting for the end of its response
+    private volatile long querySendTime;
     private volatile String schema = null;
     private volatile String oldSchema;
     private volatile boolean borrowed = false;
@@ -93,6 +95,8 @@ public class MySQLConnection extends BackendAIOConnection {
     }
 
     private MySQLDataSource pool;
+    // whether the connection is counted in the active connections of the pool
+    private final AtomicBoolean countedActive = new AtomicBoolean(false);
     private boolean fromSlaveDB;
     private long threadId;
     private HandshakeV10Packet handshake;
@@ -107,7 +111,7 @@ public class MySQLConnection extends BackendAIOConnection {
 
     public MySQLConnection(NetworkChannel channel, boolean fromSlaveDB) {
         super(channel);
-        this.clientFlags = CLIENT_FLAGS;
+        this.clientFlags = initClientFlags();
         this.lastTime = TimeUtil.currentTimeMillis();
         this.isQuit = new AtomicBoolean(false);
         this.autocommit = true;
@@ -254,9 +258,24 @@ public class MySQLConnection extends BackendAIOConnection {
             throw new RuntimeException(e);
         }
         lastTime = TimeUtil.currentTimeMillis();
+        querySendTime = System.nanoTime();
         packet.write(this);
     }
 
+    /**
+     * called when the last packet of the response is received, the round trip of the query is sampled
+     * into the response time of the data source. the time the connection is held by the client is excluded
+     */
+    public void endQuery() {
+        long sendTime = querySendTime;
+        if (sendTime != 0) {
+            querySendTime = 0;
+            if (pool != null) {
+                pool.recordResponseTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sendTime));
+            }
+        }
+    }
+
     private static void getCharsetCommand(StringBuilder sb, CharsetNames clientCharset) {
         sb.append("SET CHARACTER_SET_CLIENT = ");
         sb.append(clientCharset.getClient());
@@ -309,6 +328,25 @@ public class MySQLConnection extends BackendAIOConnection {
         synAndDoExecute(xaTxId, rrn, sc.getCharset(), sc.getTxIsolation(), isAutoCommit, sc.getUsrVariables(), sc.getSysVariables());
     }
 
+    /**
+     * @return true if the charset, isolation and system variables need no synchronization for the front connection
+     */
+    public boolean isSameState(ServerConnection sc) {
+        if (txIsolation != sc.getTxIsolation() || !charsetName.equals(sc.getCharset())) {
+            return false;
+        }
+        Map<String, String> scSysVariables = sc.getSysVariables();
+        if (sysVariables.size() != scSysVariables.size()) {
+            return false;
+        }
+        for (Map.Entry<String, String> entry : scSysVariables.entrySet()) {
+            if (!StringUtil.equalsIgnoreCase(entry.getValue(), sysVariables.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public String getConnXID(NonBlockingSession nonBlockingSession) {
         if (nonBlockingSession.getSessionXaID() == null)
             return null;
@@ -339,6 +377,8 @@ public class MySQLConnection extends BackendAIOConnection {
         int txIsolationSyn = (txIsolation == clientTxIsolation) ? 0 : 1;
         int autoCommitSyn = (conAutoCommit == expectAutocommit) ? 0 : 1;
         int synCount = schemaSyn + charsetSyn + txIsolationSyn + autoCommitSyn + xaSyn + setSqlFlag;
+        // XA START is a part of the transaction rather than a synchronization
+        pool.recordQuery(synCount > xaSyn);
         if (synCount == 0) {
             // not need syn connection
             if (session != null) {
@@ -477,7 +517,7 @@ public class MySQLConnection extends BackendAIOConnection {
     public void quit() {
         if (isQuit.compareAndSet(false, true) && !isClosed()) {
             if (isAuthenticated) {
-                write(writeToBuffer(QuitPacket.QUIT, allocate()));
+                writeCommand(QuitPacket.QUIT);
             } else {
                 close("normal");
             }
@@ -507,6 +547,7 @@ public class MySQLConnection extends BackendAIOConnection {
         if (!isClosed.get()) {
             isQuit.set(true);
             super.close(reason);
+            uncountActive();
             pool.connectionClosed(this);
         }
     }
@@ -541,6 +582,8 @@ public class MySQLConnection extends BackendAIOConnection {
             return;
         }
         complexQuery = false;
+        // the reading may be paused by the handlers of complex query
+        resetRead();
         metaDataSynced = true;
         attachment = null;
         statusSync = null;
@@ -569,6 +612,7 @@ public class MySQLConnection extends BackendAIOConnection {
         }
     }
 
+    @Override
     public void writeQueueAvailable() {
         if (respHandler != null) {
             respHandler.writeQueueAvailable();
@@ -603,6 +647,24 @@ public class MySQLConnection extends BackendAIOConnection {
     public void setBorrowed(boolean borrowed) {
         this.lastTime = TimeUtil.currentTimeMillis();
         this.borrowed = borrowed;
+        if (pool == null) {
+            return;
+        }
+        if (!borrowed) {
+            uncountActive();
+        } else if (!isClosed() && countedActive.compareAndSet(false, true)) {
+            pool.increaseActiveCount();
+            if (isClosed()) {
+                // closed while counting
+                uncountActive();
+            }
+        }
+    }
+
+    private void uncountActive() {
+        if (countedActive.compareAndSet(true, false)) {
+            pool.decreaseActiveCount();
+        }
     }
 
     @Override
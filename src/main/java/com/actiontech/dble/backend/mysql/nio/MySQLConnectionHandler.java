@@ -7,6 +7,7 @@ package com.actiontech.dble.backend.mysql.nio;
 
 import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.backend.mysql.ByteUtil;
+import com.actiontech.dble.backend.mysql.MySQLMessage;
 import com.actiontech.dble.backend.mysql.nio.handler.LoadDataResponseHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.ResponseHandler;
 import com.actiontech.dble.net.handler.BackendAsyncHandler;
@@ -14,6 +15,7 @@ import com.actiontech.dble.net.mysql.EOFPacket;
 import com.actiontech.dble.net.mysql.ErrorPacket;
 import com.actiontech.dble.net.mysql.OkPacket;
 import com.actiontech.dble.net.mysql.RequestFilePacket;
+import com.actiontech.dble.net.mysql.StatusFlags;
 import com.actiontech.dble.server.NonBlockingSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -85,9 +87,11 @@ public class MySQLConnectionHandler extends BackendAsyncHandler {
                 }
                 switch (data[4]) {
                     case OkPacket.FIELD_COUNT:
+                        endQuery(data);
                         handleOkPacket(data);
                         break;
                     case ErrorPacket.FIELD_COUNT:
+                        source.endQuery();
                         handleErrorPacket(data);
                         break;
                     case RequestFilePacket.FIELD_COUNT:
@@ -103,6 +107,7 @@ public class MySQLConnectionHandler extends BackendAsyncHandler {
                 switch (data[4]) {
                     case ErrorPacket.FIELD_COUNT:
                         resultStatus = RESULT_STATUS_INIT;
+                        source.endQuery();
                         handleErrorPacket(data);
                         break;
                     case EOFPacket.FIELD_COUNT:
@@ -117,10 +122,12 @@ public class MySQLConnectionHandler extends BackendAsyncHandler {
                 switch (data[4]) {
                     case ErrorPacket.FIELD_COUNT:
                         resultStatus = RESULT_STATUS_INIT;
+                        source.endQuery();
                         handleErrorPacket(data);
                         break;
                     case EOFPacket.FIELD_COUNT:
                         resultStatus = RESULT_STATUS_INIT;
+                        endQuery(data);
                         handleRowEofPacket(data);
                         break;
                     default:
@@ -144,6 +151,26 @@ public class MySQLConnectionHandler extends BackendAsyncHandler {
         this.session = session;
     }
 
+    /**
+     * end the query unless more results of the multi statements follow the OK or EOF packet,
+     * it is done before the handler which may release the connection
+     */
+    private void endQuery(byte[] data) {
+        int status;
+        if (data[4] == EOFPacket.FIELD_COUNT) {
+            status = (data[7] & 0xff) | ((data[8] & 0xff) << 8);
+        } else {
+            MySQLMessage mm = new MySQLMessage(data);
+            mm.position(5);
+            mm.readLength();
+            mm.readLength();
+            status = mm.readUB2();
+        }
+        if ((status & StatusFlags.SERVER_MORE_RESULTS_EXISTS) == 0) {
+            source.endQuery();
+        }
+    }
+
     /**
      * execute OK Packet
      */
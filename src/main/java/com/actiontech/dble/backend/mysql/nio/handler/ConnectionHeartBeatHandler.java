@@ -38,7 +38,7 @@ public class ConnectionHeartBeatHandler implements ResponseHandler {
         try {
             conn.setResponseHandler(this);
             MySQLConnection mCon = (MySQLConnection) conn;
-            mCon.write(mCon.writeToBuffer(PingPacket.PING, mCon.allocate()));
+            mCon.writeCommand(PingPacket.PING);
             long validateTime = 2;
             if (!condition.await(validateTime, TimeUnit.SECONDS)) {
                 //if the thread be waked up by timer than close the connection
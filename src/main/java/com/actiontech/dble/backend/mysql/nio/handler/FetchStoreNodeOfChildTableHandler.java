@@ -10,6 +10,7 @@ import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.backend.datasource.PhysicalDBNode;
 import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
 import com.actiontech.dble.cache.CachePool;
+import com.actiontech.dble.config.model.TableConfig;
 import com.actiontech.dble.net.mysql.ErrorPacket;
 import com.actiontech.dble.net.mysql.FieldPacket;
 import com.actiontech.dble.net.mysql.RowDataPacket;
@@ -19,56 +20,61 @@ import com.actiontech.dble.server.parser.ServerParse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * company where id=(select company_id from customer where id=3); the one which
- * return data (id) is the data node to store child table's records
+ * select the indexes of the keys found in company.id in (1,3) at every data node of
+ * the root parent, the one which return the index of a key is the data node to store child table's records
+ * of the key, see TableConfig.getLocateRTableKeysSql
  *
  * @author wuzhih, huqing.yan
  */
 public class FetchStoreNodeOfChildTableHandler implements ResponseHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(FetchStoreNodeOfChildTableHandler.class);
-    private final String sql;
-    private AtomicBoolean hadResult = new AtomicBoolean(false);
-    private volatile String dataNode;
+    private String sql;
+    // the index of join key returned -> the data node
+    private final Map<Integer, String> foundNodes = new HashMap<>();
     private AtomicInteger finished = new AtomicInteger(0);
     protected final ReentrantLock lock = new ReentrantLock();
     private Condition result = lock.newCondition();
     private final NonBlockingSession session;
 
-    public FetchStoreNodeOfChildTableHandler(String sql, NonBlockingSession session) {
-        this.sql = sql;
+    public FetchStoreNodeOfChildTableHandler(NonBlockingSession session) {
         this.session = session;
     }
 
-    public String execute(String schema, ArrayList<String> dataNodes) {
-        String key = schema + ":" + sql;
+    /**
+     * @param keys the values of join key as they are in the sql, e.g. 3 or 'a'
+     * @return the value of join key -> the data node, the key not found is absent
+     */
+    public Map<String, String> execute(String schema, TableConfig tc, Collection<String> keys) {
+        Map<String, String> keyNodes = new HashMap<>();
+        Set<String> missKeys = new LinkedHashSet<>();
+        String cachePrefix = schema + ":" + tc.getName() + ":";
         CachePool cache = DbleServer.getInstance().getCacheService().getCachePool("ER_SQL2PARENTID");
-        if (cache != null) {
-            String cacheResult = (String) cache.get(key);
+        for (String key : keys) {
+            String cacheResult = (cache == null) ? null : (String) cache.get(cachePrefix + key);
             if (cacheResult != null) {
-                return cacheResult;
+                keyNodes.put(key, cacheResult);
+            } else {
+                missKeys.add(key);
             }
         }
+        if (missKeys.isEmpty()) {
+            return keyNodes;
+        }
 
+        List<String> keyList = new ArrayList<>(missKeys);
+        sql = tc.getLocateRTableKeysSql(keyList);
+        ArrayList<String> dataNodes = tc.getRootParent().getDataNodes();
         int totalCount = dataNodes.size();
 
         LOGGER.debug("find child node with sql:" + sql);
         for (String dn : dataNodes) {
-            if (!LOGGER.isDebugEnabled()) {
-                //no early return when debug
-                if (dataNode != null) {
-                    LOGGER.debug(" found return ");
-                    return dataNode;
-                }
-            }
             PhysicalDBNode mysqlDN = DbleServer.getInstance().getConfig().getDataNodes().get(dn);
             try {
                 if (LOGGER.isDebugEnabled()) {
@@ -80,7 +86,7 @@ public class FetchStoreNodeOfChildTableHandler implements ResponseHandler {
                 if (session.tryExistsCon(conn, node)) {
                     if (session.closed()) {
                         session.clearResources(true);
-                        return null;
+                        return keyNodes;
                     }
                     conn.setResponseHandler(this);
                     conn.setSession(session);
@@ -91,31 +97,45 @@ public class FetchStoreNodeOfChildTableHandler implements ResponseHandler {
                 }
             } catch (Exception e) {
                 LOGGER.info("get connection err " + e);
+                finish();
             }
         }
         lock.lock();
         try {
-            while (dataNode == null) {
+            // no early return when debug
+            while (finished.get() < totalCount && (LOGGER.isDebugEnabled() || foundNodes.size() < keyList.size())) {
                 try {
                     result.await(50, TimeUnit.MILLISECONDS);
                 } catch (InterruptedException e) {
                     break;
                 }
-                if (dataNode != null || finished.get() >= totalCount) {
-                    break;
-                }
+            }
+            for (Map.Entry<Integer, String> entry : foundNodes.entrySet()) {
+                keyNodes.put(keyList.get(entry.getKey()), entry.getValue());
             }
         } finally {
             lock.unlock();
         }
-        if (!LOGGER.isDebugEnabled()) {
+        if (!LOGGER.isDebugEnabled() && cache != null) {
             //no cached when debug
-            if (dataNode != null && cache != null) {
-                cache.putIfAbsent(key, dataNode);
+            for (String key : missKeys) {
+                String dataNode = keyNodes.get(key);
+                if (dataNode != null) {
+                    cache.putIfAbsent(cachePrefix + key, dataNode);
+                }
             }
         }
-        return dataNode;
+        return keyNodes;
+    }
 
+    private void finish() {
+        finished.incrementAndGet();
+        lock.lock();
+        try {
+            result.signal();
+        } finally {
+            lock.unlock();
+        }
     }
 
     private boolean isAutoCommit() {
@@ -142,19 +162,19 @@ public class FetchStoreNodeOfChildTableHandler implements ResponseHandler {
 
     @Override
     public void connectionError(Throwable e, BackendConnection conn) {
-        finished.incrementAndGet();
         LOGGER.info("connectionError " + e);
+        finish();
     }
 
     @Override
     public void errorResponse(byte[] data, BackendConnection conn) {
-        finished.incrementAndGet();
         ErrorPacket err = new ErrorPacket();
         err.read(data);
         LOGGER.info("errorResponse " + err.getErrNo() + " " + new String(err.getMessage()));
         if (canReleaseConn()) {
             conn.release();
         }
+        finish();
     }
 
     @Override
@@ -164,10 +184,10 @@ public class FetchStoreNodeOfChildTableHandler implements ResponseHandler {
         }
         boolean executeResponse = conn.syncAndExecute();
         if (executeResponse) {
-            finished.incrementAndGet();
             if (canReleaseConn()) {
                 conn.release();
             }
+            finish();
         }
     }
 
@@ -176,16 +196,30 @@ public class FetchStoreNodeOfChildTableHandler implements ResponseHandler {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("received rowResponse response from  " + conn);
         }
-        if (hadResult.compareAndSet(false, true)) {
-            lock.lock();
-            try {
-                dataNode = ((RouteResultsetNode) conn.getAttachment()).getName();
-                result.signal();
-            } finally {
-                lock.unlock();
+        RowDataPacket rowDataPacket = new RowDataPacket(1);
+        rowDataPacket.read(row);
+        byte[] keyValue = rowDataPacket.fieldValues.get(0);
+        if (keyValue == null) {
+            return false;
+        }
+        String dataNode = ((RouteResultsetNode) conn.getAttachment()).getName();
+        lock.lock();
+        try {
+            for (String index : new String(keyValue).split(",")) {
+                if (index.isEmpty()) {
+                    continue;
+                }
+                Integer keyIndex = Integer.valueOf(index);
+                String oldNode = foundNodes.get(keyIndex);
+                if (oldNode == null) {
+                    foundNodes.put(keyIndex, dataNode);
+                } else if (!oldNode.equals(dataNode)) {
+                    LOGGER.info("find multi data nodes for child table store, key index is " + index + ", sql is:  " + sql);
+                }
             }
-        } else {
-            LOGGER.info("find multi data nodes for child table store, sql is:  " + sql);
+            result.signal();
+        } finally {
+            lock.unlock();
         }
         return false;
     }
@@ -196,18 +230,18 @@ public class FetchStoreNodeOfChildTableHandler implements ResponseHandler {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("rowEofResponse" + conn);
         }
-        finished.incrementAndGet();
         if (canReleaseConn()) {
             conn.release();
         }
+        finish();
     }
 
     private void executeException(BackendConnection c, Throwable e) {
-        finished.incrementAndGet();
         LOGGER.info("executeException   " + e);
         if (canReleaseConn()) {
             c.release();
         }
+        finish();
     }
 
     @Override
@@ -218,6 +252,7 @@ public class FetchStoreNodeOfChildTableHandler implements ResponseHandler {
     @Override
     public void connectionClose(BackendConnection conn, String reason) {
         LOGGER.info("connection closed " + conn + " reason:" + reason);
+        finish();
     }
 
     @Override
@@ -158,7 +158,8 @@ public class MultiNodeDdlHandler extends MultiNodeHandler {
                 setFail(new String(err.getMessage()));
             }
             errConn = true;
-            if (!conn.syncAndExecute()) {
+            // conn is null if no connection is got
+            if (conn != null && !conn.syncAndExecute()) {
                 return;
             }
             if (--nodeCount <= 0) {
@@ -292,7 +293,7 @@ public class MultiNodeDdlHandler extends MultiNodeHandler {
     private void handleEndPacket(byte[] data, AutoTxOperation txOperation, BackendConnection conn) {
         ServerConnection source = session.getSource();
         boolean inTransaction = !source.isAutocommit() || source.isTxStart();
-        if (!inTransaction) {
+        if (!inTransaction && conn != null) {
             // normal query
             session.releaseConnection(conn);
         }
@@ -301,6 +302,8 @@ public class MultiNodeDdlHandler extends MultiNodeHandler {
             source.setTxInterrupt("ROLLBACK");
         }
         if (nodeCount == 0) {
+            // the ddl is not executed, release the meta lock of the table
+            session.handleSpecial(oriRrs, source.getSchema(), false);
             session.getSource().write(data);
         }
     }
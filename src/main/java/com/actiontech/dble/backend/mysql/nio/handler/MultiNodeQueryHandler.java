@@ -36,12 +36,19 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * the rows from the data nodes are appended to pendingRows without lock, and one of the backend threads
+ * drains them into the frontend buffer at a time, so the other threads don't wait for writing.
+ *
  * @author mycat
  */
 public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataResponseHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(MultiNodeQueryHandler.class);
+    private static final int PRIMARY_KEY_CACHE_BATCH = 256;
     protected final RouteResultset rrs;
     protected final NonBlockingSession session;
     private final boolean sessionAutocommit;
@@ -57,10 +64,18 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
     protected volatile boolean fieldsReturned;
     private long insertId;
     private String primaryKeyTable = null;
-    private int primaryKeyIndex = -1;
+    private volatile int primaryKeyIndex = -1;
     private List<FieldPacket> fieldPackets = new ArrayList<>();
     private volatile ByteBuffer byteBuffer;
     private Set<BackendConnection> closedConnSet;
+    private final AtomicLong receivedRows = new AtomicLong(0);
+    private final ConcurrentLinkedQueue<byte[]> pendingRows = new ConcurrentLinkedQueue<>();
+    /**
+     * the count of drain requests, the thread which increases it from 0 drains the rows
+     */
+    private final AtomicInteger drainRequests = new AtomicInteger(0);
+    private final ConcurrentLinkedQueue<PrimaryKeyRow> primaryKeyRows = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger primaryKeyRowCount = new AtomicInteger(0);
 
     public MultiNodeQueryHandler(RouteResultset rrs, NonBlockingSession session) {
         super(session);
@@ -103,6 +118,7 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
             this.fieldsReturned = false;
             this.affectedRows = 0L;
             this.insertId = 0L;
+            this.receivedRows.set(0L);
         } finally {
             lock.unlock();
         }
@@ -126,7 +142,7 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
                 // create new connection
                 node.setRunOnSlave(rrs.getRunOnSlave());
                 PhysicalDBNode dn = DbleServer.getInstance().getConfig().getDataNodes().get(node.getName());
-                dn.getConnection(dn.getDatabase(), session.getSource().isTxStart(), sessionAutocommit, node, this, node);
+                dn.getConnection(dn.getDatabase(), session.getSource().isTxStart(), sessionAutocommit, session.getSource(), node, this, node);
             }
         }
         session.endDelive();
@@ -146,6 +162,9 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
         if (checkClosedConn(conn)) {
             return;
         }
+        if (rrs.isLoadData()) {
+            LoadDataUtil.stopStreams(rrs, conn, reason);
+        }
         LOGGER.info("backend connect" + reason);
         ErrorPacket errPacket = new ErrorPacket();
         errPacket.setPacketId(++packetId);
@@ -158,6 +177,9 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
     @Override
     public void connectionError(Throwable e, BackendConnection conn) {
         LOGGER.info("backend connect", e);
+        if (rrs.isLoadData()) {
+            LoadDataUtil.stopStreams(rrs, conn, e.toString());
+        }
         ErrorPacket errPacket = new ErrorPacket();
         errPacket.setPacketId(++packetId);
         errPacket.setErrNo(ErrorCode.ER_ABORTING_CONNECTION);
@@ -177,6 +199,9 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
     public void errorResponse(byte[] data, BackendConnection conn) {
         ErrorPacket errPacket = new ErrorPacket();
         errPacket.read(data);
+        if (rrs.isLoadData()) {
+            LoadDataUtil.stopStreams(rrs, conn, new String(errPacket.getMessage()));
+        }
         errPacket.setPacketId(1); //TODO :CONFIRM ?++packetId??
         err = errPacket;
         lock.lock();
@@ -326,47 +351,92 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
             //conn.close(error);
             return true;
         }
-        lock.lock();
-        try {
-            this.selectRows++;
+        long rowNum = receivedRows.incrementAndGet();
+        if (rrs.getLimitSize() >= 0) {
+            if (rowNum <= rrs.getLimitStart() ||
+                    (rowNum > (rrs.getLimitStart() < 0 ? 0 : rrs.getLimitStart()) + rrs.getLimitSize())) {
+                return false;
+            }
+        }
+        // cache primaryKey-> dataNode
+        if (primaryKeyIndex != -1) {
             RouteResultsetNode rNode = (RouteResultsetNode) conn.getAttachment();
-            String dataNode = rNode.getName();
+            primaryKeyRows.offer(new PrimaryKeyRow(row, rNode.getName()));
+            if (primaryKeyRowCount.incrementAndGet() % PRIMARY_KEY_CACHE_BATCH == 0) {
+                flushPrimaryKeyCache();
+            }
+        }
+        pendingRows.offer(row);
+        drainRows();
+        return false;
+    }
 
-            if (rrs.getLimitSize() >= 0) {
-                if (selectRows <= rrs.getLimitStart() ||
-                        (selectRows > (rrs.getLimitStart() < 0 ? 0 : rrs.getLimitStart()) + rrs.getLimitSize())) {
-                    return false;
-                }
+    private void drainRows() {
+        if (drainRequests.getAndIncrement() != 0) {
+            // the draining thread will see the row
+            return;
+        }
+        int missed = 1;
+        do {
+            lock.lock();
+            try {
+                writePendingRows();
+            } catch (Exception e) {
+                handleDataProcessException(e);
+            } finally {
+                lock.unlock();
             }
-            RowDataPacket rowDataPkg = null;
-            // cache primaryKey-> dataNode
-            if (primaryKeyIndex != -1) {
-                rowDataPkg = new RowDataPacket(fieldCount);
-                rowDataPkg.read(row);
-                String primaryKey = new String(rowDataPkg.fieldValues.get(primaryKeyIndex));
-                LayerCachePool pool = DbleServer.getInstance().getRouterService().getTableId2DataNodeCache();
-                if (pool != null) {
-                    pool.putIfAbsent(primaryKeyTable, primaryKey, dataNode);
-                }
+            missed = drainRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * must be called with the lock held, after the fields are written
+     */
+    private void writePendingRows() {
+        byte[] row;
+        while ((row = pendingRows.poll()) != null) {
+            if (errorResponse.get()) {
+                pendingRows.clear();
+                return;
             }
             row[3] = ++packetId;
             if (prepared) {
-                if (rowDataPkg == null) {
-                    rowDataPkg = new RowDataPacket(fieldCount);
-                    rowDataPkg.read(row);
-                }
+                RowDataPacket rowDataPkg = new RowDataPacket(fieldCount);
+                rowDataPkg.read(row);
                 BinaryRowDataPacket binRowDataPk = new BinaryRowDataPacket();
                 binRowDataPk.read(fieldPackets, rowDataPkg);
-                binRowDataPk.write(byteBuffer, session.getSource(), true);
+                byteBuffer = binRowDataPk.write(byteBuffer, session.getSource(), true);
             } else {
                 byteBuffer = session.getSource().writeToBuffer(row, byteBuffer);
             }
-        } catch (Exception e) {
-            handleDataProcessException(e);
-        } finally {
-            lock.unlock();
         }
-        return false;
+    }
+
+    private void flushPrimaryKeyCache() {
+        if (primaryKeyRows.isEmpty()) {
+            return;
+        }
+        DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                putPrimaryKeyCache();
+            }
+        });
+    }
+
+    private void putPrimaryKeyCache() {
+        LayerCachePool pool = DbleServer.getInstance().getRouterService().getTableId2DataNodeCache();
+        PrimaryKeyRow keyRow;
+        while ((keyRow = primaryKeyRows.poll()) != null) {
+            if (pool == null) {
+                continue;
+            }
+            RowDataPacket rowDataPkg = new RowDataPacket(fieldCount);
+            rowDataPkg.read(keyRow.row);
+            String primaryKey = new String(rowDataPkg.fieldValues.get(primaryKeyIndex));
+            pool.putIfAbsent(primaryKeyTable, primaryKey, keyRow.dataNode);
+        }
     }
 
     @Override
@@ -374,10 +444,14 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
         if (closedConnSet != null) {
             closedConnSet.clear();
         }
+        pendingRows.clear();
     }
 
     @Override
     public void writeQueueAvailable() {
+        if (rrs.isLoadData()) {
+            LoadDataUtil.writeQueueAvailable(rrs);
+        }
     }
 
     @Override
@@ -410,10 +484,13 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
             if (!isFail()) {
                 setFail(new String(err.getMessage()));
             }
-            if (errConnection == null) {
-                errConnection = new ArrayList<>();
+            // conn is null if no connection is got
+            if (conn != null) {
+                if (errConnection == null) {
+                    errConnection = new ArrayList<>();
+                }
+                errConnection.add(conn);
             }
-            errConnection.add(conn);
             if (--nodeCount <= 0) {
                 handleDdl();
                 session.handleSpecial(rrs, session.getSource().getSchema(), false);
@@ -428,6 +505,9 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
     private void writeEofResult(byte[] eof, ServerConnection source) {
         lock.lock();
         try {
+            // the rows appended by the other backend threads may be not drained yet
+            writePendingRows();
+            selectRows = receivedRows.get();
             eof[3] = ++packetId;
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("last packet id:" + packetId);
@@ -437,6 +517,7 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
         } finally {
             lock.unlock();
         }
+        flushPrimaryKeyCache();
     }
 
     protected void doSqlStat(ServerConnection source) {
@@ -446,8 +527,7 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
                 netInBytes += rrs.getStatement().getBytes().length;
             }
             assert rrs != null;
-            QueryResult queryResult = new QueryResult(session.getSource().getUser(), rrs.getSqlType(),
-                    rrs.getStatement(), selectRows, netInBytes, netOutBytes, startTime, System.currentTimeMillis(), resultSize);
+            QueryResult queryResult = new QueryResult(session.getSource().getUser(), rrs, selectRows, netInBytes, netOutBytes, startTime, System.currentTimeMillis(), resultSize);
             QueryResultDispatcher.dispatchQuery(queryResult);
         }
     }
@@ -527,7 +607,8 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 
     protected void handleEndPacket(byte[] data, AutoTxOperation txOperation, BackendConnection conn) {
         ServerConnection source = session.getSource();
-        if (source.isAutocommit() && !source.isTxStart() && conn.isModifiedSQLExecuted()) {
+        // conn is null if no connection is acquired
+        if (source.isAutocommit() && !source.isTxStart() && conn != null && conn.isModifiedSQLExecuted()) {
             if (nodeCount < 0) {
                 return;
             }
@@ -554,7 +635,7 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
             }
         } else {
             boolean inTransaction = !source.isAutocommit() || source.isTxStart();
-            if (!inTransaction) {
+            if (!inTransaction && conn != null) {
                 session.releaseConnection(conn);
             }
             // Explicit Distributed Transaction
@@ -567,4 +648,14 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
             }
         }
     }
+
+    private static final class PrimaryKeyRow {
+        private final byte[] row;
+        private final String dataNode;
+
+        private PrimaryKeyRow(byte[] row, String dataNode) {
+            this.row = row;
+            this.dataNode = dataNode;
+        }
+    }
 }
@@ -86,7 +86,7 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
 
             ServerConfig conf = DbleServer.getInstance().getConfig();
             PhysicalDBNode dn = conf.getDataNodes().get(node.getName());
-            dn.getConnection(dn.getDatabase(), session.getSource().isTxStart(), sc.isAutocommit(), node, this, node);
+            dn.getConnection(dn.getDatabase(), session.getSource().isTxStart(), sc.isAutocommit(), sc, node, this, node);
         }
 
     }
@@ -115,6 +115,20 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
 
     @Override
     public void connectionError(Throwable e, BackendConnection conn) {
+        if (rrs.isLoadData()) {
+            LoadDataUtil.stopStreams(rrs, conn, e.toString());
+        }
+        if (conn == null) {
+            // no connection is got, e.g. waiting for the full pool timeout, the client gets the error like before
+            LOGGER.info("can't get connection for " + node + ", error:" + e);
+            session.handleSpecial(rrs, session.getSource().getSchema(), false);
+            if (waitingResponse) {
+                waitingResponse = false;
+                session.getSource().writeErrMessage(ErrorCode.ERR_HANDLE_DATA, e.toString());
+            }
+            recycleResources();
+            return;
+        }
         session.handleSpecial(rrs, session.getSource().getSchema(), true);
         recycleResources();
         session.getSource().close(e.getMessage());
@@ -124,6 +138,9 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
     public void errorResponse(byte[] data, BackendConnection conn) {
         ErrorPacket err = new ErrorPacket();
         err.read(data);
+        if (rrs.isLoadData()) {
+            LoadDataUtil.stopStreams(rrs, conn, new String(err.getMessage()));
+        }
         err.setPacketId(++packetId);
         backConnectionErr(err, conn);
     }
@@ -229,7 +246,7 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
             if (rrs.getStatement() != null) {
                 netInBytes += rrs.getStatement().getBytes().length;
             }
-            QueryResult queryResult = new QueryResult(session.getSource().getUser(), rrs.getSqlType(), rrs.getStatement(), selectRows,
+            QueryResult queryResult = new QueryResult(session.getSource().getUser(), rrs, selectRows,
                     netInBytes, netOutBytes, startTime, System.currentTimeMillis(), resultSize);
             QueryResultDispatcher.dispatchQuery(queryResult);
         }
@@ -347,11 +364,16 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
 
     @Override
     public void writeQueueAvailable() {
-
+        if (rrs.isLoadData()) {
+            LoadDataUtil.writeQueueAvailable(rrs);
+        }
     }
 
     @Override
     public void connectionClose(BackendConnection conn, String reason) {
+        if (rrs.isLoadData()) {
+            LoadDataUtil.stopStreams(rrs, conn, reason);
+        }
         ErrorPacket err = new ErrorPacket();
         err.setPacketId(++packetId);
         err.setErrNo(ErrorCode.ER_ERROR_ON_CLOSE);
@@ -214,6 +214,7 @@ public abstract class BaseHandlerBuilder {
             addHandler(hh);
         }
 
+        boolean limitDone = false;
         if (node.isDistinct() && node.getOrderBys().size() > 0) {
             // distinct and order by both exists
             List<Order> mergedOrders = mergeOrderBy(node.getColumnsSelected(), node.getOrderBys());
@@ -221,8 +222,7 @@ public abstract class BaseHandlerBuilder {
                 // can not merge,need distinct then order by
                 DistinctHandler dh = new DistinctHandler(getSequenceId(), session, node.getColumnsSelected());
                 addHandler(dh);
-                OrderByHandler oh = new OrderByHandler(getSequenceId(), session, node.getOrderBys());
-                addHandler(oh);
+                limitDone = addOrderByHandler();
             } else {
                 DistinctHandler dh = new DistinctHandler(getSequenceId(), session, node.getColumnsSelected(),
                         mergedOrders);
@@ -237,22 +237,38 @@ public abstract class BaseHandlerBuilder {
             if (node.getOrderBys().size() > 0) {
                 if (node.getGroupBys().size() > 0) {
                     if (!PlanUtil.orderContains(node.getGroupBys(), node.getOrderBys())) {
-                        OrderByHandler oh = new OrderByHandler(getSequenceId(), session, node.getOrderBys());
-                        addHandler(oh);
+                        limitDone = addOrderByHandler();
                     }
                 } else if (isOrderNeeded(node, node.getOrderBys())) {
-                    OrderByHandler oh = new OrderByHandler(getSequenceId(), session, node.getOrderBys());
-                    addHandler(oh);
+                    limitDone = addOrderByHandler();
                 }
             }
         }
-        if (node.getLimitTo() > 0) {
+        if (node.getLimitTo() > 0 && !limitDone) {
             LimitHandler lh = new LimitHandler(getSequenceId(), session, node.getLimitFrom(), node.getLimitTo());
             addHandler(lh);
         }
 
     }
 
+    /**
+     * add the handler for order by, the limit is done by it if it is a top-n handler
+     *
+     * @return true if the limit is done
+     */
+    private boolean addOrderByHandler() {
+        int topNMaxRows = DbleServer.getInstance().getConfig().getSystem().getTopNMaxRows();
+        if (node.getLimitTo() > 0 && Math.max(0, node.getLimitFrom()) + node.getLimitTo() <= topNMaxRows) {
+            TopNHandler th = new TopNHandler(getSequenceId(), session, node.getOrderBys(), node.getLimitFrom(),
+                    node.getLimitTo());
+            addHandler(th);
+            return true;
+        }
+        OrderByHandler oh = new OrderByHandler(getSequenceId(), session, node.getOrderBys());
+        addHandler(oh);
+        return false;
+    }
+
     /**
      * add a handler into handler chain
      */
@@ -301,6 +317,10 @@ public abstract class BaseHandlerBuilder {
         // onCondition column in orderBys will be saved to onOrders,
         // eg: if jn.onCond = (t1.id=t2.id),
         // orderBys is t1.id,t2.id,t1.name, and onOrders = {t1.id,t2.id};
+        if (jn.getStrategy() == JoinNode.Strategy.HASHJOIN) {
+            // the result of hash join is not ordered
+            return false;
+        }
         List<Order> onOrders = new ArrayList<>();
         List<Order> leftOnOrders = jn.getLeftJoinOnOrders();
         List<Order> rightOnOrders = jn.getRightJoinOnOrders();
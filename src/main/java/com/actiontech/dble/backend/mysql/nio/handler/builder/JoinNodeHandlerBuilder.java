@@ -5,14 +5,17 @@
 
 package com.actiontech.dble.backend.mysql.nio.handler.builder;
 
+import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.backend.mysql.nio.handler.builder.sqlvisitor.PushDownVisitor;
 import com.actiontech.dble.backend.mysql.nio.handler.query.DMLResponseHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.OrderByHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.TempTableHandler;
+import com.actiontech.dble.backend.mysql.nio.handler.query.impl.join.HashJoinHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.join.JoinHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.join.NotInHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.util.CallBackHandler;
 import com.actiontech.dble.config.ErrorCode;
+import com.actiontech.dble.config.model.TableConfig;
 import com.actiontech.dble.plan.common.exception.MySQLOutPutException;
 import com.actiontech.dble.plan.common.item.Item;
 import com.actiontech.dble.plan.common.item.Item.ItemType;
@@ -21,17 +24,21 @@ import com.actiontech.dble.plan.common.item.ItemString;
 import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncIn;
 import com.actiontech.dble.plan.node.JoinNode;
 import com.actiontech.dble.plan.node.PlanNode;
+import com.actiontech.dble.plan.node.TableNode;
 import com.actiontech.dble.plan.util.PlanUtil;
 import com.actiontech.dble.route.RouteResultsetNode;
 import com.actiontech.dble.server.NonBlockingSession;
+import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
 import static com.actiontech.dble.plan.optimizer.JoinStrategyProcessor.NEED_REPLACE;
 
 class JoinNodeHandlerBuilder extends BaseHandlerBuilder {
+    private static final Logger LOGGER = Logger.getLogger(JoinNodeHandlerBuilder.class);
     private JoinNode node;
 
     protected JoinNodeHandlerBuilder(NonBlockingSession session, JoinNode node, HandlerBuilder hBuilder, boolean isExplain) {
@@ -87,19 +94,26 @@ class JoinNodeHandlerBuilder extends BaseHandlerBuilder {
             // prepare the column for sending
             List<Item> keySources = isLeftSmall ? node.getLeftKeys() : node.getRightKeys();
             List<Item> keyToPasses = isLeftSmall ? node.getRightKeys() : node.getLeftKeys();
-            // just find one key as filter later, try to choose a simple column(FIELD_ITEM) from toPasses
-            int columnIndex = 0;
-            for (int index = 0; index < keyToPasses.size(); index++) {
+            // just find one key as filter later, try to choose the partition column of the big table so that
+            // every node only gets its own values, or a simple column(FIELD_ITEM) from toPasses
+            TableNode tbBig = (TableNode) tnBig;
+            final int shardingIndex = tbBig.findShardingKey(keyToPasses);
+            int columnIndex = shardingIndex;
+            for (int index = 0; columnIndex < 0 && index < keyToPasses.size(); index++) {
                 Item keyToPass = keyToPasses.get(index);
                 if (keyToPass.type().equals(ItemType.FIELD_ITEM)) {
                     columnIndex = index;
-                    break;
                 }
             }
+            columnIndex = Math.max(columnIndex, 0);
             final Item keySource = keySources.get(columnIndex);
             final Item keyToPass = keyToPasses.get(columnIndex);
             DMLResponseHandler endHandler = buildJoinChild(tnSmall, isLeftSmall);
             final TempTableHandler tempHandler = new TempTableHandler(getSequenceId(), session, keySource);
+            if (shardingIndex >= 0) {
+                TableConfig bigConfig = tbBig.getShardingConfig();
+                tempHandler.setPartition(bigConfig.getRule().getRuleAlgorithm(), bigConfig.getDataNodes().size());
+            }
             endHandler.setNextHandler(tempHandler);
             tempHandler.setLeft(isLeftSmall);
             pres.add(tempHandler);
@@ -107,14 +121,13 @@ class JoinNodeHandlerBuilder extends BaseHandlerBuilder {
 
                 @Override
                 public void call() throws Exception {
-                    Set<String> valueSet = tempHandler.getValueSet();
-                    buildNestFilters(tnBig, keyToPass, valueSet, tempHandler.getMaxPartSize());
+                    buildNestFilters(tnBig, keyToPass, tempHandler.getValueSets().values(), tempHandler.getMaxPartSize());
                     DMLResponseHandler bigLh = buildJoinChild(tnBig, !isLeftSmall);
                     synchronized (tempHandler) {
                         bigLh.setNextHandler(tempHandler.getNextHandler());
                     }
                     tempHandler.setCreatedHandler(bigLh);
-                    HandlerBuilder.startHandler(bigLh);
+                    startNestLoopHandler(bigLh);
                 }
             };
             if (isExplain) {
@@ -130,27 +143,57 @@ class JoinNodeHandlerBuilder extends BaseHandlerBuilder {
             DMLResponseHandler rh = buildJoinChild(right, false);
             pres.add(rh);
 
+        } else if (node.getStrategy() == JoinNode.Strategy.HASHJOIN) {
+            // the children of hash join need not be ordered
+            DMLResponseHandler lh = buildJoinChild(left, true, false);
+            pres.add(lh);
+            DMLResponseHandler rh = buildJoinChild(right, false, false);
+            pres.add(rh);
+
         } else {
             throw new MySQLOutPutException(ErrorCode.ER_QUERYHANDLER, "", "strategy [" + node.getStrategy() + "] not implement yet!");
         }
         return pres;
     }
 
+    /**
+     * the callback runs in the step of the small table on the complexQueryWorker pool, getting the backend
+     * connections of the big table may wait for a full pool, so start it on the complexQueryExecutor
+     */
+    private void startNestLoopHandler(final DMLResponseHandler bigLh) {
+        DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    HandlerBuilder.startHandler(bigLh);
+                } catch (Exception e) {
+                    String msg = "start nest loop join error, " + e.getLocalizedMessage();
+                    LOGGER.info(msg, e);
+                    session.onQueryError(msg.getBytes());
+                }
+            }
+        });
+    }
+
     private DMLResponseHandler buildJoinChild(PlanNode child, boolean isLeft) {
+        return buildJoinChild(child, isLeft, true);
+    }
+
+    private DMLResponseHandler buildJoinChild(PlanNode child, boolean isLeft, boolean needOrder) {
         BaseHandlerBuilder builder = hBuilder.getBuilder(session, child, isExplain);
         if (builder.getSubQueryBuilderList().size() > 0) {
             this.getSubQueryBuilderList().addAll(builder.getSubQueryBuilderList());
         }
         DMLResponseHandler endHandler = builder.getEndHandler();
         if (isLeft) {
-            if (!node.isLeftOrderMatch()) {
+            if (needOrder && !node.isLeftOrderMatch()) {
                 OrderByHandler oh = new OrderByHandler(getSequenceId(), session, node.getLeftJoinOnOrders());
                 endHandler.setNextHandler(oh);
                 endHandler = oh;
             }
             endHandler.setLeft(true);
         } else {
-            if (!node.isRightOrderMatch()) {
+            if (needOrder && !node.isRightOrderMatch()) {
                 OrderByHandler oh = new OrderByHandler(getSequenceId(), session, node.getRightJoinOnOrders());
                 endHandler.setNextHandler(oh);
                 endHandler = oh;
@@ -165,6 +208,11 @@ class JoinNodeHandlerBuilder extends BaseHandlerBuilder {
             NotInHandler nh = new NotInHandler(getSequenceId(), session, node.getLeftJoinOnOrders(),
                     node.getRightJoinOnOrders());
             addHandler(nh);
+        } else if (node.getStrategy() == JoinNode.Strategy.HASHJOIN) {
+            HashJoinHandler hh = new HashJoinHandler(getSequenceId(), session, node.isLeftOuterJoin(),
+                    node.isLeftHashBuild(), node.getLeftJoinOnOrders(), node.getRightJoinOnOrders(),
+                    node.getOtherJoinOnFilter());
+            addHandler(hh);
         } else {
             JoinHandler jh = new JoinHandler(getSequenceId(), session, node.isLeftOuterJoin(),
                     node.getLeftJoinOnOrders(), node.getRightJoinOnOrders(), node.getOtherJoinOnFilter());
@@ -183,46 +231,47 @@ class JoinNodeHandlerBuilder extends BaseHandlerBuilder {
     }
 
     /**
-     * generate filter for big table according to tmp(small) table's result
+     * generate filter for big table according to tmp(small) table's result, the values of every node are sent
+     * by their own IN filters
      *
      * @param tnBig
      * @param keyToPass
-     * @param valueSet
+     * @param valueSets
      */
-    protected void buildNestFilters(PlanNode tnBig, Item keyToPass, Set<String> valueSet, int maxPartSize) {
+    protected void buildNestFilters(PlanNode tnBig, Item keyToPass, Collection<Set<String>> valueSets, int maxPartSize) {
         List<Item> strategyFilters = tnBig.getNestLoopFilters();
-        List<Item> partList = null;
         Item keyInBig = PlanUtil.pushDownItem(node, keyToPass);
-        int partSize = 0;
-        for (String value : valueSet) {
-            if (partList == null)
-                partList = new ArrayList<>();
-            if (value == null) { // is null will never join
-                continue;
-            } else {
-                partList.add(new ItemString(value));
-                if (++partSize >= maxPartSize) {
-                    List<Item> argList = new ArrayList<>();
-                    argList.add(keyInBig);
-                    argList.addAll(partList);
-                    ItemFuncIn inFilter = new ItemFuncIn(argList, false);
-                    strategyFilters.add(inFilter);
-                    partList = null;
-                    partSize = 0;
-                }
-            }
-        }
-        if (partSize > 0) {
-            List<Item> argList = new ArrayList<>();
-            argList.add(keyInBig);
-            argList.addAll(partList);
-            ItemFuncIn inFilter = new ItemFuncIn(argList, false);
-            strategyFilters.add(inFilter);
-        }
+        strategyFilters.addAll(buildInFilters(keyInBig, valueSets, maxPartSize));
         // if no data
         if (strategyFilters.isEmpty()) {
             strategyFilters.add(new ItemInt(0));
         }
     }
 
+    /**
+     * @return the IN filters of the values, the values of different sets are never in the same IN filter
+     * and one IN filter has maxPartSize values at most
+     */
+    static List<Item> buildInFilters(Item keyInBig, Collection<Set<String>> valueSets, int maxPartSize) {
+        List<Item> inFilters = new ArrayList<>();
+        for (Set<String> valueSet : valueSets) {
+            List<Item> argList = null;
+            for (String value : valueSet) {
+                if (argList == null) {
+                    argList = new ArrayList<>();
+                    argList.add(keyInBig);
+                }
+                argList.add(new ItemString(value));
+                if (argList.size() > maxPartSize) {
+                    inFilters.add(new ItemFuncIn(argList, false));
+                    argList = null;
+                }
+            }
+            if (argList != null) {
+                inFilters.add(new ItemFuncIn(argList, false));
+            }
+        }
+        return inFilters;
+    }
+
 }
@@ -6,6 +6,7 @@
 package com.actiontech.dble.backend.mysql.nio.handler.query;
 
 import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.mysql.nio.handler.util.RowBatch;
 import com.actiontech.dble.net.mysql.FieldPacket;
 import com.actiontech.dble.server.NonBlockingSession;
 import org.apache.log4j.Logger;
@@ -85,6 +86,11 @@ public abstract class BaseDMLHandler implements DMLResponseHandler {
 
     protected abstract void onTerminate() throws Exception;
 
+    @Override
+    public void whenTerminated(Runnable callback) {
+        callback.run();
+    }
+
     @Override
     public void connectionError(Throwable e, BackendConnection conn) {
         // TODO Auto-generated method stub
@@ -100,6 +106,19 @@ public abstract class BaseDMLHandler implements DMLResponseHandler {
     public void okResponse(byte[] ok, BackendConnection conn) {
     }
 
+    /**
+     * the rows are converted to row packets one by one, override it if the handler can work on the batch
+     */
+    @Override
+    public boolean rowsResponse(RowBatch rows, boolean left, BackendConnection conn) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rowResponse(null, rows.getRow(i), left, conn)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public void writeQueueAvailable() {
         // TODO Auto-generated method stub
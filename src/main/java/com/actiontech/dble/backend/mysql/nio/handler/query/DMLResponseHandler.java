@@ -5,7 +5,9 @@
 
 package com.actiontech.dble.backend.mysql.nio.handler.query;
 
+import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.backend.mysql.nio.handler.ResponseHandler;
+import com.actiontech.dble.backend.mysql.nio.handler.util.RowBatch;
 
 import java.util.List;
 
@@ -16,6 +18,13 @@ public interface DMLResponseHandler extends ResponseHandler {
 
     HandlerType type();
 
+    /**
+     * execute after get a batch of rows, like rowResponse for every row of it
+     *
+     * @return true if no more rows are needed
+     */
+    boolean rowsResponse(RowBatch rows, boolean isLeft, BackendConnection conn);
+
     DMLResponseHandler getNextHandler();
 
     void setNextHandler(DMLResponseHandler next);
@@ -30,4 +39,9 @@ public interface DMLResponseHandler extends ResponseHandler {
 
     void terminate();
 
+    /**
+     * run the callback after the handler is terminated and stops using the plan it is built by
+     */
+    void whenTerminated(Runnable callback);
+
 }
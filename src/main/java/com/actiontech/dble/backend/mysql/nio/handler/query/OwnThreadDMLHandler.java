@@ -6,12 +6,26 @@
 package com.actiontech.dble.backend.mysql.nio.handler.query;
 
 import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.server.NonBlockingSession;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * OwnThreadDMLHandler
+ * <p>
+ * The job of the handler is run by steps on the shared complexQueryWorker pool: the rows are pushed into the
+ * handler by rowResponse, which calls scheduleStep, and ownThreadStep consumes the rows pushed so far and
+ * returns without waiting for more. The steps of a handler never run at the same time. If the rows pending in
+ * the handler are too many, the reading of the backend connection is paused until they are consumed.
  *
  * @author ActionTech
  * @CreateTime 2014/11/27
@@ -21,6 +35,16 @@ public abstract class OwnThreadDMLHandler extends BaseDMLHandler {
     private AtomicBoolean ownJobFlag;
     private Object ownThreadLock = new Object();
     private boolean preparedToRecycle;
+    /* true from the start of the steps till they finish, guarded by ownThreadLock */
+    private boolean stepsRunning = false;
+    /* the callbacks waiting for the steps to finish, guarded by ownThreadLock */
+    private List<Runnable> terminatedCallbacks;
+    /* the steps requested but not run, 1 before the steps started so that no step runs before it */
+    private final AtomicInteger pendingSteps = new AtomicInteger(1);
+    private volatile Object[] stepObjects;
+    /* the backend connections whose reading is paused by the handler until the rows pending are consumed,
+     * the pauses are counted by the connection, so the handler only resumes its own pause */
+    private final Map<BackendConnection, PausedRead> pausedReads = new ConcurrentHashMap<>();
 
     public OwnThreadDMLHandler(long id, NonBlockingSession session) {
         super(id, session);
@@ -51,35 +75,160 @@ public abstract class OwnThreadDMLHandler extends BaseDMLHandler {
     }
 
     /**
-     * @param objects
+     * start the steps of the handler, the objects are passed to every ownThreadStep
      */
     protected final void startOwnThread(final Object... objects) {
-        DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
+        synchronized (ownThreadLock) {
+            if (!ownJobFlag.compareAndSet(false, true)) {
+                return;
+            }
+            stepsRunning = true;
+        }
+        stepObjects = objects;
+        getStepExecutor().execute(new Runnable() {
             @Override
             public void run() {
-                if (terminate.get())
-                    return;
-                if (ownJobFlag.compareAndSet(false, true)) {
-                    try {
-                        ownThreadJob(objects);
-                    } finally {
-                        synchronized (ownThreadLock) {
-                            recycleConn();
-                            preparedToRecycle = true;
-                        }
-                        recycleResources();
-                    }
-                }
+                runSteps();
+            }
+        });
+    }
+
+    /**
+     * ask for a step after the rows are pushed or the handler is terminated
+     */
+    protected final void scheduleStep() {
+        if (pendingSteps.getAndIncrement() != 0) {
+            // the running step will run again
+            return;
+        }
+        getStepExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                runSteps();
             }
         });
     }
 
-    protected abstract void ownThreadJob(Object... objects);
+    /**
+     * the executor to run the steps
+     */
+    protected Executor getStepExecutor() {
+        return DbleServer.getInstance().getComplexQueryWorkerExecutor();
+    }
+
+    private void runSteps() {
+        int missed = 1;
+        while (true) {
+            boolean finished = true;
+            try {
+                finished = terminate.get() || ownThreadStep(stepObjects);
+            } finally {
+                if (finished) {
+                    // pendingSteps is never 0 again, so no more steps
+                    finishSteps();
+                } else {
+                    resumeReads(false);
+                }
+            }
+            if (finished) {
+                return;
+            }
+            missed = pendingSteps.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private void finishSteps() {
+        resumeReads(true);
+        List<Runnable> callbacks;
+        synchronized (ownThreadLock) {
+            recycleConn();
+            preparedToRecycle = true;
+            stepsRunning = false;
+            callbacks = terminatedCallbacks;
+            terminatedCallbacks = null;
+        }
+        recycleResources();
+        if (callbacks != null) {
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+    }
 
-    /* ending the running thread */
+    /**
+     * the step running when the handler is terminated goes on till it checks the terminate flag, so the callback
+     * waits for the steps to finish
+     */
+    @Override
+    public final void whenTerminated(Runnable callback) {
+        synchronized (ownThreadLock) {
+            if (stepsRunning) {
+                if (terminatedCallbacks == null) {
+                    terminatedCallbacks = new ArrayList<>();
+                }
+                terminatedCallbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    /**
+     * pause reading the connection if the pending rows are not less than limit, it is resumed by the step
+     * which finds they are less than the half. Call it before scheduleStep.
+     */
+    protected final void pauseReadIfFull(BackendConnection conn, Collection<?> pending, int limit) {
+        if (conn == null || pending.size() < limit || terminate.get()) {
+            return;
+        }
+        synchronized (pausedReads) {
+            if (!pausedReads.containsKey(conn)) {
+                pausedReads.put(conn, new PausedRead(pending, limit / 2));
+                conn.disableRead();
+            }
+        }
+    }
+
+    private void resumeReads(boolean all) {
+        if (pausedReads.isEmpty()) {
+            return;
+        }
+        synchronized (pausedReads) {
+            Iterator<Map.Entry<BackendConnection, PausedRead>> iterator = pausedReads.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<BackendConnection, PausedRead> entry = iterator.next();
+                PausedRead paused = entry.getValue();
+                if (all || paused.pending.size() <= paused.resumeSize) {
+                    iterator.remove();
+                    entry.getKey().enableRead();
+                }
+            }
+        }
+    }
+
+    /**
+     * consume the rows pushed so far without waiting for more rows
+     *
+     * @return true if the job is finished or stopped, the resources are recycled then
+     */
+    protected abstract boolean ownThreadStep(Object... objects);
+
+    /* ending the running thread, scheduleStep in general */
     protected abstract void terminateThread() throws Exception;
 
     /* after thread terminated */
     protected abstract void recycleResources();
 
+    private static final class PausedRead {
+        private final Collection<?> pending;
+        private final int resumeSize;
+
+        private PausedRead(Collection<?> pending, int resumeSize) {
+            this.pending = pending;
+            this.resumeSize = resumeSize;
+        }
+    }
 }
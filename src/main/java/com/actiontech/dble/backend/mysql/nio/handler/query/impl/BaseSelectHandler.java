@@ -11,6 +11,7 @@ import com.actiontech.dble.backend.datasource.PhysicalDBNode;
 import com.actiontech.dble.backend.mysql.CharsetUtil;
 import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
 import com.actiontech.dble.backend.mysql.nio.handler.query.BaseDMLHandler;
+import com.actiontech.dble.backend.mysql.nio.handler.util.RowBatch;
 import com.actiontech.dble.net.mysql.ErrorPacket;
 import com.actiontech.dble.net.mysql.FieldPacket;
 import com.actiontech.dble.net.mysql.RowDataPacket;
@@ -23,13 +24,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * for execute Sql,transform the response data to next handler
+ * for execute Sql,transform the response data to next handler, the rows are passed by batches
  */
 public class BaseSelectHandler extends BaseDMLHandler {
     private static final Logger LOGGER = Logger.getLogger(BaseSelectHandler.class);
 
     private final boolean autocommit;
     private volatile int fieldCounts = -1;
+    /* the rows received but not passed to the next handler */
+    private RowBatch rows;
 
 
     private RouteResultsetNode rrss;
@@ -110,9 +113,15 @@ public class BaseSelectHandler extends BaseDMLHandler {
     public boolean rowResponse(byte[] row, RowDataPacket rowPacket, boolean isLeft, BackendConnection conn) {
         if (terminate.get())
             return true;
-        RowDataPacket rp = new RowDataPacket(fieldCounts);
-        rp.read(row);
-        nextHandler.rowResponse(null, rp, this.isLeft, conn);
+        if (rows == null) {
+            rows = new RowBatch(fieldCounts);
+        }
+        rows.add(row);
+        if (rows.isFull()) {
+            RowBatch fullRows = rows;
+            rows = null;
+            nextHandler.rowsResponse(fullRows, this.isLeft, conn);
+        }
         return false;
     }
 
@@ -124,6 +133,11 @@ public class BaseSelectHandler extends BaseDMLHandler {
         ((MySQLConnection) conn).setRunning(false);
         if (this.terminate.get())
             return;
+        if (rows != null) {
+            RowBatch lastRows = rows;
+            rows = null;
+            nextHandler.rowsResponse(lastRows, this.isLeft, conn);
+        }
         nextHandler.rowEofResponse(data, this.isLeft, conn);
     }
 
@@ -7,6 +7,7 @@ package com.actiontech.dble.backend.mysql.nio.handler.query.impl;
 
 import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.backend.mysql.nio.handler.query.BaseDMLHandler;
+import com.actiontech.dble.backend.mysql.nio.handler.util.CompiledCondition;
 import com.actiontech.dble.backend.mysql.nio.handler.util.HandlerTool;
 import com.actiontech.dble.net.mysql.FieldPacket;
 import com.actiontech.dble.net.mysql.RowDataPacket;
@@ -33,7 +34,7 @@ public class HavingHandler extends BaseDMLHandler {
     }
 
     private Item having = null;
-    private Item havingItem = null;
+    private CompiledCondition havingCondition = null;
     private List<Field> sourceFields;
     private ReentrantLock lock = new ReentrantLock();
 
@@ -51,7 +52,8 @@ public class HavingHandler extends BaseDMLHandler {
         /**
          * having will not be pushed down because of aggregate function
          */
-        this.havingItem = HandlerTool.createItem(this.having, this.sourceFields, 0, false, this.type());
+        Item havingItem = HandlerTool.createItem(this.having, this.sourceFields, 0, false, this.type());
+        this.havingCondition = CompiledCondition.compile(havingItem, this.sourceFields);
         nextHandler.fieldEofResponse(null, null, this.fieldPackets, null, this.isLeft, conn);
     }
 
@@ -60,9 +62,8 @@ public class HavingHandler extends BaseDMLHandler {
             return true;
         lock.lock();
         try {
-            HandlerTool.initFields(this.sourceFields, rowPacket.fieldValues);
             /* filter by having statement */
-            if (havingItem.valBool()) {
+            if (havingCondition.match(rowPacket.fieldValues)) {
                 nextHandler.rowResponse(null, rowPacket, this.isLeft, conn);
             } else {
                 // nothing
@@ -11,7 +11,7 @@ import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
 import com.actiontech.dble.backend.mysql.nio.handler.query.DMLResponseHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.OwnThreadDMLHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.util.ArrayMinHeap;
-import com.actiontech.dble.backend.mysql.nio.handler.util.HeapItem;
+import com.actiontech.dble.backend.mysql.nio.handler.util.RowBatch;
 import com.actiontech.dble.backend.mysql.nio.handler.util.RowDataComparator;
 import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.net.mysql.FieldPacket;
@@ -36,18 +36,23 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class MultiNodeMergeHandler extends OwnThreadDMLHandler {
     private static final Logger LOGGER = Logger.getLogger(MultiNodeMergeHandler.class);
+    /* put into the queue after the last rows of the connection */
+    private static final RowBatch EOF_ROWS = new RowBatch(0, 0);
 
+    /* the max batches in the queue of a connection */
     private final int queueSize;
     private final ReentrantLock lock;
     private final List<BaseSelectHandler> exeHandlers;
-    // map;conn->blocking queue.if receive row packet, add to the queue,if receive rowEof packet, add NullHeapItem into queue;
-    private Map<MySQLConnection, BlockingQueue<HeapItem>> queues;
+    // map;conn->blocking queue.if receive rows, add the batch to the queue,if receive rowEof packet, add EOF_ROWS into queue;
+    private Map<MySQLConnection, BlockingQueue<RowBatch>> queues;
     private List<Order> orderBys;
     private RowDataComparator rowComparator;
     private RouteResultsetNode[] route;
     private int reachedConCount;
     private boolean isEasyMerge;
     private volatile boolean noNeedRows = false;
+    /* the current row of every connection is in the heap, null before all the first rows are received */
+    private ArrayMinHeap<MergeCursor> heap;
 
     public MultiNodeMergeHandler(long id, RouteResultsetNode[] route, boolean autocommit, NonBlockingSession session,
                                  List<Order> orderBys) {
@@ -63,7 +68,7 @@ public class MultiNodeMergeHandler extends OwnThreadDMLHandler {
         }
         this.route = route;
         this.orderBys = orderBys;
-        this.queueSize = DbleServer.getInstance().getConfig().getSystem().getMergeQueueSize();
+        this.queueSize = Math.max(2, DbleServer.getInstance().getConfig().getSystem().getMergeQueueSize() / RowBatch.DEFAULT_CAPACITY);
         this.isEasyMerge = route.length == 1 || (orderBys == null || orderBys.size() == 0);
         this.queues = new ConcurrentHashMap<>();
         this.merges.add(this);
@@ -81,7 +86,7 @@ public class MultiNodeMergeHandler extends OwnThreadDMLHandler {
                 MySQLConnection exeConn = exeHandler.initConnection();
                 if (exeConn != null) {
                     exeConn.setComplexQuery(true);
-                    queues.put(exeConn, new LinkedBlockingQueue<HeapItem>(queueSize));
+                    queues.put(exeConn, new LinkedBlockingQueue<RowBatch>());
                     exeHandler.execute(exeConn);
                 }
             }
@@ -120,22 +125,29 @@ public class MultiNodeMergeHandler extends OwnThreadDMLHandler {
 
     @Override
     public boolean rowResponse(byte[] row, RowDataPacket rowPacket, boolean isLeft, BackendConnection conn) {
+        RowBatch rows = new RowBatch(fieldPackets.size(), 1);
+        if (rowPacket == null) {
+            rows.add(row);
+        } else {
+            rows.add(rowPacket);
+        }
+        return rowsResponse(rows, isLeft, conn);
+    }
+
+    @Override
+    public boolean rowsResponse(RowBatch rows, boolean isLeft, BackendConnection conn) {
         if (terminate.get() || noNeedRows)
             return true;
 
         if (isEasyMerge) {
-            nextHandler.rowResponse(null, rowPacket, this.isLeft, conn);
+            nextHandler.rowsResponse(rows, this.isLeft, conn);
         } else {
-            MySQLConnection mySQLConn = (MySQLConnection) conn;
-            BlockingQueue<HeapItem> queue = queues.get(mySQLConn);
+            BlockingQueue<RowBatch> queue = queues.get(conn);
             if (queue == null)
                 return true;
-            HeapItem item = new HeapItem(row, rowPacket, mySQLConn);
-            try {
-                queue.put(item);
-            } catch (InterruptedException e) {
-                //ignore error
-            }
+            queue.offer(rows);
+            pauseReadIfFull(conn, queue, queueSize);
+            scheduleStep();
         }
         return false;
     }
@@ -157,65 +169,48 @@ public class MultiNodeMergeHandler extends OwnThreadDMLHandler {
                 lock.unlock();
             }
         } else {
-            BlockingQueue<HeapItem> queue = queues.get(conn);
+            BlockingQueue<RowBatch> queue = queues.get(conn);
             if (queue == null)
                 return;
-            try {
-                queue.put(HeapItem.nullItem());
-            } catch (InterruptedException e) {
-                //ignore error
-            }
+            queue.offer(EOF_ROWS);
+            scheduleStep();
         }
     }
 
     @Override
-    protected void ownThreadJob(Object... objects) {
+    protected boolean ownThreadStep(Object... objects) {
         try {
-            ArrayMinHeap<HeapItem> heap = new ArrayMinHeap<>(new Comparator<HeapItem>() {
-
-                @Override
-                public int compare(HeapItem o1, HeapItem o2) {
-                    RowDataPacket row1 = o1.getRowPacket();
-                    RowDataPacket row2 = o2.getRowPacket();
-                    if (row1 == null || row2 == null) {
-                        if (row1 == row2)
-                            return 0;
-                        if (row1 == null)
-                            return -1;
-                        return 1;
-                    }
-                    return rowComparator.compare(row1, row2);
-                }
-            });
-            // init heap
-            for (Map.Entry<MySQLConnection, BlockingQueue<HeapItem>> entry : queues.entrySet()) {
-                HeapItem firstItem = entry.getValue().take();
-                heap.add(firstItem);
-            }
+            if (heap == null && !initHeap())
+                return false;
             while (!heap.isEmpty()) {
                 if (terminate.get())
-                    return;
-                HeapItem top = heap.peak();
-                if (top.isNullItem()) {
-                    heap.poll();
-                } else {
-                    BlockingQueue<HeapItem> topItemQueue = queues.get(top.getIndex());
-                    HeapItem item = topItemQueue.take();
-                    heap.replaceTop(item);
-                    if (nextHandler.rowResponse(top.getRowData(), top.getRowPacket(), this.isLeft, top.getIndex())) {
-                        noNeedRows = true;
-                        while (!heap.isEmpty()) {
-                            HeapItem itemToDiscard = heap.poll();
-                            if (!itemToDiscard.isNullItem()) {
-                                BlockingQueue<HeapItem> discardQueue = queues.get(itemToDiscard.getIndex());
-                                while (true) {
-                                    if (discardQueue.take().isNullItem() || terminate.get()) {
-                                        break;
-                                    }
-                                }
-                            }
-                        }
+                    return true;
+                MergeCursor top = heap.peak();
+                if (top.isEnd()) {
+                    // the rows of the batch are sent, move to the next batch of the connection
+                    RowBatch rows = queues.get(top.conn).poll();
+                    if (rows == null)
+                        return false;
+                    if (rows == EOF_ROWS) {
+                        heap.poll();
+                    } else {
+                        top.reset(rows);
+                        heap.replaceTop(top);
                     }
+                    continue;
+                }
+                if (noNeedRows) {
+                    // discard the rows until the connection's rowEof
+                    top.skipRows();
+                    continue;
+                }
+                RowDataPacket row = top.row;
+                top.next();
+                if (!top.isEnd()) {
+                    heap.replaceTop(top);
+                }
+                if (nextHandler.rowResponse(null, row, this.isLeft, top.conn)) {
+                    noNeedRows = true;
                 }
             }
             if (LOGGER.isInfoEnabled()) {
@@ -228,23 +223,46 @@ public class MultiNodeMergeHandler extends OwnThreadDMLHandler {
             LOGGER.info(msg, e);
             session.onQueryError(msg.getBytes());
         }
+        return true;
+    }
+
+    /**
+     * @return false if the first row of some connection is not received
+     */
+    private boolean initHeap() {
+        for (BlockingQueue<RowBatch> queue : queues.values()) {
+            if (queue.isEmpty())
+                return false;
+        }
+        heap = new ArrayMinHeap<>(new Comparator<MergeCursor>() {
+
+            @Override
+            public int compare(MergeCursor o1, MergeCursor o2) {
+                return rowComparator.compare(o1.row, o2.row);
+            }
+        });
+        for (Entry<MySQLConnection, BlockingQueue<RowBatch>> entry : queues.entrySet()) {
+            RowBatch rows = entry.getValue().poll();
+            if (rows != EOF_ROWS) {
+                MergeCursor cursor = new MergeCursor(entry.getKey());
+                cursor.reset(rows);
+                heap.add(cursor);
+            }
+        }
+        return true;
     }
 
     @Override
     protected void terminateThread() throws Exception {
-        for (Entry<MySQLConnection, BlockingQueue<HeapItem>> entry : this.queues.entrySet()) {
-            // add EOF to signal atoMerge thread
-            entry.getValue().clear();
-            entry.getValue().put(new HeapItem(null, null, entry.getKey()));
-        }
+        scheduleStep();
         recycleConn();
     }
 
     @Override
     protected void recycleResources() {
-        Iterator<Entry<MySQLConnection, BlockingQueue<HeapItem>>> iterator = this.queues.entrySet().iterator();
+        Iterator<Entry<MySQLConnection, BlockingQueue<RowBatch>>> iterator = this.queues.entrySet().iterator();
         while (iterator.hasNext()) {
-            Entry<MySQLConnection, BlockingQueue<HeapItem>> entry = iterator.next();
+            Entry<MySQLConnection, BlockingQueue<RowBatch>> entry = iterator.next();
             // fair lock queue,poll for clear
             while (true) {
                 if (entry.getValue().poll() == null) {
@@ -308,4 +326,38 @@ public class MultiNodeMergeHandler extends OwnThreadDMLHandler {
         sb.append('}');
         return sb.toString();
     }
+
+    /**
+     * the current row of a connection in the merge, the row is converted from the batch when it becomes current
+     */
+    private static final class MergeCursor {
+        private final MySQLConnection conn;
+        private RowBatch rows;
+        private int index;
+        private RowDataPacket row;
+
+        private MergeCursor(MySQLConnection conn) {
+            this.conn = conn;
+        }
+
+        private void reset(RowBatch nextRows) {
+            this.rows = nextRows;
+            this.index = 0;
+            this.row = nextRows.getRow(0);
+        }
+
+        private void next() {
+            index++;
+            row = index < rows.size() ? rows.getRow(index) : null;
+        }
+
+        private void skipRows() {
+            index = rows.size();
+            row = null;
+        }
+
+        private boolean isEnd() {
+            return row == null;
+        }
+    }
 }
@@ -22,14 +22,15 @@ import com.actiontech.dble.util.TimeUtil;
 import org.apache.log4j.Logger;
 
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 public class OrderByHandler extends OwnThreadDMLHandler {
     private static final Logger LOGGER = Logger.getLogger(OrderByHandler.class);
 
     private List<Order> orders;
-    private BlockingQueue<RowDataPacket> queue;
+    private final int queueSize;
+    private Queue<RowDataPacket> queue;
     /* tmp object for ordering,support Memory-mapped file or file */
     private LocalResult localResult;
     private BufferPool pool;
@@ -37,8 +38,8 @@ public class OrderByHandler extends OwnThreadDMLHandler {
     public OrderByHandler(long id, NonBlockingSession session, List<Order> orders) {
         super(id, session);
         this.orders = orders;
-        int queueSize = DbleServer.getInstance().getConfig().getSystem().getOrderByQueueSize();
-        this.queue = new LinkedBlockingDeque<>(queueSize);
+        this.queueSize = DbleServer.getInstance().getConfig().getSystem().getOrderByQueueSize();
+        this.queue = new LinkedBlockingQueue<>();
     }
 
     @Override
@@ -59,6 +60,7 @@ public class OrderByHandler extends OwnThreadDMLHandler {
         localResult = new SortedLocalResult(pool, fieldPackets.size(), cmp, CharsetUtil.getJavaCharset(conn.getCharset().getResults())).
                 setMemSizeController(session.getOrderBufferMC());
         nextHandler.fieldEofResponse(null, null, fieldPackets, null, this.isLeft, conn);
+        recordElapsedTime("order write start :");
         startOwnThread(conn);
     }
 
@@ -66,11 +68,9 @@ public class OrderByHandler extends OwnThreadDMLHandler {
     public boolean rowResponse(byte[] rowNull, RowDataPacket rowPacket, boolean isLeft, BackendConnection conn) {
         if (terminate.get())
             return true;
-        try {
-            queue.put(rowPacket);
-        } catch (InterruptedException e) {
-            return true;
-        }
+        queue.offer(rowPacket);
+        pauseReadIfFull(conn, queue, queueSize);
+        scheduleStep();
         return false;
     }
 
@@ -79,56 +79,53 @@ public class OrderByHandler extends OwnThreadDMLHandler {
         LOGGER.debug("roweof");
         if (terminate.get())
             return;
-        try {
-            queue.put(new RowDataPacket(0));
-        } catch (InterruptedException e) {
-            //ignore error
-        }
+        queue.offer(new RowDataPacket(0));
+        scheduleStep();
     }
 
     @Override
-    protected void ownThreadJob(Object... objects) {
+    protected boolean ownThreadStep(Object... objects) {
         MySQLConnection conn = (MySQLConnection) objects[0];
-        recordElapsedTime("order write start :");
         try {
-            while (true) {
+            RowDataPacket row;
+            while ((row = queue.poll()) != null) {
                 if (terminate.get()) {
-                    return;
-                }
-                RowDataPacket row = null;
-                try {
-                    row = queue.take();
-                } catch (InterruptedException e) {
-                    //ignore error
+                    return true;
                 }
                 if (row.getFieldCount() == 0) {
-                    break;
+                    sendSorted(conn);
+                    return true;
                 }
                 localResult.add(row);
             }
-            recordElapsedTime("order write end :");
-            localResult.done();
-            recordElapsedTime("order read start :");
-            while (true) {
-                if (terminate.get()) {
-                    return;
-                }
-                RowDataPacket row = localResult.next();
-                if (row == null) {
-                    break;
-                }
-                if (nextHandler.rowResponse(null, row, this.isLeft, conn))
-                    break;
-            }
-            recordElapsedTime("order read end:");
-            nextHandler.rowEofResponse(null, this.isLeft, conn);
+            return false;
         } catch (Exception e) {
             String msg = "OrderBy thread error, " + e.getLocalizedMessage();
             LOGGER.info(msg, e);
             session.onQueryError(msg.getBytes());
+            return true;
         }
     }
 
+    private void sendSorted(MySQLConnection conn) {
+        recordElapsedTime("order write end :");
+        localResult.done();
+        recordElapsedTime("order read start :");
+        while (true) {
+            if (terminate.get()) {
+                return;
+            }
+            RowDataPacket row = localResult.next();
+            if (row == null) {
+                break;
+            }
+            if (nextHandler.rowResponse(null, row, this.isLeft, conn))
+                break;
+        }
+        recordElapsedTime("order read end:");
+        nextHandler.rowEofResponse(null, this.isLeft, conn);
+    }
+
     private void recordElapsedTime(String prefix) {
         if (LOGGER.isInfoEnabled()) {
             LOGGER.info(prefix + TimeUtil.currentTimeMillis());
@@ -137,8 +134,7 @@ public class OrderByHandler extends OwnThreadDMLHandler {
 
     @Override
     protected void terminateThread() throws Exception {
-        this.queue.clear();
-        this.queue.add(new RowDataPacket(0));
+        scheduleStep();
     }
 
     @Override
@@ -8,8 +8,10 @@ package com.actiontech.dble.backend.mysql.nio.handler.query.impl;
 import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.backend.mysql.nio.handler.query.BaseDMLHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.util.HandlerTool;
+import com.actiontech.dble.backend.mysql.nio.handler.util.RowBatch;
 import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.net.mysql.*;
+import com.actiontech.dble.plan.util.CachedPlan;
 import com.actiontech.dble.server.NonBlockingSession;
 import com.actiontech.dble.server.ServerConnection;
 import org.apache.log4j.Logger;
@@ -148,6 +150,28 @@ public class OutputHandler extends BaseDMLHandler {
         return false;
     }
 
+    /**
+     * the text rows are written from the batch directly
+     */
+    @Override
+    public boolean rowsResponse(RowBatch rows, boolean isLeft, BackendConnection conn) {
+        if (this.isBinary) {
+            return super.rowsResponse(rows, isLeft, conn);
+        }
+        if (terminate.get()) {
+            return true;
+        }
+        lock.lock();
+        try {
+            for (int i = 0; i < rows.size(); i++) {
+                buffer = rows.write(i, ++packetId, buffer, session.getSource(), true);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return false;
+    }
+
     @Override
     public void rowEofResponse(byte[] data, boolean isLeft, BackendConnection conn) {
         if (terminate.get()) {
@@ -165,7 +189,18 @@ public class OutputHandler extends BaseDMLHandler {
             if (hasNext) {
                 eofPacket.setStatus(eofPacket.getStatus() | StatusFlags.SERVER_MORE_RESULTS_EXISTS);
             }
-            HandlerTool.terminateHandlerTree(this);
+            final CachedPlan plan = session.takeCachedPlan();
+            if (plan == null) {
+                HandlerTool.terminateHandlerTree(this);
+            } else {
+                // the handlers stopped by the limit may still use the plan till they are terminated
+                HandlerTool.terminateHandlerTree(this, new Runnable() {
+                    @Override
+                    public void run() {
+                        plan.giveBack();
+                    }
+                });
+            }
             byte[] eof = eofPacket.toBytes();
             buffer = source.writeToBuffer(eof, buffer);
             session.setResponseTime();
@@ -19,16 +19,24 @@ import com.actiontech.dble.plan.common.exception.TempTableException;
 import com.actiontech.dble.plan.common.field.Field;
 import com.actiontech.dble.plan.common.item.Item;
 import com.actiontech.dble.plan.common.meta.TempTable;
+import com.actiontech.dble.route.function.AbstractPartitionAlgorithm;
 import com.actiontech.dble.server.NonBlockingSession;
 import org.apache.log4j.Logger;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * get the tmp table's result
+ * <p>
+ * The values of the join key are kept by the node of the big table if the big table is joined by its partition
+ * column, so that every node only gets its own values. The values of one node can't be more than
+ * nestLoopRowsSize * nestLoopConnSize, and the rows kept in the temp table can't be more than that times the
+ * count of the nodes the values are split to.
  */
 public class TempTableHandler extends BaseDMLHandler {
     private static final Logger LOGGER = Logger.getLogger(TempTableHandler.class);
@@ -36,9 +44,9 @@ public class TempTableHandler extends BaseDMLHandler {
     private final ReentrantLock lock;
     private final TempTable tempTable;
 
-    private int maxPartSize = 2000;
-    private int maxConnSize = 4;
-    private int rowCount = 0;
+    private final int maxPartSize;
+    private final int maxConnSize;
+    private long rowCount = 0;
     private CallBackHandler tempDoneCallBack;
     // Handler generated by tempHandler will release by itself
     private DMLResponseHandler createdHandler;
@@ -46,16 +54,32 @@ public class TempTableHandler extends BaseDMLHandler {
     private int sourceSelIndex = -1;
     private final Item sourceSel;
     private Field sourceField;
-    private Set<String> valueSet;
+    /* the values by the index of the node in the big table, -1 if the big table is not joined by partition */
+    private final Map<Integer, Set<String>> valueSets;
+    private AbstractPartitionAlgorithm partitionAlgorithm;
+    private int partitionCount;
 
     public TempTableHandler(long id, NonBlockingSession session, Item sourceSel) {
+        this(id, session, sourceSel, DbleServer.getInstance().getConfig().getSystem().getNestLoopRowsSize(),
+                DbleServer.getInstance().getConfig().getSystem().getNestLoopConnSize());
+    }
+
+    TempTableHandler(long id, NonBlockingSession session, Item sourceSel, int maxPartSize, int maxConnSize) {
         super(id, session);
         this.lock = new ReentrantLock();
         this.tempTable = new TempTable();
-        this.maxPartSize = DbleServer.getInstance().getConfig().getSystem().getNestLoopRowsSize();
-        this.maxConnSize = DbleServer.getInstance().getConfig().getSystem().getNestLoopConnSize();
+        this.maxPartSize = maxPartSize;
+        this.maxConnSize = maxConnSize;
         this.sourceSel = sourceSel;
-        this.valueSet = new HashSet<>();
+        this.valueSets = new HashMap<>();
+    }
+
+    /**
+     * split the values by the partition function of the big table
+     */
+    public void setPartition(AbstractPartitionAlgorithm algorithm, int nodeCount) {
+        this.partitionAlgorithm = algorithm;
+        this.partitionCount = nodeCount;
     }
 
     @Override
@@ -95,11 +119,7 @@ public class TempTableHandler extends BaseDMLHandler {
             if (terminate.get()) {
                 return true;
             }
-            if (++rowCount > maxPartSize * maxConnSize) {
-                String errMessage = "temptable of [" + conn.toString() + "] too much rows,[rows=" + rowCount + "]!";
-                LOGGER.info(errMessage);
-                throw new TempTableException(errMessage);
-            }
+            countRow(conn);
             RowDataPacket row = rowPacket;
             if (row == null) {
                 row = new RowDataPacket(this.fieldPackets.size());
@@ -107,13 +127,59 @@ public class TempTableHandler extends BaseDMLHandler {
             }
             tempTable.addRow(row);
             sourceField.setPtr(row.getValue(sourceSelIndex));
-            valueSet.add(sourceField.valStr());
+            String value = sourceField.valStr();
+            // is null will never join
+            if (value != null) {
+                addValue(value, conn);
+            }
         } finally {
             lock.unlock();
         }
         return false;
     }
 
+    void countRow(BackendConnection conn) {
+        if (++rowCount > getMaxRows()) {
+            String errMessage = "temptable of [" + conn + "] too much rows,[rows=" + rowCount + "]!";
+            LOGGER.info(errMessage);
+            throw new TempTableException(errMessage);
+        }
+    }
+
+    /**
+     * @return the max rows kept in the temp table, the values of one node are limited too
+     */
+    long getMaxRows() {
+        return (long) maxPartSize * maxConnSize * Math.max(partitionCount, 1);
+    }
+
+    void addValue(String value, BackendConnection conn) {
+        Integer node = getPartition(value);
+        Set<String> valueSet = valueSets.get(node);
+        if (valueSet == null) {
+            valueSet = new HashSet<>();
+            valueSets.put(node, valueSet);
+        }
+        if (valueSet.add(value) && valueSet.size() > maxPartSize * maxConnSize) {
+            String errMessage = "temptable of [" + conn.toString() + "] too much rows,[rows=" + valueSet.size() + "]!";
+            LOGGER.info(errMessage);
+            throw new TempTableException(errMessage);
+        }
+    }
+
+    private Integer getPartition(String value) {
+        if (partitionAlgorithm == null) {
+            return -1;
+        }
+        try {
+            Integer node = partitionAlgorithm.calculate(value);
+            // the value which can't be routed is left to the router
+            return node == null || node < 0 || node >= partitionCount ? -1 : node;
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
     @Override
     public void rowEofResponse(byte[] eof, boolean isLeft, BackendConnection conn) {
         lock.lock();
@@ -143,7 +209,7 @@ public class TempTableHandler extends BaseDMLHandler {
         lock.lock();
         try {
             this.tempTable.close();
-            this.valueSet.clear();
+            this.valueSets.clear();
             if (createdHandler != null) {
                 HandlerTool.terminateHandlerTree(createdHandler);
             }
@@ -164,8 +230,11 @@ public class TempTableHandler extends BaseDMLHandler {
         this.createdHandler = createdHandler;
     }
 
-    public Set<String> getValueSet() {
-        return valueSet;
+    /**
+     * @return the values by the index of the node in the big table, -1 for the values not split by the partition
+     */
+    public Map<Integer, Set<String>> getValueSets() {
+        return valueSets;
     }
 
     public int getMaxPartSize() {
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.query.impl;
+
+import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.mysql.nio.handler.query.BaseDMLHandler;
+import com.actiontech.dble.backend.mysql.nio.handler.util.RowDataComparator;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.Order;
+import com.actiontech.dble.server.NonBlockingSession;
+import org.apache.log4j.Logger;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * order by ... limit, only the first limitIndex + limitCount rows are kept in a heap whose top is the largest one,
+ * so the rows are never written into disk.
+ * the equal rows are ordered by their arrival like the stable sort of OrderByHandler.
+ */
+public class TopNHandler extends BaseDMLHandler {
+    private static final Logger LOGGER = Logger.getLogger(TopNHandler.class);
+
+    private final List<Order> orders;
+    private final long limitIndex;
+    private final int maxSize;
+    private PriorityQueue<HeapRow> heap;
+    private Comparator<HeapRow> cmp;
+    private long sequence = 0;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public TopNHandler(long id, NonBlockingSession session, List<Order> orders, long limitIndex, long limitCount) {
+        super(id, session);
+        this.orders = orders;
+        this.limitIndex = Math.max(0, limitIndex);
+        this.maxSize = (int) (this.limitIndex + limitCount);
+    }
+
+    @Override
+    public HandlerType type() {
+        return HandlerType.ORDERBY;
+    }
+
+    @Override
+    public void fieldEofResponse(byte[] headerNull, List<byte[]> fieldsNull, final List<FieldPacket> fieldPackets,
+                                 byte[] eofNull, boolean isLeft, BackendConnection conn) {
+        if (terminate.get())
+            return;
+        this.fieldPackets = fieldPackets;
+        final RowDataComparator rowCmp = new RowDataComparator(this.fieldPackets, orders, isAllPushDown(), type());
+        cmp = new Comparator<HeapRow>() {
+            @Override
+            public int compare(HeapRow o1, HeapRow o2) {
+                int rs = rowCmp.compare(o1.row, o2.row);
+                return rs != 0 ? rs : Long.compare(o1.sequence, o2.sequence);
+            }
+        };
+        heap = new PriorityQueue<>(Math.max(1, Math.min(maxSize, 1024)), Collections.reverseOrder(cmp));
+        nextHandler.fieldEofResponse(null, null, fieldPackets, null, this.isLeft, conn);
+    }
+
+    @Override
+    public boolean rowResponse(byte[] rowNull, RowDataPacket rowPacket, boolean isLeft, BackendConnection conn) {
+        if (terminate.get())
+            return true;
+        if (maxSize <= 0)
+            return false;
+        lock.lock();
+        try {
+            // the row which equals to the largest one comes later, so it is larger and dropped
+            HeapRow heapRow = new HeapRow(rowPacket, sequence++);
+            if (heap.size() < maxSize) {
+                heap.add(heapRow);
+            } else if (cmp.compare(heapRow, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(heapRow);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return false;
+    }
+
+    @Override
+    public void rowEofResponse(byte[] data, boolean isLeft, BackendConnection conn) {
+        LOGGER.debug("roweof");
+        if (terminate.get())
+            return;
+        RowDataPacket[] rows;
+        lock.lock();
+        try {
+            rows = new RowDataPacket[heap.size()];
+            for (int i = rows.length - 1; i >= 0; i--) {
+                rows[i] = heap.poll().row;
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (int i = (int) limitIndex; i < rows.length; i++) {
+            if (terminate.get())
+                return;
+            if (nextHandler.rowResponse(null, rows[i], this.isLeft, conn))
+                break;
+        }
+        nextHandler.rowEofResponse(null, this.isLeft, conn);
+    }
+
+    @Override
+    protected void onTerminate() {
+        lock.lock();
+        try {
+            if (heap != null)
+                heap.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class HeapRow {
+        private final RowDataPacket row;
+        private final long sequence;
+
+        private HeapRow(RowDataPacket row, long sequence) {
+            this.row = row;
+            this.sequence = sequence;
+        }
+    }
+}
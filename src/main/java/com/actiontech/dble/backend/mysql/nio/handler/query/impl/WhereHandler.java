@@ -7,6 +7,7 @@ package com.actiontech.dble.backend.mysql.nio.handler.query.impl;
 
 import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.backend.mysql.nio.handler.query.BaseDMLHandler;
+import com.actiontech.dble.backend.mysql.nio.handler.util.CompiledCondition;
 import com.actiontech.dble.backend.mysql.nio.handler.util.HandlerTool;
 import com.actiontech.dble.net.mysql.FieldPacket;
 import com.actiontech.dble.net.mysql.RowDataPacket;
@@ -26,7 +27,7 @@ public class WhereHandler extends BaseDMLHandler {
     }
 
     private Item where = null;
-    private Item whereItem = null;
+    private CompiledCondition whereCondition = null;
     private List<Field> sourceFields;
     // if merge handler have no order by, the row response is not thread safe
     private ReentrantLock lock = new ReentrantLock();
@@ -42,8 +43,9 @@ public class WhereHandler extends BaseDMLHandler {
             return;
         this.fieldPackets = fieldPackets;
         this.sourceFields = HandlerTool.createFields(this.fieldPackets);
-        whereItem = HandlerTool.createItem(this.where, this.sourceFields, 0, this.isAllPushDown(), this.type()
+        Item whereItem = HandlerTool.createItem(this.where, this.sourceFields, 0, this.isAllPushDown(), this.type()
         );
+        whereCondition = CompiledCondition.compile(whereItem, this.sourceFields);
         nextHandler.fieldEofResponse(null, null, this.fieldPackets, null, this.isLeft, conn);
     }
 
@@ -52,9 +54,8 @@ public class WhereHandler extends BaseDMLHandler {
             return true;
         lock.lock();
         try {
-            HandlerTool.initFields(this.sourceFields, rowPacket.fieldValues);
             /* use whereto filter */
-            if (whereItem.valBool()) {
+            if (whereCondition.match(rowPacket.fieldValues)) {
                 nextHandler.rowResponse(null, rowPacket, this.isLeft, conn);
             } else {
                 // nothing
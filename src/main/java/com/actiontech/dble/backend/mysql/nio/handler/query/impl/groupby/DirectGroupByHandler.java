@@ -11,7 +11,6 @@ import com.actiontech.dble.backend.mysql.CharsetUtil;
 import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
 import com.actiontech.dble.backend.mysql.nio.handler.query.OwnThreadDMLHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.groupby.directgroupby.DGRowPacket;
-import com.actiontech.dble.backend.mysql.nio.handler.query.impl.groupby.directgroupby.GroupByBucket;
 import com.actiontech.dble.backend.mysql.nio.handler.util.HandlerTool;
 import com.actiontech.dble.backend.mysql.nio.handler.util.RowDataComparator;
 import com.actiontech.dble.backend.mysql.store.GroupByLocalResult;
@@ -30,7 +29,7 @@ import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -44,7 +43,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class DirectGroupByHandler extends OwnThreadDMLHandler {
     private static final Logger LOGGER = Logger.getLogger(DirectGroupByHandler.class);
 
-    private BlockingQueue<RowDataPacket> queue;
+    private final int queueSize;
+    private Queue<RowDataPacket> queue;
 
     private List<Order> groupBys;
     private List<ItemSum> referredSumFunctions;
@@ -59,10 +59,6 @@ public class DirectGroupByHandler extends OwnThreadDMLHandler {
 
     private List<FieldPacket> localResultFps;
 
-    private BlockingQueue<RowDataPacket> outQueue;
-    int bucketSize = 10;
-    private List<GroupByBucket> buckets;
-
     /**
      * @param groupBys
      * @param referredSumFunctions
@@ -72,10 +68,8 @@ public class DirectGroupByHandler extends OwnThreadDMLHandler {
         super(id, session);
         this.groupBys = groupBys;
         this.referredSumFunctions = referredSumFunctions;
-        int queueSize = DbleServer.getInstance().getConfig().getSystem().getMergeQueueSize();
-        this.queue = new LinkedBlockingQueue<>(queueSize);
-        this.outQueue = new LinkedBlockingQueue<>(queueSize);
-        this.buckets = new ArrayList<>();
+        this.queueSize = DbleServer.getInstance().getConfig().getSystem().getMergeQueueSize();
+        this.queue = new LinkedBlockingQueue<>();
     }
 
     @Override
@@ -110,16 +104,8 @@ public class DirectGroupByHandler extends OwnThreadDMLHandler {
         groupLocalResult = new GroupByLocalResult(pool, localResultFps.size(), comparator, localResultFps,
                 localResultReferredSums, this.isAllPushDown(), CharsetUtil.getJavaCharset(conn.getCharset().getResults())).
                 setMemSizeController(session.getOtherBufferMC());
-        for (int i = 0; i < bucketSize; i++) {
-            RowDataComparator tmpComparator = new RowDataComparator(this.localResultFps, this.groupBys,
-                    this.isAllPushDown(), this.type());
-            GroupByBucket bucket = new GroupByBucket(queue, outQueue, pool, localResultFps.size(), tmpComparator,
-                    localResultFps, localResultReferredSums, this.isAllPushDown(), CharsetUtil.getJavaCharset(conn.getCharset().getResults()));
-            bucket.setMemSizeController(session.getOtherBufferMC());
-            buckets.add(bucket);
-            bucket.start();
-        }
         if (this.groupStart.compareAndSet(false, true)) {
+            recordElapsedTime("local group by thread is start:");
             startOwnThread(conn);
         }
     }
@@ -141,37 +127,39 @@ public class DirectGroupByHandler extends OwnThreadDMLHandler {
     }
 
     @Override
-    protected void ownThreadJob(Object... objects) {
+    protected boolean ownThreadStep(Object... objects) {
         MySQLConnection conn = (MySQLConnection) objects[0];
-        recordElapsedTime("local group by thread is start:");
         try {
-            int eofCount = 0;
-            for (; ; ) {
-                RowDataPacket row = outQueue.take();
+            RowDataPacket row;
+            while ((row = queue.poll()) != null) {
+                if (terminate.get())
+                    return true;
                 if (row.getFieldCount() == 0) {
-                    eofCount++;
-                    if (eofCount == bucketSize)
-                        break;
-                    else
-                        continue;
+                    sendGroups(conn);
+                    return true;
                 }
                 groupLocalResult.add(row);
             }
-            recordElapsedTime("local group by thread is end:");
-            groupLocalResult.done();
-            recordElapsedTime("local group by thread is done for read:");
-            if (!hasFirstRow.get()) {
-                if (HandlerTool.needSendNoRow(this.groupBys))
-                    sendNoRowGroupRowPacket(conn);
-            } else {
-                sendGroupRowPacket(conn);
-            }
-            nextHandler.rowEofResponse(null, this.isLeft, conn);
+            return false;
         } catch (Exception e) {
             String msg = "group by thread is error," + e.getLocalizedMessage();
             LOGGER.info(msg, e);
             session.onQueryError(msg.getBytes());
+            return true;
+        }
+    }
+
+    private void sendGroups(MySQLConnection conn) {
+        recordElapsedTime("local group by thread is end:");
+        groupLocalResult.done();
+        recordElapsedTime("local group by thread is done for read:");
+        if (!hasFirstRow.get()) {
+            if (HandlerTool.needSendNoRow(this.groupBys))
+                sendNoRowGroupRowPacket(conn);
+        } else {
+            sendGroupRowPacket(conn);
         }
+        nextHandler.rowEofResponse(null, this.isLeft, conn);
     }
 
     private void recordElapsedTime(String prefix) {
@@ -186,12 +174,9 @@ public class DirectGroupByHandler extends OwnThreadDMLHandler {
         if (terminate.get())
             return true;
         hasFirstRow.compareAndSet(false, true);
-        try {
-            DGRowPacket row = new DGRowPacket(rowPacket, this.referredSumFunctions.size());
-            queue.put(row);
-        } catch (InterruptedException e) {
-            //ignore error
-        }
+        queue.offer(new DGRowPacket(rowPacket, this.referredSumFunctions.size()));
+        pauseReadIfFull(conn, queue, queueSize);
+        scheduleStep();
         return false;
     }
 
@@ -200,13 +185,8 @@ public class DirectGroupByHandler extends OwnThreadDMLHandler {
         LOGGER.debug("roweof");
         if (terminate.get())
             return;
-        try {
-            // @bug1042
-            for (int i = 0; i < bucketSize; i++)
-                queue.put(new RowDataPacket(0));
-        } catch (InterruptedException e) {
-            //ignore error
-        }
+        queue.offer(new RowDataPacket(0));
+        scheduleStep();
     }
 
     private void sendGroupRowPacket(MySQLConnection conn) {
@@ -301,9 +281,7 @@ public class DirectGroupByHandler extends OwnThreadDMLHandler {
 
     @Override
     protected void terminateThread() throws Exception {
-        this.queue.clear();
-        for (int i = 0; i < bucketSize; i++)
-            queue.put(new RowDataPacket(0));
+        scheduleStep();
     }
 
     @Override
@@ -311,9 +289,6 @@ public class DirectGroupByHandler extends OwnThreadDMLHandler {
         this.queue.clear();
         if (this.groupLocalResult != null)
             this.groupLocalResult.close();
-        for (LocalResult bucket : buckets) {
-            bucket.close();
-        }
     }
 
 }
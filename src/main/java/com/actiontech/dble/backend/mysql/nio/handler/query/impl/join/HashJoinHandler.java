@@ -0,0 +1,504 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.query.impl.join;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.mysql.CharsetUtil;
+import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
+import com.actiontech.dble.backend.mysql.nio.handler.query.OwnThreadDMLHandler;
+import com.actiontech.dble.backend.mysql.nio.handler.util.CompiledCondition;
+import com.actiontech.dble.backend.mysql.nio.handler.util.HandlerTool;
+import com.actiontech.dble.backend.mysql.nio.handler.util.TwoTableComparator;
+import com.actiontech.dble.backend.mysql.store.LocalResult;
+import com.actiontech.dble.backend.mysql.store.UnSortedLocalResult;
+import com.actiontech.dble.buffer.BufferPool;
+import com.actiontech.dble.config.model.SystemConfig;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.Order;
+import com.actiontech.dble.plan.common.MySQLcom;
+import com.actiontech.dble.plan.common.field.Field;
+import com.actiontech.dble.plan.common.item.FieldTypes;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.Item.ItemResult;
+import com.actiontech.dble.server.NonBlockingSession;
+import org.apache.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * join strategy is hash join, the children need not be ordered.
+ * <p>
+ * The rows of the build node are kept in a hash table by the values of the join columns, then the rows of the
+ * probe node are streamed through it. The rows of the probe node which come before the build node is finished
+ * are kept in a LocalResult until the build node is finished.
+ * If the hash table is larger than joinMemSize, both nodes are partitioned by the hash of the join columns
+ * into LocalResults(which are flushed into disk) and joined partition by partition.
+ *
+ * @author ActionTech
+ */
+public class HashJoinHandler extends OwnThreadDMLHandler {
+    private static final Logger LOGGER = Logger.getLogger(HashJoinHandler.class);
+    private static final int PARTITION_COUNT = 16;
+    /* the key of the join column whose value can't be hashed, all the rows are compared by the comparator */
+    private static final Object ANY_KEY = Boolean.TRUE;
+
+    private final boolean isLeftJoin;
+    private final boolean isLeftBuild;
+    private final List<Order> leftOrders;
+    private final List<Order> rightOrders;
+    private final Item otherJoinOn;
+    private final long maxBuildMemory;
+    private List<FieldPacket> leftFieldPackets;
+    private List<FieldPacket> rightFieldPackets;
+    private AtomicBoolean fieldSent = new AtomicBoolean(false);
+    private BufferPool pool;
+    private String charset = "UTF-8";
+
+    private volatile LocalResult buildResult;
+    private volatile boolean isBuildEof = false;
+    private volatile LocalResult probeBuffer;
+    private final int queueSize;
+    private final BlockingQueue<RowDataPacket> probeQueue;
+    // prevent the probe rows from being added into probeBuffer after it is done
+    private final ReentrantLock probeLock = new ReentrantLock();
+    private boolean isProbeStreaming = false;
+    private boolean isProbeEof = false;
+
+    private TwoTableComparator joinComparator;
+    private List<Field> joinRowFields;
+    private CompiledCondition otherJoinOnCondition;
+    private List<Field> buildFields;
+    private List<Field> probeFields;
+    private List<Item> buildKeys;
+    private List<Item> probeKeys;
+    private List<ItemResult> keyTypes;
+
+    /* the state of the probe, only used by the steps */
+    private boolean isProbeStarted = false;
+    private boolean isProbeEofReceived = false;
+    /* null if joined by partitions */
+    private Map<List<Object>, List<RowDataPacket>> buildTable;
+    private List<LocalResult> buildPartitions;
+    private List<LocalResult> probePartitions;
+
+    public HashJoinHandler(long id, NonBlockingSession session, boolean isLeftJoin, boolean isLeftBuild,
+                           List<Order> leftOrder, List<Order> rightOrder, Item otherJoinOn) {
+        this(id, session, isLeftJoin, isLeftBuild, leftOrder, rightOrder, otherJoinOn,
+                DbleServer.getInstance().getConfig().getSystem());
+    }
+
+    HashJoinHandler(long id, NonBlockingSession session, boolean isLeftJoin, boolean isLeftBuild,
+                    List<Order> leftOrder, List<Order> rightOrder, Item otherJoinOn, SystemConfig system) {
+        super(id, session);
+        this.isLeftJoin = isLeftJoin;
+        this.isLeftBuild = isLeftBuild;
+        this.leftOrders = leftOrder;
+        this.rightOrders = rightOrder;
+        this.otherJoinOn = otherJoinOn;
+        this.leftFieldPackets = new ArrayList<>();
+        this.rightFieldPackets = new ArrayList<>();
+        this.queueSize = system.getJoinQueueSize();
+        this.probeQueue = new LinkedBlockingQueue<>();
+        this.maxBuildMemory = system.getJoinMemSize() * 1024 * 1024L;
+    }
+
+    @Override
+    public HandlerType type() {
+        return HandlerType.JOIN;
+    }
+
+    @Override
+    public void fieldEofResponse(byte[] headerNull, List<byte[]> fieldsNull, final List<FieldPacket> fieldPackets,
+                                 byte[] eofNull, boolean isLeft, final BackendConnection conn) {
+        if (this.pool == null)
+            this.pool = getBufferPool();
+        String resultCharset = CharsetUtil.getJavaCharset(conn.getCharset().getResults());
+        LocalResult result = new UnSortedLocalResult(fieldPackets.size(), pool, resultCharset).
+                setMemSizeController(session.getJoinBufferMC());
+        if (isLeft) {
+            leftFieldPackets = fieldPackets;
+        } else {
+            rightFieldPackets = fieldPackets;
+        }
+        if (isLeft == isLeftBuild) {
+            buildResult = result;
+        } else {
+            probeBuffer = result;
+        }
+        if (!fieldSent.compareAndSet(false, true)) {
+            this.charset = resultCharset;
+            List<FieldPacket> newFieldPacket = new ArrayList<>();
+            newFieldPacket.addAll(leftFieldPackets);
+            newFieldPacket.addAll(rightFieldPackets);
+            nextHandler.fieldEofResponse(null, null, newFieldPacket, null, this.isLeft, conn);
+            initItems(newFieldPacket);
+            startOwnThread(conn);
+        }
+    }
+
+    /**
+     * the pool of the local results
+     */
+    BufferPool getBufferPool() {
+        return DbleServer.getInstance().getBufferPool();
+    }
+
+    private void initItems(List<FieldPacket> rowPackets) {
+        joinComparator = new TwoTableComparator(leftFieldPackets, rightFieldPackets, leftOrders, rightOrders,
+                this.isAllPushDown(), this.type());
+        joinRowFields = HandlerTool.createFields(rowPackets);
+        if (otherJoinOn != null)
+            otherJoinOnCondition = CompiledCondition.compile(
+                    HandlerTool.createItem(otherJoinOn, joinRowFields, 0, this.isAllPushDown(), this.type()), joinRowFields);
+        buildFields = HandlerTool.createFields(isLeftBuild ? leftFieldPackets : rightFieldPackets);
+        probeFields = HandlerTool.createFields(isLeftBuild ? rightFieldPackets : leftFieldPackets);
+        buildKeys = new ArrayList<>();
+        probeKeys = new ArrayList<>();
+        keyTypes = new ArrayList<>();
+        List<Order> buildOrders = isLeftBuild ? leftOrders : rightOrders;
+        List<Order> probeOrders = isLeftBuild ? rightOrders : leftOrders;
+        for (int i = 0; i < buildOrders.size(); i++) {
+            Item buildKey = HandlerTool.createItem(buildOrders.get(i).getItem(), buildFields, 0, this.isAllPushDown(),
+                    this.type());
+            Item probeKey = HandlerTool.createItem(probeOrders.get(i).getItem(), probeFields, 0, this.isAllPushDown(),
+                    this.type());
+            buildKeys.add(buildKey);
+            probeKeys.add(probeKey);
+            keyTypes.add(getKeyType(buildKey, probeKey));
+        }
+    }
+
+    /**
+     * @return null if the value of the join column is compared by the comparator only
+     */
+    private ItemResult getKeyType(Item a, Item b) {
+        if (a.isTemporal() || b.isTemporal() || a.fieldType() == FieldTypes.MYSQL_TYPE_YEAR ||
+                b.fieldType() == FieldTypes.MYSQL_TYPE_YEAR) {
+            return null;
+        }
+        ItemResult type = MySQLcom.itemCmpType(a.resultType(), b.resultType());
+        if (type == ItemResult.STRING_RESULT || type == ItemResult.INT_RESULT || type == ItemResult.DECIMAL_RESULT)
+            return type;
+        // the real values are compared with precision
+        return null;
+    }
+
+    @Override
+    public boolean rowResponse(byte[] rowNull, RowDataPacket rowPacket, boolean isLeft, BackendConnection conn) {
+        if (terminate.get()) {
+            return true;
+        }
+        if (isLeft == isLeftBuild) {
+            buildResult.add(rowPacket);
+            return false;
+        }
+        boolean isStreaming;
+        probeLock.lock();
+        try {
+            isStreaming = isProbeStreaming;
+            if (!isStreaming) {
+                probeBuffer.add(rowPacket);
+            }
+        } finally {
+            probeLock.unlock();
+        }
+        if (isStreaming) {
+            probeQueue.offer(rowPacket);
+            pauseReadIfFull(conn, probeQueue, queueSize);
+            scheduleStep();
+        }
+        return false;
+    }
+
+    @Override
+    public void rowEofResponse(byte[] data, boolean isLeft, BackendConnection conn) {
+        if (terminate.get()) {
+            return;
+        }
+        if (isLeft == isLeftBuild) {
+            buildResult.done();
+            isBuildEof = true;
+            scheduleStep();
+            return;
+        }
+        boolean isStreaming;
+        probeLock.lock();
+        try {
+            isStreaming = isProbeStreaming;
+            if (!isStreaming) {
+                isProbeEof = true;
+            }
+        } finally {
+            probeLock.unlock();
+        }
+        if (isStreaming) {
+            probeQueue.offer(new RowDataPacket(0));
+            scheduleStep();
+        }
+    }
+
+    @Override
+    protected boolean ownThreadStep(Object... objects) {
+        MySQLConnection conn = (MySQLConnection) objects[0];
+        try {
+            RowDataPacket row;
+            if (!isProbeStarted) {
+                if (!isBuildEof)
+                    return false;
+                isProbeStarted = true;
+                startProbe();
+                while ((row = probeBuffer.next()) != null) {
+                    if (terminate.get() || probeRow(row, conn))
+                        return finishJoin(conn);
+                }
+            }
+            while (!isProbeEofReceived && (row = probeQueue.poll()) != null) {
+                if (row.getFieldCount() == 0) {
+                    isProbeEofReceived = true;
+                } else if (terminate.get() || probeRow(row, conn)) {
+                    return finishJoin(conn);
+                }
+            }
+            if (!isProbeEofReceived)
+                return false;
+            if (buildTable == null)
+                joinByPartitions(conn);
+            return finishJoin(conn);
+        } catch (Exception e) {
+            String msg = "hash join thread error, " + e.getLocalizedMessage();
+            LOGGER.info(msg, e);
+            session.onQueryError(msg.getBytes());
+            return true;
+        }
+    }
+
+    /**
+     * the probe rows received later are streamed, build the hash table or the partitions
+     */
+    private void startProbe() {
+        probeLock.lock();
+        try {
+            isProbeStreaming = true;
+            isProbeEofReceived = isProbeEof;
+            probeBuffer.done();
+        } finally {
+            probeLock.unlock();
+        }
+        buildTable = buildHashTable();
+        if (buildTable == null) {
+            LOGGER.info("the build rows of hash join are larger than joinMemSize, join by partitions");
+            buildPartitions = makePartitions(buildFields.size());
+            probePartitions = makePartitions(probeFields.size());
+            RowDataPacket row;
+            while ((row = buildResult.next()) != null) {
+                addToPartition(buildPartitions, buildFields, buildKeys, row);
+            }
+            buildResult.close();
+        }
+    }
+
+    private boolean finishJoin(MySQLConnection conn) {
+        if (!terminate.get()) {
+            nextHandler.rowEofResponse(null, isLeft, conn);
+            HandlerTool.terminateHandlerTree(this);
+        }
+        return true;
+    }
+
+    /**
+     * @return null if the build rows are larger than joinMemSize
+     */
+    private Map<List<Object>, List<RowDataPacket>> buildHashTable() {
+        Map<List<Object>, List<RowDataPacket>> hashTable = new HashMap<>();
+        long memory = 0;
+        RowDataPacket row;
+        while ((row = buildResult.next()) != null) {
+            List<Object> key = makeKey(buildFields, buildKeys, row);
+            if (key == null) {
+                // null never matches
+                continue;
+            }
+            memory += row.calcPacketSize();
+            if (memory > maxBuildMemory) {
+                buildResult.reset();
+                return null;
+            }
+            addToHashTable(hashTable, key, row);
+        }
+        return hashTable;
+    }
+
+    private static void addToHashTable(Map<List<Object>, List<RowDataPacket>> hashTable, List<Object> key,
+                                       RowDataPacket row) {
+        List<RowDataPacket> rows = hashTable.get(key);
+        if (rows == null) {
+            rows = new ArrayList<>(1);
+            hashTable.put(key, rows);
+        }
+        rows.add(row);
+    }
+
+    /**
+     * @return if is interrupted by next handler ,return true,else false
+     */
+    private boolean probeRow(RowDataPacket row, MySQLConnection conn) {
+        if (buildTable == null) {
+            addToPartition(probePartitions, probeFields, probeKeys, row);
+            return false;
+        }
+        return probeRow(buildTable, row, conn);
+    }
+
+    private boolean probeRow(Map<List<Object>, List<RowDataPacket>> hashTable, RowDataPacket probeRow,
+                             MySQLConnection conn) {
+        List<Object> key = makeKey(probeFields, probeKeys, probeRow);
+        List<RowDataPacket> buildRows = key == null ? null : hashTable.get(key);
+        int matchCount = 0;
+        if (buildRows != null) {
+            for (RowDataPacket buildRow : buildRows) {
+                RowDataPacket leftRow = isLeftBuild ? buildRow : probeRow;
+                RowDataPacket rightRow = isLeftBuild ? probeRow : buildRow;
+                if (joinComparator.compare(leftRow, rightRow) != 0)
+                    continue;
+                RowDataPacket rowPacket = connectRow(leftRow, rightRow.fieldValues);
+                if (otherJoinOnCondition != null) {
+                    if (!otherJoinOnCondition.match(rowPacket.fieldValues))
+                        continue;
+                }
+                matchCount++;
+                if (nextHandler.rowResponse(null, rowPacket, isLeft, conn))
+                    return true;
+            }
+        }
+        // the build node of left join is always the right node
+        if (matchCount == 0 && isLeftJoin) {
+            List<byte[]> nulls = new ArrayList<>(rightFieldPackets.size());
+            for (int i = 0; i < rightFieldPackets.size(); i++) {
+                nulls.add(null);
+            }
+            return nextHandler.rowResponse(null, connectRow(probeRow, nulls), isLeft, conn);
+        }
+        return false;
+    }
+
+    private RowDataPacket connectRow(RowDataPacket leftRow, List<byte[]> rightValues) {
+        RowDataPacket rowPacket = new RowDataPacket(leftFieldPackets.size() + rightFieldPackets.size());
+        for (byte[] value : leftRow.fieldValues) {
+            rowPacket.add(value);
+        }
+        for (byte[] value : rightValues) {
+            rowPacket.add(value);
+        }
+        return rowPacket;
+    }
+
+    /**
+     * Grace hash join, a partition is loaded into memory even if it is still larger than joinMemSize
+     */
+    private void joinByPartitions(MySQLConnection conn) {
+        RowDataPacket row;
+        for (int i = 0; i < PARTITION_COUNT; i++) {
+            LocalResult buildPartition = buildPartitions.get(i);
+            LocalResult probePartition = probePartitions.get(i);
+            buildPartition.done();
+            probePartition.done();
+            Map<List<Object>, List<RowDataPacket>> partitionTable = new HashMap<>();
+            while ((row = buildPartition.next()) != null) {
+                addToHashTable(partitionTable, makeKey(buildFields, buildKeys, row), row);
+            }
+            buildPartition.close();
+            while ((row = probePartition.next()) != null) {
+                if (terminate.get() || probeRow(partitionTable, row, conn))
+                    return;
+            }
+            probePartition.close();
+        }
+    }
+
+    private List<LocalResult> makePartitions(int fieldsCount) {
+        List<LocalResult> partitions = new ArrayList<>(PARTITION_COUNT);
+        for (int i = 0; i < PARTITION_COUNT; i++) {
+            partitions.add(new UnSortedLocalResult(fieldsCount, pool, this.charset).
+                    setMemSizeController(session.getJoinBufferMC()));
+        }
+        return partitions;
+    }
+
+    private void addToPartition(List<LocalResult> partitions, List<Field> fields, List<Item> keys,
+                                RowDataPacket row) {
+        List<Object> key = makeKey(fields, keys, row);
+        if (key == null) {
+            // the row never matches, but the left row of left join must be sent
+            if (isLeftJoin && keys == probeKeys)
+                partitions.get(0).add(row);
+            return;
+        }
+        partitions.get((key.hashCode() & Integer.MAX_VALUE) % PARTITION_COUNT).add(row);
+    }
+
+    /**
+     * @return null if any value of the join columns is null
+     */
+    private List<Object> makeKey(List<Field> fields, List<Item> keys, RowDataPacket row) {
+        HandlerTool.initFields(fields, row.fieldValues);
+        List<Object> key = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Item item = keys.get(i);
+            ItemResult keyType = keyTypes.get(i);
+            Object value;
+            if (keyType == ItemResult.STRING_RESULT) {
+                value = item.valStr();
+            } else if (keyType == ItemResult.INT_RESULT) {
+                value = item.valInt();
+            } else if (keyType == ItemResult.DECIMAL_RESULT) {
+                BigDecimal decimal = item.valDecimal();
+                // 1.0 and 1.00 are the same
+                value = decimal == null ? null :
+                        (decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros());
+            } else {
+                value = item.valStr() == null ? null : ANY_KEY;
+            }
+            if (value == null || item.isNull())
+                return null;
+            key.add(value);
+        }
+        return key;
+    }
+
+    private static void closeAll(List<LocalResult> results) {
+        for (LocalResult result : results) {
+            result.close();
+        }
+    }
+
+    @Override
+    protected void terminateThread() throws Exception {
+        scheduleStep();
+    }
+
+    @Override
+    protected void recycleResources() {
+        if (buildResult != null)
+            buildResult.close();
+        if (probeBuffer != null)
+            probeBuffer.close();
+        if (buildPartitions != null)
+            closeAll(buildPartitions);
+        if (probePartitions != null)
+            closeAll(probePartitions);
+        probeQueue.clear();
+    }
+}
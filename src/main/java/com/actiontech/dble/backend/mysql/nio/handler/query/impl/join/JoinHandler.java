@@ -10,12 +10,14 @@ import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.backend.mysql.CharsetUtil;
 import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
 import com.actiontech.dble.backend.mysql.nio.handler.query.OwnThreadDMLHandler;
+import com.actiontech.dble.backend.mysql.nio.handler.util.CompiledCondition;
 import com.actiontech.dble.backend.mysql.nio.handler.util.HandlerTool;
 import com.actiontech.dble.backend.mysql.nio.handler.util.RowDataComparator;
 import com.actiontech.dble.backend.mysql.nio.handler.util.TwoTableComparator;
 import com.actiontech.dble.backend.mysql.store.LocalResult;
 import com.actiontech.dble.backend.mysql.store.UnSortedLocalResult;
 import com.actiontech.dble.buffer.BufferPool;
+import com.actiontech.dble.config.model.SystemConfig;
 import com.actiontech.dble.net.mysql.FieldPacket;
 import com.actiontech.dble.net.mysql.RowDataPacket;
 import com.actiontech.dble.plan.Order;
@@ -54,22 +56,32 @@ public class JoinHandler extends OwnThreadDMLHandler {
     // only join columns same is not enough
     private List<Field> joinRowFields;
     private Item otherJoinOn;
-    private Item otherJoinOnItem;
+    private CompiledCondition otherJoinOnCondition;
     // @bug 1208
     private String charset = "UTF-8";
     // prevent multi thread rowresponse
     protected ReentrantLock leftLock = new ReentrantLock();
     protected ReentrantLock rightLock = new ReentrantLock();
+    private final int queueSize;
+    /* the groups of rows being joined, only used by the steps */
+    private Comparator<RowDataPacket> joinComparator;
+    private LocalResult leftLocal;
+    private LocalResult rightLocal;
 
     public JoinHandler(long id, NonBlockingSession session, boolean isLeftJoin, List<Order> leftOrder,
                        List<Order> rightOrder, Item otherJoinOn) {
+        this(id, session, isLeftJoin, leftOrder, rightOrder, otherJoinOn, DbleServer.getInstance().getConfig().getSystem());
+    }
+
+    JoinHandler(long id, NonBlockingSession session, boolean isLeftJoin, List<Order> leftOrder,
+                List<Order> rightOrder, Item otherJoinOn, SystemConfig system) {
         super(id, session);
         this.isLeftJoin = isLeftJoin;
         this.leftOrders = leftOrder;
         this.rightOrders = rightOrder;
-        int queueSize = DbleServer.getInstance().getConfig().getSystem().getJoinQueueSize();
-        this.leftQueue = new FairLinkedBlockingDeque<>(queueSize);
-        this.rightQueue = new FairLinkedBlockingDeque<>(queueSize);
+        this.queueSize = system.getJoinQueueSize();
+        this.leftQueue = new FairLinkedBlockingDeque<>();
+        this.rightQueue = new FairLinkedBlockingDeque<>();
         this.leftFieldPackets = new ArrayList<>();
         this.rightFieldPackets = new ArrayList<>();
         this.otherJoinOn = otherJoinOn;
@@ -84,7 +96,7 @@ public class JoinHandler extends OwnThreadDMLHandler {
     public void fieldEofResponse(byte[] headerNull, List<byte[]> fieldsNull, final List<FieldPacket> fieldPackets,
                                  byte[] eofNull, boolean isLeft, final BackendConnection conn) {
         if (this.pool == null)
-            this.pool = DbleServer.getInstance().getBufferPool();
+            this.pool = getBufferPool();
 
         if (isLeft) {
             // logger.debug("field eof left");
@@ -101,18 +113,27 @@ public class JoinHandler extends OwnThreadDMLHandler {
             newFieldPacket.addAll(leftFieldPackets);
             newFieldPacket.addAll(rightFieldPackets);
             nextHandler.fieldEofResponse(null, null, newFieldPacket, null, this.isLeft, conn);
-            otherJoinOnItem = makeOtherJoinOnItem(newFieldPacket, conn);
+            otherJoinOnCondition = makeOtherJoinOnCondition(newFieldPacket, conn);
+            joinComparator = new TwoTableComparator(leftFieldPackets, rightFieldPackets, leftOrders, rightOrders,
+                    this.isAllPushDown(), this.type());
             // logger.debug("all ready");
             startOwnThread(conn);
         }
     }
 
-    private Item makeOtherJoinOnItem(List<FieldPacket> rowPackets, BackendConnection conn) {
+    /**
+     * the pool of the local results
+     */
+    BufferPool getBufferPool() {
+        return DbleServer.getInstance().getBufferPool();
+    }
+
+    private CompiledCondition makeOtherJoinOnCondition(List<FieldPacket> rowPackets, BackendConnection conn) {
         this.joinRowFields = HandlerTool.createFields(rowPackets);
         if (otherJoinOn == null)
             return null;
         Item ret = HandlerTool.createItem(this.otherJoinOn, this.joinRowFields, 0, this.isAllPushDown(), this.type());
-        return ret;
+        return CompiledCondition.compile(ret, this.joinRowFields);
     }
 
     @Override
@@ -121,26 +142,24 @@ public class JoinHandler extends OwnThreadDMLHandler {
         if (terminate.get()) {
             return true;
         }
-        try {
-            if (isLeft) {
-                leftLock.lock();
-                try {
-                    addRowToDeque(rowPacket, leftFieldPackets.size(), leftQueue, leftComparator);
-                } finally {
-                    leftLock.unlock();
-                }
-            } else {
-                rightLock.lock();
-                try {
-                    addRowToDeque(rowPacket, rightFieldPackets.size(), rightQueue, rightComparator);
-                } finally {
-                    rightLock.unlock();
-                }
+        if (isLeft) {
+            leftLock.lock();
+            try {
+                addRowToDeque(rowPacket, leftFieldPackets.size(), leftQueue, leftComparator);
+            } finally {
+                leftLock.unlock();
             }
-        } catch (InterruptedException e) {
-            logger.info("join row response exception", e);
-            return true;
+            pauseReadIfFull(conn, leftQueue, queueSize);
+        } else {
+            rightLock.lock();
+            try {
+                addRowToDeque(rowPacket, rightFieldPackets.size(), rightQueue, rightComparator);
+            } finally {
+                rightLock.unlock();
+            }
+            pauseReadIfFull(conn, rightQueue, queueSize);
         }
+        scheduleStep();
         return false;
     }
 
@@ -151,68 +170,29 @@ public class JoinHandler extends OwnThreadDMLHandler {
             return;
         }
         RowDataPacket eofRow = new RowDataPacket(0);
-        try {
-            if (isLeft) {
-                logger.debug("row eof left");
-                addRowToDeque(eofRow, leftFieldPackets.size(), leftQueue, leftComparator);
-            } else {
-                logger.debug("row eof right");
-                addRowToDeque(eofRow, rightFieldPackets.size(), rightQueue, rightComparator);
-            }
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        if (isLeft) {
+            logger.debug("row eof left");
+            addRowToDeque(eofRow, leftFieldPackets.size(), leftQueue, leftComparator);
+        } else {
+            logger.debug("row eof right");
+            addRowToDeque(eofRow, rightFieldPackets.size(), rightQueue, rightComparator);
         }
+        scheduleStep();
     }
 
     @Override
-    protected void ownThreadJob(Object... objects) {
+    protected boolean ownThreadStep(Object... objects) {
         MySQLConnection conn = (MySQLConnection) objects[0];
-        LocalResult leftLocal = null, rightLocal = null;
         try {
-            Comparator<RowDataPacket> joinComparator = new TwoTableComparator(leftFieldPackets, rightFieldPackets,
-                    leftOrders, rightOrders, this.isAllPushDown(), this.type());
-
-            // logger.debug("merge Join start");
-            leftLocal = takeFirst(leftQueue);
-            rightLocal = takeFirst(rightQueue);
             while (true) {
                 if (terminate.get())
-                    return;
-                RowDataPacket leftRow = leftLocal.getLastRow();
-                RowDataPacket rightRow = rightLocal.getLastRow();
-                if (leftRow.getFieldCount() == 0) {
+                    return true;
+                if (leftLocal == null && (leftLocal = pollFirst(leftQueue)) == null)
+                    return false;
+                if (rightLocal == null && (rightLocal = pollFirst(rightQueue)) == null)
+                    return false;
+                if (joinGroups(conn))
                     break;
-                }
-                if (rightRow.getFieldCount() == 0) {
-                    if (isLeftJoin) {
-                        if (connectLeftAndNull(leftLocal, conn))
-                            break;
-                        leftLocal = takeFirst(leftQueue);
-                        continue;
-                    } else {
-                        break;
-                    }
-                }
-                int rs = joinComparator.compare(leftRow, rightRow);
-                if (rs < 0) {
-                    if (isLeftJoin) {
-                        if (connectLeftAndNull(leftLocal, conn))
-                            break;
-                        leftLocal = takeFirst(leftQueue);
-                        continue;
-                    } else {
-                        leftLocal.close();
-                        leftLocal = takeFirst(leftQueue);
-                    }
-                } else if (rs > 0) {
-                    rightLocal.close();
-                    rightLocal = takeFirst(rightQueue);
-                } else {
-                    if (connectLeftAndRight(leftLocal, rightLocal, conn))
-                        break;
-                    leftLocal = takeFirst(leftQueue);
-                    rightLocal = takeFirst(rightQueue);
-                }
             }
             nextHandler.rowEofResponse(null, isLeft, conn);
             HandlerTool.terminateHandlerTree(this);
@@ -220,27 +200,62 @@ public class JoinHandler extends OwnThreadDMLHandler {
             String msg = "join thread error, " + e.getLocalizedMessage();
             logger.info(msg, e);
             session.onQueryError(msg.getBytes());
-        } finally {
-            if (leftLocal != null)
-                leftLocal.close();
-            if (rightLocal != null)
-                rightLocal.close();
         }
+        return true;
     }
 
-    private LocalResult takeFirst(FairLinkedBlockingDeque<LocalResult> deque) throws InterruptedException {
-        /**
-         * it must be in single thread
-         */
-        deque.waitUtilCount(1);
+    /**
+     * join the current groups of the left and the right, and move to the next groups
+     *
+     * @return true if the join is finished or interrupted by next handler
+     */
+    private boolean joinGroups(MySQLConnection conn) throws Exception {
+        RowDataPacket leftRow = leftLocal.getLastRow();
+        RowDataPacket rightRow = rightLocal.getLastRow();
+        if (leftRow.getFieldCount() == 0) {
+            return true;
+        }
+        if (rightRow.getFieldCount() == 0) {
+            if (!isLeftJoin) {
+                return true;
+            }
+            LocalResult leftRows = leftLocal;
+            leftLocal = null;
+            return connectLeftAndNull(leftRows, conn);
+        }
+        int rs = joinComparator.compare(leftRow, rightRow);
+        if (rs < 0) {
+            LocalResult leftRows = leftLocal;
+            leftLocal = null;
+            if (isLeftJoin) {
+                return connectLeftAndNull(leftRows, conn);
+            }
+            leftRows.close();
+        } else if (rs > 0) {
+            rightLocal.close();
+            rightLocal = null;
+        } else {
+            LocalResult leftRows = leftLocal;
+            LocalResult rightRows = rightLocal;
+            leftLocal = null;
+            rightLocal = null;
+            return connectLeftAndRight(leftRows, rightRows, conn);
+        }
+        return false;
+    }
+
+    /**
+     * @return the first group of rows if the group is complete, or null
+     */
+    private LocalResult pollFirst(FairLinkedBlockingDeque<LocalResult> deque) {
+        // it must be in single thread
         LocalResult result = deque.peekFirst();
+        if (result == null)
+            return null;
         RowDataPacket lastRow = result.getLastRow();
-        if (lastRow.getFieldCount() == 0)
-            return deque.takeFirst();
-        else {
-            deque.waitUtilCount(2);
-            return deque.takeFirst();
-        }
+        if (lastRow.getFieldCount() == 0 || deque.size() >= 2)
+            return deque.pollFirst();
+        return null;
     }
 
     /**
@@ -266,9 +281,8 @@ public class JoinHandler extends OwnThreadDMLHandler {
                     for (byte[] value : rightRow.fieldValues) {
                         rowPacket.add(value);
                     }
-                    if (otherJoinOnItem != null) {
-                        HandlerTool.initFields(joinRowFields, rowPacket.fieldValues);
-                        if (!otherJoinOnItem.valBool())
+                    if (otherJoinOnCondition != null) {
+                        if (!otherJoinOnCondition.match(rowPacket.fieldValues))
                             continue;
                     }
                     matchCount++;
@@ -319,12 +333,11 @@ public class JoinHandler extends OwnThreadDMLHandler {
     }
 
     private void addRowToDeque(RowDataPacket row, int columnCount, FairLinkedBlockingDeque<LocalResult> deque,
-                               RowDataComparator cmp) throws InterruptedException {
+                               RowDataComparator cmp) {
         LocalResult localResult = deque.peekLast();
         if (localResult != null) {
             RowDataPacket lastRow = localResult.getLastRow();
             if (lastRow.getFieldCount() == 0) {
-                // eof may added in terminateThread
                 return;
             } else if (row.getFieldCount() > 0 && cmp.compare(lastRow, row) == 0) {
                 localResult.add(row);
@@ -338,39 +351,21 @@ public class JoinHandler extends OwnThreadDMLHandler {
         newLocalResult.add(row);
         if (row.getFieldCount() == 0)
             newLocalResult.done();
-        deque.putLast(newLocalResult);
+        deque.addLast(newLocalResult);
 
     }
 
-    /**
-     * only for terminate.
-     *
-     * @param row
-     * @param columnCount
-     * @param deque
-     * @throws InterruptedException
-     */
-    private void addEndRowToDeque(RowDataPacket row, int columnCount, FairLinkedBlockingDeque<LocalResult> deque)
-            throws InterruptedException {
-        LocalResult newLocalResult = new UnSortedLocalResult(columnCount, pool, this.charset).
-                setMemSizeController(session.getJoinBufferMC());
-        newLocalResult.add(row);
-        newLocalResult.done();
-        LocalResult localResult = deque.addOrReplaceLast(newLocalResult);
-        if (localResult != null)
-            localResult.close();
-    }
-
     @Override
     protected void terminateThread() throws Exception {
-        RowDataPacket eofRow = new RowDataPacket(0);
-        addEndRowToDeque(eofRow, leftFieldPackets.size(), leftQueue);
-        RowDataPacket eofRow2 = new RowDataPacket(0);
-        addEndRowToDeque(eofRow2, rightFieldPackets.size(), rightQueue);
+        scheduleStep();
     }
 
     @Override
     protected void recycleResources() {
+        if (leftLocal != null)
+            leftLocal.close();
+        if (rightLocal != null)
+            rightLocal.close();
         clearDeque(this.leftQueue);
         clearDeque(this.rightQueue);
     }
@@ -42,14 +42,19 @@ public class NotInHandler extends OwnThreadDMLHandler {
     private RowDataComparator rightComparator;
     private AtomicBoolean fieldSent = new AtomicBoolean(false);
     private String charset = "UTF-8";
+    private final int queueSize;
+    /* the groups of rows being compared, only used by the steps */
+    private Comparator<RowDataPacket> notInComparator;
+    private LocalResult leftLocal;
+    private LocalResult rightLocal;
 
     public NotInHandler(long id, NonBlockingSession session, List<Order> leftOrder, List<Order> rightOrder) {
         super(id, session);
         this.leftOrders = leftOrder;
         this.rightOrders = rightOrder;
-        int queueSize = DbleServer.getInstance().getConfig().getSystem().getJoinQueueSize();
-        this.leftQueue = new FairLinkedBlockingDeque<>(queueSize);
-        this.rightQueue = new FairLinkedBlockingDeque<>(queueSize);
+        this.queueSize = DbleServer.getInstance().getConfig().getSystem().getJoinQueueSize();
+        this.leftQueue = new FairLinkedBlockingDeque<>();
+        this.rightQueue = new FairLinkedBlockingDeque<>();
         this.leftFieldPackets = new ArrayList<>();
         this.rightFieldPackets = new ArrayList<>();
     }
@@ -77,6 +82,8 @@ public class NotInHandler extends OwnThreadDMLHandler {
         if (!fieldSent.compareAndSet(false, true)) {
             this.charset = CharsetUtil.getJavaCharset(conn.getCharset().getResults());
             nextHandler.fieldEofResponse(null, null, leftFieldPackets, null, this.isLeft, conn);
+            notInComparator = new TwoTableComparator(leftFieldPackets, rightFieldPackets, leftOrders, rightOrders,
+                    this.isAllPushDown(), this.type());
             // logger.debug("all ready");
             startOwnThread(conn);
         }
@@ -88,16 +95,14 @@ public class NotInHandler extends OwnThreadDMLHandler {
         if (terminate.get()) {
             return true;
         }
-        try {
-            if (isLeft) {
-                addRowToDeque(rowPacket, leftFieldPackets.size(), leftQueue, leftComparator);
-            } else {
-                addRowToDeque(rowPacket, rightFieldPackets.size(), rightQueue, rightComparator);
-            }
-        } catch (InterruptedException e) {
-            LOGGER.info("not in row exception", e);
-            return true;
+        if (isLeft) {
+            addRowToDeque(rowPacket, leftFieldPackets.size(), leftQueue, leftComparator);
+            pauseReadIfFull(conn, leftQueue, queueSize);
+        } else {
+            addRowToDeque(rowPacket, rightFieldPackets.size(), rightQueue, rightComparator);
+            pauseReadIfFull(conn, rightQueue, queueSize);
         }
+        scheduleStep();
         return false;
     }
 
@@ -108,57 +113,29 @@ public class NotInHandler extends OwnThreadDMLHandler {
             return;
         }
         RowDataPacket eofRow = new RowDataPacket(0);
-        try {
-            if (isLeft) {
-                // logger.debug("row eof left");
-                addRowToDeque(eofRow, leftFieldPackets.size(), leftQueue, leftComparator);
-            } else {
-                // logger.debug("row eof right");
-                addRowToDeque(eofRow, rightFieldPackets.size(), rightQueue, rightComparator);
-            }
-        } catch (Exception e) {
-            LOGGER.info("not in rowEof exception", e);
+        if (isLeft) {
+            // logger.debug("row eof left");
+            addRowToDeque(eofRow, leftFieldPackets.size(), leftQueue, leftComparator);
+        } else {
+            // logger.debug("row eof right");
+            addRowToDeque(eofRow, rightFieldPackets.size(), rightQueue, rightComparator);
         }
+        scheduleStep();
     }
 
     @Override
-    protected void ownThreadJob(Object... objects) {
+    protected boolean ownThreadStep(Object... objects) {
         MySQLConnection conn = (MySQLConnection) objects[0];
-        LocalResult leftLocal = null, rightLocal = null;
         try {
-            Comparator<RowDataPacket> notInComparator = new TwoTableComparator(leftFieldPackets, rightFieldPackets,
-                    leftOrders, rightOrders, this.isAllPushDown(), this.type());
-
-            leftLocal = takeFirst(leftQueue);
-            rightLocal = takeFirst(rightQueue);
             while (true) {
-                RowDataPacket leftRow = leftLocal.getLastRow();
-                RowDataPacket rightRow = rightLocal.getLastRow();
-                if (leftRow.getFieldCount() == 0) {
+                if (terminate.get())
+                    return true;
+                if (leftLocal == null && (leftLocal = pollFirst(leftQueue)) == null)
+                    return false;
+                if (rightLocal == null && (rightLocal = pollFirst(rightQueue)) == null)
+                    return false;
+                if (compareGroups(conn))
                     break;
-                }
-                if (rightRow.getFieldCount() == 0) {
-                    sendLeft(leftLocal, conn);
-                    leftLocal.close();
-                    leftLocal = takeFirst(leftQueue);
-                    continue;
-                }
-                int rs = notInComparator.compare(leftRow, rightRow);
-                if (rs < 0) {
-                    sendLeft(leftLocal, conn);
-                    leftLocal.close();
-                    leftLocal = takeFirst(leftQueue);
-                    continue;
-                } else if (rs > 0) {
-                    rightLocal.close();
-                    rightLocal = takeFirst(rightQueue);
-                } else {
-                    // because not in, if equal left should move to next value
-                    leftLocal.close();
-                    rightLocal.close();
-                    leftLocal = takeFirst(leftQueue);
-                    rightLocal = takeFirst(rightQueue);
-                }
             }
             nextHandler.rowEofResponse(null, isLeft, conn);
             HandlerTool.terminateHandlerTree(this);
@@ -166,24 +143,50 @@ public class NotInHandler extends OwnThreadDMLHandler {
             String msg = "notIn thread error, " + e.getLocalizedMessage();
             LOGGER.info(msg, e);
             session.onQueryError(msg.getBytes());
-        } finally {
-            if (leftLocal != null)
-                leftLocal.close();
-            if (rightLocal != null)
-                rightLocal.close();
         }
+        return true;
     }
 
-    private LocalResult takeFirst(FairLinkedBlockingDeque<LocalResult> deque) throws InterruptedException {
-        deque.waitUtilCount(1);
+    /**
+     * compare the current groups of the left and the right, and move to the next groups
+     *
+     * @return true if all the left rows are compared
+     */
+    private boolean compareGroups(MySQLConnection conn) throws Exception {
+        RowDataPacket leftRow = leftLocal.getLastRow();
+        RowDataPacket rightRow = rightLocal.getLastRow();
+        if (leftRow.getFieldCount() == 0) {
+            return true;
+        }
+        int rs = rightRow.getFieldCount() == 0 ? -1 : notInComparator.compare(leftRow, rightRow);
+        if (rs < 0) {
+            sendLeft(leftLocal, conn);
+            leftLocal.close();
+            leftLocal = null;
+        } else if (rs > 0) {
+            rightLocal.close();
+            rightLocal = null;
+        } else {
+            // because not in, if equal left should move to next value
+            leftLocal.close();
+            rightLocal.close();
+            leftLocal = null;
+            rightLocal = null;
+        }
+        return false;
+    }
+
+    /**
+     * @return the first group of rows if the group is complete, or null
+     */
+    private LocalResult pollFirst(FairLinkedBlockingDeque<LocalResult> deque) {
         LocalResult result = deque.peekFirst();
+        if (result == null)
+            return null;
         RowDataPacket lastRow = result.getLastRow();
-        if (lastRow.getFieldCount() == 0)
-            return deque.takeFirst();
-        else {
-            deque.waitUtilCount(2);
-            return deque.takeFirst();
-        }
+        if (lastRow.getFieldCount() == 0 || deque.size() >= 2)
+            return deque.pollFirst();
+        return null;
     }
 
     private void sendLeft(LocalResult leftRows, MySQLConnection conn) throws Exception {
@@ -194,7 +197,7 @@ public class NotInHandler extends OwnThreadDMLHandler {
     }
 
     private void addRowToDeque(RowDataPacket row, int columnCount, FairLinkedBlockingDeque<LocalResult> deque,
-                               RowDataComparator cmp) throws InterruptedException {
+                               RowDataComparator cmp) {
         LocalResult localResult = deque.peekLast();
         if (localResult != null) {
             RowDataPacket lastRow = localResult.getLastRow();
@@ -212,38 +215,20 @@ public class NotInHandler extends OwnThreadDMLHandler {
         newLocalResult.add(row);
         if (row.getFieldCount() == 0)
             newLocalResult.done();
-        deque.putLast(newLocalResult);
-    }
-
-    /**
-     * only for terminate.
-     *
-     * @param row
-     * @param columnCount
-     * @param deque
-     * @throws InterruptedException
-     */
-    private void addEndRowToDeque(RowDataPacket row, int columnCount, FairLinkedBlockingDeque<LocalResult> deque)
-            throws InterruptedException {
-        LocalResult newLocalResult = new UnSortedLocalResult(columnCount, pool, this.charset).
-                setMemSizeController(session.getJoinBufferMC());
-        newLocalResult.add(row);
-        newLocalResult.done();
-        LocalResult localResult = deque.addOrReplaceLast(newLocalResult);
-        if (localResult != null)
-            localResult.close();
+        deque.addLast(newLocalResult);
     }
 
     @Override
     protected void terminateThread() throws Exception {
-        RowDataPacket eofRow = new RowDataPacket(0);
-        addEndRowToDeque(eofRow, leftFieldPackets.size(), leftQueue);
-        RowDataPacket eofRow2 = new RowDataPacket(0);
-        addEndRowToDeque(eofRow2, rightFieldPackets.size(), rightQueue);
+        scheduleStep();
     }
 
     @Override
     protected void recycleResources() {
+        if (leftLocal != null)
+            leftLocal.close();
+        if (rightLocal != null)
+            rightLocal.close();
         clearDeque(this.leftQueue);
         clearDeque(this.rightQueue);
     }
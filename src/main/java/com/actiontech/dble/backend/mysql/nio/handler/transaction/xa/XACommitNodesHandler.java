@@ -17,6 +17,7 @@ import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.log.alarm.AlarmCode;
 import com.actiontech.dble.net.mysql.ErrorPacket;
 import com.actiontech.dble.net.mysql.OkPacket;
+import com.actiontech.dble.route.RouteResultsetNode;
 import com.actiontech.dble.server.NonBlockingSession;
 import com.actiontech.dble.util.StringUtil;
 
@@ -26,6 +27,8 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
     private static final int COMMIT_TIMES = 5;
     private int tryCommitTimes = 0;
     private ParticipantLogEntry[] participantLogEntry = null;
+    // single participant, XA END and XA COMMIT ONE PHASE are sent together
+    private boolean onePhase = false;
     byte[] sendData = OkPacket.OK;
 
     public XACommitNodesHandler(NonBlockingSession session) {
@@ -36,6 +39,7 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
     public void clearResources() {
         tryCommitTimes = 0;
         participantLogEntry = null;
+        onePhase = false;
         sendData = OkPacket.OK;
         if (closedConnSet != null) {
             closedConnSet.clear();
@@ -46,16 +50,17 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
     protected boolean executeCommit(MySQLConnection mysqlCon, int position) {
         TxState state = session.getXaState();
         if (state == TxState.TX_STARTED_STATE) {
-            if (participantLogEntry == null) {
-                participantLogEntry = new ParticipantLogEntry[nodeCount];
-                CoordinatorLogEntry coordinatorLogEntry = new CoordinatorLogEntry(session.getSessionXaID(), participantLogEntry, session.getXaState());
-                XAStateLog.flushMemoryRepository(session.getSessionXaID(), coordinatorLogEntry);
+            if (position == 0 && !initRecoveryLog()) {
+                return false;
+            }
+            if (onePhase) {
+                endAndCommitPhase(mysqlCon);
+            } else {
+                endAndPreparePhase(mysqlCon);
             }
-            XAStateLog.initRecoveryLog(session.getSessionXaID(), position, mysqlCon);
-            endPhase(mysqlCon);
         } else if (state == TxState.TX_ENDED_STATE) {
             if (position == 0) {
-                if (!XAStateLog.saveXARecoveryLog(session.getSessionXaID(), TxState.TX_PREPARING_STATE)) {
+                if (!saveXARecoveryLog(TxState.TX_PREPARING_STATE)) {
                     String errMsg = "saveXARecoveryLog error, the stage is TX_PREPARING_STATE";
                     this.setFail(errMsg);
                     sendData = makeErrorPacket(errMsg);
@@ -67,7 +72,7 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
             preparePhase(mysqlCon);
         } else if (state == TxState.TX_PREPARED_STATE) {
             if (position == 0) {
-                if (!XAStateLog.saveXARecoveryLog(session.getSessionXaID(), TxState.TX_COMMITTING_STATE)) {
+                if (!saveXARecoveryLog(TxState.TX_COMMITTING_STATE)) {
                     String errMsg = "saveXARecoveryLog error, the stage is TX_COMMITTING_STATE";
                     this.setFail(errMsg);
                     sendData = makeErrorPacket(errMsg);
@@ -80,7 +85,7 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
             commitPhase(mysqlCon);
         } else if (state == TxState.TX_COMMIT_FAILED_STATE) {
             if (position == 0) {
-                XAStateLog.saveXARecoveryLog(session.getSessionXaID(), TxState.TX_COMMIT_FAILED_STATE);
+                saveXARecoveryLog(TxState.TX_COMMIT_FAILED_STATE);
             }
             commitPhase(mysqlCon);
         } else if (state == TxState.TX_PREPARE_UNCONNECT_STATE) {
@@ -103,15 +108,72 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
     }
 
     private byte[] makeErrorPacket(String errMsg) {
+        return makeErrorPacket(ErrorCode.ER_UNKNOWN_ERROR, errMsg);
+    }
+
+    byte[] makeErrorPacket(int errNo, String errMsg) {
         ErrorPacket errPacket = new ErrorPacket();
-        errPacket.setErrNo(ErrorCode.ER_UNKNOWN_ERROR);
+        errPacket.setErrNo(errNo);
         errPacket.setMessage(StringUtil.encode(errMsg, session.getSource().getCharset().getResults()));
         return errPacket.toBytes();
     }
 
-    private void endPhase(MySQLConnection mysqlCon) {
+    /**
+     * save the state of the session to the recovery log
+     */
+    boolean saveXARecoveryLog(TxState sessionState) {
+        return XAStateLog.saveXARecoveryLog(session.getSessionXaID(), sessionState);
+    }
+
+    void saveXARecoveryLog(MySQLConnection mysqlCon) {
+        XAStateLog.saveXARecoveryLog(session.getSessionXaID(), mysqlCon);
+    }
+
+    /**
+     * put the coordinator entry with the participants into the recovery log in memory
+     */
+    void initParticipantsLog() {
+        participantLogEntry = new ParticipantLogEntry[nodeCount];
+        CoordinatorLogEntry coordinatorLogEntry = new CoordinatorLogEntry(session.getSessionXaID(), participantLogEntry, session.getXaState());
+        XAStateLog.flushMemoryRepository(session.getSessionXaID(), coordinatorLogEntry);
+        int index = 0;
+        for (RouteResultsetNode rrn : session.getTargetKeys()) {
+            XAStateLog.initRecoveryLog(session.getSessionXaID(), index++, (MySQLConnection) session.getTarget(rrn));
+        }
+    }
+
+    /**
+     * XA END is sent with the next command, so the commit needs the session's lock from now on,
+     * and the participants are logged before preparing
+     */
+    private boolean initRecoveryLog() {
+        if (!session.cancelableStatusSet(NonBlockingSession.CANCEL_STATUS_COMMITTING)) {
+            return false;
+        }
+        initParticipantsLog();
+        onePhase = nodeCount == 1;
+        // nothing is prepared by one phase commit, so there is nothing to recover
+        if (!onePhase) {
+            if (!saveXARecoveryLog(TxState.TX_PREPARING_STATE)) {
+                String errMsg = "saveXARecoveryLog error, the stage is TX_PREPARING_STATE";
+                this.setFail(errMsg);
+                sendData = makeErrorPacket(errMsg);
+                nextParse();
+                return false;
+            }
+            this.debugCommitDelay();
+        }
+        return true;
+    }
+
+    private void endAndPreparePhase(MySQLConnection mysqlCon) {
+        String xaTxId = mysqlCon.getConnXID(session);
+        mysqlCon.execCmd("XA END " + xaTxId + ";XA PREPARE " + xaTxId);
+    }
+
+    private void endAndCommitPhase(MySQLConnection mysqlCon) {
         String xaTxId = mysqlCon.getConnXID(session);
-        mysqlCon.execCmd("XA END " + xaTxId);
+        mysqlCon.execCmd("XA END " + xaTxId + ";XA COMMIT " + xaTxId + " ONE PHASE");
     }
 
     private void preparePhase(MySQLConnection mysqlCon) {
@@ -139,27 +201,33 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
         MySQLConnection mysqlCon = (MySQLConnection) conn;
         TxState state = mysqlCon.getXaStatus();
         if (state == TxState.TX_STARTED_STATE) {
+            //END OK, the result of the command sent with it follows
             mysqlCon.setXaStatus(TxState.TX_ENDED_STATE);
-            XAStateLog.saveXARecoveryLog(session.getSessionXaID(), mysqlCon);
-            if (decrementCountBy(1)) {
-                session.setXaState(TxState.TX_ENDED_STATE);
-                nextParse();
-            }
-        } else if (state == TxState.TX_ENDED_STATE) {
+            saveXARecoveryLog(mysqlCon);
+        } else if (state == TxState.TX_ENDED_STATE && !onePhase) {
             //PREPARE OK
             mysqlCon.setXaStatus(TxState.TX_PREPARED_STATE);
-            XAStateLog.saveXARecoveryLog(session.getSessionXaID(), mysqlCon);
+            saveXARecoveryLog(mysqlCon);
             if (decrementCountBy(1)) {
-                if (session.getXaState() == TxState.TX_ENDED_STATE) {
+                if (session.getXaState() == TxState.TX_STARTED_STATE || session.getXaState() == TxState.TX_ENDED_STATE) {
                     session.setXaState(TxState.TX_PREPARED_STATE);
                 }
                 nextParse();
             }
+        } else if (state == TxState.TX_ENDED_STATE) {
+            //COMMIT ONE PHASE OK
+            mysqlCon.setXaStatus(TxState.TX_COMMITTED_STATE);
+            saveXARecoveryLog(mysqlCon);
+            mysqlCon.setXaStatus(TxState.TX_INITIALIZE_STATE);
+            if (decrementCountBy(1)) {
+                session.setXaState(TxState.TX_INITIALIZE_STATE);
+                cleanAndFeedback();
+            }
         } else if (state == TxState.TX_COMMIT_FAILED_STATE || state == TxState.TX_PREPARED_STATE) {
             //COMMIT OK
             // XA reset status now
             mysqlCon.setXaStatus(TxState.TX_COMMITTED_STATE);
-            XAStateLog.saveXARecoveryLog(session.getSessionXaID(), mysqlCon);
+            saveXARecoveryLog(mysqlCon);
             mysqlCon.setXaStatus(TxState.TX_INITIALIZE_STATE);
             if (decrementCountBy(1)) {
                 if (session.getXaState() == TxState.TX_PREPARED_STATE) {
@@ -180,22 +248,24 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
         sendData = makeErrorPacket(errMsg);
         if (conn instanceof MySQLConnection) {
             MySQLConnection mysqlCon = (MySQLConnection) conn;
+            // 'xa end' error, the command sent with it is not executed
             if (mysqlCon.getXaStatus() == TxState.TX_STARTED_STATE) {
                 mysqlCon.quit();
                 mysqlCon.setXaStatus(TxState.TX_CONN_QUIT);
-                XAStateLog.saveXARecoveryLog(session.getSessionXaID(), mysqlCon);
+                saveXARecoveryLog(mysqlCon);
                 if (decrementCountBy(1)) {
-                    session.setXaState(TxState.TX_ENDED_STATE);
+                    // the other participants may be prepared
+                    session.setXaState(onePhase ? TxState.TX_ENDED_STATE : TxState.TX_PREPARED_STATE);
                     nextParse();
                 }
 
-                // 'xa prepare' error
+                // 'xa prepare' or 'xa commit one phase' error
             } else if (mysqlCon.getXaStatus() == TxState.TX_ENDED_STATE) {
                 mysqlCon.quit();
                 mysqlCon.setXaStatus(TxState.TX_CONN_QUIT);
-                XAStateLog.saveXARecoveryLog(session.getSessionXaID(), mysqlCon);
+                saveXARecoveryLog(mysqlCon);
                 if (decrementCountBy(1)) {
-                    if (session.getXaState() == TxState.TX_ENDED_STATE) {
+                    if (session.getXaState() == TxState.TX_STARTED_STATE || session.getXaState() == TxState.TX_ENDED_STATE) {
                         session.setXaState(TxState.TX_PREPARED_STATE);
                     }
                     nextParse();
@@ -203,7 +273,7 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
                 // 'xa commit' err
             } else if (mysqlCon.getXaStatus() == TxState.TX_PREPARED_STATE) { //TODO:service degradation?
                 mysqlCon.setXaStatus(TxState.TX_COMMIT_FAILED_STATE);
-                XAStateLog.saveXARecoveryLog(session.getSessionXaID(), mysqlCon);
+                saveXARecoveryLog(mysqlCon);
                 session.setXaState(TxState.TX_COMMIT_FAILED_STATE);
                 if (decrementCountBy(1)) {
                     cleanAndFeedback();
@@ -212,7 +282,7 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
                 if (errPacket.getErrNo() == ErrorCode.ER_XAER_NOTA) {
                     //Unknown XID ,if xa transaction only contains select statement, xid will lost after restart server although prepared
                     mysqlCon.setXaStatus(TxState.TX_COMMITTED_STATE);
-                    XAStateLog.saveXARecoveryLog(session.getSessionXaID(), mysqlCon);
+                    saveXARecoveryLog(mysqlCon);
                     mysqlCon.setXaStatus(TxState.TX_INITIALIZE_STATE);
                     if (decrementCountBy(1)) {
                         if (session.getXaState() == TxState.TX_PREPARED_STATE) {
@@ -222,7 +292,7 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
                     }
                 } else {
                     mysqlCon.setXaStatus(TxState.TX_COMMIT_FAILED_STATE);
-                    XAStateLog.saveXARecoveryLog(session.getSessionXaID(), mysqlCon);
+                    saveXARecoveryLog(mysqlCon);
                     session.setXaState(TxState.TX_COMMIT_FAILED_STATE);
                     if (decrementCountBy(1)) {
                         cleanAndFeedback();
@@ -267,18 +337,22 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
     private void innerConnectError(BackendConnection conn) {
         if (conn instanceof MySQLConnection) {
             MySQLConnection mysqlCon = (MySQLConnection) conn;
-            if (mysqlCon.getXaStatus() == TxState.TX_STARTED_STATE) {
-                mysqlCon.quit();
+            boolean notPrepared = mysqlCon.getXaStatus() == TxState.TX_STARTED_STATE || mysqlCon.getXaStatus() == TxState.TX_ENDED_STATE;
+            // 'xa commit one phase' connectionClose, the xa is committed or rolled back by the closing,
+            // nothing is prepared to recover, but the client can't know which one
+            if (onePhase && notPrepared) {
                 mysqlCon.setXaStatus(TxState.TX_CONN_QUIT);
-                XAStateLog.saveXARecoveryLog(session.getSessionXaID(), mysqlCon);
+                saveXARecoveryLog(mysqlCon);
+                sendData = makeErrorPacket(ER_ERROR_DURING_COMMIT, "the result of XA COMMIT ONE PHASE is unknown: " + error);
                 if (decrementCountBy(1)) {
-                    session.setXaState(TxState.TX_ENDED_STATE);
-                    nextParse();
+                    // the entry is finished, like a committed one
+                    session.setXaState(TxState.TX_INITIALIZE_STATE);
+                    cleanAndFeedback();
                 }
-                //  'xa prepare' connectionClose,conn has quit
-            } else if (mysqlCon.getXaStatus() == TxState.TX_ENDED_STATE) {
+                //  'xa end' or 'xa prepare' connectionClose,conn has quit, the prepare may be executed
+            } else if (notPrepared) {
                 mysqlCon.setXaStatus(TxState.TX_PREPARE_UNCONNECT_STATE);
-                XAStateLog.saveXARecoveryLog(session.getSessionXaID(), mysqlCon);
+                saveXARecoveryLog(mysqlCon);
                 session.setXaState(TxState.TX_PREPARE_UNCONNECT_STATE);
                 if (decrementCountBy(1)) {
                     nextParse();
@@ -286,7 +360,7 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
                 // 'xa commit' connectionClose
             } else if (mysqlCon.getXaStatus() == TxState.TX_COMMIT_FAILED_STATE || mysqlCon.getXaStatus() == TxState.TX_PREPARED_STATE) { //TODO:service degradation?
                 mysqlCon.setXaStatus(TxState.TX_COMMIT_FAILED_STATE);
-                XAStateLog.saveXARecoveryLog(session.getSessionXaID(), mysqlCon);
+                saveXARecoveryLog(mysqlCon);
                 session.setXaState(TxState.TX_COMMIT_FAILED_STATE);
                 if (decrementCountBy(1)) {
                     cleanAndFeedback();
@@ -310,7 +384,7 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
 
     private void cleanAndFeedback() {
         if (session.getXaState() == TxState.TX_INITIALIZE_STATE) { // clear all resources
-            XAStateLog.saveXARecoveryLog(session.getSessionXaID(), TxState.TX_COMMITTED_STATE);
+            saveXARecoveryLog(TxState.TX_COMMITTED_STATE);
             session.cancelableStatusSet(NonBlockingSession.CANCEL_STATUS_INIT);
             session.clearResources(false);
             if (session.closed()) {
@@ -324,7 +398,7 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
         } else if (session.getXaState() == TxState.TX_COMMIT_FAILED_STATE) {
             MySQLConnection errConn = session.releaseExcept(TxState.TX_COMMIT_FAILED_STATE);
             if (errConn != null) {
-                XAStateLog.saveXARecoveryLog(session.getSessionXaID(), session.getXaState());
+                saveXARecoveryLog(session.getXaState());
                 if (++tryCommitTimes < COMMIT_TIMES) {
                     // try commit several times
                     commit();
@@ -334,7 +408,7 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
                     DbleServer.getInstance().getXaSessionCheck().addCommitSession(session);
                 }
             } else {
-                XAStateLog.saveXARecoveryLog(session.getSessionXaID(), TxState.TX_COMMITTED_STATE);
+                saveXARecoveryLog(TxState.TX_COMMITTED_STATE);
                 session.setXaState(TxState.TX_INITIALIZE_STATE);
                 session.cancelableStatusSet(NonBlockingSession.CANCEL_STATUS_INIT);
                 byte[] toSend = sendData;
@@ -347,7 +421,7 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
 
             // need to rollback;
         } else {
-            XAStateLog.saveXARecoveryLog(session.getSessionXaID(), session.getXaState());
+            saveXARecoveryLog(session.getXaState());
             setResponseTime();
             session.getSource().write(sendData);
             LOGGER.info("cleanAndFeedback:" + error);
@@ -362,7 +436,7 @@ public class XACommitNodesHandler extends AbstractCommitNodesHandler {
                 long delayTime = 0;
                 String xaStatus = "";
                 //before the prepare command
-                if (session.getXaState() == TxState.TX_ENDED_STATE) {
+                if (session.getXaState() == TxState.TX_STARTED_STATE || session.getXaState() == TxState.TX_ENDED_STATE) {
                     String prepareDelayTime = System.getProperty("PREPARE_DELAY");
                     delayTime = prepareDelayTime == null ? 0 : Long.parseLong(prepareDelayTime) * 1000;
                     xaStatus = "'XA PREPARED'";
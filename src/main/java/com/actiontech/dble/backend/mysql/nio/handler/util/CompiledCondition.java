@@ -0,0 +1,611 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.util;
+
+import com.actiontech.dble.plan.common.field.Field;
+import com.actiontech.dble.plan.common.item.FieldTypes;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.ItemField;
+import com.actiontech.dble.plan.common.item.function.ItemFunc;
+import com.actiontech.dble.plan.common.item.function.ItemFunc.Functype;
+import com.actiontech.dble.plan.common.item.function.mathsfunc.operator.ItemFuncMinus;
+import com.actiontech.dble.plan.common.item.function.mathsfunc.operator.ItemFuncMul;
+import com.actiontech.dble.plan.common.item.function.mathsfunc.operator.ItemFuncPlus;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncIn;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * a condition made by HandlerTool.createItem, compiled to be evaluated on the values of the row directly.
+ * <p>
+ * The integer comparisons, +, -, *, IN, IS [NOT] NULL, AND, OR, NOT and the comparisons of the dates and
+ * datetimes are compiled, the value of a column is read from the row without being set into the Field. The other
+ * parts of the condition are left to the Item, the fields are set only when such a part is evaluated. If a value
+ * can not be computed by long (overflow), the whole condition is evaluated by the Item.
+ * <p>
+ * Only TRUE matters for the result, so an Item left in the condition may return FALSE for NULL unless it is in NOT.
+ */
+public final class CompiledCondition {
+    private static final int FALSE = 0;
+    private static final int TRUE = 1;
+    private static final int UNKNOWN = -1;
+    private static final Fallback FALLBACK = new Fallback();
+    private static final Pattern DATE_PATTERN = Pattern.compile("\\d{4}-(0[1-9]|1[0-2])-(0[1-9]|[12]\\d|3[01])");
+    private static final Pattern DATETIME_PATTERN = Pattern.compile(
+            "\\d{4}-(0[1-9]|1[0-2])-(0[1-9]|[12]\\d|3[01]) ([01]\\d|2[0-3]):[0-5]\\d:[0-5]\\d");
+
+    private final Item item;
+    private final List<Field> fields;
+    private final Cond root;
+    /* the row being matched, it is set into the fields only if an Item is evaluated */
+    private List<byte[]> row;
+    private boolean fieldsInited;
+    /* if the last long value is null */
+    private boolean nullValue;
+
+    private CompiledCondition(Item item, List<Field> fields) {
+        this.item = item;
+        this.fields = fields;
+        Cond cond = compileCond(item, false);
+        this.root = cond == null ? new ItemEval(item) : cond;
+    }
+
+    /**
+     * @param condition the item made by HandlerTool.createItem on the fields
+     */
+    public static CompiledCondition compile(Item condition, List<Field> fields) {
+        return new CompiledCondition(condition, fields);
+    }
+
+    /**
+     * @return true if the condition is TRUE for the row, the fields are set by the row if they are used
+     */
+    public boolean match(List<byte[]> values) {
+        row = values;
+        fieldsInited = false;
+        try {
+            return root.eval(this) == TRUE;
+        } catch (Fallback e) {
+            initFields();
+            return item.valBool();
+        }
+    }
+
+    public boolean isCompiled() {
+        return !(root instanceof ItemEval);
+    }
+
+    private void initFields() {
+        if (!fieldsInited) {
+            HandlerTool.initFields(fields, row);
+            fieldsInited = true;
+        }
+    }
+
+    /**
+     * @param exact if the result must be exact, false and null are not the same in NOT
+     * @return null if it can not be compiled exactly
+     */
+    private Cond compileCond(Item cond, boolean exact) {
+        if (cond.type() != Item.ItemType.FUNC_ITEM && cond.type() != Item.ItemType.COND_ITEM) {
+            return null;
+        }
+        ItemFunc func = (ItemFunc) cond;
+        Functype functype = func.functype();
+        switch (functype) {
+            case COND_AND_FUNC:
+            case COND_OR_FUNC:
+                return compileAndOr(func, exact);
+            case NOT_FUNC:
+                Cond arg = compileCond(func.arguments().get(0), true);
+                return arg == null ? null : new Not(arg);
+            case ISNULL_FUNC:
+            case ISNOTNULL_FUNC:
+                int index = columnIndex(func.arguments().get(0));
+                return index < 0 ? null : new IsNull(index, functype == Functype.ISNOTNULL_FUNC);
+            default:
+                if (func instanceof ItemFuncIn) {
+                    return compileIn((ItemFuncIn) func);
+                } else if (isCompare(functype)) {
+                    return compileCompare(functype, func.arguments().get(0), func.arguments().get(1));
+                }
+                return null;
+        }
+    }
+
+    private Cond compileAndOr(ItemFunc func, boolean exact) {
+        List<Item> args = func.arguments();
+        Cond[] conds = new Cond[args.size()];
+        for (int i = 0; i < conds.length; i++) {
+            conds[i] = compileCond(args.get(i), exact);
+            if (conds[i] == null) {
+                if (exact) {
+                    return null;
+                }
+                conds[i] = new ItemEval(args.get(i));
+            }
+        }
+        return func.functype() == Functype.COND_AND_FUNC ? new And(conds) : new Or(conds);
+    }
+
+    private Cond compileCompare(Functype functype, Item left, Item right) {
+        LongVal leftLong = compileLong(left);
+        LongVal rightLong = compileLong(right);
+        if (leftLong != null && rightLong != null) {
+            return new LongCompare(functype, leftLong, rightLong);
+        }
+        int leftIndex = columnIndex(left);
+        int rightIndex = columnIndex(right);
+        if (leftIndex >= 0 && rightIndex >= 0) {
+            if (isSameTemporal(fields.get(leftIndex), fields.get(rightIndex))) {
+                return new BytesCompare(functype, leftIndex, rightIndex, null);
+            }
+        } else if (leftIndex >= 0) {
+            byte[] value = temporalConst(fields.get(leftIndex), right);
+            return value == null ? null : new BytesCompare(functype, leftIndex, -1, value);
+        } else if (rightIndex >= 0) {
+            byte[] value = temporalConst(fields.get(rightIndex), left);
+            return value == null ? null : new BytesCompare(reverse(functype), rightIndex, -1, value);
+        }
+        return null;
+    }
+
+    private Cond compileIn(ItemFuncIn func) {
+        List<Item> args = func.arguments();
+        LongVal value = compileLong(args.get(0));
+        if (value == null) {
+            return null;
+        }
+        Set<Long> values = new HashSet<>();
+        boolean hasNull = false;
+        for (int i = 1; i < args.size(); i++) {
+            Item arg = args.get(i);
+            if (arg.type() == Item.ItemType.NULL_ITEM) {
+                hasNull = true;
+            } else if (arg.type() == Item.ItemType.INT_ITEM && fitsLong(arg.valInt())) {
+                values.add(arg.valInt().longValue());
+            } else {
+                return null;
+            }
+        }
+        return new In(value, values, hasNull, func.isNegated());
+    }
+
+    private LongVal compileLong(Item arg) {
+        if (arg.type() == Item.ItemType.INT_ITEM) {
+            BigInteger value = arg.valInt();
+            return fitsLong(value) ? new LongConst(value.longValue()) : null;
+        }
+        int index = columnIndex(arg);
+        if (index >= 0) {
+            return isInteger(fields.get(index).fieldType()) ? new LongColumn(index) : null;
+        }
+        if (arg instanceof ItemFuncPlus || arg instanceof ItemFuncMinus || arg instanceof ItemFuncMul) {
+            LongVal left = compileLong(((ItemFunc) arg).arguments().get(0));
+            LongVal right = compileLong(((ItemFunc) arg).arguments().get(1));
+            if (left != null && right != null) {
+                char op = arg instanceof ItemFuncPlus ? '+' : (arg instanceof ItemFuncMinus ? '-' : '*');
+                return new LongArith(op, left, right);
+            }
+        }
+        return null;
+    }
+
+    private int columnIndex(Item arg) {
+        if (!(arg instanceof ItemField)) {
+            return -1;
+        }
+        Field field = ((ItemField) arg).getField();
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i) == field) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean fitsLong(BigInteger value) {
+        return value != null && value.bitLength() < 64;
+    }
+
+    private static boolean isInteger(FieldTypes type) {
+        switch (type) {
+            case MYSQL_TYPE_TINY:
+            case MYSQL_TYPE_SHORT:
+            case MYSQL_TYPE_INT24:
+            case MYSQL_TYPE_LONG:
+            case MYSQL_TYPE_LONGLONG:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /* the values of the same temporal type and scale are compared as bytes */
+    private static int temporalKind(Field field) {
+        switch (field.fieldType()) {
+            case MYSQL_TYPE_DATE:
+            case MYSQL_TYPE_NEWDATE:
+                return 1;
+            case MYSQL_TYPE_DATETIME:
+            case MYSQL_TYPE_TIMESTAMP:
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    private static boolean isSameTemporal(Field field1, Field field2) {
+        int kind = temporalKind(field1);
+        return kind != 0 && kind == temporalKind(field2) && field1.getDecimals() == field2.getDecimals();
+    }
+
+    /* the string constant written in the format of the column */
+    private static byte[] temporalConst(Field field, Item arg) {
+        if (arg.type() != Item.ItemType.STRING_ITEM) {
+            return null;
+        }
+        String value = arg.valStr();
+        int kind = temporalKind(field);
+        if ((kind == 1 && DATE_PATTERN.matcher(value).matches()) ||
+                (kind == 2 && field.getDecimals() == 0 && DATETIME_PATTERN.matcher(value).matches())) {
+            return value.getBytes();
+        }
+        return null;
+    }
+
+    private static boolean isCompare(Functype functype) {
+        switch (functype) {
+            case EQ_FUNC:
+            case EQUAL_FUNC:
+            case NE_FUNC:
+            case LT_FUNC:
+            case LE_FUNC:
+            case GT_FUNC:
+            case GE_FUNC:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Functype reverse(Functype functype) {
+        switch (functype) {
+            case LT_FUNC:
+                return Functype.GT_FUNC;
+            case LE_FUNC:
+                return Functype.GE_FUNC;
+            case GT_FUNC:
+                return Functype.LT_FUNC;
+            case GE_FUNC:
+                return Functype.LE_FUNC;
+            default:
+                return functype;
+        }
+    }
+
+    private static int compareResult(Functype functype, int cmp) {
+        boolean result;
+        switch (functype) {
+            case NE_FUNC:
+                result = cmp != 0;
+                break;
+            case LT_FUNC:
+                result = cmp < 0;
+                break;
+            case LE_FUNC:
+                result = cmp <= 0;
+                break;
+            case GT_FUNC:
+                result = cmp > 0;
+                break;
+            case GE_FUNC:
+                result = cmp >= 0;
+                break;
+            default:
+                result = cmp == 0;
+                break;
+        }
+        return result ? TRUE : FALSE;
+    }
+
+    private static int compareBytes(byte[] value1, byte[] value2) {
+        int length = Math.min(value1.length, value2.length);
+        for (int i = 0; i < length; i++) {
+            if (value1[i] != value2[i]) {
+                return (value1[i] & 0xff) - (value2[i] & 0xff);
+            }
+        }
+        return value1.length - value2.length;
+    }
+
+    private static long parseLong(byte[] value) {
+        int length = value.length;
+        if (length == 0 || length > 18) {
+            // may overflow, leave it to the Item
+            throw FALLBACK;
+        }
+        boolean negative = value[0] == '-';
+        int i = (negative || value[0] == '+') ? 1 : 0;
+        if (i == length) {
+            throw FALLBACK;
+        }
+        long result = 0;
+        for (; i < length; i++) {
+            int digit = value[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw FALLBACK;
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    private abstract static class Cond {
+        /* TRUE, FALSE or UNKNOWN */
+        abstract int eval(CompiledCondition c);
+    }
+
+    private abstract static class LongVal {
+        /* set c.nullValue */
+        abstract long val(CompiledCondition c);
+    }
+
+    private static final class ItemEval extends Cond {
+        private final Item item;
+
+        private ItemEval(Item item) {
+            this.item = item;
+        }
+
+        @Override
+        int eval(CompiledCondition c) {
+            c.initFields();
+            return item.valBool() ? TRUE : FALSE;
+        }
+    }
+
+    private static final class And extends Cond {
+        private final Cond[] conds;
+
+        private And(Cond[] conds) {
+            this.conds = conds;
+        }
+
+        @Override
+        int eval(CompiledCondition c) {
+            int result = TRUE;
+            for (Cond cond : conds) {
+                int value = cond.eval(c);
+                if (value == FALSE) {
+                    return FALSE;
+                } else if (value == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class Or extends Cond {
+        private final Cond[] conds;
+
+        private Or(Cond[] conds) {
+            this.conds = conds;
+        }
+
+        @Override
+        int eval(CompiledCondition c) {
+            int result = FALSE;
+            for (Cond cond : conds) {
+                int value = cond.eval(c);
+                if (value == TRUE) {
+                    return TRUE;
+                } else if (value == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class Not extends Cond {
+        private final Cond cond;
+
+        private Not(Cond cond) {
+            this.cond = cond;
+        }
+
+        @Override
+        int eval(CompiledCondition c) {
+            int value = cond.eval(c);
+            return value == UNKNOWN ? UNKNOWN : TRUE - value;
+        }
+    }
+
+    private static final class IsNull extends Cond {
+        private final int index;
+        private final boolean negated;
+
+        private IsNull(int index, boolean negated) {
+            this.index = index;
+            this.negated = negated;
+        }
+
+        @Override
+        int eval(CompiledCondition c) {
+            return (c.row.get(index) == null) != negated ? TRUE : FALSE;
+        }
+    }
+
+    private static final class LongCompare extends Cond {
+        private final Functype functype;
+        private final LongVal left;
+        private final LongVal right;
+
+        private LongCompare(Functype functype, LongVal left, LongVal right) {
+            this.functype = functype;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int eval(CompiledCondition c) {
+            long value1 = left.val(c);
+            boolean null1 = c.nullValue;
+            long value2 = right.val(c);
+            boolean null2 = c.nullValue;
+            if (null1 || null2) {
+                if (functype == Functype.EQUAL_FUNC) {
+                    return null1 && null2 ? TRUE : FALSE;
+                }
+                return UNKNOWN;
+            }
+            return compareResult(functype, value1 < value2 ? -1 : (value1 == value2 ? 0 : 1));
+        }
+    }
+
+    private static final class BytesCompare extends Cond {
+        private final Functype functype;
+        private final int leftIndex;
+        /* -1 if compared with the constant */
+        private final int rightIndex;
+        private final byte[] constant;
+
+        private BytesCompare(Functype functype, int leftIndex, int rightIndex, byte[] constant) {
+            this.functype = functype;
+            this.leftIndex = leftIndex;
+            this.rightIndex = rightIndex;
+            this.constant = constant;
+        }
+
+        @Override
+        int eval(CompiledCondition c) {
+            byte[] value1 = c.row.get(leftIndex);
+            byte[] value2 = rightIndex < 0 ? constant : c.row.get(rightIndex);
+            if (value1 == null || value2 == null) {
+                if (functype == Functype.EQUAL_FUNC) {
+                    return value1 == null && value2 == null ? TRUE : FALSE;
+                }
+                return UNKNOWN;
+            }
+            return compareResult(functype, compareBytes(value1, value2));
+        }
+    }
+
+    private static final class In extends Cond {
+        private final LongVal value;
+        private final Set<Long> values;
+        private final boolean hasNull;
+        private final boolean negated;
+
+        private In(LongVal value, Set<Long> values, boolean hasNull, boolean negated) {
+            this.value = value;
+            this.values = values;
+            this.hasNull = hasNull;
+            this.negated = negated;
+        }
+
+        @Override
+        int eval(CompiledCondition c) {
+            long v = value.val(c);
+            if (c.nullValue) {
+                return UNKNOWN;
+            }
+            if (values.contains(v)) {
+                return negated ? FALSE : TRUE;
+            }
+            if (hasNull) {
+                return UNKNOWN;
+            }
+            return negated ? TRUE : FALSE;
+        }
+    }
+
+    private static final class LongConst extends LongVal {
+        private final long value;
+
+        private LongConst(long value) {
+            this.value = value;
+        }
+
+        @Override
+        long val(CompiledCondition c) {
+            c.nullValue = false;
+            return value;
+        }
+    }
+
+    private static final class LongColumn extends LongVal {
+        private final int index;
+
+        private LongColumn(int index) {
+            this.index = index;
+        }
+
+        @Override
+        long val(CompiledCondition c) {
+            byte[] value = c.row.get(index);
+            if (c.nullValue = value == null) {
+                return 0;
+            }
+            return parseLong(value);
+        }
+    }
+
+    private static final class LongArith extends LongVal {
+        private final char op;
+        private final LongVal left;
+        private final LongVal right;
+
+        private LongArith(char op, LongVal left, LongVal right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        long val(CompiledCondition c) {
+            long value1 = left.val(c);
+            boolean isNull = c.nullValue;
+            long value2 = right.val(c);
+            if (c.nullValue = isNull || c.nullValue) {
+                return 0;
+            }
+            long result;
+            if (op == '+') {
+                result = value1 + value2;
+                if (((value1 ^ result) & (value2 ^ result)) < 0) {
+                    throw FALLBACK;
+                }
+            } else if (op == '-') {
+                result = value1 - value2;
+                if (((value1 ^ value2) & (value1 ^ result)) < 0) {
+                    throw FALLBACK;
+                }
+            } else {
+                result = value1 * value2;
+                if (value1 != 0 && (result / value1 != value2 || (value1 == -1 && value2 == Long.MIN_VALUE))) {
+                    throw FALLBACK;
+                }
+            }
+            return result;
+        }
+    }
+
+    /* the value can not be computed by the compiled condition */
+    private static final class Fallback extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Fallback() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class HandlerTool {
     private HandlerTool() {
@@ -39,18 +40,46 @@ public final class HandlerTool {
      * @param node
      */
     public static void terminateHandlerTree(final DMLResponseHandler node) {
+        terminateHandlerTree(node, null);
+    }
+
+    /**
+     * @param onTerminated run after all the handlers of the tree stop, the handlers with their own steps may be
+     *                     still running when they are terminated
+     */
+    public static void terminateHandlerTree(final DMLResponseHandler node, final Runnable onTerminated) {
         try {
             if (node == null)
                 return;
+            List<DMLResponseHandler> handlers = new ArrayList<>();
             List<DMLResponseHandler> merges = node.getMerges();
             for (DMLResponseHandler merge : merges) {
                 DMLResponseHandler currentHandler = merge;
                 while (currentHandler != node) {
                     currentHandler.terminate();
+                    handlers.add(currentHandler);
                     currentHandler = currentHandler.getNextHandler();
                 }
             }
             node.terminate();
+            handlers.add(node);
+            if (onTerminated == null) {
+                return;
+            }
+            // one more for the handlers not counted yet
+            final AtomicInteger running = new AtomicInteger(handlers.size() + 1);
+            Runnable countDown = new Runnable() {
+                @Override
+                public void run() {
+                    if (running.decrementAndGet() == 0) {
+                        onTerminated.run();
+                    }
+                }
+            };
+            for (DMLResponseHandler handler : handlers) {
+                handler.whenTerminated(countDown);
+            }
+            countDown.run();
         } catch (Exception e) {
             Logger.getLogger(HandlerTool.class).error("terminate node exception:", e);
         }
@@ -115,7 +144,9 @@ public final class HandlerTool {
         } else {
             ret = createFieldItem(sel, fields, startIndex);
         }
-        ret.fixFields();
+        // the field item is fixed by its field
+        if (!ret.isFixed())
+            ret.fixFields();
         return ret;
     }
 
@@ -133,6 +164,13 @@ public final class HandlerTool {
         FieldUtil.initFields(fields, bs);
     }
 
+    public static void initFields(List<Field> fields, RowBatch batch, int row) {
+        int size = fields.size();
+        for (int index = 0; index < size; index++) {
+            fields.get(index).setPtr(batch.getValue(row, index));
+        }
+    }
+
     public static List<byte[]> getItemListBytes(List<Item> items) {
         List<byte[]> ret = new ArrayList<>(items.size());
         for (Item item : items) {
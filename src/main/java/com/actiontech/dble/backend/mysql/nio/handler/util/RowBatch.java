@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.util;
+
+import com.actiontech.dble.backend.mysql.BufferUtil;
+import com.actiontech.dble.backend.mysql.MySQLMessage;
+import com.actiontech.dble.net.FrontendConnection;
+import com.actiontech.dble.net.mysql.MySQLPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * rows stored by columns: the values of all rows are in one byte array, the value of row r and column c is
+ * between offsets[r * fieldCount + c] and offsets[r * fieldCount + c + 1], the null values are marked in a bitmap.
+ * A batch is filled by one handler and passed to the next one by rowsResponse, it is not changed after that.
+ */
+public class RowBatch {
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final int INIT_ROWS = 16;
+    private static final byte NULL_MARK = (byte) 251;
+    private static final byte EMPTY_MARK = (byte) 0;
+
+    private final int fieldCount;
+    private final int capacity;
+    private byte[] data;
+    private int[] offsets;
+    private long[] nulls;
+    private int rowCount;
+
+    /* the compare values cached for one comparator, by row */
+    private RowDataComparator cmpComparator;
+    private List<byte[]>[] cmpValues;
+
+    public RowBatch(int fieldCount) {
+        this(fieldCount, DEFAULT_CAPACITY);
+    }
+
+    public RowBatch(int fieldCount, int capacity) {
+        this.fieldCount = fieldCount;
+        this.capacity = capacity;
+        int valueCount = fieldCount * Math.min(INIT_ROWS, capacity);
+        this.data = new byte[Math.max(64, valueCount * 8)];
+        this.offsets = new int[valueCount + 1];
+        this.nulls = new long[(valueCount + 63) >>> 6];
+    }
+
+    /**
+     * add a row from the row packet of the backend, the values are copied without the length of them
+     */
+    public void add(byte[] rowPacket) {
+        ensureRow();
+        MySQLMessage mm = new MySQLMessage(rowPacket);
+        mm.move(MySQLPacket.PACKET_HEADER_SIZE);
+        int valueIndex = rowCount * fieldCount;
+        for (int i = 0; i < fieldCount; i++, valueIndex++) {
+            long length = mm.readLength();
+            if (length == MySQLMessage.NULL_LENGTH) {
+                addNull(valueIndex);
+            } else {
+                addValue(valueIndex, rowPacket, mm.position(), (int) length);
+                mm.move((int) length);
+            }
+        }
+        rowCount++;
+    }
+
+    public void add(RowDataPacket row) {
+        ensureRow();
+        int valueIndex = rowCount * fieldCount;
+        for (int i = 0; i < fieldCount; i++, valueIndex++) {
+            byte[] value = row.getValue(i);
+            if (value == null) {
+                addNull(valueIndex);
+            } else {
+                addValue(valueIndex, value, 0, value.length);
+            }
+        }
+        rowCount++;
+    }
+
+    private void ensureRow() {
+        int valueCount = (rowCount + 1) * fieldCount;
+        if (valueCount + 1 > offsets.length) {
+            int newCount = Math.min(capacity, (rowCount + 1) << 1) * fieldCount;
+            offsets = Arrays.copyOf(offsets, newCount + 1);
+            nulls = Arrays.copyOf(nulls, (newCount + 63) >>> 6);
+        }
+    }
+
+    private void addNull(int valueIndex) {
+        nulls[valueIndex >>> 6] |= 1L << valueIndex;
+        offsets[valueIndex + 1] = offsets[valueIndex];
+    }
+
+    private void addValue(int valueIndex, byte[] src, int srcPos, int length) {
+        int start = offsets[valueIndex];
+        if (start + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length << 1, start + length));
+        }
+        System.arraycopy(src, srcPos, data, start, length);
+        offsets[valueIndex + 1] = start + length;
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    public boolean isFull() {
+        return rowCount == capacity;
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    public boolean isNull(int row, int column) {
+        int valueIndex = row * fieldCount + column;
+        return (nulls[valueIndex >>> 6] & (1L << valueIndex)) != 0;
+    }
+
+    public byte[] getValue(int row, int column) {
+        if (isNull(row, column)) {
+            return null;
+        }
+        int valueIndex = row * fieldCount + column;
+        return Arrays.copyOfRange(data, offsets[valueIndex], offsets[valueIndex + 1]);
+    }
+
+    /**
+     * convert the row back to a row packet
+     */
+    public RowDataPacket getRow(int row) {
+        RowDataPacket packet = new RowDataPacket(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            packet.add(getValue(row, i));
+        }
+        return packet;
+    }
+
+    /**
+     * write the row as a row packet into the buffer of the front connection, like RowDataPacket.write
+     */
+    public ByteBuffer write(int row, byte packetId, ByteBuffer bb, FrontendConnection c, boolean writeSocketIfFull) {
+        int valueIndex = row * fieldCount;
+        int size = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            int length = offsets[valueIndex + i + 1] - offsets[valueIndex + i];
+            size += length == 0 ? 1 : BufferUtil.getLength(length) + length;
+        }
+        bb = c.checkWriteBuffer(bb, MySQLPacket.PACKET_HEADER_SIZE, writeSocketIfFull);
+        BufferUtil.writeUB3(bb, size);
+        bb.put(packetId);
+        for (int i = 0; i < fieldCount; i++, valueIndex++) {
+            int start = offsets[valueIndex];
+            int length = offsets[valueIndex + 1] - start;
+            if (length == 0) {
+                bb = c.checkWriteBuffer(bb, 1, writeSocketIfFull);
+                bb.put(isNull(row, i) ? NULL_MARK : EMPTY_MARK);
+            } else {
+                bb = c.checkWriteBuffer(bb, BufferUtil.getLength(length), writeSocketIfFull);
+                BufferUtil.writeLength(bb, length);
+                bb = c.writeToBuffer(data, start, length, bb);
+            }
+        }
+        return bb;
+    }
+
+    List<byte[]> getCmpValue(RowDataComparator comparator, int row) {
+        return comparator == cmpComparator ? cmpValues[row] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    void cacheCmpValue(RowDataComparator comparator, int row, List<byte[]> cmpValue) {
+        if (comparator != cmpComparator) {
+            cmpComparator = comparator;
+            cmpValues = new List[rowCount];
+        }
+        cmpValues[row] = cmpValue;
+    }
+}
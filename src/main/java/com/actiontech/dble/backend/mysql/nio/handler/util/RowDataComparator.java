@@ -81,13 +81,38 @@ public class RowDataComparator implements Comparator<RowDataPacket> {
     @Override
     public int compare(RowDataPacket o1, RowDataPacket o2) {
         if (this.ascList != null && this.ascList.size() > 0) {
-            int cmpValue = cmp(o1, o2, 0);
+            int cmpValue = cmp(getCmpBytes(o1), getCmpBytes(o2), 0);
             return cmpValue;
         } else {
             return 0;
         }
     }
 
+    /**
+     * compare the rows in the batches without converting them to row packets
+     */
+    public int compare(RowBatch b1, int row1, RowBatch b2, int row2) {
+        if (this.ascList != null && this.ascList.size() > 0) {
+            return cmp(getCmpBytes(b1, row1), getCmpBytes(b2, row2), 0);
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * @return the key whose equality is the same as compare(o1, o2) == 0, it ignores the direction of the orders
+     */
+    public List<Object> getHashKey(RowDataPacket o) {
+        if (cmpFields == null)
+            return Collections.emptyList();
+        List<byte[]> bo = getCmpBytes(o);
+        List<Object> key = new ArrayList<>(bo.size());
+        for (int i = 0; i < bo.size(); i++) {
+            key.add(cmpFields.get(i).getHashKey(bo.get(i)));
+        }
+        return key;
+    }
+
     private List<byte[]> getCmpBytes(RowDataPacket o) {
         if (o.getCmpValue(this) == null) {
             HandlerTool.initFields(sourceFields, o.fieldValues);
@@ -97,9 +122,17 @@ public class RowDataComparator implements Comparator<RowDataPacket> {
         return o.getCmpValue(this);
     }
 
-    private int cmp(RowDataPacket o1, RowDataPacket o2, int index) {
-        List<byte[]> bo1 = getCmpBytes(o1);
-        List<byte[]> bo2 = getCmpBytes(o2);
+    private List<byte[]> getCmpBytes(RowBatch batch, int row) {
+        List<byte[]> bo = batch.getCmpValue(this, row);
+        if (bo == null) {
+            HandlerTool.initFields(sourceFields, batch, row);
+            bo = HandlerTool.getItemListBytes(cmpItems);
+            batch.cacheCmpValue(this, row, bo);
+        }
+        return bo;
+    }
+
+    private int cmp(List<byte[]> bo1, List<byte[]> bo2, int index) {
         boolean isAsc = ascList.get(index);
         Field field = cmpFields.get(index);
         byte[] b1 = bo1.get(index);
@@ -113,7 +146,7 @@ public class RowDataComparator implements Comparator<RowDataPacket> {
         if (rs != 0 || cmpFields.size() == (index + 1)) {
             return rs;
         } else {
-            return cmp(o1, o2, index + 1);
+            return cmp(bo1, bo2, index + 1);
         }
     }
 
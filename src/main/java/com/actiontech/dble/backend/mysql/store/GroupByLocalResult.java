@@ -17,15 +17,19 @@ import com.actiontech.dble.net.mysql.RowDataPacket;
 import com.actiontech.dble.plan.common.field.Field;
 import com.actiontech.dble.plan.common.item.function.sumfunc.Aggregator.AggregatorType;
 import com.actiontech.dble.plan.common.item.function.sumfunc.ItemSum;
-import com.actiontech.dble.util.RBTreeList;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * groupby is some part like distinct,but it should group by some value when add
  * a row
+ * <p>
+ * the groups in memory are found by the hash of the group by values, they are sorted only once
+ * when they are flushed into disk or when all rows have been added.
  */
 public class GroupByLocalResult extends LocalResult {
 
@@ -37,6 +41,10 @@ public class GroupByLocalResult extends LocalResult {
     private List<ItemSum> sumFunctions;
     private boolean isAllPushDown;
     private final List<ItemSum> sums;
+    /**
+     * group by values -> the row of the group in rows
+     */
+    private final Map<List<Object>, RowDataPacket> groups;
 
     /**
      * @param pool
@@ -58,7 +66,7 @@ public class GroupByLocalResult extends LocalResult {
         this.fieldPackets = fieldPackets;
         this.sumFunctions = sumFunctions;
         this.isAllPushDown = isAllPushDown;
-        this.rows = new RBTreeList<>(initialCapacity, groupCmp);
+        this.groups = new HashMap<>(initialCapacity);
         /* init item_sums */
         /*
       store the origin row fields,(already contains the item_sum fields in
@@ -82,16 +90,17 @@ public class GroupByLocalResult extends LocalResult {
         try {
             if (isClosed)
                 return;
-            int index = rows.indexOf(row);
+            List<Object> groupKey = groupCmp.getHashKey(row);
+            RowDataPacket oldRow = groups.get(groupKey);
             int incrementSize = 0;
-            if (index >= 0)/* found */ {
-                RowDataPacket oldRow = rows.get(index);
+            if (oldRow != null)/* found */ {
                 int oldRowSizeBefore = getRowMemory(oldRow);
                 onFoundRow(oldRow, row);
                 int oldRowSizeAfter = getRowMemory(oldRow);
                 incrementSize = oldRowSizeAfter - oldRowSizeBefore;
             } else {
                 onFirstGroupRow(row);
+                groups.put(groupKey, row);
                 rows.add(row);
                 rowCount++;
                 incrementSize = getRowMemory(row);
@@ -123,12 +132,37 @@ public class GroupByLocalResult extends LocalResult {
 
     @Override
     protected void doneOnlyMemory() {
+        groups.clear();
         Collections.sort(rows, this.groupCmp);
     }
 
     @Override
     protected void beforeFlushRows() {
-        // rbtree.toarray() is sorted,so do not need to sort again
+        // the rows in disk are merged by GroupResultDiskBuffer, it needs every chunk be sorted
+        Collections.sort(rows, this.groupCmp);
+        groups.clear();
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            groups.clear();
+            super.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            groups.clear();
+            super.clear();
+        } finally {
+            lock.unlock();
+        }
     }
 
     protected void onFoundRow(RowDataPacket oldRow, RowDataPacket row) {
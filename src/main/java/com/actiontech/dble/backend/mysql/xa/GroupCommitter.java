@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.xa;
+
+import com.actiontech.dble.log.alarm.AlarmCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * group commit of the XA log: the writers arrived while the log is being written join the next group,
+ * and the first of them writes the changes of the whole group by one write.
+ * Every writer gets the result of the write of its own group.
+ */
+final class GroupCommitter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupCommitter.class);
+
+    private final Writer writer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition waitWriting = lock.newCondition();
+    private boolean isWriting = false;
+    /**
+     * the writers arrived while the log is being written, they are written by the next leader together
+     */
+    private Group pendingGroup = new Group();
+
+    GroupCommitter(Writer writer) {
+        this.writer = writer;
+    }
+
+    boolean commit(String xaTxId) {
+        lock.lock();
+        try {
+            Group group = pendingGroup;
+            while (!group.isDone) {
+                if (isWriting) {
+                    // follower
+                    waitWriting.await();
+                    continue;
+                }
+                // leader, group is the pendingGroup, because it will be done before isWriting is false
+                isWriting = true;
+                pendingGroup = new Group();
+                lock.unlock();
+                boolean writeResult = false;
+                try {
+                    writeResult = writer.write(xaTxId);
+                } finally {
+                    lock.lock();
+                    group.result = writeResult;
+                    group.isDone = true;
+                    isWriting = false;
+                    // 1.wakeup follower to return 2.wake up waiting threads continue
+                    waitWriting.signalAll();
+                }
+            }
+            return group.result;
+        } catch (InterruptedException e) {
+            LOGGER.warn(AlarmCode.CORE_FILE_WRITE_WARN + "writeCheckpoint error, waiter XID is " + xaTxId, e);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Group {
+        private boolean isDone = false;
+        private boolean result = false;
+    }
+
+    interface Writer {
+        /**
+         * write all the changes made before it is called
+         *
+         * @param leaderId the xid of the writer which writes for the group
+         */
+        boolean write(String leaderId);
+    }
+}
@@ -15,16 +15,8 @@ import com.actiontech.dble.log.alarm.AlarmCode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 public final class XAStateLog {
@@ -43,14 +35,22 @@ public final class XAStateLog {
     }
 
     private static final Repository IN_MEMORY_REPOSITORY = new InMemoryRepository();
-    private static ReentrantLock lock = new ReentrantLock();
-    private static AtomicBoolean hasLeader = new AtomicBoolean(false);
-    private static volatile boolean isWriting = false;
-    private static Condition waitWriting = lock.newCondition();
-    private static ReentrantLock lockNum = new ReentrantLock();
-    private static AtomicInteger batchNum = new AtomicInteger(0);
-    private static Set<Long> waitSet = new CopyOnWriteArraySet<>();
-    private static ConcurrentMap<Long, Boolean> mapResult = new ConcurrentHashMap<>();
+    /**
+     * the changed entries are appended to the FileSystemRepository, the others are rewritten with all entries
+     */
+    private static final boolean APPEND_LOG = FILE_REPOSITORY instanceof FileSystemRepository;
+    private static final GroupCommitter GROUP_COMMITTER = new GroupCommitter(new GroupCommitter.Writer() {
+        @Override
+        public boolean write(String leaderId) {
+            return writeChanges(leaderId);
+        }
+    });
+    private static Set<String> changedIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /**
+     * the log must be rewritten before appending, it is compacted by the first write and after an append failure
+     */
+    private static volatile boolean needCheckpoint = true;
+    private static volatile boolean hasAppended = false;
 
     public static boolean saveXARecoveryLog(String xaTxId, TxState sessionState) {
         CoordinatorLogEntry coordinatorLogEntry = IN_MEMORY_REPOSITORY.get(xaTxId);
@@ -91,100 +91,81 @@ public final class XAStateLog {
         flushMemoryRepository(xaTxId, coordinatorLogEntry);
     }
 
+    /**
+     * make the changes of all entries durable, the leader writes the changes of all writers arrived while the
+     * previous write, so one fsync covers all of them.
+     */
     public static boolean writeCheckpoint(String xaTxId) {
-        lock.lock();
+        return GROUP_COMMITTER.commit(xaTxId);
+    }
+
+    private static boolean writeChanges(String xaTxId) {
+        if (!APPEND_LOG || needCheckpoint) {
+            return writeAllEntries(xaTxId);
+        }
+        List<CoordinatorLogEntry> logs = new ArrayList<>(changedIds.size());
+        ReentrantLock lockMap = ((InMemoryRepository) IN_MEMORY_REPOSITORY).getLock();
+        lockMap.lock();
         try {
-            while (isWriting) {
-                waitSet.add(Thread.currentThread().getId());
-                waitWriting.await();
+            for (Iterator<String> iterator = changedIds.iterator(); iterator.hasNext(); ) {
+                CoordinatorLogEntry coordinatorLogEntry = IN_MEMORY_REPOSITORY.get(iterator.next());
+                iterator.remove();
+                CoordinatorLogEntry log = coordinatorLogEntry == null ? null : coordinatorLogEntry.getDeepCopy();
+                if (log != null) {
+                    logs.add(log);
+                }
             }
-        } catch (InterruptedException e) {
-            LOGGER.warn(AlarmCode.CORE_FILE_WRITE_WARN + "writeCheckpoint error, waiter XID is " + xaTxId, e);
+        } catch (Exception e) {
+            LOGGER.warn(AlarmCode.CORE_FILE_WRITE_WARN + "logCollection deep copy error, leader Xid is:" + xaTxId, e);
+            needCheckpoint = true;
+            return false;
         } finally {
-            lock.unlock();
+            lockMap.unlock();
         }
-        lockNum.lock();
-        try {
-            batchNum.incrementAndGet();
-            mapResult.put(Thread.currentThread().getId(), false);
-        } finally {
-            lockNum.unlock();
+        if (((FileSystemRepository) FILE_REPOSITORY).append(logs)) {
+            hasAppended = hasAppended || !logs.isEmpty();
+            return true;
         }
-        if (hasLeader.compareAndSet(false, true)) { // leader thread
-            waitSet.remove(Thread.currentThread().getId());
-            while (waitSet.size() > 0) {
-                //  make all wait thread all became leader or  follower
-                Thread.yield();
-            }
-            lockNum.lock();
-            try {
-                isWriting = true;
-                boolean writeResult = false;
-                // copy memoryRepository
-                List<CoordinatorLogEntry> logs = new ArrayList<>();
-                ReentrantLock lockMap = ((InMemoryRepository) IN_MEMORY_REPOSITORY).getLock();
-                lockMap.lock();
-                try {
-                    Collection<CoordinatorLogEntry> logCollection = IN_MEMORY_REPOSITORY.getAllCoordinatorLogEntries();
-                    for (CoordinatorLogEntry coordinatorLogEntry : logCollection) {
-                        CoordinatorLogEntry log = coordinatorLogEntry.getDeepCopy();
-                        if (log != null) {
-                            logs.add(log);
-                        }
-                    }
-                } catch (Exception e) {
-                    LOGGER.warn(AlarmCode.CORE_FILE_WRITE_WARN + "logCollection deep copy error, leader Xid is:" + xaTxId, e);
-                    logs.clear();
-                } finally {
-                    lockMap.unlock();
-                }
-                if (!logs.isEmpty()) {
-                    writeResult = FILE_REPOSITORY.writeCheckpoint(logs);
-                }
-                while (batchNum.get() != 1) {
-                    Thread.yield();
-                }
-                batchNum.decrementAndGet();
-                hasLeader.set(false);
-                lock.lock();
-                try {
-                    if (writeResult) {
-                        for (Long aLong : mapResult.keySet()) {
-                            mapResult.put(aLong, true);
-                        }
-                    }
-                    isWriting = false;
-                    mapResult.remove(Thread.currentThread().getId());
-                    // 1.wakeup follower to return 2.wake up waiting threads continue
-                    waitWriting.signalAll();
-                    return writeResult;
-                } finally {
-                    lock.unlock();
+        // the entries of the broken append are written by the checkpoint
+        needCheckpoint = true;
+        return false;
+    }
+
+    private static boolean writeAllEntries(String xaTxId) {
+        // the entries changed after copying are written by the next write
+        changedIds.clear();
+        // copy memoryRepository
+        List<CoordinatorLogEntry> logs = new ArrayList<>();
+        ReentrantLock lockMap = ((InMemoryRepository) IN_MEMORY_REPOSITORY).getLock();
+        lockMap.lock();
+        try {
+            Collection<CoordinatorLogEntry> logCollection = IN_MEMORY_REPOSITORY.getAllCoordinatorLogEntries();
+            for (CoordinatorLogEntry coordinatorLogEntry : logCollection) {
+                CoordinatorLogEntry log = coordinatorLogEntry.getDeepCopy();
+                if (log != null) {
+                    logs.add(log);
                 }
-            } finally {
-                lockNum.unlock();
-            }
-        } else { // follower thread
-            lock.lock();
-            try {
-                waitSet.remove(Thread.currentThread().getId());
-                batchNum.decrementAndGet();
-                // the follower's status has copied and ready to write
-                waitWriting.await();
-                boolean result = mapResult.get(Thread.currentThread().getId());
-                mapResult.remove(Thread.currentThread().getId());
-                return result;
-            } catch (InterruptedException e) {
-                LOGGER.warn(AlarmCode.CORE_FILE_WRITE_WARN + "writeCheckpoint error, follower Xid is:" + xaTxId, e);
-                return false;
-            } finally {
-                lock.unlock();
             }
+        } catch (Exception e) {
+            LOGGER.warn(AlarmCode.CORE_FILE_WRITE_WARN + "logCollection deep copy error, leader Xid is:" + xaTxId, e);
+            return false;
+        } finally {
+            lockMap.unlock();
+        }
+        if (logs.isEmpty() && !APPEND_LOG) {
+            return false;
         }
+        boolean writeResult = FILE_REPOSITORY.writeCheckpoint(logs);
+        if (writeResult) {
+            needCheckpoint = false;
+            hasAppended = false;
+        }
+        return writeResult;
     }
 
     public static void flushMemoryRepository(String xaTxId, CoordinatorLogEntry coordinatorLogEntry) {
         IN_MEMORY_REPOSITORY.put(xaTxId, coordinatorLogEntry);
+        changedIds.add(xaTxId);
     }
 
     public static void initRecoveryLog(String xaTxId, int position, MySQLConnection conn) {
@@ -200,5 +181,10 @@ public final class XAStateLog {
                 IN_MEMORY_REPOSITORY.remove(entry.getId());
             }
         }
+        if (APPEND_LOG && hasAppended) {
+            // compact the log, the completed entries are removed from it
+            needCheckpoint = true;
+            writeCheckpoint("compaction");
+        }
     }
 }
@@ -24,12 +24,17 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.CRC32;
 
 /**
  * Created by zhangchao on 2016/10/13.
+ * <p>
+ * every line of the log is an entry followed by its crc32, the last line of an entry is its latest state.
+ * the changed entries are appended by append(), and writeCheckpoint() rewrites the log with the live entries only.
  */
 public class FileSystemRepository implements Repository {
     public static final Logger LOGGER = LoggerFactory.getLogger(FileSystemRepository.class);
+    private static final char CHECKSUM_SEPARATOR = ' ';
     private VersionedFile file;
     private FileChannel rwChannel = null;
 
@@ -74,7 +79,7 @@ public class FileSystemRepository implements Repository {
 
     private void write(CoordinatorLogEntry coordinatorLogEntry,
                        boolean flushImmediately) throws IOException {
-        String str = Serializer.toJson(coordinatorLogEntry);
+        String str = toLogLine(coordinatorLogEntry);
         byte[] buffer = str.getBytes();
         ByteBuffer buff = ByteBuffer.wrap(buffer);
         writeToFile(buff, flushImmediately);
@@ -82,7 +87,67 @@ public class FileSystemRepository implements Repository {
 
     private synchronized void writeToFile(ByteBuffer buff, boolean force)
             throws IOException {
-        rwChannel.write(buff);
+        while (buff.hasRemaining()) {
+            rwChannel.write(buff);
+        }
+        if (force) {
+            rwChannel.force(false);
+        }
+    }
+
+    /**
+     * append the entries to the log and force them into the disk by one write
+     *
+     * @return false if the log must be rewritten by writeCheckpoint
+     */
+    public boolean append(Collection<CoordinatorLogEntry> entries) {
+        if (entries.isEmpty()) {
+            return true;
+        }
+        try {
+            initChannelIfNecessary();
+            StringBuilder lines = new StringBuilder(entries.size() * 600);
+            for (CoordinatorLogEntry coordinatorLogEntry : entries) {
+                lines.append(toLogLine(coordinatorLogEntry));
+            }
+            writeToFile(ByteBuffer.wrap(lines.toString().getBytes()), true);
+            return true;
+        } catch (Exception e) {
+            LOGGER.warn(AlarmCode.CORE_FILE_WRITE_WARN + "Failed to append log", e);
+            return false;
+        }
+    }
+
+    public static String toLogLine(CoordinatorLogEntry coordinatorLogEntry) {
+        String json = Serializer.toJson(coordinatorLogEntry).trim();
+        return json + CHECKSUM_SEPARATOR + Long.toHexString(checksum(json)) + Serializer.LINE_SEPARATOR;
+    }
+
+    /**
+     * @return null if the checksum of the line is wrong, which is left by a write not finished
+     */
+    public static CoordinatorLogEntry fromLogLine(String line) throws DeserializationException {
+        String json = line.trim();
+        int end = json.lastIndexOf('}');
+        if (end >= 0 && end < json.length() - 1) {
+            String checksum = json.substring(end + 1).trim();
+            json = json.substring(0, end + 1);
+            try {
+                if (Long.parseLong(checksum, 16) != checksum(json)) {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        // the line written without checksum by the old version
+        return Deserializer.fromJson(json);
+    }
+
+    private static long checksum(String json) {
+        CRC32 crc = new CRC32();
+        crc.update(json.getBytes());
+        return crc.getValue();
     }
 
     @Override
@@ -130,9 +195,11 @@ public class FileSystemRepository implements Repository {
         try {
             String line;
             while ((line = br.readLine()) != null) {
-                CoordinatorLogEntry coordinatorLogEntry = deserialize(line);
-                coordinatorLogEntries.put(coordinatorLogEntry.getId(),
-                        coordinatorLogEntry);
+                CoordinatorLogEntry coordinatorLogEntry = readLogLine(line);
+                if (coordinatorLogEntry != null) {
+                    coordinatorLogEntries.put(coordinatorLogEntry.getId(),
+                            coordinatorLogEntry);
+                }
             }
 
         } catch (EOFException unexpectedEOF) {
@@ -145,10 +212,27 @@ public class FileSystemRepository implements Repository {
                             "Unexpected EOF - logfile not closed properly last time?",
                     unexpectedEOF);
             // merely return what was read so far...
+        }
+        return coordinatorLogEntries;
+    }
+
+    /**
+     * the broken line is skipped, the entry may be appended again by the following lines
+     */
+    private static CoordinatorLogEntry readLogLine(String line) {
+        if (line.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            CoordinatorLogEntry coordinatorLogEntry = deserialize(line);
+            if (coordinatorLogEntry == null) {
+                LOGGER.warn(AlarmCode.CORE_FILE_WRITE_WARN + "Wrong checksum, ignore the line: " + line);
+            }
+            return coordinatorLogEntry;
         } catch (DeserializationException unexpectedEOF) {
             LOGGER.warn(AlarmCode.CORE_FILE_WRITE_WARN + "Unexpected EOF - logfile not closed properly last time? " + unexpectedEOF);
+            return null;
         }
-        return coordinatorLogEntries;
     }
 
     private static void closeSilently(BufferedReader fis) {
@@ -162,7 +246,7 @@ public class FileSystemRepository implements Repository {
 
     private static CoordinatorLogEntry deserialize(String line)
             throws DeserializationException {
-        return Deserializer.fromJson(line);
+        return fromLogLine(line);
     }
 
     @Override
@@ -5,11 +5,13 @@
 
 package com.actiontech.dble.buffer;
 
+import com.actiontech.dble.memory.unsafe.Platform;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import sun.nio.ch.DirectBuffer;
 
 import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -25,6 +27,10 @@ public class DirectByteBufferPool implements BufferPool {
     private static final Logger LOGGER = LoggerFactory.getLogger(DirectByteBufferPool.class);
     public static final String LOCAL_BUF_THREAD_PREX = "$_";
     private ByteBufferPage[] allPages;
+    /**
+     * page buffer->page index, read only after construction
+     */
+    private final Map<ByteBuffer, Integer> pageIndex;
     private final int chunkSize;
     // private int prevAllocatedPage = 0;
     private AtomicInteger prevAllocatedPage;
@@ -41,8 +47,11 @@ public class DirectByteBufferPool implements BufferPool {
         this.pageSize = pageSize;
         this.pageCount = pageCount;
         prevAllocatedPage = new AtomicInteger(0);
+        pageIndex = new IdentityHashMap<>(pageCount);
         for (int i = 0; i < pageCount; i++) {
-            allPages[i] = new ByteBufferPage(ByteBuffer.allocateDirect(pageSize), chunkSize);
+            ByteBuffer pageBuf = ByteBuffer.allocateDirect(pageSize);
+            allPages[i] = new ByteBufferPage(pageBuf, chunkSize);
+            pageIndex.put(pageBuf, i);
         }
         memoryUsage = new ConcurrentHashMap<>();
     }
@@ -71,11 +80,7 @@ public class DirectByteBufferPool implements BufferPool {
 
     public ByteBuffer allocate(int size) {
         final int theChunkCount = size / chunkSize + (size % chunkSize == 0 ? 0 : 1);
-        int selectedPage = prevAllocatedPage.incrementAndGet() % allPages.length;
-        ByteBuffer byteBuf = allocateBuffer(theChunkCount, selectedPage, allPages.length);
-        if (byteBuf == null) {
-            byteBuf = allocateBuffer(theChunkCount, 0, selectedPage);
-        }
+        ByteBuffer byteBuf = allocateChunks(theChunkCount);
         final long threadId = Thread.currentThread().getId();
 
         if (byteBuf != null) {
@@ -93,23 +98,14 @@ public class DirectByteBufferPool implements BufferPool {
     }
 
     public void recycle(ByteBuffer theBuf) {
-        if (!(theBuf instanceof DirectBuffer)) {
+        if (!theBuf.isDirect()) {
             theBuf.clear();
             return;
         }
 
         final long size = theBuf.capacity();
 
-        boolean recycled = false;
-        DirectBuffer thisNavBuf = (DirectBuffer) theBuf;
-        int chunkCount = theBuf.capacity() / chunkSize;
-        DirectBuffer parentBuf = (DirectBuffer) thisNavBuf.attachment();
-        int startChunk = (int) ((thisNavBuf.address() - parentBuf.address()) / this.chunkSize);
-        for (ByteBufferPage allPage : allPages) {
-            if ((recycled = allPage.recycleBuffer((ByteBuffer) parentBuf, startChunk, chunkCount))) {
-                break;
-            }
-        }
+        boolean recycled = recycleChunks(theBuf);
         final long threadId = Thread.currentThread().getId();
 
         if (memoryUsage.containsKey(threadId)) {
@@ -120,6 +116,69 @@ public class DirectByteBufferPool implements BufferPool {
         }
     }
 
+    /**
+     * allocate continuous chunks from the pages without any accounting
+     *
+     * @param theChunkCount
+     * @return null if no page has enough free chunks
+     */
+    ByteBuffer allocateChunks(int theChunkCount) {
+        int selectedPage = prevAllocatedPage.incrementAndGet() % allPages.length;
+        ByteBuffer byteBuf = allocateBuffer(theChunkCount, selectedPage, allPages.length);
+        if (byteBuf == null) {
+            byteBuf = allocateBuffer(theChunkCount, 0, selectedPage);
+        }
+        return byteBuf;
+    }
+
+    /**
+     * give the chunks of a direct buffer back to its page without any accounting
+     *
+     * @param theBuf
+     * @return false if the buffer is not allocated from this pool
+     */
+    boolean recycleChunks(ByteBuffer theBuf) {
+        Integer page = pageOf(theBuf);
+        if (page == null) {
+            return false;
+        }
+        ByteBuffer parentBuf = (ByteBuffer) Platform.directBufferAttachment(theBuf);
+        int chunkCount = theBuf.capacity() / chunkSize;
+        return allPages[page].recycleBuffer(parentBuf, startChunkOf(theBuf, parentBuf), chunkCount);
+    }
+
+    /**
+     * the global index of the first chunk of a direct buffer, counted over all pages
+     *
+     * @param theBuf
+     * @return -1 if the buffer is not allocated from this pool
+     */
+    int chunkIndexOf(ByteBuffer theBuf) {
+        Integer page = pageOf(theBuf);
+        if (page == null) {
+            return -1;
+        }
+        ByteBuffer parentBuf = (ByteBuffer) Platform.directBufferAttachment(theBuf);
+        return page * getChunksPerPage() + startChunkOf(theBuf, parentBuf);
+    }
+
+    private Integer pageOf(ByteBuffer theBuf) {
+        Object parentBuf = Platform.directBufferAttachment(theBuf);
+        return parentBuf == null ? null : pageIndex.get(parentBuf);
+    }
+
+    private int startChunkOf(ByteBuffer theBuf, ByteBuffer parentBuf) {
+        return (int) ((Platform.directBufferAddress(theBuf) - Platform.directBufferAddress(parentBuf)) / this.chunkSize);
+    }
+
+    int getChunksPerPage() {
+        return pageSize / chunkSize;
+    }
+
+    int getPageCount() {
+        return pageCount;
+    }
+
     private ByteBuffer allocateBuffer(int theChunkCount, int startPage, int endPage) {
         for (int i = startPage; i < endPage; i++) {
             ByteBuffer buffer = allPages[i].allocateChunk(theChunkCount);
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.buffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * ThreadArenaBufferPool
+ * <p>
+ * Every long-lived NIO reactor/business thread owns an arena which caches chunks of a few size
+ * classes (1, 2, 4, 8 chunks), so its allocate and recycle never touch the shared pages or a shared
+ * counter. A buffer recycled by another thread goes back to its owner through the owner's lock-free
+ * return queue. The other threads share one arena without cache, they and the requests which are
+ * larger than the biggest size class use the shared pages directly.
+ */
+public class ThreadArenaBufferPool implements BufferPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThreadArenaBufferPool.class);
+    private static final int SIZE_CLASS_COUNT = 4;
+    /**
+     * the max bytes an arena keeps idle for one size class
+     */
+    private static final int MAX_CACHED_BYTES_PER_CLASS = 256 * 1024;
+    /**
+     * the usage of the threads without their own arena is shown by this id, no thread has it
+     */
+    static final long SHARED_ARENA_ID = 0L;
+
+    private final DirectByteBufferPool shared;
+    private final int chunkSize;
+    private final int maxArenaChunks;
+    private final int[] maxCachedCount;
+    private final String[] cachingThreadPrefixes;
+    /**
+     * global chunk index->the arena which the buffer starting with this chunk was allocated by
+     */
+    private final AtomicReferenceArray<Arena> owners;
+    /**
+     * thread ID->arena of the caching threads, the threads of the fixed pools
+     */
+    private final ConcurrentMap<Long, Arena> arenas = new ConcurrentHashMap<>();
+    /**
+     * the arena of the other threads, the threads of the cached pools come and go, so they are not kept
+     */
+    private final Arena sharedArena = new Arena(null, false);
+    private final ThreadLocal<Arena> localArena = new ThreadLocal<Arena>() {
+        @Override
+        protected Arena initialValue() {
+            Thread thread = Thread.currentThread();
+            if (!isCachingThread(thread)) {
+                return sharedArena;
+            }
+            // a new caching thread may replace a dead one
+            reclaimDeadArenas();
+            Arena arena = new Arena(thread, true);
+            arenas.put(thread.getId(), arena);
+            return arena;
+        }
+    };
+
+    /**
+     * @param pageSize              page size
+     * @param chunkSize             chunk size
+     * @param pageCount             page count
+     * @param cachingThreadPrefixes the name prefixes of the long-lived threads whose arena caches chunks
+     */
+    public ThreadArenaBufferPool(int pageSize, short chunkSize, short pageCount, String... cachingThreadPrefixes) {
+        this.shared = new DirectByteBufferPool(pageSize, chunkSize, pageCount);
+        this.chunkSize = chunkSize;
+        this.maxArenaChunks = 1 << (SIZE_CLASS_COUNT - 1);
+        this.maxCachedCount = new int[SIZE_CLASS_COUNT];
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+            maxCachedCount[i] = Math.max(1, MAX_CACHED_BYTES_PER_CLASS / (chunkSize << i));
+        }
+        this.cachingThreadPrefixes = cachingThreadPrefixes;
+        this.owners = new AtomicReferenceArray<>(shared.getChunksPerPage() * shared.getPageCount());
+    }
+
+    private boolean isCachingThread(Thread thread) {
+        String name = thread.getName();
+        for (String prefix : cachingThreadPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ByteBuffer allocate() {
+        return allocate(chunkSize);
+    }
+
+    @Override
+    public ByteBuffer allocate(int size) {
+        final int theChunkCount = size / chunkSize + (size % chunkSize == 0 ? 0 : 1);
+        Arena arena = localArena.get();
+        ByteBuffer byteBuf = null;
+        if (arena.caching && theChunkCount <= maxArenaChunks) {
+            byteBuf = arena.allocate(sizeClassOf(theChunkCount));
+        }
+        if (byteBuf == null) {
+            byteBuf = shared.allocateChunks(theChunkCount);
+            if (byteBuf == null) {
+                return ByteBuffer.allocate(size);
+            }
+            owners.set(shared.chunkIndexOf(byteBuf), arena);
+            arena.usage.addAndGet(byteBuf.capacity());
+        }
+        return byteBuf;
+    }
+
+    @Override
+    public void recycle(ByteBuffer theBuf) {
+        if (!theBuf.isDirect()) {
+            theBuf.clear();
+            return;
+        }
+        int index = shared.chunkIndexOf(theBuf);
+        Arena owner = index < 0 ? null : owners.get(index);
+        if (owner == null) {
+            LOGGER.info("warning ,not recycled buffer " + theBuf);
+            return;
+        }
+        int capacity = theBuf.capacity();
+        if (!owner.caching || owner.retired || !isSizeClass(capacity / chunkSize)) {
+            release(theBuf, index);
+        } else if (owner.thread == Thread.currentThread()) {
+            owner.cache(theBuf);
+        } else {
+            // the usage must be decreased after the offer, see reclaimDeadArenas
+            owner.returned.offer(theBuf);
+        }
+        owner.usage.addAndGet(-capacity);
+    }
+
+    private void release(ByteBuffer theBuf, int index) {
+        owners.set(index, null);
+        if (!shared.recycleChunks(theBuf)) {
+            LOGGER.info("warning ,not recycled buffer " + theBuf);
+        }
+    }
+
+    private boolean isSizeClass(int theChunkCount) {
+        return theChunkCount <= maxArenaChunks && Integer.bitCount(theChunkCount) == 1;
+    }
+
+    private static int sizeClassOf(int theChunkCount) {
+        return theChunkCount <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(theChunkCount - 1);
+    }
+
+    /**
+     * give the chunks held by the arenas of dead threads back to the shared pages
+     */
+    private synchronized void reclaimDeadArenas() {
+        Iterator<Arena> iterator = arenas.values().iterator();
+        while (iterator.hasNext()) {
+            Arena arena = iterator.next();
+            if (arena.thread.isAlive()) {
+                continue;
+            }
+            arena.retired = true;
+            // read the usage before draining: a recycler offers the buffer before decreasing the usage
+            boolean idle = arena.usage.get() == 0;
+            arena.drainReturned();
+            arena.releaseAll();
+            if (idle) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public long capacity() {
+        return shared.capacity();
+    }
+
+    @Override
+    public long size() {
+        reclaimDeadArenas();
+        long cached = 0L;
+        for (Arena arena : arenas.values()) {
+            cached += arena.cachedBytes.get();
+        }
+        return shared.size() + cached;
+    }
+
+    @Override
+    public int getSharedOptsCount() {
+        return 0;
+    }
+
+    @Override
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public ConcurrentMap<Long, Long> getNetDirectMemoryUsage() {
+        reclaimDeadArenas();
+        ConcurrentMap<Long, Long> memoryUsage = new ConcurrentHashMap<>();
+        memoryUsage.put(SHARED_ARENA_ID, sharedArena.usage.get());
+        for (Map.Entry<Long, Arena> entry : arenas.entrySet()) {
+            memoryUsage.put(entry.getKey(), entry.getValue().usage.get());
+        }
+        return memoryUsage;
+    }
+
+    int getArenaCount() {
+        return arenas.size();
+    }
+
+    private final class Arena {
+        /**
+         * null for the shared arena
+         */
+        private final Thread thread;
+        private final boolean caching;
+        /**
+         * the bytes allocated by this thread and not recycled yet
+         */
+        private final AtomicLong usage = new AtomicLong(0L);
+        /**
+         * buffers recycled by the other threads
+         */
+        private final ConcurrentLinkedQueue<ByteBuffer> returned = new ConcurrentLinkedQueue<>();
+        /**
+         * only accessed by the owner thread
+         */
+        private final ArrayDeque<ByteBuffer>[] free;
+        private final AtomicLong cachedBytes = new AtomicLong(0L);
+        private volatile boolean retired = false;
+
+        @SuppressWarnings("unchecked")
+        Arena(Thread thread, boolean caching) {
+            this.thread = thread;
+            this.caching = caching;
+            this.free = new ArrayDeque[caching ? SIZE_CLASS_COUNT : 0];
+            for (int i = 0; i < free.length; i++) {
+                free[i] = new ArrayDeque<>(maxCachedCount[i]);
+            }
+        }
+
+        ByteBuffer allocate(int sizeClass) {
+            ByteBuffer byteBuf = free[sizeClass].pollLast();
+            if (byteBuf == null && !returned.isEmpty()) {
+                drainReturned();
+                byteBuf = free[sizeClass].pollLast();
+            }
+            if (byteBuf == null) {
+                byteBuf = shared.allocateChunks(1 << sizeClass);
+                if (byteBuf == null) {
+                    return null;
+                }
+                owners.set(shared.chunkIndexOf(byteBuf), this);
+            } else {
+                cachedBytes.addAndGet(-byteBuf.capacity());
+                byteBuf.clear();
+            }
+            usage.addAndGet(byteBuf.capacity());
+            return byteBuf;
+        }
+
+        void cache(ByteBuffer byteBuf) {
+            int sizeClass = sizeClassOf(byteBuf.capacity() / chunkSize);
+            if (free[sizeClass].size() < maxCachedCount[sizeClass]) {
+                free[sizeClass].offerLast(byteBuf);
+                cachedBytes.addAndGet(byteBuf.capacity());
+            } else {
+                release(byteBuf, shared.chunkIndexOf(byteBuf));
+            }
+        }
+
+        void drainReturned() {
+            ByteBuffer byteBuf;
+            while ((byteBuf = returned.poll()) != null) {
+                if (retired) {
+                    release(byteBuf, shared.chunkIndexOf(byteBuf));
+                } else {
+                    cache(byteBuf);
+                }
+            }
+        }
+
+        void releaseAll() {
+            for (ArrayDeque<ByteBuffer> queue : free) {
+                ByteBuffer byteBuf;
+                while ((byteBuf = queue.pollLast()) != null) {
+                    release(byteBuf, shared.chunkIndexOf(byteBuf));
+                }
+            }
+            cachedBytes.set(0L);
+        }
+    }
+}
@@ -17,6 +17,8 @@ public class CacheStatic {
     private long accessTimes;
     private long putTimes;
     private long hitTimes;
+    /* the items evicted by the size limit or expired */
+    private long evictTimes;
     private long lastAccessTime;
     private long lastPutTime;
 
@@ -84,6 +86,18 @@ public class CacheStatic {
         this.lastPutTime = System.currentTimeMillis();
     }
 
+    public long getEvictTimes() {
+        return evictTimes;
+    }
+
+    public void setEvictTimes(long evictTimes) {
+        this.evictTimes = evictTimes;
+    }
+
+    public void incEvictTimes() {
+        this.evictTimes++;
+    }
+
     public long getLastPutTime() {
         return lastPutTime;
     }
@@ -108,6 +122,7 @@ public class CacheStatic {
         this.lastPutTime = 0;
         this.memorySize = 0;
         this.putTimes = 0;
+        this.evictTimes = 0;
 
     }
 
@@ -115,7 +130,7 @@ public class CacheStatic {
     public String toString() {
         return "CacheStatic [memorySize=" + memorySize + ", itemSize=" +
                 itemSize + ", accessTimes=" + accessTimes + ", putTimes=" +
-                putTimes + ", hitTimes=" + hitTimes + ", lastAccesTime=" +
+                putTimes + ", hitTimes=" + hitTimes + ", evictTimes=" + evictTimes + ", lastAccesTime=" +
                 lastAccessTime + ", lastPutTime=" + lastPutTime + "]";
     }
 
@@ -109,6 +109,7 @@ public class DefaultLayedCachePool implements LayerCachePool {
             cacheStatic.setHitTimes(cacheStatic.getHitTimes() + singleStatic.getHitTimes());
             cacheStatic.setAccessTimes(cacheStatic.getAccessTimes() + singleStatic.getAccessTimes());
             cacheStatic.setPutTimes(cacheStatic.getPutTimes() + singleStatic.getPutTimes());
+            cacheStatic.setEvictTimes(cacheStatic.getEvictTimes() + singleStatic.getEvictTimes());
             if (cacheStatic.getLastAccessTime() < singleStatic.getLastAccessTime()) {
                 cacheStatic.setLastAccessTime(singleStatic.getLastAccessTime());
             }
@@ -8,7 +8,9 @@ package com.actiontech.dble.cache.impl;
 import com.actiontech.dble.cache.CachePool;
 import com.actiontech.dble.cache.CacheStatic;
 import net.sf.ehcache.Cache;
+import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,7 +31,18 @@ public class EnchachePool implements CachePool {
         this.name = name;
         this.maxSize = maxSize;
         cacheStatistics.setMaxSize(this.getMaxSize());
+        // the items thrown out by maxEntriesLocalHeap or the expiry, to tell which limit is too small
+        enCache.getCacheEventNotificationService().registerListener(new CacheEventListenerAdapter() {
+            @Override
+            public void notifyElementEvicted(Ehcache cache, Element element) {
+                cacheStatistics.incEvictTimes();
+            }
 
+            @Override
+            public void notifyElementExpired(Ehcache cache, Element element) {
+                cacheStatistics.incEvictTimes();
+            }
+        });
     }
 
     @Override
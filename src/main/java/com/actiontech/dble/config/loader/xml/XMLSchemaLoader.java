@@ -542,6 +542,13 @@ public class XMLSchemaLoader implements SchemaLoader {
              * 4. balance="3", read will be send to all readHost
              */
             final int balance = Integer.parseInt(element.getAttribute("balance"));
+            /**
+             * how to select one of the hosts for read
+             * 0 random by the weight
+             * 1 the less load of two random hosts, by the response time, the active connections and the slave delay
+             */
+            String balanceTypeStr = element.getAttribute("balanceType");
+            final int balanceType = balanceTypeStr.equals("") ? PhysicalDBPool.BALANCE_TYPE_RANDOM : Integer.parseInt(balanceTypeStr);
             /**
              * switchType
              * -1 No switch
@@ -585,6 +592,7 @@ public class XMLSchemaLoader implements SchemaLoader {
             hostConf.setMaxCon(maxCon);
             hostConf.setMinCon(minCon);
             hostConf.setBalance(balance);
+            hostConf.setBalanceType(balanceType);
             hostConf.setHearbeatSQL(heartbeatSQL);
             dataHosts.put(hostConf.getName(), hostConf);
         }
@@ -29,6 +29,8 @@ public class DataHost implements Named {
 
     @XmlAttribute(required = true)
     protected Integer balance;
+    @XmlAttribute
+    protected Integer balanceType;
     @XmlAttribute(required = true)
     protected Integer maxCon;
     @XmlAttribute(required = true)
@@ -97,6 +99,14 @@ public class DataHost implements Named {
         this.balance = balance;
     }
 
+    public Integer getBalanceType() {
+        return balanceType;
+    }
+
+    public void setBalanceType(Integer balanceType) {
+        this.balanceType = balanceType;
+    }
+
 
     public Integer getSwitchType() {
         return switchType;
@@ -127,6 +137,8 @@ public class DataHost implements Named {
     public String toString() {
         String builder = "DataHost [balance=" +
                 balance +
+                ", balanceType=" +
+                balanceType +
                 ", maxCon=" +
                 maxCon +
                 ", minCon=" +
@@ -27,6 +27,7 @@ public class DataHostConfig {
     private int maxCon = 128;
     private int minCon = 10;
     private int balance = PhysicalDBPool.BALANCE_NONE;
+    private int balanceType = PhysicalDBPool.BALANCE_TYPE_RANDOM;
     private final DBHostConfig[] writeHosts;
     private final Map<Integer, DBHostConfig[]> readHosts;
     private String hearbeatSQL;
@@ -92,6 +93,14 @@ public class DataHostConfig {
         this.balance = balance;
     }
 
+    public int getBalanceType() {
+        return balanceType;
+    }
+
+    public void setBalanceType(int balanceType) {
+        this.balanceType = balanceType;
+    }
+
     public DBHostConfig[] getWriteHosts() {
         return writeHosts;
     }
@@ -23,6 +23,8 @@ public final class SystemConfig {
     public static final int SEQUENCE_HANDLER_LOCAL_TIME = 2;
     public static final int SEQUENCE_HANDLER_ZK_DISTRIBUTED = 3;
     public static final int SEQUENCE_HANDLER_ZK_GLOBAL_INCREMENT = 4;
+    public static final int BUFFER_POOL_TYPE_SHARED_PAGE = 0;
+    public static final int BUFFER_POOL_TYPE_THREAD_ARENA = 1;
     /*
      * the supported  protocol version of MySQL
      * For Other MySQL branch ,like MariaDB 10.1.x,
@@ -50,6 +52,9 @@ public final class SystemConfig {
     private static final String DEFAULT_TRANSACTION_BASE_NAME = "server-tx";
     private static final int DEFAULT_TRANSACTION_ROTATE_SIZE = 16;
     private static final long CHECK_TABLE_CONSISTENCY_PERIOD = 30 * 60 * 1000;
+    private static final int DEFAULT_TABLE_META_CONCURRENCY = 8;
+    private static final int DEFAULT_COMPRESSION_THRESHOLD = 50;
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
     private static final long DEFAULT_GLOBAL_TABLE_CHECK_PERIOD = 24 * 60 * 60 * 1000L;
     private static final int DEFAULT_MERGE_QUEUE_SIZE = 1024;
     private static final int DEFAULT_ORDER_BY_QUEUE_SIZE = 1024;
@@ -58,6 +63,13 @@ public final class SystemConfig {
     private static final int DEFAULT_NEST_LOOP_CONN_SIZE = 4;
     private static final int DEFAULT_MAPPED_FILE_SIZE = 1024 * 1024 * 64;
     private static final boolean DEFAULT_USE_JOIN_STRATEGY = false;
+    private static final boolean DEFAULT_USE_HASH_JOIN = false;
+    private static final long DEFAULT_TABLE_STATISTICS_PERIOD = 0;
+    private static final int DEFAULT_TOP_N_MAX_ROWS = 10000;
+    private static final long DEFAULT_CONNECTION_WAIT_TIMEOUT = 1000;
+    private static final int DEFAULT_CONNECTION_WAIT_QUEUE_SIZE = 1024;
+    private static final int DEFAULT_SEQUENCE_PREFETCH_PERCENT = 50;
+    private static final int DEFAULT_SEQUENCE_MAX_SEGMENT_SIZE = 0;
 
     private int frontSocketSoRcvbuf = 1024 * 1024;
     private int frontSocketSoSndbuf = 4 * 1024 * 1024;
@@ -77,6 +89,7 @@ public final class SystemConfig {
     private int processorExecutor;
     private int backendProcessorExecutor;
     private int complexExecutor;
+    private int complexQueryWorker;
     private long idleTimeout;
     // sql execute timeout (second)
     private long sqlExecuteTimeout = 300;
@@ -97,6 +110,8 @@ public final class SystemConfig {
     private short bufferPoolChunkSize;
     // buffer pool page number
     private short bufferPoolPageNumber;
+    // 0:all threads share the pages, 1:each IO/business thread caches chunks in its own arena
+    private int bufferPoolType = BUFFER_POOL_TYPE_SHARED_PAGE;
     //Threshold of big result ,default512kb
     private int maxResultSet = 512 * 1024;
     //Threshold of Usage Percent of buffer pool,if reached the Threshold,big result will be clean up,default 80%
@@ -104,14 +119,20 @@ public final class SystemConfig {
     //period of clear the big result
     private long clearBigSqLResultSetMapMs = 10 * 60 * 1000;
     private int sequnceHandlerType = SEQUENCE_HANDLER_LOCAL_TIME;
+    private int sequencePrefetchPercent;
+    private int sequenceMaxSegmentSize;
     private int usingAIO = 0;
     private int maxPacketSize = 16 * 1024 * 1024;
     private int serverNodeId = 1;
     private int useCompression = 0;
+    private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+    private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
     private int useSqlStat = 1;
 
     private int checkTableConsistency = 0;
     private long checkTableConsistencyPeriod = CHECK_TABLE_CONSISTENCY_PERIOD;
+    // max count of concurrent queries of table meta per data host
+    private int tableMetaConcurrency = DEFAULT_TABLE_META_CONCURRENCY;
     private int useGlobleTableCheck = 1;
     private long glableTableCheckPeriod;
 
@@ -137,6 +158,11 @@ public final class SystemConfig {
     private boolean useZKSwitch = DEFAULT_USE_ZK_SWITCH;
 
     private boolean useJoinStrategy;
+    private boolean useHashJoin;
+    private long tableStatisticsPeriod;
+    private int topNMaxRows;
+    private long connectionWaitTimeout;
+    private int connectionWaitQueueSize;
 
     private int costTimeStat = 0;
     private int maxCostStatSize = 100;
@@ -159,6 +185,7 @@ public final class SystemConfig {
         this.processorExecutor = (DEFAULT_PROCESSORS != 1) ? DEFAULT_PROCESSORS : 2;
         this.backendProcessorExecutor = processorExecutor;
         this.complexExecutor = processorExecutor > 8 ? 8 : processorExecutor;
+        this.complexQueryWorker = DEFAULT_PROCESSORS;
         this.idleTimeout = DEFAULT_IDLE_TIMEOUT;
         this.processorCheckPeriod = DEFAULT_PROCESSOR_CHECK_PERIOD;
         this.xaSessionCheckPeriod = DEFAULT_XA_SESSION_CHECK_PERIOD;
@@ -184,6 +211,13 @@ public final class SystemConfig {
         this.nestLoopConnSize = DEFAULT_NEST_LOOP_CONN_SIZE;
         this.mappedFileSize = DEFAULT_MAPPED_FILE_SIZE;
         this.useJoinStrategy = DEFAULT_USE_JOIN_STRATEGY;
+        this.useHashJoin = DEFAULT_USE_HASH_JOIN;
+        this.tableStatisticsPeriod = DEFAULT_TABLE_STATISTICS_PERIOD;
+        this.topNMaxRows = DEFAULT_TOP_N_MAX_ROWS;
+        this.connectionWaitTimeout = DEFAULT_CONNECTION_WAIT_TIMEOUT;
+        this.connectionWaitQueueSize = DEFAULT_CONNECTION_WAIT_QUEUE_SIZE;
+        this.sequencePrefetchPercent = DEFAULT_SEQUENCE_PREFETCH_PERCENT;
+        this.sequenceMaxSegmentSize = DEFAULT_SEQUENCE_MAX_SEGMENT_SIZE;
     }
 
     public int getTransactionRatateSize() {
@@ -231,6 +265,51 @@ public final class SystemConfig {
         this.useJoinStrategy = useJoinStrategy;
     }
 
+    public boolean isUseHashJoin() {
+        return useHashJoin;
+    }
+
+    @SuppressWarnings("unused")
+    public void setUseHashJoin(boolean useHashJoin) {
+        this.useHashJoin = useHashJoin;
+    }
+
+    public long getTableStatisticsPeriod() {
+        return tableStatisticsPeriod;
+    }
+
+    @SuppressWarnings("unused")
+    public void setTableStatisticsPeriod(long tableStatisticsPeriod) {
+        this.tableStatisticsPeriod = tableStatisticsPeriod;
+    }
+
+    public int getTopNMaxRows() {
+        return topNMaxRows;
+    }
+
+    @SuppressWarnings("unused")
+    public void setTopNMaxRows(int topNMaxRows) {
+        this.topNMaxRows = topNMaxRows;
+    }
+
+    public long getConnectionWaitTimeout() {
+        return connectionWaitTimeout;
+    }
+
+    @SuppressWarnings("unused")
+    public void setConnectionWaitTimeout(long connectionWaitTimeout) {
+        this.connectionWaitTimeout = connectionWaitTimeout;
+    }
+
+    public int getConnectionWaitQueueSize() {
+        return connectionWaitQueueSize;
+    }
+
+    @SuppressWarnings("unused")
+    public void setConnectionWaitQueueSize(int connectionWaitQueueSize) {
+        this.connectionWaitQueueSize = connectionWaitQueueSize;
+    }
+
     public String getXaRecoveryLogBaseDir() {
         return xaRecoveryLogBaseDir;
     }
@@ -276,6 +355,24 @@ public final class SystemConfig {
         this.sequnceHandlerType = sequnceHandlerType;
     }
 
+    public int getSequencePrefetchPercent() {
+        return sequencePrefetchPercent;
+    }
+
+    @SuppressWarnings("unused")
+    public void setSequencePrefetchPercent(int sequencePrefetchPercent) {
+        this.sequencePrefetchPercent = sequencePrefetchPercent;
+    }
+
+    public int getSequenceMaxSegmentSize() {
+        return sequenceMaxSegmentSize;
+    }
+
+    @SuppressWarnings("unused")
+    public void setSequenceMaxSegmentSize(int sequenceMaxSegmentSize) {
+        this.sequenceMaxSegmentSize = sequenceMaxSegmentSize;
+    }
+
 
     public int getMaxPacketSize() {
         return maxPacketSize;
@@ -346,6 +443,24 @@ public final class SystemConfig {
         this.useCompression = useCompression;
     }
 
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    @SuppressWarnings("unused")
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    @SuppressWarnings("unused")
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
     public String getCharset() {
         return charset;
     }
@@ -436,6 +551,15 @@ public final class SystemConfig {
         this.complexExecutor = complexExecutor;
     }
 
+    public int getComplexQueryWorker() {
+        return complexQueryWorker;
+    }
+
+    @SuppressWarnings("unused")
+    public void setComplexQueryWorker(int complexQueryWorker) {
+        this.complexQueryWorker = complexQueryWorker;
+    }
+
     public long getIdleTimeout() {
         return idleTimeout;
     }
@@ -609,6 +733,15 @@ public final class SystemConfig {
         this.bufferPoolPageNumber = bufferPoolPageNumber;
     }
 
+    public int getBufferPoolType() {
+        return bufferPoolType;
+    }
+
+    @SuppressWarnings("unused")
+    public void setBufferPoolType(int bufferPoolType) {
+        this.bufferPoolType = bufferPoolType;
+    }
+
     public int getFrontSocketSoRcvbuf() {
         return frontSocketSoRcvbuf;
     }
@@ -699,6 +832,15 @@ public final class SystemConfig {
         this.checkTableConsistencyPeriod = checkTableConsistencyPeriod;
     }
 
+    public int getTableMetaConcurrency() {
+        return tableMetaConcurrency;
+    }
+
+    @SuppressWarnings("unused")
+    public void setTableMetaConcurrency(int tableMetaConcurrency) {
+        this.tableMetaConcurrency = tableMetaConcurrency;
+    }
+
     public int getNestLoopRowsSize() {
         return nestLoopRowsSize;
     }
@@ -861,6 +1003,7 @@ public final class SystemConfig {
                 ", processorExecutor=" + processorExecutor +
                 ", backendProcessorExecutor=" + backendProcessorExecutor +
                 ", complexExecutor=" + complexExecutor +
+                ", complexQueryWorker=" + complexQueryWorker +
                 ", idleTimeout=" + idleTimeout +
                 ", sqlExecuteTimeout=" + sqlExecuteTimeout +
                 ", showBinlogStatusTimeout=" + showBinlogStatusTimeout +
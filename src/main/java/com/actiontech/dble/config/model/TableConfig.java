@@ -10,6 +10,7 @@ import com.actiontech.dble.util.SplitUtil;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -37,7 +38,9 @@ public class TableConfig {
     private final TableConfig parentTC;
     private final String joinKey;
     private final String parentKey;
-    private final String locateRTableKeySql;
+    // the parent key and the sql after "SELECT ..." to find the data nodes of the join keys, null if not needed
+    private final String locateRTableKeyColumn;
+    private final String locateRTableKeysSql;
     private final TableConfig directRouteTC;
 
     public TableConfig(String name, String primaryKey, boolean autoIncrement, boolean needAddLimit,
@@ -82,10 +85,8 @@ public class TableConfig {
                 if (parentKey.equals(parentTC.partitionColumn)) {
                     // secondLevel ,parentKey==parent.partitionColumn
                     directRouteTC = parentTC;
-                    locateRTableKeySql = null;
                 } else {
                     directRouteTC = null;
-                    locateRTableKeySql = genLocateRootParentSQL();
                 }
             } else if (parentTC.getDirectRouteTC() != null) {
                 /**
@@ -95,21 +96,24 @@ public class TableConfig {
                  */
                 if (parentKey.equals(parentTC.joinKey)) {
                     directRouteTC = parentTC.getDirectRouteTC();
-                    locateRTableKeySql = null;
                 } else {
                     directRouteTC = null;
-                    locateRTableKeySql = genLocateRootParentSQL();
                 }
             } else {
                 directRouteTC = null;
-                locateRTableKeySql = genLocateRootParentSQL();
             }
         } else {
             this.joinKey = null;
             this.parentKey = null;
-            locateRTableKeySql = null;
             directRouteTC = this;
         }
+        if (directRouteTC == null) {
+            locateRTableKeyColumn = (parentTC.name + '.' + parentKey).toLowerCase();
+            locateRTableKeysSql = genLocateRootParentSQL();
+        } else {
+            locateRTableKeyColumn = null;
+            locateRTableKeysSql = null;
+        }
     }
 
     public String getPrimaryKey() {
@@ -128,40 +132,54 @@ public class TableConfig {
         return directRouteTC;
     }
 
-    public String getLocateRTableKeySql() {
-        return locateRTableKeySql;
+    /**
+     * the sql to find the data nodes of the join keys, it returns a row for every parent row found whose column is
+     * the indexes of the keys equal to its parent key, e.g.
+     * SELECT DISTINCT CONCAT_WS(',',IF(company.id=1,0,NULL),IF(company.id='3',1,NULL)) FROM company WHERE company.id IN (1,'3')
+     * the keys are compared by mysql, so whatever the format of the key is, it finds the same rows as the insert.
+     *
+     * @param keys the values of join key as they are in the sql, e.g. 3 or 'a'
+     */
+    public String getLocateRTableKeysSql(List<String> keys) {
+        StringBuilder sql = new StringBuilder("SELECT DISTINCT CONCAT_WS(','");
+        for (int i = 0; i < keys.size(); i++) {
+            sql.append(",IF(").append(locateRTableKeyColumn).append('=').append(keys.get(i)).append(',').append(i).append(",NULL)");
+        }
+        sql.append(')').append(locateRTableKeysSql);
+        for (String key : keys) {
+            sql.append(key).append(',');
+        }
+        sql.setCharAt(sql.length() - 1, ')');
+        return sql.toString();
     }
 
     public boolean isGlobalTable() {
         return this.tableType == TableTypeEnum.TYPE_GLOBAL_TABLE;
     }
 
-    public String genLocateRootParentSQL() {
+    /**
+     * @return the sql after the select list, ends with "IN ("
+     */
+    private String genLocateRootParentSQL() {
         TableConfig tb = this;
         StringBuilder tableSb = new StringBuilder();
         StringBuilder condition = new StringBuilder();
-        TableConfig prevTC = null;
         int level = 0;
         String latestCond = null;
         while (tb.parentTC != null) {
             tableSb.append(tb.parentTC.name).append(',');
             String relation = null;
             if (level == 0) {
-                latestCond = " " + tb.parentTC.getName() + '.' + tb.parentKey + "=";
+                latestCond = (tb.parentTC.getName() + '.' + tb.parentKey).toLowerCase() + " IN (";
             } else {
                 relation = tb.parentTC.getName() + '.' + tb.parentKey + '=' + tb.name + '.' + tb.joinKey;
-                condition.append(relation).append(" AND ");
+                condition.append(relation.toLowerCase()).append(" AND ");
             }
             level++;
-            prevTC = tb;
             tb = tb.parentTC;
         }
-        String sql = "SELECT " +
-                prevTC.parentTC.name +
-                '.' +
-                prevTC.parentKey +
-                " FROM " +
-                tableSb.substring(0, tableSb.length() - 1) +
+        String sql = " FROM " +
+                tableSb.substring(0, tableSb.length() - 1).toLowerCase() +
                 " WHERE " +
                 ((level < 2) ? latestCond : condition.toString() + latestCond);
         return sql;
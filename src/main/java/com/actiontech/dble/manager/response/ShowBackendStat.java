@@ -7,6 +7,8 @@ package com.actiontech.dble.manager.response;
 
 import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.datasource.PhysicalDBPool;
+import com.actiontech.dble.backend.datasource.PhysicalDatasource;
 import com.actiontech.dble.backend.mysql.PacketUtil;
 import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
 import com.actiontech.dble.config.Fields;
@@ -32,7 +34,7 @@ public final class ShowBackendStat {
     private ShowBackendStat() {
     }
 
-    private static final int FIELD_COUNT = 4;
+    private static final int FIELD_COUNT = 7;
     private static final ResultSetHeaderPacket HEADER = PacketUtil.getHeader(FIELD_COUNT);
     private static final FieldPacket[] FIELDS = new FieldPacket[FIELD_COUNT];
     private static final EOFPacket EOF = new EOFPacket();
@@ -54,6 +56,15 @@ public final class ShowBackendStat {
         FIELDS[i] = PacketUtil.getField("TOTAL", Fields.FIELD_TYPE_LONGLONG);
         FIELDS[i++].setPacketId(++packetId);
 
+        FIELDS[i] = PacketUtil.getField("WAITING", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("AVG_WAIT_TIME(ms)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("WAIT_TIMEOUT", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+
         EOF.setPacketId(++packetId);
     }
 
@@ -89,6 +100,9 @@ public final class ShowBackendStat {
         row.add(LongUtil.toBytes(info.getPort()));
         row.add(LongUtil.toBytes(info.getActive()));
         row.add(LongUtil.toBytes(info.getTotal()));
+        row.add(LongUtil.toBytes(info.getWaiting()));
+        row.add(LongUtil.toBytes(info.getWaitCount() == 0 ? 0 : info.getWaitTime() / info.getWaitCount()));
+        row.add(LongUtil.toBytes(info.getWaitTimeout()));
         return row;
     }
 
@@ -117,6 +131,20 @@ public final class ShowBackendStat {
             }
         }
 
+        // the requests waiting for the connections of the data sources on the host
+        for (PhysicalDBPool pool : DbleServer.getInstance().getConfig().getDataHosts().values()) {
+            for (PhysicalDatasource ds : pool.getAllDataSources()) {
+                String host = ds.getConfig().getIp();
+                long port = ds.getConfig().getPort();
+                BackendStat info = all.get(host + Long.toString(port));
+                if (info == null) {
+                    info = new BackendStat(host, port);
+                    all.put(host + Long.toString(port), info);
+                }
+                info.addWait(ds);
+            }
+        }
+
         return all;
     }
 
@@ -125,6 +153,10 @@ public final class ShowBackendStat {
         private long port;
         private long active;
         private long total;
+        private long waiting;
+        private long waitCount;
+        private long waitTime;
+        private long waitTimeout;
 
         BackendStat(String host, long port) {
             this.host = host;
@@ -144,11 +176,29 @@ public final class ShowBackendStat {
         public void addTotal() {
             this.total++;
         }
+        public void addWait(PhysicalDatasource ds) {
+            this.waiting += ds.getWaitingCount();
+            this.waitCount += ds.getWaitCount();
+            this.waitTime += ds.getWaitTime();
+            this.waitTimeout += ds.getWaitTimeoutCount();
+        }
         public long getActive() {
             return this.active;
         }
         public long getTotal() {
             return this.total;
         }
+        public long getWaiting() {
+            return this.waiting;
+        }
+        public long getWaitCount() {
+            return this.waitCount;
+        }
+        public long getWaitTime() {
+            return this.waitTime;
+        }
+        public long getWaitTimeout() {
+            return this.waitTimeout;
+        }
     }
 }
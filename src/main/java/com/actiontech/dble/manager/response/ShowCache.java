@@ -28,7 +28,7 @@ public final class ShowCache {
     private ShowCache() {
     }
 
-    private static final int FIELD_COUNT = 8;
+    private static final int FIELD_COUNT = 10;
     private static final ResultSetHeaderPacket HEADER = PacketUtil.getHeader(FIELD_COUNT);
     private static final FieldPacket[] FIELDS = new FieldPacket[FIELD_COUNT];
     private static final EOFPacket EOF = new EOFPacket();
@@ -48,8 +48,12 @@ public final class ShowCache {
         FIELDS[i++].setPacketId(++packetId);
         FIELDS[i] = PacketUtil.getField("HIT", Fields.FIELD_TYPE_LONG);
         FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("MISS", Fields.FIELD_TYPE_LONG);
+        FIELDS[i++].setPacketId(++packetId);
         FIELDS[i] = PacketUtil.getField("PUT", Fields.FIELD_TYPE_LONG);
         FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("EVICT", Fields.FIELD_TYPE_LONG);
+        FIELDS[i++].setPacketId(++packetId);
         FIELDS[i] = PacketUtil.getField("LAST_ACCESS", Fields.FIELD_TYPE_LONG);
         FIELDS[i++].setPacketId(++packetId);
         FIELDS[i] = PacketUtil.getField("LAST_PUT", Fields.FIELD_TYPE_LONG);
@@ -111,7 +115,9 @@ public final class ShowCache {
         row.add(LongUtil.toBytes(cacheStatic.getItemSize()));
         row.add(LongUtil.toBytes(cacheStatic.getAccessTimes()));
         row.add(LongUtil.toBytes(cacheStatic.getHitTimes()));
+        row.add(LongUtil.toBytes(cacheStatic.getAccessTimes() - cacheStatic.getHitTimes()));
         row.add(LongUtil.toBytes(cacheStatic.getPutTimes()));
+        row.add(LongUtil.toBytes(cacheStatic.getEvictTimes()));
         row.add(StringUtil.encode(FormatUtil.formatDate(cacheStatic.getLastAccessTime()), charset));
         row.add(StringUtil.encode(FormatUtil.formatDate(cacheStatic.getLastPutTime()), charset));
         return row;
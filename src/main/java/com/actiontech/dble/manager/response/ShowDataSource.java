@@ -34,7 +34,7 @@ public final class ShowDataSource {
     private ShowDataSource() {
     }
 
-    private static final int FIELD_COUNT = 10;
+    private static final int FIELD_COUNT = 18;
     private static final ResultSetHeaderPacket HEADER = PacketUtil.getHeader(FIELD_COUNT);
     private static final FieldPacket[] FIELDS = new FieldPacket[FIELD_COUNT];
     private static final EOFPacket EOF = new EOFPacket();
@@ -74,6 +74,30 @@ public final class ShowDataSource {
         FIELDS[i] = PacketUtil.getField("WRITE_LOAD", Fields.FIELD_TYPE_LONG);
         FIELDS[i++].setPacketId(++packetId);
 
+        FIELDS[i] = PacketUtil.getField("WAITING", Fields.FIELD_TYPE_LONG);
+        FIELDS[i++].setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("WAIT_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("AVG_WAIT_TIME(ms)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("WAIT_TIMEOUT", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("SYNC_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("SYNC_RATE(%)", Fields.FIELD_TYPE_LONG);
+        FIELDS[i++].setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("RESPONSE_TIME(ms)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("LOAD_COST", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+
         EOF.setPacketId(++packetId);
     }
 
@@ -147,6 +171,17 @@ public final class ShowDataSource {
         row.add(LongUtil.toBytes(ds.getExecuteCount()));
         row.add(LongUtil.toBytes(ds.getReadCount()));
         row.add(LongUtil.toBytes(ds.getWriteCount()));
+        row.add(IntegerUtil.toBytes(ds.getWaitingCount()));
+        long waitCount = ds.getWaitCount();
+        row.add(LongUtil.toBytes(waitCount));
+        row.add(LongUtil.toBytes(waitCount == 0 ? 0 : ds.getWaitTime() / waitCount));
+        row.add(LongUtil.toBytes(ds.getWaitTimeoutCount()));
+        long queryCount = ds.getQueryCount();
+        long syncCount = ds.getSyncCount();
+        row.add(LongUtil.toBytes(syncCount));
+        row.add(IntegerUtil.toBytes(queryCount == 0 ? 0 : (int) (syncCount * 100 / queryCount)));
+        row.add(LongUtil.toBytes(Math.round(ds.getResponseTime())));
+        row.add(LongUtil.toBytes(Math.round(ds.getLoadCost())));
         return row;
     }
 
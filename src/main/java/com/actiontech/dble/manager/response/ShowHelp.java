@@ -163,6 +163,7 @@ public final class ShowHelp {
         HELPS.put("online", "Change Server status to ON");
 
         HELPS.put("show @@thread_used", "Report all bussiness&reactor thread usage");
+        HELPS.put("show @@sequence", "Report the segments and fetching of MySQL sequences");
 
         //file
         HELPS.put("file @@list", "List all the file in conf directory");
@@ -15,6 +15,7 @@ import com.actiontech.dble.net.mysql.EOFPacket;
 import com.actiontech.dble.net.mysql.FieldPacket;
 import com.actiontech.dble.net.mysql.ResultSetHeaderPacket;
 import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.statistic.CommandCount;
 import com.actiontech.dble.util.IntegerUtil;
 import com.actiontech.dble.util.LongUtil;
 
@@ -30,7 +31,7 @@ public final class ShowProcessor {
     private ShowProcessor() {
     }
 
-    private static final int FIELD_COUNT = 12;
+    private static final int FIELD_COUNT = 14;
     private static final ResultSetHeaderPacket HEADER = PacketUtil.getHeader(FIELD_COUNT);
     private static final FieldPacket[] FIELDS = new FieldPacket[FIELD_COUNT];
     private static final EOFPacket EOF = new EOFPacket();
@@ -76,6 +77,12 @@ public final class ShowProcessor {
         FIELDS[i] = PacketUtil.getField("BC_COUNT", Fields.FIELD_TYPE_LONG);
         FIELDS[i++].setPacketId(++packetId);
 
+        FIELDS[i] = PacketUtil.getField("NET_WRITES", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("WRITES_PER_QUERY", Fields.FIELD_TYPE_VAR_STRING);
+        FIELDS[i++].setPacketId(++packetId);
+
         EOF.setPacketId(++packetId);
     }
 
@@ -133,6 +140,11 @@ public final class ShowProcessor {
         row.add(LongUtil.toBytes(bufferSharedOpts));
         row.add(IntegerUtil.toBytes(processor.getFrontends().size()));
         row.add(IntegerUtil.toBytes(processor.getBackends().size()));
+        row.add(LongUtil.toBytes(processor.getNetWriteCount()));
+        CommandCount commands = processor.getCommands();
+        long queries = commands.queryCount() + commands.stmtExecuteCount();
+        String writesPerQuery = queries == 0 ? "0" : String.format("%.2f", (double) processor.getNetWriteCount() / queries);
+        row.add(writesPerQuery.getBytes());
         return row;
     }
 
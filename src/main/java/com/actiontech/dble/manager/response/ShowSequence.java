@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.manager.response;
+
+import com.actiontech.dble.backend.mysql.PacketUtil;
+import com.actiontech.dble.config.Fields;
+import com.actiontech.dble.manager.ManagerConnection;
+import com.actiontech.dble.net.mysql.EOFPacket;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.ResultSetHeaderPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.route.sequence.handler.IncrSequenceMySQLHandler;
+import com.actiontech.dble.route.sequence.handler.SequenceVal;
+import com.actiontech.dble.util.LongUtil;
+import com.actiontech.dble.util.StringUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * show the segments and the fetching of the MySQL sequences
+ */
+public final class ShowSequence {
+    private ShowSequence() {
+    }
+
+    private static final int FIELD_COUNT = 9;
+    private static final ResultSetHeaderPacket HEADER = PacketUtil.getHeader(FIELD_COUNT);
+    private static final FieldPacket[] FIELDS = new FieldPacket[FIELD_COUNT];
+    private static final EOFPacket EOF = new EOFPacket();
+
+    static {
+        int i = 0;
+        byte packetId = 0;
+        HEADER.setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("NAME", Fields.FIELD_TYPE_VAR_STRING);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("DATA_NODE", Fields.FIELD_TYPE_VAR_STRING);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("SEGMENT_SIZE", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("REMAINING", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("FETCH_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("AVG_FETCH_TIME(ms)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("MAX_FETCH_TIME(ms)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("STALL_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("STALL_TIME(ms)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i].setPacketId(++packetId);
+        EOF.setPacketId(++packetId);
+    }
+
+    public static void execute(ManagerConnection c) {
+        ByteBuffer buffer = c.allocate();
+
+        buffer = HEADER.write(buffer, c, true);
+
+        for (FieldPacket field : FIELDS) {
+            buffer = field.write(buffer, c, true);
+        }
+
+        buffer = EOF.write(buffer, c, true);
+
+        byte packetId = EOF.getPacketId();
+        for (SequenceVal seqVal : IncrSequenceMySQLHandler.getInstance().getSequenceVals()) {
+            RowDataPacket row = getRow(seqVal, c.getCharset().getResults());
+            row.setPacketId(++packetId);
+            buffer = row.write(buffer, c, true);
+        }
+
+        EOFPacket lastEof = new EOFPacket();
+        lastEof.setPacketId(++packetId);
+        buffer = lastEof.write(buffer, c, true);
+        c.write(buffer);
+    }
+
+    private static RowDataPacket getRow(SequenceVal seqVal, String charset) {
+        RowDataPacket row = new RowDataPacket(FIELD_COUNT);
+        row.add(StringUtil.encode(seqVal.getSeqName(), charset));
+        row.add(StringUtil.encode(seqVal.getDataNode(), charset));
+        row.add(LongUtil.toBytes(seqVal.getSegmentSize()));
+        row.add(LongUtil.toBytes(seqVal.getRemaining()));
+        row.add(LongUtil.toBytes(seqVal.getFetchCount()));
+        row.add(LongUtil.toBytes(seqVal.getAvgFetchTime()));
+        row.add(LongUtil.toBytes(seqVal.getMaxFetchTime()));
+        row.add(LongUtil.toBytes(seqVal.getStallCount()));
+        row.add(LongUtil.toBytes(seqVal.getStallTime()));
+        return row;
+    }
+}
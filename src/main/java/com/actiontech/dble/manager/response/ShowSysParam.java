@@ -76,6 +76,7 @@ public final class ShowSysParam {
         paramValues.add(sysConfig.getBufferPoolChunkSize() + "B");
         paramValues.add(sysConfig.getBufferPoolPageSize() + "B");
         paramValues.add(sysConfig.getBufferPoolPageNumber() + "B");
+        paramValues.add(sysConfig.getBufferPoolType() == SystemConfig.BUFFER_POOL_TYPE_THREAD_ARENA ? "Thread Arena" : "Shared Page");
         paramValues.add(sysConfig.getProcessorExecutor() + "");
         paramValues.add(sysConfig.getBackendProcessorExecutor() + "");
         paramValues.add(sysConfig.getBindIp() + "");
@@ -84,9 +85,13 @@ public final class ShowSysParam {
         paramValues.add(sysConfig.getFakeMySQLVersion());
         paramValues.add(sysConfig.getUsingAIO() + "");
         paramValues.add(sysConfig.getUseCompression() + "");
+        paramValues.add(sysConfig.getCompressionThreshold() + "");
+        paramValues.add(sysConfig.getCompressionLevel() + "");
         paramValues.add(sysConfig.getServerNodeId() + "");
         paramValues.add(sysConfig.isUseZKSwitch() + "");
         paramValues.add(sysConfig.getSequnceHandlerType() > 4 || sysConfig.getSequnceHandlerType() < 1 ? "Incorrect Sequence Type" : SEQUENCES[sysConfig.getSequnceHandlerType()]);
+        paramValues.add(sysConfig.getSequencePrefetchPercent() + "%");
+        paramValues.add(sysConfig.getSequenceMaxSegmentSize() + "");
         paramValues.add(sysConfig.getMaxPacketSize() / 1024 / 1024 + "M");
         paramValues.add(sysConfig.getServerBacklog() + "");
         paramValues.add(sysConfig.getIdleTimeout() / 1000 / 60 + " Minutes");
@@ -110,6 +115,7 @@ public final class ShowSysParam {
         paramValues.add(sysConfig.getShowBinlogStatusTimeout() + "ms");
         paramValues.add(sysConfig.getCheckTableConsistency() + "");
         paramValues.add(sysConfig.getCheckTableConsistencyPeriod() + "ms");
+        paramValues.add(sysConfig.getTableMetaConcurrency() + "");
         paramValues.add(sysConfig.getUseGlobleTableCheck() + "");
         paramValues.add(sysConfig.getGlableTableCheckPeriod() + "ms");
         paramValues.add(sysConfig.getDataNodeIdleCheckPeriod() + "ms");
@@ -125,9 +131,15 @@ public final class ShowSysParam {
         paramValues.add(sysConfig.isUseJoinStrategy() + "");
         paramValues.add(sysConfig.getNestLoopConnSize() + "");
         paramValues.add(sysConfig.getNestLoopRowsSize() + "");
+        paramValues.add(sysConfig.isUseHashJoin() + "");
+        paramValues.add(sysConfig.getTableStatisticsPeriod() + "ms");
+        paramValues.add(sysConfig.getTopNMaxRows() + "");
+        paramValues.add(sysConfig.getConnectionWaitTimeout() + "ms");
+        paramValues.add(sysConfig.getConnectionWaitQueueSize() + "");
         paramValues.add(sysConfig.getViewPersistenceConfBaseDir());
         paramValues.add(sysConfig.getViewPersistenceConfBaseName());
         paramValues.add(sysConfig.getComplexExecutor() + "");
+        paramValues.add(sysConfig.getComplexQueryWorker() + "");
         paramValues.add(sysConfig.getOtherMemSize() + "M");
         paramValues.add(sysConfig.getOrderMemSize() + "M");
         paramValues.add(sysConfig.getJoinMemSize() + "M");
@@ -162,6 +174,7 @@ public final class ShowSysParam {
             "bufferPoolChunkSize",
             "bufferPoolPageSize",
             "bufferPoolPageNumber",
+            "bufferPoolType",
             "frontend processorExecutor",
             "backend processorExecutor",
             "bindIp",
@@ -170,9 +183,13 @@ public final class ShowSysParam {
             "fakeMySQLVersion",
             "usingAIO",
             "useCompression",
+            "compressionThreshold",
+            "compressionLevel",
             "serverNodeId",
             "useZKSwitch",
             "sequnceHandlerType",
+            "sequencePrefetchPercent",
+            "sequenceMaxSegmentSize",
             "maxPacketSize",
             "serverBacklog",
             "idleTimeout",
@@ -196,6 +213,7 @@ public final class ShowSysParam {
             "showBinlogStatusTimeout",
             "checkTableConsistency",
             "checkTableConsistencyPeriod",
+            "tableMetaConcurrency",
             "useGlobleTableCheck",
             "glableTableCheckPeriod",
             "dataNodeIdleCheckPeriod",
@@ -211,9 +229,15 @@ public final class ShowSysParam {
             "useJoinStrategy",
             "nestLoopConnSize",
             "nestLoopRowsSize",
+            "useHashJoin",
+            "tableStatisticsPeriod",
+            "topNMaxRows",
+            "connectionWaitTimeout",
+            "connectionWaitQueueSize",
             "viewPersistenceConfBaseDir",
             "viewPersistenceConfBaseName",
             "complexExecutor",
+            "complexQueryWorker",
             "otherMemSize",
             "orderMemSize",
             "joinMemSize",
@@ -230,6 +254,7 @@ public final class ShowSysParam {
             "The chunk size of memory bufferPool. The min direct memory used for allocating",
             "The page size of memory bufferPool. The max direct memory used for allocating",
             "The page number of memory bufferPool. The bufferPool size is PageNumber * PageSize",
+            "The type of memory bufferPool, 0 means all threads share the pages, 1 means every IO/business thread caches chunks in its own arena. The default value is 0",
             "The size of fixed thread pool named of frontend businessExecutor and the core size of cached thread pool named of complexQueryExecutor .",
             "The size of fixed thread pool named of backend businessExecutor and the core size of cached thread pool named of complexQueryExecutor .",
             "The host where the server is running. The default is 0.0.0.0",
@@ -238,9 +263,13 @@ public final class ShowSysParam {
             "Mysql Version shows in Client",
             "Whether the AIO is enable, The default number is 0(use NIO instead)",
             "Whether the Compression is enable,The default number is 0 ",
+            "The bytes less than it are sent without compression when the compression is enabled.The default value is 50",
+            "The level of zlib compression, from 1(fastest) to 9(best compression).The default value is 6",
             "ServerNodeId used to create xa transaction",
             "Use ZK to switch the writeNode ,The default is true,but only affective when zk is enable",
             "Global Sequence Type. The default is Local TimeStamp(like Snowflake)",
+            "The used percent of the segment of the MySQL sequence to fetch the next segment asynchronously, 0 means fetch when the segment is used up.The default value is 50",
+            "The max size of the segment of the MySQL sequence adjusted by the consuming rate, 0 means the size is the increment in dble_sequence.The default value is 0",
             "The maximum size of one packet. The default is 16MB.",
             "The NIO/AIO reactor backlog,the max of create connection request at one time.The default value is 2048",
             "The max allowed time of idle connection. The connection will be closed if it is timed out after last read/write/heartbeat.The default is 30 minutes",
@@ -264,6 +293,7 @@ public final class ShowSysParam {
             "The time out from show @@binlog.status.The default value is 60000ms",
             "Whether the consistency tableStructure check is enabled.The default value is 0",
             "The period of consistency tableStructure check .The default value is 30*60*1000",
+            "The max count of concurrent queries for loading table structures per dataHost, no more than the minCon of the dataHost.The default value is 8",
             "Whether globleTable check is enable.The default value is 1",
             "Globle table check period.The default value is 24 * 60 * 60 * 1000",
             "The idle connection check period.The default value is 5 * 60 * 1000ms",
@@ -279,9 +309,15 @@ public final class ShowSysParam {
             "Whether nest loop function is enabled.The default value is false",
             "The nest loop temporary tables block number.The default value is 4",
             "The nest loop temporary tables rows for every block.The default value is 2000",
+            "Whether hash join is used for the join which is not ordered by the join columns.The default value is false",
+            "The period of collecting the table statistics for choosing join strategy, 0 means not collect.The default value is 0",
+            "The max offset+limit of ORDER BY ... LIMIT which is sorted by a top-n heap in memory, 0 means not use top-n.The default value is 10000",
+            "The max time waiting for a backend connection when the datasource reaches maxCon, 0 means not wait.The default value is 1000ms",
+            "The max count of the requests waiting for backend connections per datasource.The default value is 1024",
             "The directory of the view record file,The default value is ./viewConf",
             "The name of the view record file.The default value is viewJson",
             "The executor for complex query.The default value is min(8,processorExecutor)",
+            "The size of fixed thread pool named of complexQueryWorker which runs the order/group/join/merge of complex query.The default value is the number of processors",
             "The additional size of memory can be used in a complex query.The default size is 4M",
             "The additional size of memory can be used in a complex query order.The default size is 4M",
             "The additional size of memory can be used in a complex query join.The default size is 4M",
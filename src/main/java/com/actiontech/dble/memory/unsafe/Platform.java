@@ -59,6 +59,10 @@ public final class Platform {
 
     private static final boolean UNALIGNED;
 
+    private static final long BUFFER_ADDRESS_OFFSET;
+
+    private static final long DIRECT_BUFFER_ATTACHMENT_OFFSET;
+
     public static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder().equals(ByteOrder.LITTLE_ENDIAN);
 
     static {
@@ -336,6 +340,8 @@ public final class Platform {
             LONG_ARRAY_OFFSET = UNSAFE.arrayBaseOffset(long[].class);
             FLOAT_ARRAY_OFFSET = UNSAFE.arrayBaseOffset(float[].class);
             DOUBLE_ARRAY_OFFSET = UNSAFE.arrayBaseOffset(double[].class);
+            BUFFER_ADDRESS_OFFSET = fieldOffset("java.nio.Buffer", "address");
+            DIRECT_BUFFER_ATTACHMENT_OFFSET = fieldOffset("java.nio.DirectByteBuffer", "att");
         } else {
             BYTE_ARRAY_OFFSET = 0;
             SHORT_ARRAY_OFFSET = 0;
@@ -343,9 +349,33 @@ public final class Platform {
             LONG_ARRAY_OFFSET = 0;
             FLOAT_ARRAY_OFFSET = 0;
             DOUBLE_ARRAY_OFFSET = 0;
+            BUFFER_ADDRESS_OFFSET = -1L;
+            DIRECT_BUFFER_ATTACHMENT_OFFSET = -1L;
+        }
+    }
+
+    private static long fieldOffset(String className, String fieldName) {
+        try {
+            return UNSAFE.objectFieldOffset(Class.forName(className).getDeclaredField(fieldName));
+        } catch (Throwable cause) {
+            return -1L;
         }
     }
 
+    /**
+     * the native address of a direct buffer, read without the internal DirectBuffer interface
+     */
+    public static long directBufferAddress(ByteBuffer buffer) {
+        return UNSAFE.getLong(buffer, BUFFER_ADDRESS_OFFSET);
+    }
+
+    /**
+     * the buffer a direct buffer was sliced from, null for a buffer allocated directly
+     */
+    public static Object directBufferAttachment(ByteBuffer buffer) {
+        return UNSAFE.getObject(buffer, DIRECT_BUFFER_ATTACHMENT_OFFSET);
+    }
+
     public static long objectFieldOffset(Field field) {
         return UNSAFE.objectFieldOffset(field);
     }
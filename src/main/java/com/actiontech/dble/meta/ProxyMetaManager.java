@@ -67,6 +67,9 @@ public class ProxyMetaManager {
     private Condition condRelease = metaLock.newCondition();
     private ScheduledExecutorService scheduler;
     private ScheduledFuture<?> checkTaskHandler;
+    private ScheduledFuture<?> statisticsTaskHandler;
+    /* schema.table, statistics */
+    private volatile Map<String, TableStatistics> tableStatistics = Collections.emptyMap();
     private AtomicInteger metaCount = new AtomicInteger(0);
     private Repository repository = null;
     private AtomicInteger version = new AtomicInteger(0);
@@ -76,6 +79,14 @@ public class ProxyMetaManager {
         this.lockTables = new HashSet<>();
     }
 
+    /**
+     * the manager which replaces another one goes on with the version of it
+     */
+    public ProxyMetaManager(int version) {
+        this();
+        this.version.set(version);
+    }
+
     private String genLockKey(String schema, String tbName) {
         return schema + "." + tbName;
     }
@@ -84,6 +95,13 @@ public class ProxyMetaManager {
         return metaCount.get();
     }
 
+    /**
+     * the version is changed by the ddl and the table metas changing, the plans cached with an old version are not used
+     */
+    public int getVersion() {
+        return version.get();
+    }
+
     public ReentrantLock getMetaLock() {
         return metaLock;
     }
@@ -146,14 +164,17 @@ public class ProxyMetaManager {
         SchemaMeta schemaMeta = catalogs.get(schema);
         if (schemaMeta != null) {
             schemaMeta.addTableMeta(tbName, tm);
+            version.incrementAndGet();
         }
     }
 
 
     private void dropTable(String schema, String tbName) {
         SchemaMeta schemaMeta = catalogs.get(schema);
-        if (schemaMeta != null)
+        if (schemaMeta != null) {
             schemaMeta.dropTable(tbName);
+            version.incrementAndGet();
+        }
     }
 
     /**
@@ -392,18 +413,52 @@ public class ProxyMetaManager {
             loadViewFromFile();
         }
         SystemConfig system = config.getSystem();
-        if (system.getCheckTableConsistency() == 1) {
+        if (system.getCheckTableConsistency() == 1 || system.getTableStatisticsPeriod() > 0) {
             scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("MetaDataChecker-%d").build());
+        }
+        if (system.getCheckTableConsistency() == 1) {
             checkTaskHandler = scheduler.scheduleWithFixedDelay(tableStructureCheckTask(selfNode), 0L, system.getCheckTableConsistencyPeriod(), TimeUnit.MILLISECONDS);
         }
+        if (system.getTableStatisticsPeriod() > 0) {
+            statisticsTaskHandler = scheduler.scheduleWithFixedDelay(tableStatisticsTask(config), 0L, system.getTableStatisticsPeriod(), TimeUnit.MILLISECONDS);
+        }
     }
 
     public void terminate() {
         if (checkTaskHandler != null) {
             checkTaskHandler.cancel(false);
+        }
+        if (statisticsTaskHandler != null) {
+            statisticsTaskHandler.cancel(false);
+        }
+        if (scheduler != null) {
             scheduler.shutdown();
         }
     }
+
+    private Runnable tableStatisticsTask(final ServerConfig config) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                new TableStatisticsHandler(ProxyMetaManager.this, config.getSchemas()).execute();
+            }
+        };
+    }
+
+    public static String getStatisticsKey(String schema, String table) {
+        return (schema + "." + table).toLowerCase();
+    }
+
+    /**
+     * @return null if the statistics of the table are not collected
+     */
+    public TableStatistics getTableStatistics(String schema, String table) {
+        return tableStatistics.get(getStatisticsKey(schema, table));
+    }
+
+    public void setTableStatistics(Map<String, TableStatistics> statistics) {
+        this.tableStatistics = statistics;
+    }
     //Check the Consistency of table Structure
 
     private Runnable tableStructureCheckTask(final Set<String> selfNode) {
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.meta;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * the rows and the distinct values of the indexed columns of a table on all its data nodes,
+ * estimated by the data nodes
+ */
+public class TableStatistics {
+    private long rowCount;
+    /* lower case column name, cardinality of the index which begins with the column */
+    private final Map<String, Long> cardinalities = new HashMap<>();
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return -1 if the column is not the first column of any index
+     */
+    public long getCardinality(String column) {
+        Long cardinality = cardinalities.get(column.toLowerCase());
+        if (cardinality == null) {
+            return -1;
+        }
+        return Math.max(1, Math.min(cardinality, rowCount));
+    }
+
+    /**
+     * add the statistics of the table on one data node
+     *
+     * @param isGlobal the global table has the same rows on all its data nodes
+     */
+    void add(TableStatistics nodeStatistics, boolean isGlobal) {
+        if (isGlobal) {
+            rowCount = Math.max(rowCount, nodeStatistics.rowCount);
+        } else {
+            rowCount += nodeStatistics.rowCount;
+        }
+        for (Map.Entry<String, Long> entry : nodeStatistics.cardinalities.entrySet()) {
+            Long cardinality = cardinalities.get(entry.getKey());
+            if (cardinality == null) {
+                cardinalities.put(entry.getKey(), entry.getValue());
+            } else if (isGlobal) {
+                cardinalities.put(entry.getKey(), Math.max(cardinality, entry.getValue()));
+            } else {
+                // the same value may be on different data nodes, so the sum is the upper bound
+                cardinalities.put(entry.getKey(), cardinality + entry.getValue());
+            }
+        }
+    }
+
+    public void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public void addCardinality(String column, long cardinality) {
+        String key = column.toLowerCase();
+        Long old = cardinalities.get(key);
+        if (old == null || old < cardinality) {
+            cardinalities.put(key, cardinality);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "rows=" + rowCount + ", cardinalities=" + cardinalities;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.meta;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.backend.datasource.PhysicalDBNode;
+import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.sqlengine.MultiRowSQLQueryResultHandler;
+import com.actiontech.dble.sqlengine.SQLJob;
+import com.actiontech.dble.sqlengine.SQLQueryResult;
+import com.actiontech.dble.sqlengine.SQLQueryResultListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * collect the rows and the index cardinality of all the tables from information_schema of all data nodes,
+ * the statistics are replaced in ProxyMetaManager after all the data nodes returned.
+ */
+public class TableStatisticsHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableStatisticsHandler.class);
+    private static final String[] STATISTICS_COLS = new String[]{
+            "TABLE_NAME",
+            "TABLE_ROWS",
+            "COLUMN_NAME",
+            "CARDINALITY"};
+    private static final String SQL = "SELECT t.TABLE_NAME AS TABLE_NAME, t.TABLE_ROWS AS TABLE_ROWS, " +
+            "s.COLUMN_NAME AS COLUMN_NAME, s.CARDINALITY AS CARDINALITY FROM information_schema.TABLES t " +
+            "LEFT JOIN information_schema.STATISTICS s ON s.TABLE_SCHEMA = t.TABLE_SCHEMA AND " +
+            "s.TABLE_NAME = t.TABLE_NAME AND s.SEQ_IN_INDEX = 1 " +
+            "WHERE t.TABLE_SCHEMA = '{0}' AND t.TABLE_TYPE = 'BASE TABLE'";
+
+    private final ProxyMetaManager tmManager;
+    private final Map<String, SchemaConfig> schemas;
+    /* data node, lower case table name, statistics of the table on the data node */
+    private final Map<String, Map<String, TableStatistics>> nodeStatistics = new ConcurrentHashMap<>();
+    private AtomicInteger nodesNumber;
+
+    public TableStatisticsHandler(ProxyMetaManager tmManager, Map<String, SchemaConfig> schemas) {
+        this.tmManager = tmManager;
+        this.schemas = schemas;
+    }
+
+    public void execute() {
+        Set<String> dataNodes = new HashSet<>();
+        for (SchemaConfig schema : schemas.values()) {
+            if (schema.getDataNode() != null) {
+                dataNodes.add(schema.getDataNode());
+            }
+            for (TableConfig table : schema.getTables().values()) {
+                dataNodes.addAll(table.getDataNodes());
+            }
+        }
+        if (dataNodes.isEmpty()) {
+            return;
+        }
+        nodesNumber = new AtomicInteger(dataNodes.size());
+        for (String dataNode : dataNodes) {
+            PhysicalDBNode dn = DbleServer.getInstance().getConfig().getDataNodes().get(dataNode);
+            if (dn == null) {
+                countdown();
+                continue;
+            }
+            MultiRowSQLQueryResultHandler resultHandler = new MultiRowSQLQueryResultHandler(STATISTICS_COLS,
+                    new TableStatisticsListener(dataNode));
+            String sql = SQL.replace("{0}", dn.getDatabase());
+            SQLJob sqlJob = new SQLJob(sql, dn.getDatabase(), resultHandler, dn.getDbPool().getSource());
+            sqlJob.run();
+        }
+    }
+
+    private void countdown() {
+        if (nodesNumber.decrementAndGet() == 0) {
+            Map<String, TableStatistics> statistics = collect();
+            tmManager.setTableStatistics(statistics);
+            LOGGER.debug("table statistics are collected: " + statistics);
+        }
+    }
+
+    private Map<String, TableStatistics> collect() {
+        Map<String, TableStatistics> statistics = new HashMap<>();
+        for (SchemaConfig schema : schemas.values()) {
+            for (TableConfig table : schema.getTables().values()) {
+                TableStatistics tableStatistics = null;
+                for (String dataNode : table.getDataNodes()) {
+                    Map<String, TableStatistics> tables = nodeStatistics.get(dataNode);
+                    TableStatistics tableOnNode = tables == null ? null : tables.get(table.getName().toLowerCase());
+                    if (tableOnNode == null) {
+                        continue;
+                    }
+                    if (tableStatistics == null) {
+                        tableStatistics = new TableStatistics();
+                    }
+                    tableStatistics.add(tableOnNode, table.isGlobalTable());
+                }
+                if (tableStatistics != null) {
+                    statistics.put(ProxyMetaManager.getStatisticsKey(schema.getName(), table.getName()), tableStatistics);
+                }
+            }
+            Map<String, TableStatistics> noShardingTables = schema.getDataNode() == null ? null :
+                    nodeStatistics.get(schema.getDataNode());
+            if (noShardingTables != null) {
+                for (Map.Entry<String, TableStatistics> entry : noShardingTables.entrySet()) {
+                    String key = ProxyMetaManager.getStatisticsKey(schema.getName(), entry.getKey());
+                    if (!statistics.containsKey(key)) {
+                        statistics.put(key, entry.getValue());
+                    }
+                }
+            }
+        }
+        return statistics;
+    }
+
+    private class TableStatisticsListener implements SQLQueryResultListener<SQLQueryResult<List<Map<String, String>>>> {
+        private final String dataNode;
+
+        TableStatisticsListener(String dataNode) {
+            this.dataNode = dataNode;
+        }
+
+        @Override
+        public void onResult(SQLQueryResult<List<Map<String, String>>> result) {
+            try {
+                if (!result.isSuccess()) {
+                    LOGGER.info("Can't get the table statistics from DataNode:" + dataNode);
+                    return;
+                }
+                Map<String, TableStatistics> tables = new HashMap<>();
+                for (Map<String, String> row : result.getResult()) {
+                    String table = row.get(STATISTICS_COLS[0]).toLowerCase();
+                    TableStatistics tableStatistics = tables.get(table);
+                    if (tableStatistics == null) {
+                        tableStatistics = new TableStatistics();
+                        tableStatistics.setRowCount(parseLong(row.get(STATISTICS_COLS[1])));
+                        tables.put(table, tableStatistics);
+                    }
+                    String column = row.get(STATISTICS_COLS[2]);
+                    String cardinality = row.get(STATISTICS_COLS[3]);
+                    if (column != null && cardinality != null) {
+                        tableStatistics.addCardinality(column, parseLong(cardinality));
+                    }
+                }
+                nodeStatistics.put(dataNode, tables);
+            } finally {
+                countdown();
+            }
+        }
+
+        private long parseLong(String value) {
+            if (value == null) {
+                return 0;
+            }
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -10,8 +10,6 @@ import com.actiontech.dble.backend.datasource.PhysicalDBNode;
 import com.actiontech.dble.config.model.TableConfig;
 import com.actiontech.dble.log.alarm.AlarmCode;
 import com.actiontech.dble.meta.protocol.StructureMeta;
-import com.actiontech.dble.sqlengine.OneRawSQLQueryResultHandler;
-import com.actiontech.dble.sqlengine.SQLJob;
 import com.actiontech.dble.sqlengine.SQLQueryResult;
 import com.actiontech.dble.sqlengine.SQLQueryResultListener;
 import com.alibaba.druid.sql.ast.statement.SQLCreateTableStatement;
@@ -27,10 +25,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class AbstractTableMetaHandler {
     protected static final Logger LOGGER = LoggerFactory.getLogger(AbstractTableMetaHandler.class);
-    private static final String[] MYSQL_SHOW_CREATE_TABLE_COLS = new String[]{
-            "Table",
-            "Create Table"};
-    private static final String SQL_PREFIX = "show create table ";
 
     private String tableName;
     private List<String> dataNodes;
@@ -56,10 +50,9 @@ public abstract class AbstractTableMetaHandler {
                 this.countdown();
                 return;
             }
-            OneRawSQLQueryResultHandler resultHandler = new OneRawSQLQueryResultHandler(MYSQL_SHOW_CREATE_TABLE_COLS, new MySQLTableStructureListener(dataNode, System.currentTimeMillis(), new ConcurrentHashMap<String, List<String>>()));
             PhysicalDBNode dn = DbleServer.getInstance().getConfig().getDataNodes().get(dataNode);
-            SQLJob sqlJob = new SQLJob(SQL_PREFIX + tableName, dn.getDatabase(), resultHandler, dn.getDbPool().getSource());
-            sqlJob.run();
+            TableMetaJobLimiter.submit(dn.getDbPool().getHostName(), dataNode, tableName,
+                    new MySQLTableStructureListener(dataNode, System.currentTimeMillis(), new ConcurrentHashMap<String, List<String>>()));
         }
     }
 
@@ -88,7 +81,7 @@ public abstract class AbstractTableMetaHandler {
                 }
                 return;
             }
-            String currentSql = result.getResult().get(MYSQL_SHOW_CREATE_TABLE_COLS[1]);
+            String currentSql = result.getResult().get(ShowCreateTablesJob.MYSQL_SHOW_CREATE_TABLE_COLS[1]);
             if (dataNodeTableStructureSQLMap.containsKey(currentSql)) {
                 List<String> dataNodeList = dataNodeTableStructureSQLMap.get(currentSql);
                 dataNodeList.add(dataNode);
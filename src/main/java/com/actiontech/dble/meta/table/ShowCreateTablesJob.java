@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.meta.table;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.datasource.PhysicalDBNode;
+import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
+import com.actiontech.dble.backend.mysql.nio.handler.ResponseHandler;
+import com.actiontech.dble.net.mysql.ErrorPacket;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.sqlengine.OneRawSQLQueryResultHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * send the show create table statements of one data node in one multi-statement query,
+ * every result set is handed to the listener of its table in order.
+ * mysql stops at the first statement failed, the tables after it are submitted to the limiter again.
+ */
+class ShowCreateTablesJob implements ResponseHandler, Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShowCreateTablesJob.class);
+    static final String[] MYSQL_SHOW_CREATE_TABLE_COLS = new String[]{
+            "Table",
+            "Create Table"};
+    private static final String SQL_PREFIX = "show create table ";
+
+    private final String dataHost;
+    private final String dataNode;
+    private final List<TableMetaJobLimiter.TableRequest> requests;
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    // the index of the request whose result set is being received, read by the close of the connection too
+    private final AtomicInteger index = new AtomicInteger(0);
+    private OneRawSQLQueryResultHandler resultHandler;
+
+    ShowCreateTablesJob(String dataHost, List<TableMetaJobLimiter.TableRequest> requests) {
+        this.dataHost = dataHost;
+        this.dataNode = requests.get(0).getDataNode();
+        this.requests = requests;
+    }
+
+    @Override
+    public void run() {
+        try {
+            PhysicalDBNode dn = DbleServer.getInstance().getConfig().getDataNodes().get(dataNode);
+            dn.getDbPool().getSource().getConnection(dn.getDatabase(), true, this, null);
+        } catch (Exception e) {
+            LOGGER.info("can't get connection for show create table of data node " + dataNode + ", error:" + e);
+            failRemains();
+        }
+    }
+
+    private String buildSql() {
+        StringBuilder sql = new StringBuilder();
+        for (TableMetaJobLimiter.TableRequest request : requests) {
+            if (sql.length() > 0) {
+                sql.append(';');
+            }
+            sql.append(SQL_PREFIX).append(request.getTableName());
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public void connectionAcquired(BackendConnection conn) {
+        conn.setResponseHandler(this);
+        ((MySQLConnection) conn).setComplexQuery(true);
+        try {
+            conn.query(buildSql());
+        } catch (Exception e) {
+            LOGGER.info("can't send show create table to " + conn + ", error:" + e);
+            conn.release();
+            failRemains();
+        }
+    }
+
+    @Override
+    public void connectionError(Throwable e, BackendConnection conn) {
+        LOGGER.info("can't get connection for show create table of data node " + dataNode + ", error:" + e);
+        failRemains();
+    }
+
+    @Override
+    public void errorResponse(byte[] err, BackendConnection conn) {
+        ErrorPacket errPg = new ErrorPacket();
+        errPg.read(err);
+        LOGGER.info("error response errNo:" + errPg.getErrNo() + ", " + new String(errPg.getMessage()) +
+                " of show create table " + requests.get(index.get()).getTableName() + " at con:" + conn);
+        conn.release();
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        new OneRawSQLQueryResultHandler(MYSQL_SHOW_CREATE_TABLE_COLS,
+                requests.get(index.get()).getListener()).finished(dataNode, true);
+        // the statements after the failed one are not executed
+        for (int i = index.get() + 1; i < requests.size(); i++) {
+            TableMetaJobLimiter.submit(dataHost, requests.get(i));
+        }
+        TableMetaJobLimiter.release(dataHost);
+    }
+
+    @Override
+    public void okResponse(byte[] ok, BackendConnection conn) {
+        // the status sync before the statements
+        conn.syncAndExecute();
+    }
+
+    @Override
+    public void fieldEofResponse(byte[] header, List<byte[]> fields, List<FieldPacket> fieldPackets, byte[] eof,
+                                 boolean isLeft, BackendConnection conn) {
+        resultHandler = new OneRawSQLQueryResultHandler(MYSQL_SHOW_CREATE_TABLE_COLS, requests.get(index.get()).getListener());
+        resultHandler.onHeader(fields);
+    }
+
+    @Override
+    public boolean rowResponse(byte[] row, RowDataPacket rowPacket, boolean isLeft, BackendConnection conn) {
+        resultHandler.onRowData(dataNode, row);
+        return false;
+    }
+
+    @Override
+    public void rowEofResponse(byte[] eof, boolean isLeft, BackendConnection conn) {
+        OneRawSQLQueryResultHandler handler = resultHandler;
+        resultHandler = null;
+        if (index.incrementAndGet() == requests.size()) {
+            conn.release();
+            if (finished.compareAndSet(false, true)) {
+                TableMetaJobLimiter.release(dataHost);
+            }
+        }
+        handler.finished(dataNode, false);
+    }
+
+    @Override
+    public void writeQueueAvailable() {
+    }
+
+    @Override
+    public void connectionClose(BackendConnection conn, String reason) {
+        LOGGER.info("connection closed while showing create table of data node " + dataNode + ", reason:" + reason);
+        failRemains();
+    }
+
+    /**
+     * the tables whose result sets are not received fail
+     */
+    private void failRemains() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        for (int i = index.get(); i < requests.size(); i++) {
+            new OneRawSQLQueryResultHandler(MYSQL_SHOW_CREATE_TABLE_COLS,
+                    requests.get(i).getListener()).finished(dataNode, true);
+        }
+        TableMetaJobLimiter.release(dataHost);
+    }
+
+    @Override
+    public String toString() {
+        return "ShowCreateTablesJob [dataNode=" + dataNode + ", tables=" + requests.size() + "]";
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.meta.table;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.backend.datasource.PhysicalDBPool;
+import com.actiontech.dble.sqlengine.SQLQueryResult;
+import com.actiontech.dble.sqlengine.SQLQueryResultListener;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * limit the concurrent queries of table meta per data host.
+ * the show create table statements of one data node are sent MAX_BATCH_SIZE at most in one multi-statement query,
+ * and tableMetaConcurrency queries at most run at the same time per data host, but never more than the minCon of
+ * the data host, so the connections created at startup are enough and the pool is not grown for the table meta.
+ * the queries beyond it are queued and started when a running one finished
+ */
+public final class TableMetaJobLimiter {
+    static final int MAX_BATCH_SIZE = 32;
+    private static final ConcurrentMap<String, HostJobs> HOST_JOBS = new ConcurrentHashMap<>();
+
+    private TableMetaJobLimiter() {
+    }
+
+    public static void submit(String dataHost, String dataNode, String tableName,
+                              SQLQueryResultListener<SQLQueryResult<Map<String, String>>> listener) {
+        submit(dataHost, new TableRequest(dataNode, tableName, listener));
+    }
+
+    static void submit(String dataHost, TableRequest request) {
+        getHostJobs(dataHost).submit(request);
+    }
+
+    /**
+     * must be called once for every job started after it finished
+     */
+    static void release(String dataHost) {
+        getHostJobs(dataHost).release();
+    }
+
+    private static HostJobs getHostJobs(String dataHost) {
+        HostJobs hostJobs = HOST_JOBS.get(dataHost);
+        if (hostJobs == null) {
+            hostJobs = new HostJobs(dataHost);
+            HostJobs old = HOST_JOBS.putIfAbsent(dataHost, hostJobs);
+            if (old != null) {
+                hostJobs = old;
+            }
+        }
+        return hostJobs;
+    }
+
+    /**
+     * show create table of one table on one data node
+     */
+    static final class TableRequest {
+        private final String dataNode;
+        private final String tableName;
+        private final SQLQueryResultListener<SQLQueryResult<Map<String, String>>> listener;
+
+        TableRequest(String dataNode, String tableName, SQLQueryResultListener<SQLQueryResult<Map<String, String>>> listener) {
+            this.dataNode = dataNode;
+            this.tableName = tableName;
+            this.listener = listener;
+        }
+
+        String getDataNode() {
+            return dataNode;
+        }
+
+        String getTableName() {
+            return tableName;
+        }
+
+        SQLQueryResultListener<SQLQueryResult<Map<String, String>>> getListener() {
+            return listener;
+        }
+    }
+
+    static class HostJobs {
+        private final String dataHost;
+        // the waiting requests by data node, the data nodes take turns
+        private final Map<String, Queue<TableRequest>> waiting = new LinkedHashMap<>();
+        // a job may finish in the thread starting it, the outer loop takes over the next one instead of recursion
+        private final ThreadLocal<Boolean> draining = new ThreadLocal<Boolean>() {
+            @Override
+            protected Boolean initialValue() {
+                return Boolean.FALSE;
+            }
+        };
+        private int running = 0;
+
+        HostJobs(String dataHost) {
+            this.dataHost = dataHost;
+        }
+
+        void submit(TableRequest request) {
+            synchronized (this) {
+                Queue<TableRequest> requests = waiting.get(request.getDataNode());
+                if (requests == null) {
+                    requests = new LinkedList<>();
+                    waiting.put(request.getDataNode(), requests);
+                }
+                requests.add(request);
+            }
+            drain();
+        }
+
+        void release() {
+            synchronized (this) {
+                running--;
+            }
+            drain();
+        }
+
+        synchronized int getRunning() {
+            return running;
+        }
+
+        int getMaxRunning() {
+            int maxRunning = DbleServer.getInstance().getConfig().getSystem().getTableMetaConcurrency();
+            PhysicalDBPool pool = DbleServer.getInstance().getConfig().getDataHosts().get(dataHost);
+            if (pool != null) {
+                maxRunning = Math.min(maxRunning, pool.getSource().getConfig().getMinCon());
+            }
+            return Math.max(1, maxRunning);
+        }
+
+        void startJob(List<TableRequest> batch) {
+            new ShowCreateTablesJob(dataHost, batch).run();
+        }
+
+        private void drain() {
+            if (draining.get()) {
+                return;
+            }
+            draining.set(Boolean.TRUE);
+            try {
+                int maxRunning = getMaxRunning();
+                while (true) {
+                    List<TableRequest> batch;
+                    synchronized (this) {
+                        if (running >= maxRunning || waiting.isEmpty()) {
+                            return;
+                        }
+                        batch = pollBatch();
+                        running++;
+                    }
+                    startJob(batch);
+                }
+            } finally {
+                draining.set(Boolean.FALSE);
+            }
+        }
+
+        private List<TableRequest> pollBatch() {
+            Iterator<Map.Entry<String, Queue<TableRequest>>> iterator = waiting.entrySet().iterator();
+            Map.Entry<String, Queue<TableRequest>> entry = iterator.next();
+            iterator.remove();
+            Queue<TableRequest> requests = entry.getValue();
+            List<TableRequest> batch = new ArrayList<>(Math.min(MAX_BATCH_SIZE, requests.size()));
+            while (batch.size() < MAX_BATCH_SIZE && !requests.isEmpty()) {
+                batch.add(requests.poll());
+            }
+            if (!requests.isEmpty()) {
+                waiting.put(entry.getKey(), requests);
+            }
+            return batch;
+        }
+    }
+}
@@ -17,6 +17,10 @@ public class AIOSocketWR extends SocketWR {
     private final AsynchronousSocketChannel channel;
     protected final AbstractConnection con;
     protected final AtomicBoolean writing = new AtomicBoolean(false);
+    private final Object readLock = new Object();
+    private boolean readDisabled = false;
+    /* the next read is not issued because the read is disabled */
+    private boolean readSuspended = false;
 
 
     public AIOSocketWR(AbstractConnection conn) {
@@ -40,6 +44,42 @@ public class AIOSocketWR extends SocketWR {
 
     }
 
+    /**
+     * called when a read is completed
+     */
+    void asyncNextRead() {
+        synchronized (readLock) {
+            if (readDisabled) {
+                readSuspended = true;
+                return;
+            }
+        }
+        asyncRead();
+    }
+
+    @Override
+    public void disableRead() {
+        synchronized (readLock) {
+            readDisabled = true;
+        }
+    }
+
+    @Override
+    public void enableRead() {
+        synchronized (readLock) {
+            readDisabled = false;
+            if (!readSuspended) {
+                return;
+            }
+            readSuspended = false;
+        }
+        try {
+            asyncRead();
+        } catch (Exception e) {
+            con.close("handle err:" + e);
+        }
+    }
+
     private void asyncWrite(final ByteBuffer buffer) {
 
         buffer.flip();
@@ -100,6 +140,9 @@ public class AIOSocketWR extends SocketWR {
         boolean noMoreData = this.write0();
         if (noMoreData) {
             this.doNextWriteCheck();
+            if (con.writeQueue.isEmpty()) {
+                con.writeQueueAvailable();
+            }
         }
 
     }
@@ -8,8 +8,8 @@ package com.actiontech.dble.net;
 import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.config.model.SystemConfig;
 import com.actiontech.dble.net.mysql.CharsetNames;
+import com.actiontech.dble.net.mysql.CompressedPacketCodec;
 import com.actiontech.dble.net.mysql.MySQLPacket;
-import com.actiontech.dble.util.CompressUtil;
 import com.actiontech.dble.util.TimeUtil;
 import com.google.common.base.Strings;
 import org.slf4j.Logger;
@@ -31,6 +31,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public abstract class AbstractConnection implements NIOConnection {
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(AbstractConnection.class);
+    private static final int MAX_WRITE_BUFFER_CHUNKS = 16;
 
     protected String host;
     protected int localPort;
@@ -58,14 +59,18 @@ public abstract class AbstractConnection implements NIOConnection {
     protected long netOutBytes;
 
     protected volatile boolean isSupportCompress = false;
-    protected final ConcurrentLinkedQueue<byte[]> decompressUnfinishedDataQueue = new ConcurrentLinkedQueue<>();
-    protected final ConcurrentLinkedQueue<byte[]> compressUnfinishedDataQueue = new ConcurrentLinkedQueue<>();
+    protected volatile CompressedPacketCodec compressCodec;
     protected volatile Map<String, String> usrVariables;
     protected volatile Map<String, String> sysVariables;
 
     private long idleTimeout;
 
     private final SocketWR socketWR;
+    /* the pauses of reading not resumed yet, every disableRead is resumed by one enableRead */
+    private final Object readPauseLock = new Object();
+    private int readPauses = 0;
+    /* keeps the order of the compressed packets in writeQueue the same as the compressing */
+    private final Object compressLock = new Object();
 
     public AbstractConnection(NetworkChannel channel) {
         this.channel = channel;
@@ -127,6 +132,10 @@ public abstract class AbstractConnection implements NIOConnection {
     }
 
     public void setSupportCompress(boolean supportCompress) {
+        if (supportCompress && compressCodec == null) {
+            SystemConfig system = DbleServer.getInstance().getConfig().getSystem();
+            compressCodec = new CompressedPacketCodec(system.getCompressionThreshold(), system.getCompressionLevel());
+        }
         this.isSupportCompress = supportCompress;
     }
 
@@ -238,7 +247,7 @@ public abstract class AbstractConnection implements NIOConnection {
     @Override
     public void handle(byte[] data) {
         if (isSupportCompress()) {
-            List<byte[]> packs = CompressUtil.decompressMysqlPacket(data, decompressUnfinishedDataQueue);
+            List<byte[]> packs = compressCodec.decompress(data);
             for (byte[] pack : packs) {
                 if (pack.length != 0) {
                     handler.handle(pack);
@@ -262,6 +271,42 @@ public abstract class AbstractConnection implements NIOConnection {
         this.socketWR.doNextWriteCheck();
     }
 
+    public void disableRead() {
+        synchronized (readPauseLock) {
+            if (readPauses++ == 0) {
+                this.socketWR.disableRead();
+            }
+        }
+    }
+
+    public void enableRead() {
+        synchronized (readPauseLock) {
+            if (readPauses == 0 || --readPauses > 0) {
+                return;
+            }
+            this.socketWR.enableRead();
+        }
+    }
+
+    /**
+     * called when all the packets in writeQueue are written
+     */
+    public void writeQueueAvailable() {
+    }
+
+    /**
+     * read the socket again whatever the pauses not resumed, called when the connection is released
+     */
+    public void resetRead() {
+        synchronized (readPauseLock) {
+            if (readPauses == 0) {
+                return;
+            }
+            readPauses = 0;
+            this.socketWR.enableRead();
+        }
+    }
+
     public void onReadData(int got) throws IOException {
         if (isClosed.get()) {
             return;
@@ -396,8 +441,13 @@ public abstract class AbstractConnection implements NIOConnection {
     public final void write(ByteBuffer buffer) {
 
         if (isSupportCompress()) {
-            ByteBuffer newBuffer = CompressUtil.compressMysqlPacket(buffer, this, compressUnfinishedDataQueue);
-            writeQueue.offer(newBuffer);
+            synchronized (compressLock) {
+                ByteBuffer newBuffer = compressCodec.compress(buffer, this);
+                if (newBuffer == null) {
+                    return;
+                }
+                writeQueue.offer(newBuffer);
+            }
         } else {
             writeQueue.offer(buffer);
         }
@@ -416,8 +466,11 @@ public abstract class AbstractConnection implements NIOConnection {
     public ByteBuffer checkWriteBuffer(ByteBuffer buffer, int capacity, boolean writeSocketIfFull) {
         if (capacity > buffer.remaining()) {
             if (writeSocketIfFull) {
+                // a large result fills the buffers one by one, use a larger one next time
+                int chunkSize = processor.getBufferPool().getChunkSize();
+                int nextSize = Math.min(buffer.capacity() * 2, chunkSize * MAX_WRITE_BUFFER_CHUNKS);
                 write(buffer);
-                return processor.getBufferPool().allocate(capacity);
+                return processor.getBufferPool().allocate(Math.max(capacity, nextSize));
             } else { // Relocate a larger buffer
                 buffer.flip();
                 ByteBuffer newBuf = processor.getBufferPool().allocate(capacity + buffer.limit() + 1);
@@ -431,8 +484,10 @@ public abstract class AbstractConnection implements NIOConnection {
     }
 
     public ByteBuffer writeToBuffer(byte[] src, ByteBuffer buffer) {
-        int offset = 0;
-        int length = src.length;
+        return writeToBuffer(src, 0, src.length, buffer);
+    }
+
+    public ByteBuffer writeToBuffer(byte[] src, int offset, int length, ByteBuffer buffer) {
         int remaining = buffer.remaining();
         while (length > 0) {
             if (remaining >= length) {
@@ -500,13 +555,12 @@ public abstract class AbstractConnection implements NIOConnection {
             recycle(writeBuffer);
             this.writeBuffer = null;
         }
+        socketWR.cleanup();
 
-        if (!decompressUnfinishedDataQueue.isEmpty()) {
-            decompressUnfinishedDataQueue.clear();
-        }
-
-        if (!compressUnfinishedDataQueue.isEmpty()) {
-            compressUnfinishedDataQueue.clear();
+        synchronized (compressLock) {
+            if (compressCodec != null) {
+                compressCodec.end();
+            }
         }
 
         ByteBuffer buffer;
@@ -518,7 +572,7 @@ public abstract class AbstractConnection implements NIOConnection {
     private int getPacketLength(ByteBuffer buffer, int offset) {
         int headerSize = MySQLPacket.PACKET_HEADER_SIZE;
         if (isSupportCompress()) {
-            headerSize = 7;
+            headerSize = CompressedPacketCodec.HEADER_SIZE;
         }
 
         if (buffer.position() < offset + headerSize) {
@@ -6,6 +6,7 @@
 package com.actiontech.dble.net;
 
 import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.net.mysql.CompressedPacketCodec;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
@@ -47,6 +48,24 @@ public abstract class BackendAIOConnection extends AbstractConnection implements
         processor.addBackend(this);
     }
 
+    /**
+     * called before the first packet of a command is written, the compressed sequence id restarts with a command
+     */
+    public void startCommand() {
+        CompressedPacketCodec codec = compressCodec;
+        if (codec != null) {
+            codec.startCommand();
+        }
+    }
+
+    /**
+     * write a command of one packet, like COM_PING and COM_QUIT
+     */
+    public void writeCommand(byte[] packet) {
+        startCommand();
+        write(writeToBuffer(packet, allocate()));
+    }
+
     @Override
     public String toString() {
         return "BackendConnection [id=" + id + ", host=" + host + ", port=" + port +
@@ -16,7 +16,6 @@ import com.actiontech.dble.net.mysql.ErrorPacket;
 import com.actiontech.dble.net.mysql.HandshakeV10Packet;
 import com.actiontech.dble.net.mysql.MySQLPacket;
 import com.actiontech.dble.net.mysql.OkPacket;
-import com.actiontech.dble.util.CompressUtil;
 import com.actiontech.dble.util.RandomUtil;
 import com.actiontech.dble.util.StringUtil;
 import org.slf4j.Logger;
@@ -291,23 +290,8 @@ public abstract class FrontendConnection extends AbstractConnection {
 
 
     public void query(String sql) {
-        if (sql == null || sql.length() == 0) {
-            writeErrMessage(ErrorCode.ER_NOT_ALLOWED_COMMAND, "Empty SQL");
-            return;
-        }
-
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug(String.valueOf(this) + " " + sql);
-        }
-        // remove last ';'
-        if (sql.endsWith(";")) {
-            sql = sql.substring(0, sql.length() - 1);
-        }
-        // record SQL
-        this.setExecuteSql(sql);
-
-        if (!privileges.checkFirewallSQLPolicy(user, sql)) {
-            writeErrMessage(ErrorCode.ERR_WRONG_USED, "The statement is unsafe SQL, reject for user '" + user + "'");
+        sql = checkQuery(sql);
+        if (sql == null) {
             return;
         }
 
@@ -334,6 +318,34 @@ public abstract class FrontendConnection extends AbstractConnection {
         this.query(sql);
     }
 
+    /**
+     * record the sql and check it by the firewall
+     *
+     * @return the sql without the last ';', null if it is refused and the error is written
+     */
+    protected String checkQuery(String sql) {
+        if (sql == null || sql.length() == 0) {
+            writeErrMessage(ErrorCode.ER_NOT_ALLOWED_COMMAND, "Empty SQL");
+            return null;
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(String.valueOf(this) + " " + sql);
+        }
+        // remove last ';'
+        if (sql.endsWith(";")) {
+            sql = sql.substring(0, sql.length() - 1);
+        }
+        // record SQL
+        this.setExecuteSql(sql);
+
+        if (!privileges.checkFirewallSQLPolicy(user, sql)) {
+            writeErrMessage(ErrorCode.ERR_WRONG_USED, "The statement is unsafe SQL, reject for user '" + user + "'");
+            return null;
+        }
+        return sql;
+    }
+
     public void stmtPrepare(byte[] data) {
         if (prepareHandler != null) {
             MySQLMessage mm = new MySQLMessage(data);
@@ -442,7 +454,7 @@ public abstract class FrontendConnection extends AbstractConnection {
     public void handle(final byte[] data) {
         setRequestTime();
         if (isSupportCompress()) {
-            List<byte[]> packs = CompressUtil.decompressMysqlPacket(data, decompressUnfinishedDataQueue);
+            List<byte[]> packs = compressCodec.decompress(data);
             for (byte[] pack : packs) {
                 if (pack.length != 0) {
                     rawHandle(pack);
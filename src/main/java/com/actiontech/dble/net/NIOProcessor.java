@@ -38,6 +38,7 @@ public final class NIOProcessor {
     private final CommandCount commands;
     private long netInBytes;
     private long netOutBytes;
+    private long netWriteCount;
 
     // after reload @@config_all ,old back ends connections stored in backends_old
     public static final ConcurrentLinkedQueue<BackendConnection> BACKENDS_OLD = new ConcurrentLinkedQueue<>();
@@ -94,6 +95,17 @@ public final class NIOProcessor {
         this.netOutBytes += bytes;
     }
 
+    /**
+     * @return the count of the writes to the sockets
+     */
+    public long getNetWriteCount() {
+        return this.netWriteCount;
+    }
+
+    public void addNetWriteCount(long count) {
+        this.netWriteCount += count;
+    }
+
     public void addFrontend(FrontendConnection c) {
         this.frontends.put(c.getId(), c);
         this.frontEndsLength.incrementAndGet();
@@ -17,9 +17,22 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class NIOSocketWR extends SocketWR {
     private SelectionKey processKey;
     private static final int OP_NOT_WRITE = ~SelectionKey.OP_WRITE;
+    private static final int OP_NOT_READ = ~SelectionKey.OP_READ;
     private final AbstractConnection con;
     private final SocketChannel channel;
     private final AtomicBoolean writing = new AtomicBoolean(false);
+    /*
+     * the reactor changes OP_WRITE while the worker threads change OP_READ,
+     * every read-modify-write of the interest ops holds it or one of the changes may be lost
+     */
+    private final Object opsLock = new Object();
+    private boolean readDisabled = false;
+    private static final int MAX_GATHER_BUFFERS = 16;
+    /* the buffers written by one gathering write, only used by the thread writing */
+    private final ByteBuffer[] gathered = new ByteBuffer[MAX_GATHER_BUFFERS];
+    /* the socket was full, gathered[pendingOffset, pendingCount) are not written yet and written first next time */
+    private int pendingOffset = 0;
+    private int pendingCount = 0;
 
     public NIOSocketWR(AbstractConnection con) {
         this.con = con;
@@ -28,7 +41,9 @@ public class NIOSocketWR extends SocketWR {
 
     public void register(Selector selector) throws IOException {
         try {
-            processKey = channel.register(selector, SelectionKey.OP_READ, con);
+            synchronized (opsLock) {
+                processKey = channel.register(selector, readDisabled ? 0 : SelectionKey.OP_READ, con);
+            }
         } finally {
             if (con.isClosed.get()) {
                 clearSelectionKey();
@@ -45,10 +60,16 @@ public class NIOSocketWR extends SocketWR {
         try {
             boolean noMoreData = write0();
             writing.set(false);
+            if (con.isClosed()) {
+                // closed while writing, the cleanup of the connection may have skipped the pending buffers
+                cleanup();
+                return;
+            }
             if (noMoreData && con.writeQueue.isEmpty()) {
                 if ((processKey.isValid() && (processKey.interestOps() & SelectionKey.OP_WRITE) != 0)) {
                     disableWrite();
                 }
+                con.writeQueueAvailable();
 
             } else {
 
@@ -66,67 +87,112 @@ public class NIOSocketWR extends SocketWR {
 
     }
 
+    /**
+     * write the buffers in the queue by gathering writes, MAX_GATHER_BUFFERS buffers at most in one write
+     *
+     * @return false if the socket can't be written now
+     */
     private boolean write0() throws IOException {
-
-        int written = 0;
-        ByteBuffer buffer = con.writeBuffer;
-        if (buffer != null) {
-            while (buffer.hasRemaining()) {
-                written = channel.write(buffer);
-                if (written > 0) {
-                    con.netOutBytes += written;
-                    con.processor.addNetOutBytes(written);
-                    con.lastWriteTime = TimeUtil.currentTimeMillis();
-                } else {
-                    break;
+        while (true) {
+            final int start = pendingOffset;
+            int count = pendingCount;
+            pendingOffset = 0;
+            pendingCount = 0;
+            if (count == 0) {
+                count = gatherQueue();
+                if (count <= 0) {
+                    return true;
                 }
             }
 
-            if (buffer.hasRemaining()) {
+            int offset = writeGathered(start, count);
+            if (offset < count) {
+                pendingOffset = offset;
+                pendingCount = count;
                 return false;
-            } else {
-                con.writeBuffer = null;
-                con.recycle(buffer);
             }
         }
-        while ((buffer = con.writeQueue.poll()) != null) {
+    }
+
+    /**
+     * only the writing thread polls the queue
+     *
+     * @return the count of buffers gathered, 0 if the queue is empty, -1 if the connection is closed
+     */
+    private int gatherQueue() {
+        int count = 0;
+        ByteBuffer buffer;
+        while (count < MAX_GATHER_BUFFERS && (buffer = con.writeQueue.peek()) != null) {
             if (buffer.limit() == 0) {
+                if (count > 0) {
+                    break;
+                }
+                con.writeQueue.poll();
                 con.recycle(buffer);
                 con.close("quit send");
-                return true;
+                return -1;
             }
-
+            con.writeQueue.poll();
             buffer.flip();
-            try {
-                while (buffer.hasRemaining()) {
-                    written = channel.write(buffer);
-                    if (written > 0) {
-                        con.lastWriteTime = TimeUtil.currentTimeMillis();
-                        con.netOutBytes += written;
-                        con.processor.addNetOutBytes(written);
-                        con.lastWriteTime = TimeUtil.currentTimeMillis();
-                    } else {
-                        break;
-                    }
+            gathered[count++] = buffer;
+        }
+        return count;
+    }
+
+    /**
+     * @return the index of the first buffer not written completely
+     */
+    private int writeGathered(int start, int count) throws IOException {
+        int offset = start;
+        try {
+            while (offset < count) {
+                long written = channel.write(gathered, offset, count - offset);
+                con.processor.addNetWriteCount(1);
+                if (written > 0) {
+                    con.netOutBytes += written;
+                    con.processor.addNetOutBytes(written);
+                    con.lastWriteTime = TimeUtil.currentTimeMillis();
+                }
+                while (offset < count && !gathered[offset].hasRemaining()) {
+                    con.recycle(gathered[offset]);
+                    gathered[offset++] = null;
+                }
+                if (written <= 0) {
+                    break;
                 }
-            } catch (IOException e) {
-                con.recycle(buffer);
-                throw e;
-            }
-            if (buffer.hasRemaining()) {
-                con.writeBuffer = buffer;
-                return false;
-            } else {
-                con.recycle(buffer);
             }
+        } catch (IOException e) {
+            recycleGathered(offset, count);
+            throw e;
+        }
+        return offset;
+    }
+
+    private void recycleGathered(int offset, int count) {
+        for (int i = offset; i < count; i++) {
+            con.recycle(gathered[i]);
+            gathered[i] = null;
+        }
+    }
+
+    /**
+     * the writer is never released after it, so the pending buffers are not written any more
+     */
+    @Override
+    public void cleanup() {
+        if (writing.compareAndSet(false, true)) {
+            recycleGathered(pendingOffset, pendingCount);
+            pendingOffset = 0;
+            pendingCount = 0;
         }
-        return true;
     }
 
     private void disableWrite() {
         try {
             SelectionKey key = this.processKey;
-            key.interestOps(key.interestOps() & OP_NOT_WRITE);
+            synchronized (opsLock) {
+                key.interestOps(key.interestOps() & OP_NOT_WRITE);
+            }
         } catch (Exception e) {
             AbstractConnection.LOGGER.info("can't disable write " + e + " con " + con);
         }
@@ -137,7 +203,9 @@ public class NIOSocketWR extends SocketWR {
         boolean needWakeup = false;
         try {
             SelectionKey key = this.processKey;
-            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            synchronized (opsLock) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
             needWakeup = true;
         } catch (Exception e) {
             AbstractConnection.LOGGER.info("can't enable write " + e);
@@ -148,6 +216,39 @@ public class NIOSocketWR extends SocketWR {
         }
     }
 
+    @Override
+    public void disableRead() {
+        try {
+            synchronized (opsLock) {
+                readDisabled = true;
+                SelectionKey key = this.processKey;
+                if (key != null && key.isValid()) {
+                    key.interestOps(key.interestOps() & OP_NOT_READ);
+                }
+            }
+        } catch (Exception e) {
+            AbstractConnection.LOGGER.info("can't disable read " + e + " con " + con);
+        }
+    }
+
+    @Override
+    public void enableRead() {
+        try {
+            SelectionKey key;
+            synchronized (opsLock) {
+                readDisabled = false;
+                key = this.processKey;
+                if (key == null || !key.isValid() || (key.interestOps() & SelectionKey.OP_READ) != 0) {
+                    return;
+                }
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+            key.selector().wakeup();
+        } catch (Exception e) {
+            AbstractConnection.LOGGER.info("can't enable read " + e + " con " + con);
+        }
+    }
+
     private void clearSelectionKey() {
         try {
             SelectionKey key = this.processKey;
@@ -12,4 +12,17 @@ public abstract class SocketWR {
     public abstract void asyncRead() throws IOException;
 
     public abstract void doNextWriteCheck();
+
+    /**
+     * stop reading the socket until enableRead is called, the data already read is still handled
+     */
+    public abstract void disableRead();
+
+    public abstract void enableRead();
+
+    /**
+     * recycle the buffers kept by the writer, called when the connection is closed
+     */
+    public void cleanup() {
+    }
 }
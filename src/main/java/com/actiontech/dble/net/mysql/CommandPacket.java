@@ -94,6 +94,7 @@ public class CommandPacket extends MySQLPacket {
 
     @Override
     public void write(BackendAIOConnection c) {
+        c.startCommand();
         ByteBuffer buffer = c.allocate();
         try {
             BufferUtil.writeUB3(buffer, calcPacketSize());
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.net.mysql;
+
+import com.actiontech.dble.backend.mysql.BufferUtil;
+import com.actiontech.dble.net.AbstractConnection;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+/**
+ * compressed-packet
+ * <p>
+ * http://dev.mysql.com/doc/internals/en/compressed-packet-header.html
+ * <p>
+ * header
+ * 3 Bytes   length of compressed payload
+ * 1 Bytes   compressed sequence id
+ * 3 Bytes   length of payload before compression
+ * <p>
+ * (body)
+ * n Bytes   compressed content or uncompressed content
+ * <p>
+ * | -------------------------------------------------------------------------------------- |
+ * | comp-length  |  seq-id  | uncomp-len   |                Compressed Payload             |
+ * | ------------------------------------------------ ------------------------------------- |
+ * |  22 00 00    |   00     |  32 00 00    | compress("\x2e\x00\x00\x00\x03select ...")    |
+ * | -------------------------------------------------------------------------------------- |
+ * <p>
+ * Q:why body is compressed content or uncompressed content
+ * A:Usually payloads less than 50 bytes (compressionThreshold) aren't compressed.
+ * <p>
+ * one codec per connection, the Deflater and Inflater are reused by all the packets of the connection.
+ * the payload is a part of the stream of mysql packets, so all the bytes of one write are compressed
+ * together, up to 16M bytes per compressed packet.
+ * <p>
+ * the compressed sequence id counts on by itself, it restarts from 0 when the client side starts a command
+ * (see startCommand), and the side which reads a compressed packet goes on from its sequence id.
+ * the sequence id of mysql packets is not used, it wraps at 256 in a large result set or file.
+ */
+public final class CompressedPacketCodec {
+    public static final int HEADER_SIZE = 7;
+    private static final int MAX_PAYLOAD_LENGTH = 0xffffff;
+    // the work arrays larger than it are not kept by the connection
+    private static final int MAX_KEEP_ARRAY_SIZE = 1024 * 1024;
+
+    private final int threshold;
+    private final Deflater deflater;
+    private final Inflater inflater = new Inflater();
+    private boolean ended = false;
+
+    // the compressed sequence id of the next compressed packet
+    private int sequenceId = 0;
+    // the bytes of current mysql packet not written yet
+    private int packetLeft = 0;
+    // the incomplete header of mysql packet at the end of last write
+    private final byte[] headerTail = new byte[MySQLPacket.PACKET_HEADER_SIZE - 1];
+    private int headerTailLength = 0;
+    private byte[] rawArray;
+    private byte[] deflateArray;
+
+    private byte[] inflateArray;
+    // the incomplete mysql packet at the end of last compressed packet read
+    private byte[] unfinished;
+
+    public CompressedPacketCodec(int threshold, int level) {
+        this.threshold = threshold;
+        this.deflater = new Deflater((level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) ? Deflater.DEFAULT_COMPRESSION : level);
+    }
+
+    /**
+     * compress the bytes in the buffer into the compressed packets, the buffer is recycled
+     *
+     * @return the buffer of compressed packets, null if nothing to write
+     */
+    public synchronized ByteBuffer compress(ByteBuffer input, AbstractConnection con) {
+        input.flip();
+        if (ended) {
+            con.recycle(input);
+            return null;
+        }
+        int length = headerTailLength + input.remaining();
+        rawArray = ensureCapacity(rawArray, length);
+        byte[] raw = rawArray;
+        System.arraycopy(headerTail, 0, raw, 0, headerTailLength);
+        input.get(raw, headerTailLength, input.remaining());
+        con.recycle(input);
+        headerTailLength = 0;
+
+        length = scanPackets(raw, length);
+        ByteBuffer output = null;
+        if (length > 0) {
+            output = con.allocate();
+            for (int offset = 0; offset < length; offset += MAX_PAYLOAD_LENGTH) {
+                output = writeCompressedPacket(raw, offset, Math.min(MAX_PAYLOAD_LENGTH, length - offset), output, con);
+            }
+        }
+        rawArray = releaseIfLarge(rawArray);
+        deflateArray = releaseIfLarge(deflateArray);
+        return output;
+    }
+
+    /**
+     * the next write is the start of a new command, which restarts the compressed sequence id
+     */
+    public synchronized void startCommand() {
+        sequenceId = 0;
+    }
+
+    /**
+     * follow the boundaries of mysql packets, the incomplete header at the end is kept to the next write
+     *
+     * @return the length of bytes to compress
+     */
+    private int scanPackets(byte[] raw, int length) {
+        int position = 0;
+        while (position < length) {
+            if (packetLeft > 0) {
+                int step = Math.min(packetLeft, length - position);
+                position += step;
+                packetLeft -= step;
+            } else if (length - position < MySQLPacket.PACKET_HEADER_SIZE) {
+                headerTailLength = length - position;
+                System.arraycopy(raw, position, headerTail, 0, headerTailLength);
+                return position;
+            } else {
+                packetLeft = readUB3(raw, position) + MySQLPacket.PACKET_HEADER_SIZE;
+            }
+        }
+        return length;
+    }
+
+    private ByteBuffer writeCompressedPacket(byte[] raw, int offset, int length, ByteBuffer output, AbstractConnection con) {
+        int compressedLength = length < threshold ? -1 : deflate(raw, offset, length);
+        ByteBuffer buffer;
+        if (compressedLength < 0) {
+            buffer = con.checkWriteBuffer(output, HEADER_SIZE + length, false);
+            BufferUtil.writeUB3(buffer, length);
+            buffer.put((byte) sequenceId);
+            BufferUtil.writeUB3(buffer, 0);
+            buffer.put(raw, offset, length);
+        } else {
+            buffer = con.checkWriteBuffer(output, HEADER_SIZE + compressedLength, false);
+            BufferUtil.writeUB3(buffer, compressedLength);
+            buffer.put((byte) sequenceId);
+            BufferUtil.writeUB3(buffer, length);
+            buffer.put(deflateArray, 0, compressedLength);
+        }
+        sequenceId = (sequenceId + 1) & 0xff;
+        return buffer;
+    }
+
+    /**
+     * @return the length of compressed bytes in deflateArray, -1 if it is not shorter than the raw bytes
+     */
+    private int deflate(byte[] raw, int offset, int length) {
+        deflateArray = ensureCapacity(deflateArray, length);
+        deflater.reset();
+        deflater.setInput(raw, offset, length);
+        deflater.finish();
+        int total = 0;
+        while (!deflater.finished()) {
+            if (total >= length) {
+                return -1;
+            }
+            total += deflater.deflate(deflateArray, total, length - total);
+        }
+        return total < length ? total : -1;
+    }
+
+    /**
+     * @param data one compressed packet
+     * @return the mysql packets in it
+     */
+    public synchronized List<byte[]> decompress(byte[] data) {
+        if (ended) {
+            return Collections.emptyList();
+        }
+        sequenceId = (data[3] + 1) & 0xff;
+        int length = readUB3(data, 4);
+        if (length == 0) {
+            return splitPackets(data, HEADER_SIZE, data.length - HEADER_SIZE);
+        }
+        inflateArray = ensureCapacity(inflateArray, length);
+        byte[] out = inflateArray;
+        inflater.reset();
+        inflater.setInput(data, HEADER_SIZE, data.length - HEADER_SIZE);
+        int total = 0;
+        try {
+            while (total < length && !inflater.finished()) {
+                int count = inflater.inflate(out, total, length - total);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                total += count;
+            }
+        } catch (DataFormatException e) {
+            throw new RuntimeException(e);
+        }
+        inflateArray = releaseIfLarge(inflateArray);
+        return splitPackets(out, 0, total);
+    }
+
+    private List<byte[]> splitPackets(byte[] in, int offset, int length) {
+        byte[] array = in;
+        int position = offset;
+        int end = offset + length;
+        if (unfinished != null) {
+            array = new byte[unfinished.length + length];
+            System.arraycopy(unfinished, 0, array, 0, unfinished.length);
+            System.arraycopy(in, offset, array, unfinished.length, length);
+            position = 0;
+            end = array.length;
+            unfinished = null;
+        }
+
+        List<byte[]> packets = new ArrayList<>();
+        while (position < end) {
+            int readLength = end - position;
+            int packetLength = readLength < MySQLPacket.PACKET_HEADER_SIZE ? Integer.MAX_VALUE :
+                    readUB3(array, position) + MySQLPacket.PACKET_HEADER_SIZE;
+            if (readLength < packetLength) {
+                unfinished = Arrays.copyOfRange(array, position, end);
+                break;
+            }
+            packets.add(Arrays.copyOfRange(array, position, position + packetLength));
+            position += packetLength;
+        }
+        return packets;
+    }
+
+    public synchronized void end() {
+        if (!ended) {
+            ended = true;
+            deflater.end();
+            inflater.end();
+            rawArray = null;
+            deflateArray = null;
+            inflateArray = null;
+            unfinished = null;
+        }
+    }
+
+    private static byte[] ensureCapacity(byte[] array, int length) {
+        if (array != null && array.length >= length) {
+            return array;
+        }
+        return new byte[length];
+    }
+
+    private static byte[] releaseIfLarge(byte[] array) {
+        return (array != null && array.length > MAX_KEEP_ARRAY_SIZE) ? null : array;
+    }
+
+    private static int readUB3(byte[] data, int offset) {
+        int i = data[offset] & 0xff;
+        i |= (data[offset + 1] & 0xff) << 8;
+        i |= (data[offset + 2] & 0xff) << 16;
+        return i;
+    }
+}
@@ -13,9 +13,7 @@ import com.actiontech.dble.net.FrontendConnection;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * From server to client. One packet for each row in the result set.
@@ -45,12 +43,13 @@ public class RowDataPacket extends MySQLPacket {
 
     private int fieldCount;
     public final List<byte[]> fieldValues;
-    private Map<RowDataComparator, List<byte[]>> cmpValues;
+    /* the compare values cached for the last comparator, a row is sorted by one comparator at a time */
+    private RowDataComparator cmpComparator;
+    private List<byte[]> cmpValue;
 
     public RowDataPacket(int fieldCount) {
         this.fieldCount = fieldCount;
         this.fieldValues = new ArrayList<>(fieldCount);
-        cmpValues = new HashMap<>(1);
     }
 
     public void add(byte[] value) {
@@ -145,11 +144,12 @@ public class RowDataPacket extends MySQLPacket {
 
 
     public List<byte[]> getCmpValue(RowDataComparator comparator) {
-        return cmpValues.get(comparator);
+        return comparator == cmpComparator ? cmpValue : null;
     }
 
-    public void cacheCmpValue(RowDataComparator comparator, List<byte[]> cmpValue) {
-        this.cmpValues.put(comparator, cmpValue);
+    public void cacheCmpValue(RowDataComparator comparator, List<byte[]> value) {
+        this.cmpValue = value;
+        this.cmpComparator = comparator;
     }
 
     public int getFieldCount() {
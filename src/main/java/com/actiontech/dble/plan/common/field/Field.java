@@ -20,6 +20,7 @@ import org.apache.log4j.Logger;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 
 public abstract class Field {
     public static Field getFieldItem(byte[] name, byte[] db, byte[] table, byte[] orgTable, int type, int charsetIndex, int fieldLength,
@@ -184,6 +185,16 @@ public abstract class Field {
 
     public abstract int compare(byte[] v1, byte[] v2);
 
+    /**
+     * the key for hashing the value, the keys of v1 and v2 are equal if compare(v1, v2) == 0
+     *
+     * @param v the value of the field
+     * @return null if the value is null
+     */
+    public Object getHashKey(byte[] v) {
+        return v == null ? null : ByteBuffer.wrap(v);
+    }
+
     public boolean getDate(MySQLTime ltime, long fuzzydate) {
         String res = valStr();
         return res == null || MyTime.strToDatetimeWithWarn(res, ltime, fuzzydate);
@@ -93,6 +93,18 @@ public class FieldBit extends Field {
             }
     }
 
+    @Override
+    public Object getHashKey(byte[] v) {
+        if (v == null)
+            return null;
+        try {
+            return getBitInt(v);
+        } catch (Exception e) {
+            LOGGER.info("String to biginteger exception!", e);
+            return super.getHashKey(v);
+        }
+    }
+
     /**
      * Big endian
      *
@@ -115,4 +115,18 @@ public abstract class FieldReal extends FieldNum {
                 return -1;
             }
     }
+
+    @Override
+    public Object getHashKey(byte[] v) {
+        if (v == null)
+            return null;
+        try {
+            BigDecimal bd = new BigDecimal(MySQLcom.getFullString(javaCharsetName, v));
+            // 1.0 and 1.00 are equal by compare
+            return bd.signum() == 0 ? BigDecimal.ZERO : bd.stripTrailingZeros();
+        } catch (Exception e) {
+            LOGGER.info("String to biginteger exception!", e);
+            return super.getHashKey(v);
+        }
+    }
 }
@@ -121,4 +121,16 @@ public abstract class FieldStr extends Field {
         }
     }
 
+    @Override
+    public Object getHashKey(byte[] v) {
+        if (v == null)
+            return null;
+        try {
+            return MySQLcom.getFullString(javaCharsetName, v).toUpperCase();
+        } catch (Exception e) {
+            LOGGER.info("String to biginteger exception!", e);
+            return super.getHashKey(v);
+        }
+    }
+
 }
@@ -62,4 +62,18 @@ public abstract class FieldTemporaWithDate extends FieldTemporal {
                 return -1;
             }
     }
+
+    @Override
+    public Object getHashKey(byte[] v) {
+        if (v == null)
+            return null;
+        try {
+            MySQLTime ltime = new MySQLTime();
+            MyTime.strToDatetimeWithWarn(MySQLcom.getFullString(javaCharsetName, v), ltime, MyTime.TIME_FUZZY_DATE);
+            return MyTime.timeToLonglongDatetimePacked(ltime);
+        } catch (Exception e) {
+            LOGGER.info("String to biginteger exception!", e);
+            return super.getHashKey(v);
+        }
+    }
 }
@@ -74,4 +74,18 @@ public class FieldTime extends FieldTemporal {
         }
     }
 
+    @Override
+    public Object getHashKey(byte[] v) {
+        if (v == null)
+            return null;
+        try {
+            MySQLTime ltime = new MySQLTime();
+            MyTime.strToTimeWithWarn(MySQLcom.getFullString(javaCharsetName, v), ltime);
+            return MyTime.timeToLonglongDatetimePacked(ltime);
+        } catch (Exception e) {
+            Field.LOGGER.info("String to biginteger exception!", e);
+            return super.getHashKey(v);
+        }
+    }
+
 }
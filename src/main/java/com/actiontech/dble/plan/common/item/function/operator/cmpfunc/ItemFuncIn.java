@@ -62,11 +62,13 @@ public class ItemFuncIn extends ItemFuncOptNeg {
                 haveNull = true;
                 continue;
             }
-            if (nullValue = left.isNullValue())
-                return BigInteger.ZERO;
             ArgComparator cmp = new ArgComparator(left, right);
             cmp.setCmpFunc(this, left, right, false);
-            if (cmp.compare() == 0 && !right.isNullValue())
+            // the null value of left is known after it is compared
+            int result = cmp.compare();
+            if (nullValue = left.isNullValue())
+                return BigInteger.ZERO;
+            if (result == 0 && !right.isNullValue())
                 return !negated ? BigInteger.ONE : BigInteger.ZERO;
             haveNull |= right.isNull();
         }
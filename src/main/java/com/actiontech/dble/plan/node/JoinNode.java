@@ -29,7 +29,7 @@ public class JoinNode extends PlanNode {
 
 
     public enum Strategy {
-        SORTMERGE, NESTLOOP
+        SORTMERGE, NESTLOOP, HASHJOIN
     }
 
     private boolean isNotIn = false;
@@ -73,6 +73,8 @@ public class JoinNode extends PlanNode {
     private List<ERTable> erKeys = new ArrayList<>();
 
     private Strategy strategy = Strategy.SORTMERGE;
+    // the hash table of hash join is built on the left node
+    private boolean isLeftHashBuild = false;
 
     public JoinNode() {
         this.leftOuter = false;
@@ -463,6 +465,14 @@ public class JoinNode extends PlanNode {
         this.strategy = strategy;
     }
 
+    public boolean isLeftHashBuild() {
+        return isLeftHashBuild;
+    }
+
+    public void setLeftHashBuild(boolean leftHashBuild) {
+        this.isLeftHashBuild = leftHashBuild;
+    }
+
     public Item getOtherJoinOnFilter() {
         return otherJoinOnFilter;
     }
@@ -482,6 +492,9 @@ public class JoinNode extends PlanNode {
             ToStringUtil.appendln(sb, tabTittle + "Join");
         }
         ToStringUtil.appendln(sb, tabContent + "joinStrategy: " + this.getStrategy());
+        if (this.getStrategy() == Strategy.HASHJOIN) {
+            ToStringUtil.appendln(sb, tabContent + "hashBuild: " + (isLeftHashBuild ? "left" : "right"));
+        }
         if (this.isInnerJoin()) {
             ToStringUtil.appendln(sb, tabContent + "type: " + "inner join");
         } else if (this.isRightOuterJoin()) {
@@ -6,7 +6,6 @@
 package com.actiontech.dble.plan.node;
 
 import com.actiontech.dble.DbleServer;
-import com.actiontech.dble.config.ServerConfig;
 import com.actiontech.dble.config.model.SchemaConfig;
 import com.actiontech.dble.config.model.TableConfig;
 import com.actiontech.dble.config.model.TableConfig.TableTypeEnum;
@@ -22,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 public class TableNode extends PlanNode {
 
@@ -34,24 +34,33 @@ public class TableNode extends PlanNode {
     private StructureMeta.TableMeta tableMeta;
     private List<SQLHint> hintList;
     private ProxyMetaManager metaManager;
+    private TableConfig tableConfig;
 
     public TableNode(String catalog, String tableName, ProxyMetaManager metaManager) {
+        this(catalog, tableName, metaManager, DbleServer.getInstance().getConfig().getSchemas(),
+                DbleServer.getInstance().getSystemVariables().isLowerCaseTableNames());
+    }
+
+    /**
+     * @param schemas the schemas of the config
+     */
+    public TableNode(String catalog, String tableName, ProxyMetaManager metaManager, Map<String, SchemaConfig> schemas,
+                     boolean lowerCaseTableNames) {
         if (catalog == null || tableName == null)
             throw new RuntimeException("Table db or name is null error!");
         this.schema = catalog;
         this.tableName = tableName;
         this.metaManager = metaManager;
-        ServerConfig config = DbleServer.getInstance().getConfig();
-        if (DbleServer.getInstance().getSystemVariables().isLowerCaseTableNames()) {
+        if (lowerCaseTableNames) {
             this.schema = this.schema.toLowerCase();
             this.tableName = this.tableName.toLowerCase();
         }
-        SchemaConfig schemaConfig = config.getSchemas().get(this.schema);
+        SchemaConfig schemaConfig = schemas.get(this.schema);
         if (schemaConfig == null) {
             throw new RuntimeException("schema " + this.schema + " is not exists!");
         }
         this.tableMeta = metaManager.getSyncTableMeta(this.schema, this.tableName);
-        TableConfig tableConfig = schemaConfig.getTables().get(this.tableName);
+        this.tableConfig = schemaConfig.getTables().get(this.tableName);
         if (this.tableMeta == null) {
             String errorMsg = "table " + this.tableName + " is not exists!";
             if (tableConfig != null || schemaConfig.getDataNode() != null) {
@@ -127,6 +136,47 @@ public class TableNode extends PlanNode {
         return this.schema;
     }
 
+    public ProxyMetaManager getMetaManager() {
+        return metaManager;
+    }
+
+    /**
+     * @return the config of the table if it is sharded by a partition column, else null
+     */
+    public TableConfig getShardingConfig() {
+        if (tableConfig == null || tableConfig.getTableType() == TableTypeEnum.TYPE_GLOBAL_TABLE ||
+                tableConfig.getPartitionColumn() == null || tableConfig.getRule() == null) {
+            return null;
+        }
+        return tableConfig;
+    }
+
+    /**
+     * @param keys the columns of this table
+     * @return the index of the partition column in the keys, -1 if not found
+     */
+    public int findShardingKey(List<Item> keys) {
+        return findShardingKey(getShardingConfig(), keys);
+    }
+
+    /**
+     * @param tableConfig the config returned by getShardingConfig
+     * @param keys        the columns of the table
+     * @return the index of the partition column in the keys, -1 if not found
+     */
+    public static int findShardingKey(TableConfig tableConfig, List<Item> keys) {
+        if (tableConfig == null) {
+            return -1;
+        }
+        for (int index = 0; index < keys.size(); index++) {
+            Item key = keys.get(index);
+            if (key.type() == Item.ItemType.FIELD_ITEM && tableConfig.getPartitionColumn().equalsIgnoreCase(key.getItemName())) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
     @Override
     public int getHeight() {
         return 1;
@@ -21,6 +21,7 @@ import com.actiontech.dble.route.parser.util.Pair;
 import com.actiontech.dble.util.StringUtil;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -151,14 +152,14 @@ public class ERJoinChooser {
                 this.makedERJnList.add(erJoinNode);
             }
         }
-        if (makedERJnList.isEmpty())
-            // no er join
-            return jn;
-
         List<PlanNode> others = new ArrayList<>();
         // make makedErJnList at the beginning,join with ER
         others.addAll(makedERJnList);
         others.addAll(joinUnits);
+        boolean reordered = orderByEstimatedRows(others);
+        if (makedERJnList.isEmpty() && !reordered)
+            // no er join
+            return jn;
         for (int i = 0; i < others.size(); i++) {
             // make up the unit which cna;t optimized  and global table
             PlanNode tnewOther = others.get(i);
@@ -242,6 +243,68 @@ public class ERJoinChooser {
         return joinNode;
     }
 
+    /**
+     * order the join units by the rows estimated from the table statistics: begin with the unit which has
+     * the fewest rows, then join the smallest unit which has a join key with the units before it
+     *
+     * @param units
+     * @return true if the order is changed, the order is kept if the rows of any unit are unknown
+     */
+    private boolean orderByEstimatedRows(List<PlanNode> units) {
+        if (units.size() < 2)
+            return false;
+        Map<PlanNode, Long> rows = new IdentityHashMap<>();
+        for (PlanNode unit : units) {
+            long unitRows = JoinCostModel.estimateRows(unit, jn);
+            if (unitRows == JoinCostModel.UNKNOWN_ROWS)
+                return false;
+            rows.put(unit, unitRows);
+        }
+        List<PlanNode> rest = new ArrayList<>(units);
+        List<PlanNode> ordered = new ArrayList<>(units.size());
+        while (!rest.isEmpty()) {
+            PlanNode next = null;
+            for (PlanNode unit : rest) {
+                if (isJoinedTo(unit, ordered) && (next == null || rows.get(unit) < rows.get(next)))
+                    next = unit;
+            }
+            if (next == null) {
+                // the first unit, or no unit has a join key with the ordered units
+                for (PlanNode unit : rest) {
+                    if (next == null || rows.get(unit) < rows.get(next))
+                        next = unit;
+                }
+            }
+            ordered.add(next);
+            rest.remove(next);
+        }
+        boolean changed = false;
+        for (int i = 0; i < units.size(); i++) {
+            if (units.get(i) != ordered.get(i)) {
+                units.set(i, ordered.get(i));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private boolean isJoinedTo(PlanNode unit, List<PlanNode> ordered) {
+        for (List<JoinKeyInfo> selList : selLists) {
+            boolean hasUnit = false;
+            boolean hasOrdered = false;
+            for (JoinKeyInfo jki : selList) {
+                if (jki.tn == unit) {
+                    hasUnit = true;
+                } else if (ordered.contains(jki.tn)) {
+                    hasOrdered = true;
+                }
+            }
+            if (hasUnit && hasOrdered)
+                return true;
+        }
+        return false;
+    }
+
     /**
      * just makeJoinNode according with wishes
      *
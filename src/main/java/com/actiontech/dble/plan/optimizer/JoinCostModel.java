@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.plan.optimizer;
+
+import com.actiontech.dble.meta.ProxyMetaManager;
+import com.actiontech.dble.meta.TableStatistics;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.ItemField;
+import com.actiontech.dble.plan.common.item.function.ItemFunc;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncEqual;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncIn;
+import com.actiontech.dble.plan.common.item.function.operator.logic.ItemCondAnd;
+import com.actiontech.dble.plan.common.item.function.operator.logic.ItemCondOr;
+import com.actiontech.dble.plan.node.JoinNode;
+import com.actiontech.dble.plan.node.PlanNode;
+import com.actiontech.dble.plan.node.QueryNode;
+import com.actiontech.dble.plan.node.TableNode;
+import com.actiontech.dble.plan.util.PlanUtil;
+import com.actiontech.dble.route.parser.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * estimate the rows of plan node by the table statistics collected from the data nodes,
+ * the selectivity of the filter which can't be estimated is guessed as MySQL does.
+ */
+public final class JoinCostModel {
+    public static final long UNKNOWN_ROWS = -1;
+    private static final double EQUAL_SELECTIVITY = 0.1;
+    private static final double RANGE_SELECTIVITY = 1.0 / 3;
+    private static final double OTHER_SELECTIVITY = 0.5;
+
+    private JoinCostModel() {
+    }
+
+    /**
+     * @return UNKNOWN_ROWS if the statistics of any table in the node are not collected
+     */
+    public static long estimateRows(PlanNode node) {
+        long rows;
+        switch (node.type()) {
+            case TABLE:
+                rows = estimateTableRows((TableNode) node);
+                break;
+            case JOIN:
+                rows = estimateJoinRows((JoinNode) node);
+                break;
+            case QUERY:
+                rows = estimateRows(((QueryNode) node).getChild());
+                break;
+            case MERGE:
+                rows = 0;
+                for (PlanNode child : node.getChildren()) {
+                    long childRows = estimateRows(child);
+                    if (childRows == UNKNOWN_ROWS)
+                        return UNKNOWN_ROWS;
+                    rows += childRows;
+                }
+                break;
+            default:
+                return UNKNOWN_ROWS;
+        }
+        if (node.getLimitTo() > 0 && (rows == UNKNOWN_ROWS || rows > node.getLimitTo()))
+            rows = node.getLimitTo();
+        return rows;
+    }
+
+    /**
+     * estimate the rows of an inner join unit before the where of the join is pushed down to it
+     *
+     * @param join the join whose where is used, only the conditions which refer to the unit alone
+     * @return UNKNOWN_ROWS if the statistics of any table in the unit are not collected
+     */
+    public static long estimateRows(PlanNode unit, JoinNode join) {
+        long rows = estimateRows(unit);
+        Item where = join.getWhereFilter();
+        if (rows == UNKNOWN_ROWS || rows == 0 || where == null || unit.type() != PlanNode.PlanNodeType.TABLE)
+            return rows;
+        double selectivity = getUnitSelectivity(where, (TableNode) unit, join);
+        return Math.max(1, (long) (rows * selectivity));
+    }
+
+    private static double getUnitSelectivity(Item where, TableNode unit, JoinNode join) {
+        if (where instanceof ItemCondAnd) {
+            double selectivity = 1;
+            for (Item arg : ((ItemCondAnd) where).arguments()) {
+                selectivity *= getUnitSelectivity(arg, unit, join);
+            }
+            return selectivity;
+        }
+        if (!where.getReferTables().isEmpty() && isUnitOnly(where, unit, join))
+            return getSelectivity(where, getStatistics(unit));
+        return 1;
+    }
+
+    private static boolean isUnitOnly(Item item, TableNode unit, JoinNode join) {
+        if (item instanceof ItemField) {
+            Pair<TableNode, ItemField> column = PlanUtil.findColumnInTableLeaf((ItemField) item, join);
+            return column != null && column.getKey() == unit;
+        } else if (item.basicConstItem()) {
+            return true;
+        } else if (!(item instanceof ItemFunc) || item.isWithSubQuery()) {
+            return false;
+        }
+        for (Item arg : item.arguments()) {
+            if (!isUnitOnly(arg, unit, join))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * describe the joins of an optimized plan in the order they are executed, with the estimated rows
+     *
+     * @return {join, strategy and estimated rows} of every join
+     */
+    public static List<String[]> explain(PlanNode node) {
+        List<String[]> result = new ArrayList<>();
+        explain(node, result);
+        return result;
+    }
+
+    private static void explain(PlanNode node, List<String[]> result) {
+        for (PlanNode child : node.getChildren()) {
+            explain(child, result);
+        }
+        if (node.type() != PlanNode.PlanNodeType.JOIN)
+            return;
+        JoinNode jn = (JoinNode) node;
+        StringBuilder msg = new StringBuilder("strategy: ").append(jn.getStrategy());
+        if (jn.getStrategy() == JoinNode.Strategy.HASHJOIN) {
+            msg.append(", hash build: ").append(jn.isLeftHashBuild() ? "left" : "right");
+        }
+        msg.append(", rows: ").append(rowsToString(estimateRows(jn)));
+        msg.append(", left rows: ").append(rowsToString(estimateRows(jn.getLeftNode())));
+        msg.append(", right rows: ").append(rowsToString(estimateRows(jn.getRightNode())));
+        result.add(new String[]{getName(jn), msg.toString()});
+    }
+
+    private static String getName(PlanNode node) {
+        if (node.type() == PlanNode.PlanNodeType.JOIN && node.getAlias() == null) {
+            JoinNode jn = (JoinNode) node;
+            String joinType = jn.isInnerJoin() ? " INNER JOIN " : (jn.isLeftOuterJoin() ? " LEFT JOIN " : " JOIN ");
+            return "(" + getName(jn.getLeftNode()) + joinType + getName(jn.getRightNode()) + ")";
+        }
+        if (node.getAlias() != null)
+            return node.getAlias();
+        if (node.type() == PlanNode.PlanNodeType.TABLE)
+            return ((TableNode) node).getTableName();
+        return node.type().toString();
+    }
+
+    private static String rowsToString(long rows) {
+        return rows == UNKNOWN_ROWS ? "unknown" : String.valueOf(rows);
+    }
+
+    private static long estimateTableRows(TableNode tn) {
+        TableStatistics statistics = getStatistics(tn);
+        if (statistics == null)
+            return UNKNOWN_ROWS;
+        long rows = statistics.getRowCount();
+        if (tn.getWhereFilter() == null || rows == 0)
+            return rows;
+        return Math.max(1, (long) (rows * getSelectivity(tn.getWhereFilter(), statistics)));
+    }
+
+    private static long estimateJoinRows(JoinNode jn) {
+        long leftRows = estimateRows(jn.getLeftNode());
+        long rightRows = estimateRows(jn.getRightNode());
+        if (leftRows == UNKNOWN_ROWS || rightRows == UNKNOWN_ROWS)
+            return UNKNOWN_ROWS;
+        double rows = (double) leftRows * rightRows;
+        for (ItemFuncEqual filter : jn.getJoinFilter()) {
+            long leftDistinct = getDistinct(filter.arguments().get(0), jn.getLeftNode(), leftRows);
+            long rightDistinct = getDistinct(filter.arguments().get(1), jn.getRightNode(), rightRows);
+            // every value of the side which has fewer values is assumed to be matched
+            rows = Math.min(rows, (double) leftRows * rightRows / Math.max(1, Math.max(leftDistinct, rightDistinct)));
+        }
+        if (jn.isLeftOuterJoin())
+            rows = Math.max(rows, leftRows);
+        return (long) Math.min(rows, Long.MAX_VALUE / 2);
+    }
+
+    private static long getDistinct(Item column, PlanNode child, long childRows) {
+        if (column instanceof ItemField && child instanceof TableNode) {
+            TableStatistics statistics = getStatistics((TableNode) child);
+            long cardinality = statistics == null ? UNKNOWN_ROWS : statistics.getCardinality(column.getItemName());
+            if (cardinality != UNKNOWN_ROWS)
+                return Math.min(cardinality, childRows);
+        }
+        return childRows;
+    }
+
+    private static TableStatistics getStatistics(TableNode tn) {
+        ProxyMetaManager tmManager = tn.getMetaManager();
+        if (tmManager == null || tn.getSchema() == null)
+            return null;
+        return tmManager.getTableStatistics(tn.getSchema(), tn.getPureName());
+    }
+
+    private static double getSelectivity(Item filter, TableStatistics statistics) {
+        if (filter instanceof ItemCondAnd) {
+            double selectivity = 1;
+            for (Item arg : ((ItemCondAnd) filter).arguments()) {
+                selectivity *= getSelectivity(arg, statistics);
+            }
+            return selectivity;
+        } else if (filter instanceof ItemCondOr) {
+            double selectivity = 0;
+            for (Item arg : ((ItemCondOr) filter).arguments()) {
+                selectivity += getSelectivity(arg, statistics);
+            }
+            return Math.min(1, selectivity);
+        } else if (!(filter instanceof ItemFunc)) {
+            return OTHER_SELECTIVITY;
+        }
+        ItemFunc func = (ItemFunc) filter;
+        switch (func.functype()) {
+            case EQ_FUNC:
+            case EQUAL_FUNC:
+                return getEqualSelectivity(func, statistics);
+            case NE_FUNC:
+                return 1 - getEqualSelectivity(func, statistics);
+            case IN_FUNC:
+                double selectivity = Math.min(1, (func.getArgCount() - 1) * getEqualSelectivity(func, statistics));
+                return ((ItemFuncIn) func).isNegated() ? 1 - selectivity : selectivity;
+            case LT_FUNC:
+            case LE_FUNC:
+            case GT_FUNC:
+            case GE_FUNC:
+            case BETWEEN:
+                return RANGE_SELECTIVITY;
+            case ISNULL_FUNC:
+                return EQUAL_SELECTIVITY;
+            default:
+                return OTHER_SELECTIVITY;
+        }
+    }
+
+    /**
+     * @return the selectivity of column = constant
+     */
+    private static double getEqualSelectivity(ItemFunc func, TableStatistics statistics) {
+        Item column = null;
+        for (Item arg : func.arguments()) {
+            if (arg instanceof ItemField) {
+                if (column != null)
+                    // column = column
+                    return EQUAL_SELECTIVITY;
+                column = arg;
+            } else if (!arg.basicConstItem()) {
+                return EQUAL_SELECTIVITY;
+            }
+        }
+        long cardinality = column == null ? UNKNOWN_ROWS : statistics.getCardinality(column.getItemName());
+        return cardinality > 0 ? 1.0 / cardinality : EQUAL_SELECTIVITY;
+    }
+}
@@ -5,18 +5,31 @@
 
 package com.actiontech.dble.plan.optimizer;
 
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.config.model.SystemConfig;
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.plan.Order;
 import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncEqual;
 import com.actiontech.dble.plan.node.JoinNode;
 import com.actiontech.dble.plan.node.JoinNode.Strategy;
+import com.actiontech.dble.plan.node.PlanNode;
 import com.actiontech.dble.plan.node.TableNode;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class JoinStrategyChooser {
     private JoinNode jn;
+    private final SystemConfig system;
 
     public JoinStrategyChooser(JoinNode jn) {
+        this(jn, DbleServer.getInstance().getConfig().getSystem());
+    }
+
+    JoinStrategyChooser(JoinNode jn, SystemConfig system) {
         this.jn = jn;
+        this.system = system;
     }
 
     /**
@@ -48,6 +61,17 @@ public class JoinStrategyChooser {
     private boolean tryInnerJoinNestLoop() {
         TableNode tnLeft = (TableNode) jn.getLeftNode();
         TableNode tnRight = (TableNode) jn.getRightNode();
+        long leftRows = JoinCostModel.estimateRows(tnLeft);
+        long rightRows = JoinCostModel.estimateRows(tnRight);
+        if (leftRows != JoinCostModel.UNKNOWN_ROWS && rightRows != JoinCostModel.UNKNOWN_ROWS) {
+            boolean isLeftSmall = leftRows <= rightRows;
+            TableNode tnBig = isLeftSmall ? tnRight : tnLeft;
+            if (!canNestLoop(Math.min(leftRows, rightRows), Math.max(leftRows, rightRows),
+                    getLookupNodes(tnBig, isLeftSmall ? jn.getRightKeys() : jn.getLeftKeys())))
+                return false;
+            handleNestLoopStrategy(isLeftSmall);
+            return true;
+        }
         boolean isLeftSmall = isSmallTable(tnLeft);
         boolean isRightSmall = isSmallTable(tnRight);
         if (isLeftSmall && isRightSmall)
@@ -67,6 +91,14 @@ public class JoinStrategyChooser {
     private boolean tryLeftJoinNestLoop() {
         TableNode tnLeft = (TableNode) jn.getLeftNode();
         TableNode tnRight = (TableNode) jn.getRightNode();
+        long leftRows = JoinCostModel.estimateRows(tnLeft);
+        long rightRows = JoinCostModel.estimateRows(tnRight);
+        if (leftRows != JoinCostModel.UNKNOWN_ROWS && rightRows != JoinCostModel.UNKNOWN_ROWS) {
+            if (!canNestLoop(leftRows, rightRows, getLookupNodes(tnRight, jn.getRightKeys())))
+                return false;
+            handleNestLoopStrategy(true);
+            return true;
+        }
         // left join and only left node has where filter
         if (isSmallTable(tnLeft) && !isSmallTable(tnRight)) {
             handleNestLoopStrategy(true);
@@ -76,6 +108,67 @@ public class JoinStrategyChooser {
         }
     }
 
+    /**
+     * use hash join instead of sort merge join when the sort merge join has to sort its children in dble
+     * and the order of its result is useless
+     *
+     * @return boolean true:join uses the hash join
+     */
+    public boolean tryHashJoin() {
+        if (jn.getStrategy() != Strategy.SORTMERGE || jn.isNotIn() || jn.getJoinFilter().isEmpty())
+            return false;
+        if (!jn.isInnerJoin() && !jn.isLeftOuterJoin())
+            return false;
+        if (jn.isLeftOrderMatch() && jn.isRightOrderMatch())
+            return false;
+        List<Order> implicitOrders = jn.getGroupBys().isEmpty() ? jn.getOrderBys() : jn.getGroupBys();
+        if (!implicitOrders.isEmpty()) {
+            Item firstOrder = implicitOrders.get(0).getItem();
+            for (ItemFuncEqual filter : jn.getJoinFilter()) {
+                if (filter.arguments().contains(firstOrder))
+                    // the result of sort merge join is ordered as needed
+                    return false;
+            }
+        }
+        jn.setStrategy(Strategy.HASHJOIN);
+        // the rows of left join's right node must be kept in the hash table
+        jn.setLeftHashBuild(jn.isInnerJoin() && isLeftHashBuild());
+        return true;
+    }
+
+    private boolean isLeftHashBuild() {
+        long leftRows = JoinCostModel.estimateRows(jn.getLeftNode());
+        long rightRows = JoinCostModel.estimateRows(jn.getRightNode());
+        if (leftRows != JoinCostModel.UNKNOWN_ROWS && rightRows != JoinCostModel.UNKNOWN_ROWS) {
+            return leftRows < rightRows;
+        }
+        return isSmallNode(jn.getLeftNode()) && !isSmallNode(jn.getRightNode());
+    }
+
+    /**
+     * the values of the small table are sent to the big table by IN filters,
+     * the values sent to one node of the big table can't be more than nestLoopRowsSize * nestLoopConnSize
+     */
+    private boolean canNestLoop(long smallRows, long bigRows, int lookupNodes) {
+        long maxRows = (long) system.getNestLoopRowsSize() * system.getNestLoopConnSize() * lookupNodes;
+        return smallRows < bigRows && smallRows <= maxRows;
+    }
+
+    /**
+     * @return the count of nodes the values are split to, the values are split by the partition
+     * function if the big table is joined by its partition column
+     */
+    private int getLookupNodes(TableNode tnBig, List<Item> bigKeys) {
+        return getLookupNodes(tnBig.getShardingConfig(), bigKeys);
+    }
+
+    static int getLookupNodes(TableConfig bigConfig, List<Item> bigKeys) {
+        if (TableNode.findShardingKey(bigConfig, bigKeys) < 0) {
+            return 1;
+        }
+        return bigConfig.getDataNodes().size();
+    }
+
     private void handleNestLoopStrategy(boolean isLeftSmall) {
         jn.setStrategy(Strategy.NESTLOOP);
         TableNode tnLeft = (TableNode) jn.getLeftNode();
@@ -93,4 +186,8 @@ public class JoinStrategyChooser {
     private boolean isSmallTable(TableNode tn) {
         return tn.getWhereFilter() != null;
     }
+
+    private boolean isSmallNode(PlanNode node) {
+        return node.getLimitTo() != -1 || (node.type() == PlanNode.PlanNodeType.TABLE && isSmallTable((TableNode) node));
+    }
 }
@@ -15,18 +15,33 @@ public final class JoinStrategyProcessor {
     }
 
     public static PlanNode optimize(PlanNode qtn) {
+        return optimize(qtn, true, false);
+    }
+
+    /**
+     * must be called after OrderByPusher, the hash join is chosen by whether the children are ordered
+     *
+     * @param useNestLoop try the nest loop join for the join of two tables
+     * @param useHashJoin try the hash join for the join which is not nest loop
+     */
+    public static PlanNode optimize(PlanNode qtn, boolean useNestLoop, boolean useHashJoin) {
         if (PlanUtil.isGlobalOrER(qtn))
             return qtn;
         if (qtn.type() == PlanNode.PlanNodeType.JOIN) {
             JoinNode jn = (JoinNode) qtn;
-            if (jn.getLeftNode().type() == PlanNode.PlanNodeType.TABLE && jn.getRightNode().type() == PlanNode.PlanNodeType.TABLE) {
-                JoinStrategyChooser chooser = new JoinStrategyChooser((JoinNode) qtn);
-                chooser.tryNestLoop();
-                return qtn;
+            JoinStrategyChooser chooser = new JoinStrategyChooser(jn);
+            if (useNestLoop && jn.getLeftNode().type() == PlanNode.PlanNodeType.TABLE &&
+                    jn.getRightNode().type() == PlanNode.PlanNodeType.TABLE) {
+                if (chooser.tryNestLoop()) {
+                    return qtn;
+                }
+            }
+            if (useHashJoin) {
+                chooser.tryHashJoin();
             }
         }
         for (PlanNode child : qtn.getChildren())
-            optimize(child);
+            optimize(child, useNestLoop, useHashJoin);
         return qtn;
     }
 }
@@ -57,8 +57,9 @@ public final class MyOptimizer {
                 node = SelectedProcessor.optimize(node);
 
                 boolean useJoinStrategy = DbleServer.getInstance().getConfig().getSystem().isUseJoinStrategy();
-                if (useJoinStrategy) {
-                    node = JoinStrategyProcessor.optimize(node);
+                boolean useHashJoin = DbleServer.getInstance().getConfig().getSystem().isUseHashJoin();
+                if (useJoinStrategy || useHashJoin) {
+                    node = JoinStrategyProcessor.optimize(node, useJoinStrategy, useHashJoin);
                 }
             }
             return node;
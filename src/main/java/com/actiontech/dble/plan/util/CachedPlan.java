@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.plan.util;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.cache.CachePool;
+import com.actiontech.dble.plan.Order;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.node.JoinNode;
+import com.actiontech.dble.plan.node.MergeNode;
+import com.actiontech.dble.plan.node.PlanNode;
+import com.actiontech.dble.plan.node.PlanNode.PlanNodeType;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.*;
+import com.alibaba.druid.sql.dialect.mysql.ast.expr.MySqlCharExpr;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlASTVisitorAdapter;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlOutputVisitor;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * the optimized plan of a complex select, cached in the pool SQLPlanCache by the schema, the charset, the version
+ * of the table metas and the statement.
+ * <p>
+ * The handler builder writes the push down names into the items of the plan, so a plan is used by one query at a
+ * time: the idle plans of a sql are kept in a queue, a query takes one out and gives it back after it ends well and
+ * its handlers are terminated, the query which fails just drops it. The push down names are restored before the plan
+ * is used again.
+ * The plans with sub queries or nest loop joins are not cached, they are changed while the query is running.
+ * <p>
+ * Only the statements without literals, variables and non-deterministic functions are cached: the optimizer folds the
+ * constant filters and copies them across the join, so the literals can't be bound into a plan again. They are
+ * checked on the statement parsed by the route before the cache is looked up, and the key is the statement printed
+ * by the same visitor as the names of the items, so the statements differing only in the case of the keywords or
+ * the spaces share the plan.
+ */
+public final class CachedPlan {
+    public static final String CACHE_NAME = "SQLPlanCache";
+    private static final int MAX_IDLE_PLANS = 4;
+    private static final Set<String> NON_DETERMINISTIC_FUNCTIONS = new HashSet<>(Arrays.asList(
+            "NOW", "SYSDATE", "CURDATE", "CURRENT_DATE", "CURTIME", "CURRENT_TIME", "CURRENT_TIMESTAMP", "LOCALTIME",
+            "LOCALTIMESTAMP", "UTC_DATE", "UTC_TIME", "UTC_TIMESTAMP", "UNIX_TIMESTAMP", "RAND", "UUID", "UUID_SHORT",
+            "CONNECTION_ID", "LAST_INSERT_ID", "FOUND_ROWS", "ROW_COUNT", "USER", "CURRENT_USER", "SESSION_USER",
+            "SYSTEM_USER", "DATABASE", "SCHEMA", "VERSION", "SLEEP", "BENCHMARK", "GET_LOCK", "RELEASE_LOCK",
+            "IS_FREE_LOCK", "IS_USED_LOCK", "MASTER_POS_WAIT"));
+    /* the functions called without the parentheses, the others are names of columns */
+    private static final Set<String> NON_DETERMINISTIC_KEYWORDS = new HashSet<>(Arrays.asList(
+            "CURRENT_DATE", "CURRENT_TIME", "CURRENT_TIMESTAMP", "LOCALTIME", "LOCALTIMESTAMP", "UTC_DATE", "UTC_TIME",
+            "UTC_TIMESTAMP", "CURRENT_USER"));
+
+    private final CachePool pool;
+    private final String key;
+    private IdlePlans idlePlans;
+    private PlanNode node;
+    private final Map<Item, String> pushDownNames = new IdentityHashMap<>();
+
+    private CachedPlan(CachePool pool, String key, IdlePlans idlePlans) {
+        this.pool = pool;
+        this.key = key;
+        this.idlePlans = idlePlans;
+    }
+
+    /**
+     * take an idle plan of the statement, the plan returned has no node if none is idle
+     *
+     * @return null if the plans are not cached or the statement is not cacheable
+     */
+    public static CachedPlan take(String schema, int charsetIndex, SQLStatement statement) {
+        if (!isCacheable(statement)) {
+            return null;
+        }
+        CachePool pool = DbleServer.getInstance().getCacheService().getCachePool(CACHE_NAME);
+        if (pool == null) {
+            return null;
+        }
+        return take(pool, DbleServer.getInstance().getTmManager().getVersion(), schema, charsetIndex, statement);
+    }
+
+    /**
+     * @param version the version of the table metas
+     */
+    static CachedPlan take(CachePool pool, int version, String schema, int charsetIndex, SQLStatement statement) {
+        StringBuilder sql = new StringBuilder();
+        statement.accept(new MySqlOutputVisitor(sql));
+        String key = schema + '_' + charsetIndex + '_' + version + '_' + sql;
+        IdlePlans idle = (IdlePlans) pool.get(key);
+        CachedPlan plan = idle == null ? null : idle.plans.poll();
+        if (plan == null) {
+            return new CachedPlan(pool, key, idle);
+        }
+        for (Map.Entry<Item, String> entry : plan.pushDownNames.entrySet()) {
+            entry.getKey().setPushDownName(entry.getValue());
+        }
+        return plan;
+    }
+
+    public PlanNode getNode() {
+        return node;
+    }
+
+    /**
+     * keep the plan just optimized, call it before the handlers are built
+     *
+     * @return false if the plan can not be cached
+     */
+    public boolean setNode(PlanNode planNode) {
+        if (!isCacheable(planNode)) {
+            return false;
+        }
+        this.node = planNode;
+        savePushDownNames(planNode);
+        return true;
+    }
+
+    /**
+     * give the plan back after the query ends well
+     */
+    public void giveBack() {
+        if (idlePlans == null) {
+            idlePlans = new IdlePlans();
+            idlePlans.plans.offer(this);
+            pool.putIfAbsent(key, idlePlans);
+        } else {
+            idlePlans.plans.offer(this);
+        }
+    }
+
+    /**
+     * the statement is not cacheable if it has literals, variables or functions whose values change by the calls
+     */
+    static boolean isCacheable(SQLStatement statement) {
+        CacheableVisitor visitor = new CacheableVisitor();
+        statement.accept(visitor);
+        return visitor.cacheable;
+    }
+
+    public static boolean isCacheable(PlanNode planNode) {
+        if (planNode.isSubQuery() || !planNode.getSubQueries().isEmpty() || planNode.getNestLoopFilters() != null) {
+            return false;
+        }
+        if (planNode.type() == PlanNodeType.JOIN && ((JoinNode) planNode).getStrategy() == JoinNode.Strategy.NESTLOOP) {
+            return false;
+        }
+        for (PlanNode child : planNode.getChildren()) {
+            if (!isCacheable(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void savePushDownNames(PlanNode planNode) {
+        saveItems(planNode.getColumnsSelected());
+        saveItem(planNode.getWhereFilter());
+        saveItem(planNode.getHavingFilter());
+        saveOrders(planNode.getGroupBys());
+        saveOrders(planNode.getOrderBys());
+        if (planNode.type() == PlanNodeType.JOIN) {
+            JoinNode join = (JoinNode) planNode;
+            for (Item filter : join.getJoinFilter()) {
+                saveItem(filter);
+            }
+            saveItem(join.getOtherJoinOnFilter());
+            saveOrders(join.getLeftJoinOnOrders());
+            saveOrders(join.getRightJoinOnOrders());
+        } else if (planNode.type() == PlanNodeType.MERGE) {
+            saveItems(((MergeNode) planNode).getComeInFields());
+        }
+        for (PlanNode child : planNode.getChildren()) {
+            savePushDownNames(child);
+        }
+    }
+
+    private void saveOrders(List<Order> orders) {
+        for (Order order : orders) {
+            saveItem(order.getItem());
+        }
+    }
+
+    private void saveItems(List<Item> items) {
+        for (Item item : items) {
+            saveItem(item);
+        }
+    }
+
+    private void saveItem(Item item) {
+        if (item == null || pushDownNames.containsKey(item)) {
+            return;
+        }
+        pushDownNames.put(item, item.getPushDownName());
+        if (item.arguments() != null) {
+            saveItems(item.arguments());
+        }
+    }
+
+    private static final class IdlePlans {
+        private final BlockingQueue<CachedPlan> plans = new ArrayBlockingQueue<>(MAX_IDLE_PLANS);
+    }
+
+    private static final class CacheableVisitor extends MySqlASTVisitorAdapter {
+        private boolean cacheable = true;
+
+        private boolean notCacheable() {
+            cacheable = false;
+            return false;
+        }
+
+        @Override
+        public boolean visit(SQLIntegerExpr x) {
+            return notCacheable();
+        }
+
+        @Override
+        public boolean visit(SQLNumberExpr x) {
+            return notCacheable();
+        }
+
+        @Override
+        public boolean visit(SQLCharExpr x) {
+            return notCacheable();
+        }
+
+        @Override
+        public boolean visit(MySqlCharExpr x) {
+            return notCacheable();
+        }
+
+        @Override
+        public boolean visit(SQLNCharExpr x) {
+            return notCacheable();
+        }
+
+        @Override
+        public boolean visit(SQLHexExpr x) {
+            return notCacheable();
+        }
+
+        @Override
+        public boolean visit(SQLBinaryExpr x) {
+            return notCacheable();
+        }
+
+        @Override
+        public boolean visit(SQLBooleanExpr x) {
+            return notCacheable();
+        }
+
+        @Override
+        public boolean visit(SQLDateExpr x) {
+            return notCacheable();
+        }
+
+        @Override
+        public boolean visit(SQLTimestampExpr x) {
+            return notCacheable();
+        }
+
+        /* the user variables, the system variables and the placeholders */
+        @Override
+        public boolean visit(SQLVariantRefExpr x) {
+            return notCacheable();
+        }
+
+        @Override
+        public boolean visit(SQLMethodInvokeExpr x) {
+            if (NON_DETERMINISTIC_FUNCTIONS.contains(x.getMethodName().toUpperCase())) {
+                return notCacheable();
+            }
+            return cacheable;
+        }
+
+        @Override
+        public boolean visit(SQLIdentifierExpr x) {
+            if (NON_DETERMINISTIC_KEYWORDS.contains(x.getName().toUpperCase())) {
+                return notCacheable();
+            }
+            return cacheable;
+        }
+    }
+}
@@ -7,8 +7,10 @@ package com.actiontech.dble.route;
 
 import com.actiontech.dble.util.FormatUtil;
 import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.stat.TableStat.Condition;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * @author mycat
@@ -55,6 +57,11 @@ public final class RouteResultset implements Serializable {
     // if force slave set runOnSlave,default null means not effect
     private Boolean runOnSlave = null;
     private String[] groupByCols;
+    // the value of the partition column which the single node route is calculated from
+    private transient String shardingValue;
+    // the tables and the conditions found while routing, for the sql statistics
+    private transient List<String> statTables;
+    private transient List<Condition> statConditions;
 
     public String[] getGroupByCols() {
         return groupByCols;
@@ -272,6 +279,14 @@ public final class RouteResultset implements Serializable {
         this.canRunInReadDB = canRunInReadDB;
     }
 
+    public String getShardingValue() {
+        return shardingValue;
+    }
+
+    public void setShardingValue(String shardingValue) {
+        this.shardingValue = shardingValue;
+    }
+
     public SQLStatement getSqlStatement() {
         return this.sqlStatement;
     }
@@ -280,6 +295,28 @@ public final class RouteResultset implements Serializable {
         this.sqlStatement = sqlStatement;
     }
 
+    /**
+     * @return null if the sql is not parsed while routing
+     */
+    public List<String> getStatTables() {
+        return statTables;
+    }
+
+    public void setStatTables(List<String> statTables) {
+        this.statTables = statTables;
+    }
+
+    /**
+     * @return null if the conditions are not found while routing
+     */
+    public List<Condition> getStatConditions() {
+        return statConditions;
+    }
+
+    public void setStatConditions(List<Condition> statConditions) {
+        this.statConditions = statConditions;
+    }
+
 
     @Override
     public String toString() {
@@ -14,6 +14,7 @@ import com.actiontech.dble.route.factory.RouteStrategyFactory;
 import com.actiontech.dble.route.handler.HintHandler;
 import com.actiontech.dble.route.handler.HintHandlerFactory;
 import com.actiontech.dble.route.handler.HintSQLHandler;
+import com.actiontech.dble.route.util.ParameterizedSql;
 import com.actiontech.dble.server.ServerConnection;
 import com.actiontech.dble.server.parser.ServerParse;
 import org.slf4j.Logger;
@@ -28,10 +29,12 @@ public class RouteService {
     private static final Logger LOGGER = LoggerFactory.getLogger(RouteService.class);
     private static final String HINT_TYPE = "_serverHintType";
     private final CachePool sqlRouteCache;
+    private final CachePool sqlRouteShapeCache;
     private LayerCachePool tableId2DataNodeCache;
 
     public RouteService(CacheService cacheService) {
         sqlRouteCache = cacheService.getCachePool("SQLRouteCache");
+        sqlRouteShapeCache = cacheService.getCachePool("SQLRouteShapeCache");
         loadTableId2DataNodeCache(cacheService);
     }
 
@@ -60,6 +63,15 @@ public class RouteService {
             }
         }
 
+        /*
+         *  SELECT  SQL which differs only in literals from a routed one
+         */
+        ParameterizedSql parameterizedSql = parseShape(schema, sqlType, stmt);
+        rrs = routeByShape(schema, sc, parameterizedSql, stmt);
+        if (rrs != null) {
+            return rrs;
+        }
+
         /*!dble: sql = select name from aa */
         /*!dble: schema = test */
         int hintLength = RouteService.isHintSql(stmt);
@@ -114,9 +126,43 @@ public class RouteService {
         if (rrs != null && sqlType == ServerParse.SELECT && rrs.isCacheAble() && !LOGGER.isDebugEnabled() && sqlRouteCache != null) {
             sqlRouteCache.putIfAbsent(cacheKey, rrs);
         }
+        cacheShape(schema, sc, parameterizedSql, rrs);
         return rrs;
     }
 
+    /**
+     * @return null if the route of the sql is not cached by shape
+     */
+    private ParameterizedSql parseShape(SchemaConfig schema, int sqlType, String stmt) {
+        if (sqlType != ServerParse.SELECT || LOGGER.isDebugEnabled() || sqlRouteShapeCache == null ||
+                schema == null || RouteService.isHintSql(stmt) != -1) {
+            return null;
+        }
+        return ParameterizedSql.parse(stmt.trim());
+    }
+
+    private String getShapeKey(SchemaConfig schema, ServerConnection sc, ParameterizedSql parameterizedSql) {
+        return schema.getName() + "_" + sc.getUser() + "_" + parameterizedSql.getShape();
+    }
+
+    private RouteResultset routeByShape(SchemaConfig schema, ServerConnection sc, ParameterizedSql parameterizedSql, String stmt) {
+        if (parameterizedSql == null) {
+            return null;
+        }
+        RouteShape shape = (RouteShape) sqlRouteShapeCache.get(getShapeKey(schema, sc, parameterizedSql));
+        return shape == null ? null : shape.route(parameterizedSql, stmt.trim());
+    }
+
+    private void cacheShape(SchemaConfig schema, ServerConnection sc, ParameterizedSql parameterizedSql, RouteResultset rrs) {
+        if (parameterizedSql == null || rrs == null || !rrs.isCacheAble()) {
+            return;
+        }
+        RouteShape shape = RouteShape.create(parameterizedSql, rrs);
+        if (shape != null) {
+            sqlRouteShapeCache.putIfAbsent(getShapeKey(schema, sc, parameterizedSql), shape);
+        }
+    }
+
     private static int isHintSql(String sql) {
         char[] annotation = Versions.ANNOTATION_NAME.toCharArray();
         int j = 0;
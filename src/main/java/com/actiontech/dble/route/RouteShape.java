@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.route.util.ParameterizedSql;
+import com.actiontech.dble.route.util.RouterUtil;
+import com.actiontech.dble.server.parser.ServerParse;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * the route of a single table SELECT which is sent to one data node without being rewritten,
+ * cached by the shape of the sql.
+ * <p>
+ * The data node is either fixed, or calculated by the partition function from the only
+ * literal which is the value of the partition column: the right operand of "partition column =".
+ */
+public final class RouteShape implements Serializable {
+    private static final long serialVersionUID = -2236498712093418371L;
+
+    private final String schema;
+    private final String table;
+    private final String tableAlias;
+    private final String primaryKey;
+    private final int parameterCount;
+    /**
+     * the index of the partition column value in the parameters, -1 means the data node is fixed
+     */
+    private final int parameterIndex;
+    private final String partitionColumn;
+    private final String dataNode;
+
+    private RouteShape(RouteResultset rrs, int parameterCount, int parameterIndex, String partitionColumn) {
+        this.schema = rrs.getSchema();
+        this.table = rrs.getTable();
+        this.tableAlias = rrs.getTableAlias();
+        this.primaryKey = rrs.getPrimaryKey();
+        this.parameterCount = parameterCount;
+        this.parameterIndex = parameterIndex;
+        this.partitionColumn = partitionColumn;
+        this.dataNode = parameterIndex < 0 ? rrs.getNodes()[0].getName() : null;
+    }
+
+    /**
+     * @return null if the route of the sql depends on more than the value of the partition column
+     */
+    public static RouteShape create(ParameterizedSql sql, RouteResultset rrs) {
+        return create(sql, rrs, DbleServer.getInstance().getConfig().getSchemas());
+    }
+
+    static RouteShape create(ParameterizedSql sql, RouteResultset rrs, Map<String, SchemaConfig> schemas) {
+        if (rrs.getSqlType() != ServerParse.SELECT || rrs.isNeedOptimizer() || rrs.isFinishedExecute() ||
+                rrs.isGlobalTable() || rrs.isCallStatement() || rrs.isLoadData() ||
+                rrs.getCanRunInReadDB() != null || rrs.getRunOnSlave() != null ||
+                rrs.getSchema() == null || rrs.getTable() == null ||
+                rrs.getNodes() == null || rrs.getNodes().length != 1 ||
+                !rrs.getSrcStatement().equals(rrs.getNodes()[0].getStatement())) {
+            return null;
+        }
+        SchemaConfig schemaConfig = schemas.get(rrs.getSchema());
+        if (schemaConfig == null) {
+            return null;
+        }
+        if (RouterUtil.isNoSharding(schemaConfig, rrs.getTable())) {
+            return new RouteShape(rrs, sql.getParameterCount(), -1, null);
+        }
+        TableConfig tc = schemaConfig.getTables().get(rrs.getTable());
+        if (tc == null || tc.isGlobalTable()) {
+            return null;
+        }
+        if (tc.getDataNodes().size() == 1) {
+            return new RouteShape(rrs, sql.getParameterCount(), -1, null);
+        }
+        String shardingValue = rrs.getShardingValue();
+        if (shardingValue == null || tc.getPartitionColumn() == null) {
+            return null;
+        }
+        // the literal compared with the partition column, not any literal of the same text
+        String partitionColumn = tc.getPartitionColumn().toLowerCase();
+        int index = -1;
+        for (int i = 0; i < sql.getParameterCount(); i++) {
+            if (partitionColumn.equals(sql.getColumn(i))) {
+                if (index >= 0) {
+                    return null;
+                }
+                index = i;
+            }
+        }
+        if (index < 0 || !sql.isPlainValue(index) || !shardingValue.equals(sql.getValue(index))) {
+            return null;
+        }
+        if (!rrs.getNodes()[0].getName().equals(calculateDataNode(tc, shardingValue))) {
+            return null;
+        }
+        return new RouteShape(rrs, sql.getParameterCount(), index, tc.getPartitionColumn());
+    }
+
+    /**
+     * @return null if the shape can't route the sql, the sql must be routed normally
+     */
+    public RouteResultset route(ParameterizedSql sql, String stmt) {
+        if (sql.getParameterCount() != parameterCount) {
+            return null;
+        }
+        String node = dataNode;
+        if (parameterIndex >= 0) {
+            if (!sql.isPlainValue(parameterIndex)) {
+                return null;
+            }
+            SchemaConfig schemaConfig = DbleServer.getInstance().getConfig().getSchemas().get(schema);
+            TableConfig tc = schemaConfig == null ? null : schemaConfig.getTables().get(table);
+            if (tc == null || !partitionColumn.equals(tc.getPartitionColumn())) {
+                return null;
+            }
+            node = calculateDataNode(tc, sql.getValue(parameterIndex));
+            if (node == null) {
+                return null;
+            }
+        }
+        RouteResultset rrs = new RouteResultset(stmt, ServerParse.SELECT);
+        rrs.setSchema(schema);
+        rrs.setTable(table);
+        rrs.setTableAlias(tableAlias);
+        if (primaryKey != null) {
+            rrs.setPrimaryKey(primaryKey);
+        }
+        return RouterUtil.routeToSingleNode(rrs, node);
+    }
+
+    private static String calculateDataNode(TableConfig tc, String value) {
+        Integer nodeIndex;
+        try {
+            nodeIndex = tc.getRule().getRuleAlgorithm().calculate(value);
+        } catch (RuntimeException e) {
+            // let the normal route report the error
+            return null;
+        }
+        ArrayList<String> dataNodes = tc.getDataNodes();
+        if (nodeIndex == null || nodeIndex < 0 || nodeIndex >= dataNodes.size()) {
+            return null;
+        }
+        return dataNodes.get(nodeIndex);
+    }
+}
@@ -36,6 +36,7 @@ public class ServerSchemaStatVisitor extends MySqlSchemaStatVisitor {
     private boolean hasOrCondition = false;
     private List<WhereUnit> whereUnits = new CopyOnWriteArrayList<>();
     private List<WhereUnit> storedWhereUnits = new CopyOnWriteArrayList<>();
+    private List<String> visitedTables = new ArrayList<>();
 
     private void reset() {
         this.conditions.clear();
@@ -55,6 +56,19 @@ public class ServerSchemaStatVisitor extends MySqlSchemaStatVisitor {
         return hasOrCondition;
     }
 
+    /**
+     * @return the tables in the order they are visited, the first one is the main table
+     */
+    public List<String> getVisitedTables() {
+        return visitedTables;
+    }
+
+    private void addVisitedTable(String table) {
+        if (!visitedTables.contains(table)) {
+            visitedTables.add(table);
+        }
+    }
+
     @Override
     public boolean visit(SQLInSubQueryExpr x) {
         super.visit(x);
@@ -274,6 +288,7 @@ public class ServerSchemaStatVisitor extends MySqlSchemaStatVisitor {
         if (identName != null) {
             String ident = identName.toString();
             setCurrentTable(ident);
+            addVisitedTable(ident);
 
             Map<String, String> aliasMap = getAliasMap();
             aliasMap.put(ident, ident);
@@ -303,6 +318,7 @@ public class ServerSchemaStatVisitor extends MySqlSchemaStatVisitor {
             if (this.containsSubQuery(ident)) {
                 return false;
             }
+            addVisitedTable(ident);
 
             Map<String, String> aliasMap = this.getAliasMap();
             if (aliasMap != null) {
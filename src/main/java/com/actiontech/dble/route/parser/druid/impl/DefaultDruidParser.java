@@ -63,6 +63,7 @@ public class DefaultDruidParser implements DruidParser {
         if (visitor.getNotSupportMsg() != null) {
             throw new SQLNonTransientException(visitor.getNotSupportMsg());
         }
+        setStatInfo(rrs, visitor);
         List<List<Condition>> mergedConditionList = new ArrayList<>();
         if (visitor.hasOrCondition()) {
             mergedConditionList = visitor.splitConditions();
@@ -74,6 +75,17 @@ public class DefaultDruidParser implements DruidParser {
         return schema;
     }
 
+    /**
+     * keep the tables and the conditions for the sql statistics, so the sql needn't be parsed again
+     */
+    private void setStatInfo(RouteResultset rrs, ServerSchemaStatVisitor visitor) {
+        rrs.setStatTables(new ArrayList<>(visitor.getVisitedTables()));
+        // the conditions in OR are split later, leave them to the statistics
+        if (!visitor.hasOrCondition()) {
+            rrs.setStatConditions(new ArrayList<>(visitor.getConditions()));
+        }
+    }
+
     private Map<String, String> getTableAliasMap(Map<String, String> originTableAliasMap) {
         if (originTableAliasMap == null) {
             return null;
@@ -6,7 +6,6 @@
 package com.actiontech.dble.route.parser.druid.impl;
 
 import com.actiontech.dble.DbleServer;
-import com.actiontech.dble.backend.mysql.nio.handler.FetchStoreNodeOfChildTableHandler;
 import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.config.ServerPrivileges;
 import com.actiontech.dble.config.ServerPrivileges.CheckType;
@@ -138,54 +137,65 @@ public class DruidInsertParser extends DruidInsertReplaceParser {
         return (insertStmt.getValuesList() != null && insertStmt.getValuesList().size() > 1);
     }
 
-    private void parserChildTable(SchemaInfo schemaInfo, final RouteResultset rrs, MySqlInsertStatement insertStmt,
+    private void parserChildTable(SchemaInfo schemaInfo, final RouteResultset rrs, final MySqlInsertStatement insertStmt,
                                   final ServerConnection sc) throws SQLNonTransientException {
 
         final SchemaConfig schema = schemaInfo.getSchemaConfig();
         String tableName = schemaInfo.getTable();
         final TableConfig tc = schema.getTables().get(tableName);
+        final List<ValuesClause> rows = new ArrayList<>(insertStmt.getValuesList());
         if (isMultiInsert(insertStmt)) {
-            String msg = "ChildTable multi insert not provided";
-            LOGGER.info(msg);
-            throw new SQLNonTransientException(msg);
+            checkColumnSize(schemaInfo, insertStmt.getColumns(), rows);
         }
         String joinKey = tc.getJoinKey();
-        int joinKeyIndex = getJoinKeyIndex(schemaInfo, insertStmt, joinKey);
-        final String joinKeyVal = insertStmt.getValues().getValues().get(joinKeyIndex).toString();
-        String realVal = StringUtil.removeApostrophe(joinKeyVal);
+        final int joinKeyIndex = getJoinKeyIndex(schemaInfo, insertStmt, joinKey);
         final String sql = RouterUtil.removeSchema(insertStmt.toString(), schemaInfo.getSchema());
         rrs.setStatement(sql);
         // try to route by ER parent partion key
-        RouteResultset theRrs = routeByERParentKey(rrs, tc, realVal);
-        if (theRrs != null) {
-            rrs.setFinishedRoute(true);
+        Map<String, List<ValuesClause>> nodeRows = routeByERParentKey(tc, rows, joinKeyIndex);
+        if (nodeRows != null) {
+            routeChildTable(schemaInfo.getSchema(), rrs, insertStmt, nodeRows);
         } else {
             rrs.setFinishedExecute(true);
+            final String schemaName = schemaInfo.getSchema();
             DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
                 //get child result will be blocked, so use ComplexQueryExecutor
                 @Override
                 public void run() {
                     // route by sql query root parent's data node
-                    String findRootTBSql = tc.getLocateRTableKeySql().toLowerCase() + joinKeyVal;
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug("to find root parent's node sql :" + findRootTBSql);
-                    }
-                    FetchStoreNodeOfChildTableHandler fetchHandler = new FetchStoreNodeOfChildTableHandler(findRootTBSql, sc.getSession2());
-                    String dn = fetchHandler.execute(schema.getName(), tc.getRootParent().getDataNodes());
-                    if (dn == null) {
+                    Map<String, List<ValuesClause>> rootNodeRows = routeByRootParent(schema.getName(), tc, rows, joinKeyIndex, sc.getSession2());
+                    if (rootNodeRows == null) {
                         sc.writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR, "can't find (root) parent sharding node for sql:" + sql);
                         return;
                     }
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug("found partition node for child table to insert " + dn + " sql :" + sql);
-                    }
-                    RouterUtil.routeToSingleNode(rrs, dn);
+                    routeChildTable(schemaName, rrs, insertStmt, rootNodeRows);
                     sc.getSession2().execute(rrs);
                 }
             });
         }
     }
 
+    /**
+     * the rows of one data node is sent in one insert
+     */
+    private void routeChildTable(String schemaName, RouteResultset rrs, MySqlInsertStatement insertStmt,
+                                 Map<String, List<ValuesClause>> nodeRows) {
+        if (nodeRows.size() == 1) {
+            RouterUtil.routeToSingleNode(rrs, nodeRows.keySet().iterator().next());
+            return;
+        }
+        RouteResultsetNode[] nodes = new RouteResultsetNode[nodeRows.size()];
+        int count = 0;
+        for (Map.Entry<String, List<ValuesClause>> node : nodeRows.entrySet()) {
+            insertStmt.setValuesList(node.getValue());
+            nodes[count] = new RouteResultsetNode(node.getKey(), rrs.getSqlType(),
+                    RouterUtil.removeSchema(insertStmt.toString(), schemaName));
+            count++;
+        }
+        rrs.setNodes(nodes);
+        rrs.setFinishedRoute(true);
+    }
+
 
     /**
      * @param schemaInfo SchemaInfo
@@ -6,29 +6,38 @@
 package com.actiontech.dble.route.parser.druid.impl;
 
 import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.backend.mysql.nio.handler.FetchStoreNodeOfChildTableHandler;
 import com.actiontech.dble.config.model.TableConfig;
 import com.actiontech.dble.meta.protocol.StructureMeta;
-import com.actiontech.dble.route.RouteResultset;
 import com.actiontech.dble.route.util.RouterUtil;
+import com.actiontech.dble.server.NonBlockingSession;
 import com.actiontech.dble.server.util.GlobalTableUtil;
-import com.actiontech.dble.sqlengine.SQLJob;
 import com.actiontech.dble.sqlengine.mpp.ColumnRoutePair;
 import com.actiontech.dble.util.StringUtil;
 import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.expr.SQLCharExpr;
 import com.alibaba.druid.sql.ast.expr.SQLIntegerExpr;
+import com.alibaba.druid.sql.ast.statement.SQLInsertStatement.ValuesClause;
 
 import java.sql.SQLNonTransientException;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 import static com.actiontech.dble.server.util.SchemaUtil.SchemaInfo;
 
 abstract class DruidInsertReplaceParser extends DefaultDruidParser {
-    protected static RouteResultset routeByERParentKey(RouteResultset rrs, TableConfig tc, String joinKeyVal)
-            throws SQLNonTransientException {
-        if (tc.getDirectRouteTC() != null) {
+    /**
+     * route the rows of child table by the partition rule of the parent directly
+     *
+     * @return data node -> rows, null if the parent key isn't the partition column of the parent
+     */
+    protected static Map<String, List<ValuesClause>> routeByERParentKey(TableConfig tc, List<ValuesClause> rows,
+                                                                       int joinKeyIndex) throws SQLNonTransientException {
+        if (tc.getDirectRouteTC() == null) {
+            return null;
+        }
+        Map<String, List<ValuesClause>> nodeRows = new LinkedHashMap<>();
+        for (ValuesClause row : rows) {
+            String joinKeyVal = StringUtil.removeApostrophe(row.getValues().get(joinKeyIndex).toString());
             Set<ColumnRoutePair> parentColVal = new HashSet<>(1);
             ColumnRoutePair pair = new ColumnRoutePair(joinKeyVal);
             parentColVal.add(pair);
@@ -36,15 +45,73 @@ abstract class DruidInsertReplaceParser extends DefaultDruidParser {
             if (dataNodeSet.isEmpty() || dataNodeSet.size() > 1) {
                 throw new SQLNonTransientException("parent key can't find  valid data node ,expect 1 but found: " + dataNodeSet.size());
             }
-            String dn = dataNodeSet.iterator().next();
-            if (SQLJob.LOGGER.isDebugEnabled()) {
-                SQLJob.LOGGER.debug("found partion node (using parent partition rule directly) for child table to insert  " + dn + " sql :" + rrs.getStatement());
+            addNodeRow(nodeRows, dataNodeSet.iterator().next(), row);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("found partion nodes (using parent partition rule directly) for child table to insert  " + nodeRows.keySet());
+        }
+        return nodeRows;
+    }
+
+    /**
+     * route the rows of child table by querying the join keys in the data nodes of the root parent,
+     * all the keys are queried in one sql per data node. it will be blocked until the query finished
+     *
+     * @return data node -> rows, null if the join key of any row is not found
+     */
+    protected static Map<String, List<ValuesClause>> routeByRootParent(String schema, TableConfig tc, List<ValuesClause> rows,
+                                                                      int joinKeyIndex, NonBlockingSession session) {
+        Set<String> joinKeyValues = new LinkedHashSet<>();
+        for (ValuesClause row : rows) {
+            joinKeyValues.add(row.getValues().get(joinKeyIndex).toString());
+        }
+        FetchStoreNodeOfChildTableHandler fetchHandler = new FetchStoreNodeOfChildTableHandler(session);
+        Map<String, String> keyNodes = fetchHandler.execute(schema, tc, joinKeyValues);
+        return groupByKeyNodes(rows, joinKeyIndex, keyNodes);
+    }
+
+    /**
+     * @param keyNodes the value of join key as it is in the sql -> the data node
+     * @return data node -> rows in the order of the sql, null if the join key of any row is not found
+     */
+    static Map<String, List<ValuesClause>> groupByKeyNodes(List<ValuesClause> rows, int joinKeyIndex,
+                                                           Map<String, String> keyNodes) {
+        Map<String, List<ValuesClause>> nodeRows = new LinkedHashMap<>();
+        for (ValuesClause row : rows) {
+            String joinKeyVal = row.getValues().get(joinKeyIndex).toString();
+            String dn = keyNodes.get(joinKeyVal);
+            if (dn == null) {
+                LOGGER.info("can't find (root) parent sharding node for join key " + joinKeyVal);
+                return null;
             }
-            return RouterUtil.routeToSingleNode(rrs, dn);
+            addNodeRow(nodeRows, dn, row);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("found partition nodes for child table to insert " + nodeRows.keySet());
         }
-        return null;
+        return nodeRows;
     }
 
+    private static void addNodeRow(Map<String, List<ValuesClause>> nodeRows, String dataNode, ValuesClause row) {
+        List<ValuesClause> valuesList = nodeRows.get(dataNode);
+        if (valuesList == null) {
+            valuesList = new ArrayList<>();
+            nodeRows.put(dataNode, valuesList);
+        }
+        valuesList.add(row);
+    }
+
+    protected void checkColumnSize(SchemaInfo schemaInfo, List<SQLExpr> columns, List<ValuesClause> rows)
+            throws SQLNonTransientException {
+        int columnNum = getTableColumns(schemaInfo, columns);
+        for (ValuesClause valueClause : rows) {
+            if (valueClause.getValues().size() != columnNum) {
+                String msg = "bad insert sql columnSize != valueSize:" + columnNum + " != " + valueClause.getValues().size() + "values:" + valueClause;
+                LOGGER.info(msg);
+                throw new SQLNonTransientException(msg);
+            }
+        }
+    }
 
     protected static String shardingValueToSting(SQLExpr valueExpr) throws SQLNonTransientException {
         String shardingValue = null;
@@ -6,7 +6,6 @@
 package com.actiontech.dble.route.parser.druid.impl;
 
 import com.actiontech.dble.DbleServer;
-import com.actiontech.dble.backend.mysql.nio.handler.FetchStoreNodeOfChildTableHandler;
 import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.config.ServerPrivileges;
 import com.actiontech.dble.config.model.SchemaConfig;
@@ -285,54 +284,66 @@ public class DruidReplaceParser extends DruidInsertReplaceParser {
     }
 
 
-    private void parserChildTable(SchemaInfo schemaInfo, final RouteResultset rrs, MySqlReplaceStatement replace, final ServerConnection sc) throws SQLNonTransientException {
+    private void parserChildTable(SchemaInfo schemaInfo, final RouteResultset rrs, final MySqlReplaceStatement replace, final ServerConnection sc) throws SQLNonTransientException {
         final SchemaConfig schema = schemaInfo.getSchemaConfig();
         String tableName = schemaInfo.getTable();
         final TableConfig tc = schema.getTables().get(tableName);
-        //check if the childtable replace with the multi
+        final List<SQLInsertStatement.ValuesClause> rows = replace.getValuesList();
+        //check the column size of every row if the childtable replace with the multi
         if (isMultiReplace(replace)) {
-            String msg = "ChildTable multi insert not provided";
-            LOGGER.info(msg);
-            throw new SQLNonTransientException(msg);
+            checkColumnSize(schemaInfo, replace.getColumns(), rows);
         }
         //find the value of child table join key
         String joinKey = tc.getJoinKey();
-        int joinKeyIndex = getJoinKeyIndex(schemaInfo, replace, joinKey);
-        final String joinKeyVal = replace.getValuesList().get(0).getValues().get(joinKeyIndex).toString();
-        String realVal = StringUtil.removeApostrophe(joinKeyVal);
+        final int joinKeyIndex = getJoinKeyIndex(schemaInfo, replace, joinKey);
         final String sql = RouterUtil.removeSchema(replace.toString(), schemaInfo.getSchema());
         rrs.setStatement(sql);
         // try to route by ER parent partition key
-        RouteResultset theRrs = routeByERParentKey(rrs, tc, realVal);
-        if (theRrs != null) {
-            rrs.setFinishedRoute(true);
+        Map<String, List<SQLInsertStatement.ValuesClause>> nodeRows = routeByERParentKey(tc, rows, joinKeyIndex);
+        if (nodeRows != null) {
+            routeChildTable(schemaInfo.getSchema(), rrs, replace, nodeRows);
         } else {
             rrs.setFinishedExecute(true);
+            final String schemaName = schemaInfo.getSchema();
             DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
                 //get child result will be blocked, so use ComplexQueryExecutor
                 @Override
                 public void run() {
                     // route by sql query root parent's data node
-                    String findRootTBSql = tc.getLocateRTableKeySql().toLowerCase() + joinKeyVal;
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug("to find root parent's node sql :" + findRootTBSql);
-                    }
-                    FetchStoreNodeOfChildTableHandler fetchHandler = new FetchStoreNodeOfChildTableHandler(findRootTBSql, sc.getSession2());
-                    String dn = fetchHandler.execute(schema.getName(), tc.getRootParent().getDataNodes());
-                    if (dn == null) {
+                    Map<String, List<SQLInsertStatement.ValuesClause>> rootNodeRows = routeByRootParent(schema.getName(), tc, rows, joinKeyIndex, sc.getSession2());
+                    if (rootNodeRows == null) {
                         sc.writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR, "can't find (root) parent sharding node for sql:" + sql);
                         return;
                     }
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug("found partition node for child table to insert " + dn + " sql :" + sql);
-                    }
-                    RouterUtil.routeToSingleNode(rrs, dn);
+                    routeChildTable(schemaName, rrs, replace, rootNodeRows);
                     sc.getSession2().execute(rrs);
                 }
             });
         }
     }
 
+    /**
+     * the rows of one data node is sent in one replace
+     */
+    private void routeChildTable(String schemaName, RouteResultset rrs, MySqlReplaceStatement replace,
+                                 Map<String, List<SQLInsertStatement.ValuesClause>> nodeRows) {
+        if (nodeRows.size() == 1) {
+            RouterUtil.routeToSingleNode(rrs, nodeRows.keySet().iterator().next());
+            return;
+        }
+        RouteResultsetNode[] nodes = new RouteResultsetNode[nodeRows.size()];
+        int count = 0;
+        for (Map.Entry<String, List<SQLInsertStatement.ValuesClause>> node : nodeRows.entrySet()) {
+            ReplaceTemp temp = new ReplaceTemp(replace);
+            temp.setValuesList(node.getValue());
+            nodes[count] = new RouteResultsetNode(node.getKey(), rrs.getSqlType(),
+                    RouterUtil.removeSchema(temp.toString(), schemaName));
+            count++;
+        }
+        rrs.setNodes(nodes);
+        rrs.setFinishedRoute(true);
+    }
+
     private boolean isMultiReplace(MySqlReplaceStatement insertStmt) {
         return (insertStmt.getValuesList() != null && insertStmt.getValuesList().size() > 1);
     }
@@ -555,6 +555,28 @@ public class DruidSelectParser extends DefaultDruidParser {
 
         rrs.setNodes(nodes);
         rrs.setFinishedRoute(true);
+        if (nodes.length == 1 && ctx.getRouteCalculateUnits().size() == 1) {
+            rrs.setShardingValue(getShardingValue(schema.getTables().get(table), ctx.getRouteCalculateUnits().get(0)));
+        }
+    }
+
+    /**
+     * the only value of the partition column which the table is routed by, null if none or more
+     */
+    private String getShardingValue(TableConfig tc, RouteCalculateUnit unit) {
+        if (tc == null || tc.isGlobalTable() || tc.getPartitionColumn() == null || tc.getParentTC() != null) {
+            return null;
+        }
+        Map<String, Map<String, Set<ColumnRoutePair>>> tablesAndConditions = unit.getTablesAndConditions();
+        if (tablesAndConditions.size() != 1) {
+            return null;
+        }
+        Map<String, Set<ColumnRoutePair>> columnsMap = tablesAndConditions.get(tc.getName());
+        Set<ColumnRoutePair> pairs = columnsMap == null ? null : columnsMap.get(tc.getPartitionColumn());
+        if (pairs == null || pairs.size() != 1) {
+            return null;
+        }
+        return pairs.iterator().next().colValue;
     }
 
     /**
@@ -9,6 +9,7 @@ import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.backend.datasource.PhysicalDBNode;
 import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
+import com.actiontech.dble.backend.mysql.nio.handler.DelegateResponseHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.ResponseHandler;
 import com.actiontech.dble.config.ServerConfig;
 import com.actiontech.dble.log.alarm.AlarmCode;
@@ -28,20 +29,35 @@ import java.util.List;
 public class FetchMySQLSequenceHandler implements ResponseHandler {
     protected static final Logger LOGGER = LoggerFactory.getLogger(FetchMySQLSequenceHandler.class);
 
-    public void execute(SequenceVal seqVal) {
+    public void execute(final SequenceVal seqVal) {
         ServerConfig conf = DbleServer.getInstance().getConfig();
         PhysicalDBNode mysqlDN = conf.getDataNodes().get(seqVal.dataNode);
         try {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("execute in data node " + seqVal.dataNode +
-                        " for fetch sequence sql " + seqVal.sql);
+                        " for fetch sequence sql " + seqVal.getFetchSql());
             }
+            ResponseHandler handler = new DelegateResponseHandler(this) {
+                @Override
+                public void connectionError(Throwable e, BackendConnection conn) {
+                    if (conn == null) {
+                        // no connection is got, e.g. waiting for the full pool timeout
+                        LOGGER.info("get connection err " + e);
+                        IncrSequenceMySQLHandler.LATEST_ERRORS.put(seqVal.seqName, e.toString());
+                        seqVal.fetchFailed(null);
+                    } else {
+                        super.connectionError(e, conn);
+                    }
+                }
+            };
             // change Select mode to Update mode. Make sure the query send to the write host
             mysqlDN.getConnection(mysqlDN.getDatabase(), true, true,
                     new RouteResultsetNode(seqVal.dataNode, ServerParse.UPDATE,
-                            seqVal.sql), this, seqVal);
+                            seqVal.getFetchSql()), handler, seqVal);
         } catch (Exception e) {
             LOGGER.info("get connection err " + e);
+            IncrSequenceMySQLHandler.LATEST_ERRORS.put(seqVal.seqName, e.toString());
+            seqVal.fetchFailed(null);
         }
 
     }
@@ -55,7 +71,7 @@ public class FetchMySQLSequenceHandler implements ResponseHandler {
         conn.setResponseHandler(this);
         ((MySQLConnection) conn).setComplexQuery(true);
         try {
-            conn.query(((SequenceVal) conn.getAttachment()).sql);
+            conn.query(((SequenceVal) conn.getAttachment()).getFetchSql());
         } catch (Exception e) {
             executeException(conn, e);
         }
@@ -63,15 +79,16 @@ public class FetchMySQLSequenceHandler implements ResponseHandler {
 
     @Override
     public void connectionError(Throwable e, BackendConnection conn) {
-        ((SequenceVal) conn.getAttachment()).dbfinished = true;
+        SequenceVal seqVal = (SequenceVal) conn.getAttachment();
         LOGGER.info("connectionError " + e);
+        IncrSequenceMySQLHandler.LATEST_ERRORS.put(seqVal.seqName, e.toString());
+        seqVal.fetchFailed(null);
 
     }
 
     @Override
     public void errorResponse(byte[] data, BackendConnection conn) {
         SequenceVal seqVal = ((SequenceVal) conn.getAttachment());
-        seqVal.dbfinished = true;
 
         ErrorPacket err = new ErrorPacket();
         err.read(data);
@@ -79,6 +96,7 @@ public class FetchMySQLSequenceHandler implements ResponseHandler {
         LOGGER.info("errorResponse " + err.getErrNo() + " " + errMsg);
         IncrSequenceMySQLHandler.LATEST_ERRORS.put(seqVal.seqName, errMsg);
         conn.release();
+        seqVal.fetchFailed(null);
 
     }
 
@@ -86,8 +104,9 @@ public class FetchMySQLSequenceHandler implements ResponseHandler {
     public void okResponse(byte[] ok, BackendConnection conn) {
         boolean executeResponse = conn.syncAndExecute();
         if (executeResponse) {
-            ((SequenceVal) conn.getAttachment()).dbfinished = true;
+            SequenceVal seqVal = (SequenceVal) conn.getAttachment();
             conn.release();
+            seqVal.fetchFinished();
         }
 
     }
@@ -102,7 +121,7 @@ public class FetchMySQLSequenceHandler implements ResponseHandler {
         if (IncrSequenceMySQLHandler.ERR_SEQ_RESULT.equals(columnVal)) {
             seqVal.dbretVal = IncrSequenceMySQLHandler.ERR_SEQ_RESULT;
             LOGGER.warn(AlarmCode.CORE_SEQUENCE_WARN + " sequnce sql returned err value ,sequence:" +
-                    seqVal.seqName + " " + columnVal + " sql:" + seqVal.sql);
+                    seqVal.seqName + " " + columnVal + " sql:" + seqVal.getFetchSql());
         } else {
             seqVal.dbretVal = columnVal;
         }
@@ -111,17 +130,18 @@ public class FetchMySQLSequenceHandler implements ResponseHandler {
 
     @Override
     public void rowEofResponse(byte[] eof, boolean isLeft, BackendConnection conn) {
-        ((SequenceVal) conn.getAttachment()).dbfinished = true;
+        SequenceVal seqVal = (SequenceVal) conn.getAttachment();
         conn.release();
+        seqVal.fetchFinished();
     }
 
     private void executeException(BackendConnection c, Throwable e) {
         SequenceVal seqVal = ((SequenceVal) c.getAttachment());
-        seqVal.dbfinished = true;
         String errMgs = e.toString();
         IncrSequenceMySQLHandler.LATEST_ERRORS.put(seqVal.seqName, errMgs);
         LOGGER.warn(AlarmCode.CORE_SEQUENCE_WARN + "executeException   " + errMgs);
         c.close("exception:" + errMgs);
+        seqVal.fetchFailed(null);
 
     }
 
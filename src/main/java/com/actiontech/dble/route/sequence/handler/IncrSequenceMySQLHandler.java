@@ -5,11 +5,13 @@
 
 package com.actiontech.dble.route.sequence.handler;
 
+import com.actiontech.dble.config.model.SystemConfig;
 import com.actiontech.dble.config.util.ConfigException;
 import com.actiontech.dble.route.util.PropertiesUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -33,11 +35,11 @@ public class IncrSequenceMySQLHandler implements SequenceHandler {
         return IncrSequenceMySQLHandler.INSTANCE;
     }
 
-    public void load(boolean isLowerCaseTableNames) {
+    public void load(boolean isLowerCaseTableNames, SystemConfig system) {
         // load sequence properties
         Properties props = PropertiesUtil.loadProps(SEQUENCE_DB_PROPS, isLowerCaseTableNames);
         removeDesertedSequenceVals(props);
-        putNewSequenceVals(props);
+        putNewSequenceVals(props, system);
     }
 
     public Set<String> getDataNodes() {
@@ -54,14 +56,17 @@ public class IncrSequenceMySQLHandler implements SequenceHandler {
         }
     }
 
-    private void putNewSequenceVals(Properties props) {
+    private void putNewSequenceVals(Properties props, SystemConfig system) {
         for (Map.Entry<Object, Object> entry : props.entrySet()) {
             String seqName = (String) entry.getKey();
             String dataNode = (String) entry.getValue();
             SequenceVal value = seqValueMap.putIfAbsent(seqName, new SequenceVal(seqName, dataNode));
             if (value != null) {
                 value.dataNode = dataNode;
+            } else {
+                value = seqValueMap.get(seqName);
             }
+            value.setSegmentConfig(system.getSequencePrefetchPercent(), system.getSequenceMaxSegmentSize());
             dataNodes.add(dataNode);
         }
     }
@@ -77,58 +82,10 @@ public class IncrSequenceMySQLHandler implements SequenceHandler {
         if (seqVal == null) {
             throw new ConfigException("can't find definition for sequence :" + seqName);
         }
-        if (!seqVal.isSuccessFetched()) {
-            return getSeqValueFromDB(seqVal);
-        } else {
-            return getNextValidSeqVal(seqVal);
-        }
-
+        return seqVal.nextValue(mysqlSeqFetcher);
     }
 
-    private Long getNextValidSeqVal(SequenceVal seqVal) throws SQLNonTransientException {
-        Long nexVal = seqVal.nextValue();
-        if (seqVal.isNexValValid(nexVal)) {
-            return nexVal;
-        } else {
-            seqVal.fetching.compareAndSet(true, false);
-            return getSeqValueFromDB(seqVal);
-        }
-    }
-
-    private long getSeqValueFromDB(SequenceVal seqVal) throws SQLNonTransientException {
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("get next segement of sequence from db for sequence:" + seqVal.seqName + " curVal " + seqVal.curVal);
-        }
-        if (seqVal.fetching.compareAndSet(false, true)) {
-            seqVal.dbretVal = null;
-            seqVal.dbfinished = false;
-            seqVal.newValueSetted.set(false);
-            mysqlSeqFetcher.execute(seqVal);
-        }
-        Long[] values = seqVal.waitFinish();
-        if (values == null) {
-            seqVal.fetching.compareAndSet(true, false);
-            throw new RuntimeException("can't fetch sequence in db,sequence :" + seqVal.seqName + " detail:" +
-                                       mysqlSeqFetcher.getLastError(seqVal.seqName));
-        } else if (values[0] == 0) {
-            seqVal.fetching.compareAndSet(true, false);
-            String msg = "sequence," + seqVal.seqName + "has not been set, please check configure in dble_sequence";
-            LOGGER.info(msg);
-            throw new SQLNonTransientException(msg);
-        } else {
-            if (seqVal.newValueSetted.compareAndSet(false, true)) {
-                seqVal.setCurValue(values[0]);
-                seqVal.maxSegValue = values[1];
-                return values[0];
-            } else {
-                return seqVal.nextValue();
-            }
-
-        }
-
+    public Collection<SequenceVal> getSequenceVals() {
+        return seqValueMap.values();
     }
 }
-
-
-
-
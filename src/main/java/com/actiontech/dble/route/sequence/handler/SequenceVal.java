@@ -5,72 +5,330 @@
 
 package com.actiontech.dble.route.sequence.handler;
 
+import java.sql.SQLNonTransientException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * the segments of a sequence fetched from dble_sequence.
+ * <p>
+ * The values are taken from the current segment without lock. When sequencePrefetchPercent of the current
+ * segment is used, the next segment is fetched asynchronously, so the callers wait only if the current segment
+ * is used up before the next one arrives. If sequenceMaxSegmentSize is larger than the increment of the
+ * sequence, the size of the segment is doubled while a segment is used up in less than SEGMENT_DURATION, and
+ * halved while it lasts much longer.
+ * <p>
  * Created by huqing.yan on 2017/7/3.
  */
 public class SequenceVal {
+    private static final long FETCH_TIMEOUT = 10 * 1000L;
+    private static final long SEGMENT_DURATION = 1000L;
 
-    AtomicBoolean newValueSetted = new AtomicBoolean(false);
-    AtomicLong curVal = new AtomicLong(0);
     volatile String dbretVal = null;
-    volatile boolean dbfinished;
-    AtomicBoolean fetching = new AtomicBoolean(false);
-    volatile long maxSegValue;
-    volatile boolean successFetched;
     volatile String dataNode;
     final String seqName;
     final String sql;
 
+    private final AtomicReference<Segment> current = new AtomicReference<>();
+    private final AtomicReference<Segment> next = new AtomicReference<>();
+    /* the segments fetched while the next one is not taken yet, taken after it in order */
+    private final ConcurrentLinkedQueue<Segment> spareSegments = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean fetching = new AtomicBoolean(false);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition fetched = lock.newCondition();
+    private volatile Exception fetchError;
+    private volatile int prefetchPercent;
+    private volatile int maxSegmentSize;
+    /**
+     * the increment in dble_sequence, 0 if not fetched
+     */
+    private volatile long increment;
+    /**
+     * the size of fetching segment, 0 means the increment in dble_sequence
+     */
+    private volatile long fetchSize;
+    private volatile long fetchStartTime;
+
+    private final AtomicLong fetchCount = new AtomicLong(0);
+    private final AtomicLong totalFetchTime = new AtomicLong(0);
+    private final AtomicLong maxFetchTime = new AtomicLong(0);
+    private final AtomicLong stallCount = new AtomicLong(0);
+    private final AtomicLong stallTime = new AtomicLong(0);
+
     public SequenceVal(String seqName, String dataNode) {
         this.seqName = seqName;
         this.dataNode = dataNode;
         sql = "SELECT dble_seq_nextval('" + seqName + "')";
     }
 
-    public boolean isNexValValid(Long nexVal) {
-        return nexVal < this.maxSegValue;
+    /**
+     * @param percent fetch the next segment when the percent of the current segment is used, 0 means not prefetch
+     * @param maxSize the max size of the segment, the increment in dble_sequence is used if it is not larger
+     */
+    public void setSegmentConfig(int percent, int maxSize) {
+        this.prefetchPercent = percent;
+        this.maxSegmentSize = maxSize;
+    }
+
+    public long nextValue(FetchMySQLSequenceHandler fetcher) throws SQLNonTransientException {
+        while (true) {
+            Segment seg = current.get();
+            if (seg != null) {
+                long val = seg.cursor.getAndIncrement();
+                if (val < seg.end) {
+                    if (val >= seg.prefetchValue && next.get() == null && !fetching.get()) {
+                        fetch(fetcher);
+                    }
+                    return val;
+                }
+            }
+            Segment nextSeg = next.get();
+            if (nextSeg != null) {
+                if (current.compareAndSet(seg, nextSeg) && next.compareAndSet(nextSeg, null)) {
+                    takeSpareSegment();
+                }
+            } else {
+                waitNextSegment(fetcher);
+            }
+        }
     }
 
-    public void setCurValue(long newValue) {
-        curVal.set(newValue);
-        successFetched = true;
+    private void takeSpareSegment() {
+        synchronized (spareSegments) {
+            Segment spare = spareSegments.peek();
+            if (spare != null && next.compareAndSet(null, spare)) {
+                spareSegments.poll();
+            }
+        }
     }
 
-    public Long[] waitFinish() {
-        long start = System.currentTimeMillis();
-        long end = start + 10 * 1000;
-        while (System.currentTimeMillis() < end) {
-            if (IncrSequenceMySQLHandler.ERR_SEQ_RESULT.equals(dbretVal)) {
-                throw new java.lang.RuntimeException(
-                        "sequence not found in db table ");
-            } else if (dbretVal != null) {
-                String[] items = dbretVal.split(",");
-                Long curValue = Long.parseLong(items[0]);
-                int span = Integer.parseInt(items[1]);
-                return new Long[]{curValue, curValue + span};
-            } else {
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    IncrSequenceMySQLHandler.LOGGER.info("wait db fetch sequnce err " + e);
+    private void waitNextSegment(FetchMySQLSequenceHandler fetcher) throws SQLNonTransientException {
+        long start = System.nanoTime();
+        long remain = TimeUnit.MILLISECONDS.toNanos(FETCH_TIMEOUT);
+        stallCount.incrementAndGet();
+        lock.lock();
+        try {
+            // the fetching finished after waiting is the result of this waiting
+            boolean tried = false;
+            while (next.get() == null && isUsedUp()) {
+                if (!fetching.get()) {
+                    if (tried && fetchError != null) {
+                        throwFetchError(fetcher);
+                    }
+                    fetch(fetcher);
+                    tried = true;
+                } else if (remain <= 0) {
+                    throw new RuntimeException("can't fetch sequence in db,sequence :" + seqName + " detail:" +
+                            fetcher.getLastError(seqName));
+                } else {
+                    remain = fetched.awaitNanos(remain);
+                    tried = true;
                 }
             }
+        } catch (InterruptedException e) {
+            IncrSequenceMySQLHandler.LOGGER.info("wait db fetch sequnce err " + e);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("can't fetch sequence in db,sequence :" + seqName + " detail:" + e);
+        } finally {
+            lock.unlock();
+            stallTime.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private boolean isUsedUp() {
+        Segment seg = current.get();
+        return seg == null || seg.cursor.get() >= seg.end;
+    }
+
+    private void throwFetchError(FetchMySQLSequenceHandler fetcher) throws SQLNonTransientException {
+        Exception error = fetchError;
+        if (error instanceof SQLNonTransientException) {
+            throw new SQLNonTransientException(error.getMessage());
+        } else if (error.getMessage() != null) {
+            throw new RuntimeException(error.getMessage());
+        }
+        throw new RuntimeException("can't fetch sequence in db,sequence :" + seqName + " detail:" +
+                fetcher.getLastError(seqName));
+    }
+
+    private void fetch(FetchMySQLSequenceHandler fetcher) {
+        if (!fetching.compareAndSet(false, true)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        fetchSize = nextFetchSize(now);
+        fetchStartTime = now;
+        fetchError = null;
+        dbretVal = null;
+        if (IncrSequenceMySQLHandler.LOGGER.isDebugEnabled()) {
+            IncrSequenceMySQLHandler.LOGGER.debug("get next segement of sequence from db for sequence:" + seqName +
+                    " size " + fetchSize);
+        }
+        fetcher.execute(this);
+    }
+
+    private long nextFetchSize(long now) {
+        long inc = increment;
+        if (inc <= 0 || maxSegmentSize <= inc) {
+            return 0;
+        }
+        long size = fetchSize > 0 ? fetchSize : inc;
+        if (fetchStartTime > 0) {
+            long elapsed = now - fetchStartTime;
+            if (elapsed < SEGMENT_DURATION) {
+                size = Math.min(size * 2, maxSegmentSize);
+            } else if (elapsed > SEGMENT_DURATION * 4) {
+                size = Math.max(size / 2, inc);
+            }
         }
-        return null;
+        return size == inc ? 0 : size;
     }
 
-    public boolean isSuccessFetched() {
-        return successFetched;
+    String getFetchSql() {
+        long size = fetchSize;
+        return size > 0 ? "SELECT dble_seq_nextvals('" + seqName + "', " + size + ")" : sql;
     }
 
-    public long nextValue() {
-        if (!successFetched) {
-            throw new java.lang.RuntimeException(
-                    "sequnce fetched failed  from db ");
+    /**
+     * called when the result of the fetching sql is returned
+     */
+    void fetchFinished() {
+        String retVal = dbretVal;
+        if (retVal == null) {
+            fetchFailed(null);
+        } else if (IncrSequenceMySQLHandler.ERR_SEQ_RESULT.equals(retVal)) {
+            fetchFailed(new RuntimeException("sequence not found in db table "));
+        } else {
+            String[] items = retVal.split(",");
+            long start = Long.parseLong(items[0]);
+            long end;
+            if (fetchSize > 0) {
+                // dble_seq_nextvals returns the first and the last value
+                end = Long.parseLong(items[1]) + 1;
+            } else {
+                increment = Long.parseLong(items[1]);
+                end = start + increment;
+            }
+            if (start <= 0 || end <= start) {
+                String msg = "sequence," + seqName + "has not been set, please check configure in dble_sequence";
+                IncrSequenceMySQLHandler.LOGGER.info(msg);
+                fetchFailed(new SQLNonTransientException(msg));
+                return;
+            }
+            long fetchTime = System.currentTimeMillis() - fetchStartTime;
+            fetchCount.incrementAndGet();
+            totalFetchTime.addAndGet(fetchTime);
+            long maxTime = maxFetchTime.get();
+            while (fetchTime > maxTime && !maxFetchTime.compareAndSet(maxTime, fetchTime)) {
+                maxTime = maxFetchTime.get();
+            }
+            Segment seg = new Segment(start, end, prefetchPercent);
+            // a prefetching caller may fetch again just after the last fetching set the next segment
+            if (!next.compareAndSet(null, seg)) {
+                spareSegments.offer(seg);
+                takeSpareSegment();
+            }
+            finishFetching();
+        }
+    }
+
+    /**
+     * @param error null if the detail is in the latest errors of the sequence
+     */
+    void fetchFailed(Exception error) {
+        fetchError = error == null ? new RuntimeException((String) null) : error;
+        if (fetchSize > 0) {
+            // dble_seq_nextvals may be not created, use dble_seq_nextval only until the config is reloaded
+            IncrSequenceMySQLHandler.LOGGER.warn("fetch " + fetchSize + " values of sequence " + seqName +
+                    " failed, the size of segment is fixed to the increment in dble_sequence");
+            maxSegmentSize = 0;
+            fetchSize = 0;
+        }
+        finishFetching();
+    }
+
+    private void finishFetching() {
+        fetching.set(false);
+        lock.lock();
+        try {
+            fetched.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getSeqName() {
+        return seqName;
+    }
+
+    public String getDataNode() {
+        return dataNode;
+    }
+
+    public long getSegmentSize() {
+        long size = fetchSize;
+        return size > 0 ? size : increment;
+    }
+
+    /**
+     * @return the count of values which can be taken without fetching
+     */
+    public long getRemaining() {
+        long remaining = 0;
+        Segment seg = current.get();
+        if (seg != null) {
+            remaining += Math.max(0, seg.end - seg.cursor.get());
+        }
+        seg = next.get();
+        if (seg != null) {
+            remaining += seg.end - seg.start;
+        }
+        for (Segment spare : spareSegments) {
+            remaining += spare.end - spare.start;
+        }
+        return remaining;
+    }
+
+    public long getFetchCount() {
+        return fetchCount.get();
+    }
+
+    public long getAvgFetchTime() {
+        long count = fetchCount.get();
+        return count == 0 ? 0 : totalFetchTime.get() / count;
+    }
+
+    public long getMaxFetchTime() {
+        return maxFetchTime.get();
+    }
+
+    public long getStallCount() {
+        return stallCount.get();
+    }
+
+    /**
+     * @return the total time in milliseconds the callers waited for fetching
+     */
+    public long getStallTime() {
+        return TimeUnit.NANOSECONDS.toMillis(stallTime.get());
+    }
+
+    private static final class Segment {
+        private final long start;
+        private final long end;
+        private final long prefetchValue;
+        private final AtomicLong cursor;
+
+        private Segment(long start, long end, int prefetchPercent) {
+            this.start = start;
+            this.end = end;
+            this.prefetchValue = prefetchPercent <= 0 ? Long.MAX_VALUE : start + (end - start) * prefetchPercent / 100;
+            this.cursor = new AtomicLong(start);
         }
-        return curVal.incrementAndGet();
     }
 }
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * the shape of a sql: integer and single quoted string literals are replaced by placeholders
+ * and collected into a parameter vector, so "where id=1" and "where id=2" have the same shape.
+ * <p>
+ * Only the literals whose text is exactly the value druid extracts are parameterized:
+ * decimals, hex/bit values and double quoted strings are kept in the shape.
+ */
+public final class ParameterizedSql {
+    private static final String NUMBER_HOLDER = "?";
+    private static final String STRING_HOLDER = "'?'";
+
+    private final String shape;
+    private final List<String> values;
+    /**
+     * the string literal which contains escapes, its text is not the value
+     */
+    private final List<Boolean> plainValues;
+    /**
+     * the column which the parameter is the value of, null if it is not the operand of "column ="
+     */
+    private final List<String> columns;
+    /**
+     * the columns of the placeholders of a prepared statement, in the order of the bound values
+     */
+    private final List<String> markerColumns;
+
+    private ParameterizedSql(String shape, List<String> values, List<Boolean> plainValues, List<String> columns,
+                             List<String> markerColumns) {
+        this.shape = shape;
+        this.values = values;
+        this.plainValues = plainValues;
+        this.columns = columns;
+        this.markerColumns = markerColumns;
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public int getParameterCount() {
+        return values.size();
+    }
+
+    public String getValue(int index) {
+        return values.get(index);
+    }
+
+    /**
+     * @return true if the text of the literal is the same as the value druid extracts from it
+     */
+    public boolean isPlainValue(int index) {
+        return plainValues.get(index);
+    }
+
+    /**
+     * @return the lower case column name without the table, if the parameter is the only right operand of
+     * "column =", like 5 in "t.id = 5 and"; null otherwise
+     */
+    public String getColumn(int index) {
+        return columns.get(index);
+    }
+
+    /**
+     * @param boundValues      the values bound to the placeholders of a prepared statement
+     * @param plainBoundValues whether the values are the same as the ones druid extracts from the bound sql
+     * @return the sql whose parameters are followed by the bound values
+     */
+    public ParameterizedSql bind(List<String> boundValues, List<Boolean> plainBoundValues) {
+        List<String> allValues = new ArrayList<>(values.size() + boundValues.size());
+        allValues.addAll(values);
+        allValues.addAll(boundValues);
+        List<Boolean> allPlainValues = new ArrayList<>(allValues.size());
+        allPlainValues.addAll(plainValues);
+        allPlainValues.addAll(plainBoundValues);
+        List<String> allColumns = new ArrayList<>(allValues.size());
+        allColumns.addAll(columns);
+        for (int i = 0; i < boundValues.size(); i++) {
+            allColumns.add(boundValues.size() == markerColumns.size() ? markerColumns.get(i) : null);
+        }
+        return new ParameterizedSql(shape, allValues, allPlainValues, allColumns, markerColumns);
+    }
+
+    /**
+     * @param sql sql
+     * @return null if the sql is not terminated correctly
+     */
+    public static ParameterizedSql parse(String sql) {
+        StringBuilder shape = new StringBuilder(sql.length());
+        List<String> values = new ArrayList<>();
+        List<Boolean> plainValues = new ArrayList<>();
+        List<String> columns = new ArrayList<>();
+        List<String> markerColumns = new ArrayList<>();
+        int len = sql.length();
+        int i = 0;
+        while (i < len) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < len && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                shape.append(' ');
+            } else if (c == '\'') {
+                int end = skipQuoted(sql, i, '\'');
+                if (end < 0) {
+                    return null;
+                }
+                String text = sql.substring(i + 1, end - 1);
+                values.add(text);
+                plainValues.add(text.indexOf('\\') < 0 && text.indexOf('\'') < 0);
+                columns.add(getEqualColumn(shape, sql, end));
+                shape.append(STRING_HOLDER);
+                i = end;
+            } else if (c == '"' || c == '`') {
+                int end = skipQuoted(sql, i, c);
+                if (end < 0) {
+                    return null;
+                }
+                shape.append(sql, i, end);
+                i = end;
+            } else if (c == '/' || c == '#' || c == '-') {
+                int end = skipComment(sql, i);
+                if (end < 0) {
+                    return null;
+                }
+                end = Math.max(end, i + 1);
+                shape.append(sql, i, end);
+                i = end;
+            } else if (isIdentifierPart(c)) {
+                int end = skipWord(sql, i);
+                String text = sql.substring(i, end);
+                if (isInteger(text)) {
+                    values.add(text);
+                    plainValues.add(text.length() == 1 || text.charAt(0) != '0');
+                    columns.add(getEqualColumn(shape, sql, end));
+                    shape.append(NUMBER_HOLDER);
+                } else {
+                    // identifier, keyword or the number which is not an integer
+                    shape.append(text);
+                }
+                i = end;
+            } else {
+                if (c == '?') {
+                    markerColumns.add(getEqualColumn(shape, sql, i + 1));
+                }
+                shape.append(c);
+                i++;
+            }
+        }
+        return new ParameterizedSql(shape.toString(), values, plainValues, columns, markerColumns);
+    }
+
+    /**
+     * @param shape the shape before the literal
+     * @param end   the index after the literal in the sql
+     * @return the column if the literal is the only right operand of "column =", null otherwise
+     */
+    private static String getEqualColumn(StringBuilder shape, String sql, int end) {
+        int next = end;
+        while (next < sql.length() && Character.isWhitespace(sql.charAt(next))) {
+            next++;
+        }
+        if (next < sql.length()) {
+            char c = sql.charAt(next);
+            // followed by an operator, like "id = 5 + 1"
+            if (c != ')' && c != ';' && c != ',' && !isIdentifierPart(c)) {
+                return null;
+            }
+        }
+        int i = skipSpaceBackward(shape, shape.length() - 1);
+        if (i < 0 || shape.charAt(i) != '=') {
+            return null;
+        }
+        i--;
+        // "<=", ">=", "!=", ":=" and "<=>"
+        if (i >= 0 && "<>!:".indexOf(shape.charAt(i)) >= 0) {
+            return null;
+        }
+        int columnEnd = skipSpaceBackward(shape, i) + 1;
+        int columnStart;
+        String column;
+        if (columnEnd > 0 && shape.charAt(columnEnd - 1) == '`') {
+            columnStart = shape.lastIndexOf("`", columnEnd - 2);
+            if (columnStart < 0 || columnEnd - columnStart < 3) {
+                return null;
+            }
+            column = shape.substring(columnStart + 1, columnEnd - 1);
+        } else {
+            columnStart = columnEnd;
+            while (columnStart > 0 && isIdentifierPart(shape.charAt(columnStart - 1))) {
+                columnStart--;
+            }
+            column = shape.substring(columnStart, columnEnd);
+            if (column.isEmpty() || isInteger(column)) {
+                return null;
+            }
+        }
+        return column.toLowerCase();
+    }
+
+    private static int skipSpaceBackward(StringBuilder shape, int start) {
+        int i = start;
+        while (i >= 0 && shape.charAt(i) == ' ') {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index after the closing quote, -1 if not closed
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int len = sql.length();
+        int i = start + 1;
+        while (i < len) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote != '`') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < len && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index after the comment, start if it is not a comment, -1 if not closed
+     */
+    private static int skipComment(String sql, int start) {
+        int len = sql.length();
+        char c = sql.charAt(start);
+        if (c == '/' && start + 1 < len && sql.charAt(start + 1) == '*') {
+            int end = sql.indexOf("*/", start + 2);
+            return end < 0 ? -1 : end + 2;
+        } else if (c == '#' || (c == '-' && start + 2 < len && sql.charAt(start + 1) == '-' &&
+                Character.isWhitespace(sql.charAt(start + 2)))) {
+            int end = sql.indexOf('\n', start);
+            return end < 0 ? len : end + 1;
+        }
+        return start;
+    }
+
+    /**
+     * @return the index after the identifier, keyword or number
+     */
+    private static int skipWord(String sql, int start) {
+        int len = sql.length();
+        int i = start;
+        while (i < len && (isIdentifierPart(sql.charAt(i)) || sql.charAt(i) == '.')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isInteger(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+                c == '_' || c == '$' || c > 0x7f;
+    }
+}
@@ -6,6 +6,8 @@
 package com.actiontech.dble.route.util;
 
 import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.backend.datasource.PhysicalDBNode;
+import com.actiontech.dble.backend.datasource.PhysicalDBPool;
 import com.actiontech.dble.cache.LayerCachePool;
 import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.config.model.SchemaConfig;
@@ -35,6 +37,7 @@ import org.slf4j.LoggerFactory;
 import java.sql.SQLException;
 import java.sql.SQLNonTransientException;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static com.actiontech.dble.plan.optimizer.JoinStrategyProcessor.NEED_REPLACE;
 
@@ -355,6 +358,36 @@ public final class RouterUtil {
         return dataNode;
     }
 
+    /**
+     * select the less loaded one of two random data nodes of the global table,
+     * if both of their dataHosts balance by the load, otherwise the random one
+     */
+    private static String getGlobalReadNode(TableConfig tc) {
+        return getGlobalReadNode(tc, DbleServer.getInstance().getConfig().getDataNodes(), ThreadLocalRandom.current());
+    }
+
+    static String getGlobalReadNode(TableConfig tc, Map<String, PhysicalDBNode> allNodes, Random random) {
+        ArrayList<String> dataNodes = tc.getDataNodes();
+        if (dataNodes.size() < 2) {
+            return tc.getRandomDataNode();
+        }
+        int firstIndex = random.nextInt(dataNodes.size());
+        int secondIndex = random.nextInt(dataNodes.size() - 1);
+        if (secondIndex >= firstIndex) {
+            secondIndex++;
+        }
+        String first = dataNodes.get(firstIndex);
+        String second = dataNodes.get(secondIndex);
+        PhysicalDBNode firstNode = allNodes.get(first);
+        PhysicalDBNode secondNode = allNodes.get(second);
+        if (firstNode == null || secondNode == null ||
+                firstNode.getDbPool().getBalanceType() != PhysicalDBPool.BALANCE_TYPE_LOAD ||
+                secondNode.getDbPool().getBalanceType() != PhysicalDBPool.BALANCE_TYPE_LOAD) {
+            return first;
+        }
+        return firstNode.getDbPool().getReadLoadCost() <= secondNode.getDbPool().getReadLoadCost() ? first : second;
+    }
+
     public static Set<String> ruleByJoinValueCalculate(RouteResultset rrs, TableConfig tc,
                                                        Set<ColumnRoutePair> colRoutePairSet) throws SQLNonTransientException {
         Set<String> retNodeSet = new LinkedHashSet<>();
@@ -499,7 +532,7 @@ public final class RouterUtil {
                 // global select ,not cache route result
                 rrs.setCacheAble(false);
                 rrs.setGlobalTable(true);
-                return routeToSingleNode(rrs, tc.getRandomDataNode());
+                return routeToSingleNode(rrs, getGlobalReadNode(tc));
             } else { //insert into all global table's node
                 return routeToMultiNode(false, rrs, tc.getDataNodes(), true);
             }
@@ -27,6 +27,7 @@ import com.actiontech.dble.net.mysql.OkPacket;
 import com.actiontech.dble.plan.common.exception.MySQLOutPutException;
 import com.actiontech.dble.plan.node.PlanNode;
 import com.actiontech.dble.plan.optimizer.MyOptimizer;
+import com.actiontech.dble.plan.util.CachedPlan;
 import com.actiontech.dble.plan.util.PlanUtil;
 import com.actiontech.dble.plan.visitor.MySQLPlanNodeVisitor;
 import com.actiontech.dble.route.RouteResultset;
@@ -73,6 +74,8 @@ public class NonBlockingSession implements Session {
     private int cancelStatus = 0;
 
     private OutputHandler outputHandler;
+    // the cached plan of the running complex select
+    private volatile CachedPlan cachedPlan;
 
     // the memory controller for join,orderby,other in this session
     private MemSizeController joinBufferMC;
@@ -377,6 +380,18 @@ public class NonBlockingSession implements Session {
 
     private void executeMultiSelect(RouteResultset rrs) {
         SQLSelectStatement ast = (SQLSelectStatement) rrs.getSqlStatement();
+        cachedPlan = null;
+        CachedPlan plan = CachedPlan.take(this.getSource().getSchema(), this.getSource().getCharset().getResultsIndex(), ast);
+        if (plan != null && plan.getNode() != null) {
+            PlanNode node = plan.getNode();
+            PlanUtil.checkTablesPrivilege(source, node, ast);
+            if (node.getAst() != null) {
+                node.setAst(ast);
+            }
+            cachedPlan = plan;
+            executeMultiResultSet(node);
+            return;
+        }
         MySQLPlanNodeVisitor visitor = new MySQLPlanNodeVisitor(this.getSource().getSchema(), this.getSource().getCharset().getResultsIndex(), DbleServer.getInstance().getTmManager(), false);
         visitor.visit(ast);
         PlanNode node = visitor.getTableNode();
@@ -386,6 +401,7 @@ public class NonBlockingSession implements Session {
         node.setSql(rrs.getStatement());
         node.setUpFields();
         PlanUtil.checkTablesPrivilege(source, node, ast);
+        boolean cacheable = plan != null && CachedPlan.isCacheable(node);
         node = MyOptimizer.optimize(node);
         if (PlanUtil.containsSubQuery(node)) {
             final PlanNode finalNode = node;
@@ -397,6 +413,9 @@ public class NonBlockingSession implements Session {
                 }
             });
         } else {
+            if (cacheable && plan.setNode(node)) {
+                cachedPlan = plan;
+            }
             if (!visitor.isContainSchema()) {
                 node.setAst(ast);
             }
@@ -404,6 +423,18 @@ public class NonBlockingSession implements Session {
         }
     }
 
+    /**
+     * take the plan of the complex select which ends well, the caller gives it back to the cache after the handlers
+     * built by it are terminated
+     *
+     * @return null if the plan is not cached
+     */
+    public CachedPlan takeCachedPlan() {
+        CachedPlan plan = cachedPlan;
+        cachedPlan = null;
+        return plan;
+    }
+
 
     private void init() {
         this.outputHandler = null;
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.server;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.config.ServerConfig;
+import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.route.RouteShape;
+import com.actiontech.dble.route.util.ParameterizedSql;
+import com.actiontech.dble.server.parser.ServerParse;
+import com.actiontech.dble.server.parser.ServerParseSelect;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * the route plan of a prepared select.
+ * <p>
+ * The sql is tokenized once by COM_STMT_PREPARE. The first COM_STMT_EXECUTE is routed normally, and if its route
+ * depends only on the value bound to one placeholder (or on nothing), the route is kept, so the following
+ * executions calculate the data node from the bound value instead of parsing and routing the sql again.
+ * The plan is dropped when the schema of the connection is changed or the config is reloaded.
+ */
+public final class PreparedPlan {
+    private final ParameterizedSql template;
+    private RouteShape shape;
+    private String schema;
+    private long reloadTime;
+    private long rollbackTime;
+
+    private PreparedPlan(ParameterizedSql template) {
+        this.template = template;
+    }
+
+    /**
+     * @return null if the sql is not a select which is routed to the data nodes
+     */
+    public static PreparedPlan create(String sql) {
+        int rs = ServerParse.parse(sql);
+        if ((rs & 0xff) != ServerParse.SELECT || ServerParseSelect.parse(sql, rs >>> 8) != ServerParseSelect.OTHER ||
+                sql.trim().startsWith("/*")) {
+            // the select of variables and the sql with hint are not planned
+            return null;
+        }
+        ParameterizedSql template = ParameterizedSql.parse(sql.trim());
+        return template == null ? null : new PreparedPlan(template);
+    }
+
+    public ParameterizedSql bind(List<String> boundValues, List<Boolean> plainBoundValues) {
+        return template.bind(boundValues, plainBoundValues);
+    }
+
+    RouteResultset route(ServerConnection c, SchemaConfig schemaConfig, ParameterizedSql sql, String stmt) throws SQLException {
+        ServerConfig conf = DbleServer.getInstance().getConfig();
+        long currentReloadTime = conf.getReloadTime();
+        long currentRollbackTime = conf.getRollbackTime();
+        if (shape != null && Objects.equals(schema, c.getSchema()) &&
+                reloadTime == currentReloadTime && rollbackTime == currentRollbackTime) {
+            RouteResultset rrs = shape.route(sql, stmt.trim());
+            if (rrs != null) {
+                return rrs;
+            }
+        }
+        RouteResultset rrs = DbleServer.getInstance().getRouterService().route(schemaConfig, ServerParse.SELECT, stmt, c);
+        if (rrs != null) {
+            shape = RouteShape.create(sql, rrs);
+            schema = c.getSchema();
+            reloadTime = currentReloadTime;
+            rollbackTime = currentRollbackTime;
+        }
+        return rrs;
+    }
+}
@@ -17,6 +17,7 @@ import com.actiontech.dble.log.transaction.TxnLogHelper;
 import com.actiontech.dble.net.FrontendConnection;
 import com.actiontech.dble.route.RouteResultset;
 import com.actiontech.dble.route.parser.util.Pair;
+import com.actiontech.dble.route.util.ParameterizedSql;
 import com.actiontech.dble.route.util.RouterUtil;
 import com.actiontech.dble.server.handler.SetHandler;
 import com.actiontech.dble.server.parser.ServerParse;
@@ -238,6 +239,10 @@ public class ServerConnection extends FrontendConnection {
     }
 
     public void execute(String sql, int type) {
+        execute(sql, type, null, null);
+    }
+
+    private void execute(String sql, int type, PreparedPlan plan, ParameterizedSql parameterizedSql) {
         if (this.isClosed()) {
             LOGGER.info("ignore execute ,server connection is closed " + this);
             return;
@@ -257,10 +262,20 @@ public class ServerConnection extends FrontendConnection {
                 return;
             }
         }
-        routeEndExecuteSQL(sql, type, schemaConfig);
+        routeEndExecuteSQL(sql, type, schemaConfig, plan, parameterizedSql);
 
     }
 
+    /**
+     * execute the select of a prepared statement, it is routed by the plan learned from the former execution if possible
+     */
+    public void executePrepared(String sql, PreparedPlan plan, ParameterizedSql parameterizedSql) {
+        String stmt = checkQuery(sql);
+        if (stmt != null) {
+            execute(stmt, ServerParse.SELECT, plan, parameterizedSql);
+        }
+    }
+
     public RouteResultset routeSQL(String sql, int type) {
         String db = this.schema;
         if (db == null) {
@@ -310,10 +325,14 @@ public class ServerConnection extends FrontendConnection {
         }
     }
 
-    private void routeEndExecuteSQL(String sql, int type, SchemaConfig schema) {
+    private void routeEndExecuteSQL(String sql, int type, SchemaConfig schema, PreparedPlan plan, ParameterizedSql parameterizedSql) {
         RouteResultset rrs;
         try {
-            rrs = DbleServer.getInstance().getRouterService().route(schema, type, sql, this);
+            if (plan == null) {
+                rrs = DbleServer.getInstance().getRouterService().route(schema, type, sql, this);
+            } else {
+                rrs = plan.route(this, schema, parameterizedSql, sql);
+            }
             if (rrs == null) {
                 return;
             }
@@ -5,6 +5,7 @@
 */
 package com.actiontech.dble.server.handler;
 
+import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.backend.mysql.PacketUtil;
 import com.actiontech.dble.backend.mysql.nio.handler.SingleNodeHandler;
 import com.actiontech.dble.config.Fields;
@@ -12,15 +13,25 @@ import com.actiontech.dble.net.mysql.EOFPacket;
 import com.actiontech.dble.net.mysql.FieldPacket;
 import com.actiontech.dble.net.mysql.ResultSetHeaderPacket;
 import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.node.PlanNode;
+import com.actiontech.dble.plan.optimizer.JoinCostModel;
+import com.actiontech.dble.plan.optimizer.MyOptimizer;
+import com.actiontech.dble.plan.util.PlanUtil;
+import com.actiontech.dble.plan.visitor.MySQLPlanNodeVisitor;
 import com.actiontech.dble.route.RouteResultset;
 import com.actiontech.dble.route.RouteResultsetNode;
 import com.actiontech.dble.server.ServerConnection;
 import com.actiontech.dble.server.parser.ServerParse;
 import com.actiontech.dble.util.StringUtil;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author rainbow
@@ -45,10 +56,14 @@ public final class Explain2Handler {
 
         try {
             stmt = stmt.substring(offset);
-            if (!stmt.toLowerCase().contains("datanode=") || !stmt.toLowerCase().contains("sql=")) {
+            if (!stmt.toLowerCase().contains("sql=")) {
                 showError(stmt, c, "explain2 datanode=? sql=?");
                 return;
             }
+            if (!stmt.toLowerCase().contains("datanode=")) {
+                explainJoins(stmt, stmt.substring(stmt.toLowerCase().indexOf("sql=") + 4).trim(), c);
+                return;
+            }
             String dataNode = stmt.substring(stmt.indexOf("=") + 1, stmt.indexOf("sql=")).trim();
             String sql = "explain " + stmt.substring(stmt.indexOf("sql=") + 4, stmt.length()).trim();
 
@@ -69,7 +84,36 @@ public final class Explain2Handler {
         }
     }
 
+    /**
+     * explain2 sql=? shows the joins planned by dble with the rows estimated from the table statistics
+     */
+    private static void explainJoins(String stmt, String sql, ServerConnection c) {
+        SQLStatement statement = new MySqlStatementParser(sql).parseStatement();
+        if (!(statement instanceof SQLSelectStatement)) {
+            showError(stmt, c, "explain2 sql=? only supports select");
+            return;
+        }
+        SQLSelectStatement ast = (SQLSelectStatement) statement;
+        MySQLPlanNodeVisitor visitor = new MySQLPlanNodeVisitor(c.getSchema(), c.getCharset().getResultsIndex(), DbleServer.getInstance().getTmManager(), false);
+        visitor.visit(ast);
+        PlanNode node = visitor.getTableNode();
+        node.setSql(sql);
+        node.setUpFields();
+        PlanUtil.checkTablesPrivilege(c, node, ast);
+        node = MyOptimizer.optimize(node);
+        List<String[]> rows = JoinCostModel.explain(node);
+        if (rows.isEmpty()) {
+            showError(stmt, c, "no join is planned by dble");
+            return;
+        }
+        writeRows(c, rows);
+    }
+
     private static void showError(String stmt, ServerConnection c, String msg) {
+        writeRows(c, Collections.singletonList(new String[]{stmt, msg}));
+    }
+
+    private static void writeRows(ServerConnection c, List<String[]> rows) {
         ByteBuffer buffer = c.allocate();
         // write header
         ResultSetHeaderPacket header = PacketUtil.getHeader(FIELD_COUNT);
@@ -88,11 +132,13 @@ public final class Explain2Handler {
         buffer = eof.write(buffer, c, true);
 
 
-        RowDataPacket row = new RowDataPacket(FIELD_COUNT);
-        row.add(StringUtil.encode(stmt, c.getCharset().getResults()));
-        row.add(StringUtil.encode(msg, c.getCharset().getResults()));
-        row.setPacketId(++packetId);
-        buffer = row.write(buffer, c, true);
+        for (String[] result : rows) {
+            RowDataPacket row = new RowDataPacket(FIELD_COUNT);
+            row.add(StringUtil.encode(result[0], c.getCharset().getResults()));
+            row.add(StringUtil.encode(result[1], c.getCharset().getResults()));
+            row.setPacketId(++packetId);
+            buffer = row.write(buffer, c, true);
+        }
 
         // write last eof
         EOFPacket lastEof = new EOFPacket();
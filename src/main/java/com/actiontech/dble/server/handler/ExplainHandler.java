@@ -13,6 +13,7 @@ import com.actiontech.dble.backend.mysql.nio.handler.query.DMLResponseHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.*;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.groupby.DirectGroupByHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.groupby.OrderedGroupByHandler;
+import com.actiontech.dble.backend.mysql.nio.handler.query.impl.join.HashJoinHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.join.JoinHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.join.NotInHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.subquery.AllAnySubQueryHandler;
@@ -283,10 +284,14 @@ public final class ExplainHandler {
             return "UNION_ALL";
         } else if (handler instanceof OrderByHandler) {
             return "ORDER";
+        } else if (handler instanceof TopNHandler) {
+            return "TOP_N";
         } else if (handler instanceof NotInHandler) {
             return "NOT_IN";
         } else if (handler instanceof JoinHandler) {
             return "JOIN";
+        } else if (handler instanceof HashJoinHandler) {
+            return "HASH_JOIN";
         } else if (handler instanceof DirectGroupByHandler) {
             return "DIRECT_GROUP";
         } else if (handler instanceof TempTableHandler) {
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.server.handler;
+
+import com.actiontech.dble.sqlengine.mpp.LoadData;
+import com.actiontech.dble.util.StringUtil;
+
+/**
+ * keep the chars of the file of LOAD DATA received so far, and split off the complete lines.
+ * the chars are scanned only once like the CsvParser does, the line terminator in the enclosed field
+ * or after the escape char does not end a line.
+ */
+final class LoadDataLineScanner {
+    private final String lineEnd;
+    private final char fieldEnd;
+    private final char enclose;
+    private final char escape;
+
+    private final StringBuilder pendingChars = new StringBuilder();
+    // the chars before it are scanned
+    private int scanPos = 0;
+    private boolean inEnclose = false;
+    private boolean atFieldStart = true;
+
+    LoadDataLineScanner(LoadData loadData) {
+        this.lineEnd = loadData.getLineTerminatedBy();
+        this.fieldEnd = loadData.getFieldTerminatedBy().charAt(0);
+        this.enclose = StringUtil.isEmpty(loadData.getEnclose()) ? 0 : loadData.getEnclose().charAt(0);
+        this.escape = StringUtil.isEmpty(loadData.getEscape()) ? 0 : loadData.getEscape().charAt(0);
+    }
+
+    void append(CharSequence chars) {
+        pendingChars.append(chars);
+    }
+
+    int pendingLength() {
+        return pendingChars.length();
+    }
+
+    /**
+     * @return the complete lines with their terminators, which are removed from the pending chars, null if there is none
+     */
+    String pollLines() {
+        int end = lastLineEnd();
+        if (end <= 0) {
+            return null;
+        }
+        String lines = pendingChars.substring(0, end);
+        pendingChars.delete(0, end);
+        scanPos -= end;
+        return lines;
+    }
+
+    /**
+     * @return all the pending chars at the end of the file, the last line may have no terminator
+     */
+    String pollAll() {
+        scanPos = 0;
+        inEnclose = false;
+        atFieldStart = true;
+        String lines = pendingChars.toString();
+        pendingChars.setLength(0);
+        return lines;
+    }
+
+    /**
+     * @return the end of the last complete line, -1 if there is none
+     */
+    private int lastLineEnd() {
+        int length = pendingChars.length();
+        int end = -1;
+        int i = scanPos;
+        for (; i < length; i++) {
+            char c = pendingChars.charAt(i);
+            boolean isEscape = escape != 0 && c == escape;
+            if (isEscape || (inEnclose && c == enclose)) {
+                // the next char is needed: the escaped char, or the enclose char which is doubled
+                if (i + 1 >= length) {
+                    break;
+                }
+                if (isEscape || pendingChars.charAt(i + 1) == enclose) {
+                    i++;
+                } else {
+                    inEnclose = false;
+                }
+                atFieldStart = false;
+            } else if (inEnclose) {
+                continue;
+            } else if (enclose != 0 && c == enclose && atFieldStart) {
+                inEnclose = true;
+                atFieldStart = false;
+            } else if (c == lineEnd.charAt(0)) {
+                if (i + lineEnd.length() > length) {
+                    break;
+                }
+                if (isLineEnd(i)) {
+                    i += lineEnd.length() - 1;
+                    end = i + 1;
+                    atFieldStart = true;
+                } else {
+                    atFieldStart = c == fieldEnd;
+                }
+            } else {
+                atFieldStart = c == fieldEnd;
+            }
+        }
+        scanPos = i;
+        return end;
+    }
+
+    private boolean isLineEnd(int index) {
+        for (int j = 1; j < lineEnd.length(); j++) {
+            if (pendingChars.charAt(index + j) != lineEnd.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -6,11 +6,13 @@
 package com.actiontech.dble.server.handler;
 
 import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.backend.mysql.CharsetUtil;
+import com.actiontech.dble.backend.mysql.LoadDataStream;
 import com.actiontech.dble.cache.LayerCachePool;
 import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.config.model.SchemaConfig;
-import com.actiontech.dble.config.model.SystemConfig;
 import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.meta.protocol.StructureMeta;
 import com.actiontech.dble.net.handler.LoadDataInfileHandler;
 import com.actiontech.dble.net.mysql.BinaryPacket;
 import com.actiontech.dble.net.mysql.RequestFilePacket;
@@ -31,43 +33,65 @@ import com.alibaba.druid.sql.ast.expr.SQLTextLiteralExpr;
 import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlLoadDataInFileStatement;
 import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
 import com.alibaba.druid.sql.parser.SQLStatementParser;
-import com.google.common.collect.Lists;
-import com.google.common.io.Files;
 import com.univocity.parsers.csv.CsvParser;
 import com.univocity.parsers.csv.CsvParserSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * mysql client need add --local-infile=1
  * CHARACTER SET 'gbk' in load data sql  the charset need ', otherwise the druid will error
+ * <p>
+ * The load data is executed on all the data nodes of the table when it starts. The packets of the file are
+ * decoded and parsed as soon as PARSE_CHUNK_SIZE chars of complete lines arrive. Each row is routed by the
+ * partition function of the table if possible, and appended to the stream of its data node which sends it to the
+ * backend at once, the client is paused while a data node can't take more rows.
  */
 public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerLoadDataInfileHandler.class);
+    private static final int PARSE_CHUNK_SIZE = 1024 * 1024;
+
     private ServerConnection serverConnection;
     private String sql;
     private String fileName;
     private byte packID = 0;
     private MySqlLoadDataInFileStatement statement;
 
-    private Map<String, LoadData> routeResultMap = new HashMap<>();
+    private Map<String, LoadDataStream> nodeStreams = new HashMap<>();
 
     private LoadData loadData;
-    private ByteArrayOutputStream tempByteBuffer;
-    private long tempByteBufferSize = 0;
-    private String tempPath;
-    private String tempFile;
-    private boolean isHasStoreToFile = false;
+    private Charset fileCharset;
+    private byte[] lineEndBytes;
+    /* the input of the file on the server, null if the file is sent by the client */
+    private FileInput fileInput;
+    /* the rest of the file is discarded after the load data fails */
+    private boolean aborted = false;
+
+    /* the state of parsing the packets of the client */
+    private CharsetDecoder decoder;
+    private ByteBuffer undecodedBytes;
+    private LoadDataLineScanner lineScanner;
+    private int ignoreNumber;
 
     private SchemaConfig schema;
     private String tableName;
     private TableConfig tableConfig;
     private int partitionColumnIndex = -1;
+    /* the table whose partition function routes the rows, null if the rows can't be routed by it directly */
+    private TableConfig partitionRuleTC;
     private LayerCachePool tableId2DataNodeCache;
     private boolean isStartLoadData = false;
 
@@ -148,102 +172,159 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
         }
 
         tableConfig = schema.getTables().get(tableName);
-        tempPath = SystemConfig.getHomePath() + File.separator + "temp" + File.separator + serverConnection.getId() + File.separator;
-        tempFile = tempPath + "clientTemp.txt";
-        tempByteBuffer = new ByteArrayOutputStream();
+        List<String> dataNodes = getDataNodes();
+        if (dataNodes == null) {
+            String msg = "Table '" + schema.getName() + "." + tableName + "' doesn't exist";
+            serverConnection.writeErrMessage("42S02", msg, ErrorCode.ER_NO_SUCH_TABLE);
+            clear();
+            return;
+        }
 
-        List<SQLExpr> columns = statement.getColumns();
         if (tableConfig != null) {
-            String pColumn = getPartitionColumn();
-            if (pColumn != null && columns != null && columns.size() > 0) {
-                for (int i = 0, columnsSize = columns.size(); i < columnsSize; i++) {
-                    String column = StringUtil.removeBackQuote(columns.get(i).toString());
-                    if (pColumn.equalsIgnoreCase(column)) {
-                        partitionColumnIndex = i;
-                        break;
-                    }
-                }
+            String pColumn = getPartitionColumn(tableConfig);
+            if (pColumn != null) {
+                partitionColumnIndex = getColumnIndex(pColumn);
+            }
+            TableConfig directRouteTC = tableConfig.getDirectRouteTC();
+            if (!tableConfig.isGlobalTable() && directRouteTC != null && directRouteTC.getRule() != null) {
+                partitionRuleTC = directRouteTC;
             }
         }
 
         parseLoadDataPram();
+        fileCharset = Charset.forName(CharsetUtil.getJavaCharset(loadData.getCharset()));
+        lineEndBytes = loadData.getLineTerminatedBy().getBytes(fileCharset);
+        if (statement.getIgnoreLinesNumber() != null && !"".equals(statement.getIgnoreLinesNumber().toString())) {
+            ignoreNumber = Integer.parseInt(statement.getIgnoreLinesNumber().toString());
+        }
         if (statement.isLocal()) {
             isStartLoadData = true;
+            decoder = fileCharset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).
+                    onUnmappableCharacter(CodingErrorAction.REPLACE);
+            lineScanner = new LoadDataLineScanner(loadData);
             //request file from client
             ByteBuffer buffer = serverConnection.allocate();
             RequestFilePacket filePacket = new RequestFilePacket();
             filePacket.setFileName(fileName.getBytes());
             filePacket.setPacketId(1);
             filePacket.write(buffer, serverConnection, true);
+            execute(dataNodes, new ClientInput(serverConnection));
         } else {
             if (!new File(fileName).exists()) {
                 serverConnection.writeErrMessage(ErrorCode.ER_FILE_NOT_FOUND, fileName + " is not found!");
                 clear();
             } else {
-                parseFileByLine(fileName, loadData.getCharset(), loadData.getLineTerminatedBy());
-                RouteResultset rrs = buildResultSet(routeResultMap);
-                if (rrs != null) {
-                    flushDataToFile();
-                    isStartLoadData = false;
-                    serverConnection.getSession2().execute(rrs);
+                fileInput = new FileInput();
+                execute(dataNodes, fileInput);
+                try {
+                    parseFileByLine(fileName);
+                } catch (RuntimeException e) {
+                    abort(e);
+                    return;
                 }
+                finishStreams();
             }
         }
     }
 
+    /**
+     * @return the data nodes which the rows may be routed to, null if there is none
+     */
+    private List<String> getDataNodes() {
+        if (tableConfig != null) {
+            return tableConfig.getDataNodes();
+        }
+        return schema.getDataNode() == null ? null : Collections.singletonList(schema.getDataNode());
+    }
+
+    /**
+     * start the load data on every data node, the rows are sent to them while they are parsed
+     */
+    private void execute(List<String> dataNodes, LoadDataStream.Input input) {
+        int packSize = DbleServer.getInstance().getConfig().getSystem().getBufferPoolChunkSize() - 5;
+        for (String dataNode : dataNodes) {
+            nodeStreams.put(dataNode, new LoadDataStream(input, packSize));
+        }
+        serverConnection.getSession2().execute(buildResultSet());
+    }
+
+    /**
+     * the backends get the end of the file, nothing is touched after it for the handler of the backends may clear
+     * this after the last one
+     */
+    private void finishStreams() {
+        for (LoadDataStream stream : new ArrayList<>(nodeStreams.values())) {
+            stream.finish();
+        }
+    }
+
+    /**
+     * the backends are closed for the rows can't be loaded, the error is sent by the handler of them
+     */
+    private void abort(Exception e) {
+        LOGGER.info("load data failed", e);
+        aborted = true;
+        String reason = "load data failed: " + (e.getMessage() == null ? e.toString() : e.getMessage());
+        for (LoadDataStream stream : new ArrayList<>(nodeStreams.values())) {
+            stream.abort(reason);
+        }
+    }
+
     @Override
     public void handle(byte[] data) {
+        if (sql == null) {
+            serverConnection.writeErrMessage(ErrorCode.ER_UNKNOWN_COM_ERROR, "Unknown command");
+            clear();
+            return;
+        }
+        if (aborted) {
+            return;
+        }
         try {
-            if (sql == null) {
-                serverConnection.writeErrMessage(ErrorCode.ER_UNKNOWN_COM_ERROR, "Unknown command");
-                clear();
-                return;
-            }
             BinaryPacket packet = new BinaryPacket();
             ByteArrayInputStream inputStream = new ByteArrayInputStream(data, 0, data.length);
             packet.read(inputStream);
 
-            saveByteOrToFile(packet.getData(), false);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            appendFileData(packet.getData());
+        } catch (IOException | RuntimeException e) {
+            abort(e);
         }
     }
 
-    private synchronized void saveByteOrToFile(byte[] data, boolean isForce) {
-        if (data != null) {
-            tempByteBufferSize = tempByteBufferSize + data.length;
-            try {
-                tempByteBuffer.write(data);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+    /**
+     * decode the data and parse the complete lines if there are enough chars
+     */
+    private void appendFileData(byte[] data) {
+        decode(data, false);
+        if (lineScanner.pendingLength() < PARSE_CHUNK_SIZE) {
+            return;
         }
-
-        if ((isForce && isHasStoreToFile) || tempByteBufferSize > 200 * 1024 * 1024) { //200M
-            FileOutputStream channel = null;
-            try {
-                File file = new File(tempFile);
-                Files.createParentDirs(file);
-                channel = new FileOutputStream(file, true);
-
-                tempByteBuffer.writeTo(channel);
-                tempByteBuffer = new ByteArrayOutputStream();
-                tempByteBufferSize = 0;
-                isHasStoreToFile = true;
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            } finally {
-                try {
-                    if (channel != null) {
-                        channel.close();
-                    }
-                } catch (IOException ignored) {
-                    //ignore error
-                }
-            }
+        String lines = lineScanner.pollLines();
+        if (lines != null) {
+            parseRows(new StringReader(lines));
         }
     }
 
+    private void decode(byte[] data, boolean endOfInput) {
+        ByteBuffer in;
+        if (undecodedBytes == null) {
+            in = ByteBuffer.wrap(data);
+        } else {
+            // the last char of the previous packet is not complete
+            in = ByteBuffer.allocate(undecodedBytes.remaining() + data.length);
+            in.put(undecodedBytes).put(data);
+            in.flip();
+        }
+        CharBuffer out = CharBuffer.allocate((int) (in.remaining() * decoder.maxCharsPerByte()) + 1);
+        decoder.decode(in, out, endOfInput);
+        if (endOfInput) {
+            decoder.flush(out);
+        }
+        out.flip();
+        lineScanner.append(out);
+        undecodedBytes = in.hasRemaining() ? in : null;
+    }
+
     private RouteResultset tryDirectRoute(String strSql, String[] lineList) {
         RouteResultset rrs = new RouteResultset(strSql, ServerParse.INSERT);
         rrs.setLoadData(true);
@@ -271,7 +352,7 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
             } else {
                 String value = lineList[partitionColumnIndex];
                 RouteCalculateUnit routeCalculateUnit = new RouteCalculateUnit();
-                routeCalculateUnit.addShardingExpr(tableName, getPartitionColumn(),
+                routeCalculateUnit.addShardingExpr(tableName, getPartitionColumn(tableConfig),
                                                    parseFieldString(value, loadData.getEnclose(), loadData.getEscape()));
                 ctx.addRouteCalculateUnit(routeCalculateUnit);
 
@@ -303,13 +384,37 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
     }
 
 
-    private void parseOneLine(List<SQLExpr> columns, String table, String[] line, boolean toFile, String lineEnd) {
+    /**
+     * calculate the data node by the partition function of the table directly
+     *
+     * @param partitionRuleTC the table whose partition function routes the rows, null if there is none
+     * @return null if the row can't be routed in this way
+     */
+    static String routeByPartitionValue(TableConfig partitionRuleTC, int partitionColumnIndex, String[] line, LoadData loadData) {
+        if (partitionRuleTC == null || partitionColumnIndex == -1 || partitionColumnIndex >= line.length) {
+            return null;
+        }
+        String value = parseFieldString(line[partitionColumnIndex], loadData.getEnclose(), loadData.getEscape());
+        if (value == null) {
+            return null;
+        }
+        Integer nodeIndex = partitionRuleTC.getRule().getRuleAlgorithm().calculate(value);
+        return nodeIndex == null ? null : partitionRuleTC.getDataNodes().get(nodeIndex);
+    }
+
+    private void parseOneLine(List<SQLExpr> columns, String table, String[] line) {
         if (loadData.getEnclose() != null && loadData.getEnclose().charAt(0) > 0x0020) {
             for (int i = 0; i < line.length; i++) {
                 line[i] = line[i].trim();
             }
         }
 
+        String dataNode = routeByPartitionValue(partitionRuleTC, partitionColumnIndex, line, loadData);
+        if (dataNode != null) {
+            appendLine(dataNode, line);
+            return;
+        }
+
         RouteResultset rrs = tryDirectRoute(sql, line);
         if (rrs == null || rrs.getNodes() == null || rrs.getNodes().length == 0) {
             String insertSql = makeSimpleInsert(columns, line, table);
@@ -320,72 +425,19 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
             //do nothing
         } else {
             for (RouteResultsetNode routeResultsetNode : rrs.getNodes()) {
-                String name = routeResultsetNode.getName();
-                LoadData data = routeResultMap.get(name);
-                if (data == null) {
-                    data = new LoadData();
-                    data.setCharset(loadData.getCharset());
-                    data.setEnclose(loadData.getEnclose());
-                    data.setFieldTerminatedBy(loadData.getFieldTerminatedBy());
-                    data.setLineTerminatedBy(loadData.getLineTerminatedBy());
-                    data.setEscape(loadData.getEscape());
-                    routeResultMap.put(name, data);
-                }
-
-                String jLine = joinField(line, data);
-                if (data.getData() == null) {
-                    data.setData(Lists.newArrayList(jLine));
-                } else {
-                    data.getData().add(jLine);
-                }
-
-                if (toFile && data.getData().size() > 10000) {
-                    //avoid OOM
-                    saveDataToFile(data, name);
-                }
+                appendLine(routeResultsetNode.getName(), line);
             }
         }
     }
 
-    private void flushDataToFile() {
-        for (Map.Entry<String, LoadData> stringLoadDataEntry : routeResultMap.entrySet()) {
-            LoadData value = stringLoadDataEntry.getValue();
-            if (value.getFileName() != null && value.getData() != null && value.getData().size() > 0) {
-                saveDataToFile(value, stringLoadDataEntry.getKey());
-            }
+    private void appendLine(String dataNode, String[] line) {
+        LoadDataStream stream = nodeStreams.get(dataNode);
+        if (stream == null) {
+            throw new RuntimeException("the row is routed to " + dataNode + " which is not a data node of " + tableName);
         }
+        stream.append(joinField(line, loadData).getBytes(fileCharset), lineEndBytes);
     }
 
-    private void saveDataToFile(LoadData data, String dnName) {
-        if (data.getFileName() == null) {
-            String dnPath = tempPath + dnName + ".txt";
-            data.setFileName(dnPath);
-        }
-
-        File dnFile = new File(data.getFileName());
-        try {
-            if (!dnFile.exists()) {
-                Files.createParentDirs(dnFile);
-            }
-            Files.append(joinLine(data.getData(), data), dnFile, Charset.forName(loadData.getCharset()));
-
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            data.setData(null);
-        }
-    }
-
-
-    private String joinLine(List<String> data, LoadData loaddata) {
-        StringBuilder sb = new StringBuilder();
-        for (String s : data) {
-            sb.append(s).append(loaddata.getLineTerminatedBy());
-        }
-        return sb.toString();
-    }
-
-
     private String joinField(String[] src, LoadData loaddata) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0, srcLength = src.length; i < srcLength; i++) {
@@ -400,7 +452,7 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
     }
 
 
-    private RouteResultset buildResultSet(Map<String, LoadData> routeMap) {
+    private RouteResultset buildResultSet() {
         statement.setLocal(true);
         SQLLiteralExpr fn = new SQLCharExpr(fileName);    //druid will filter path, reset it now
         statement.setFileName(fn);
@@ -410,21 +462,16 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
         rrs.setLoadData(true);
         rrs.setStatement(srcStatement);
         rrs.setFinishedRoute(true);
-        int size = routeMap.size();
+        int size = nodeStreams.size();
         RouteResultsetNode[] routeResultsetNodes = new RouteResultsetNode[size];
         int index = 0;
-        for (Map.Entry<String, LoadData> entry : routeMap.entrySet()) {
+        for (Map.Entry<String, LoadDataStream> entry : nodeStreams.entrySet()) {
             RouteResultsetNode rrNode = new RouteResultsetNode(entry.getKey(), ServerParse.LOAD_DATA_INFILE_SQL, srcStatement);
             rrNode.setStatement(srcStatement);
             LoadData newLoadData = new LoadData();
             ObjectUtil.copyProperties(loadData, newLoadData);
             newLoadData.setLocal(true);
-            LoadData loadData1 = entry.getValue();
-            if (loadData1.getFileName() != null) {
-                newLoadData.setFileName(loadData1.getFileName());
-            } else {
-                newLoadData.setData(loadData1.getData());
-            }
+            newLoadData.setStream(entry.getValue());
             rrNode.setLoadData(newLoadData);
 
             routeResultsetNodes[index] = rrNode;
@@ -466,7 +513,7 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
     }
 
 
-    private String parseFieldString(String value, String enclose, String escape) {
+    private static String parseFieldString(String value, String enclose, String escape) {
         //avoid null point execption
         if (value == null) {
             return value;
@@ -474,14 +521,14 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
 
         //if the value is cover by enclose char and enclose char is not null, clear the enclose char.
         if (enclose != null && !"".equals(enclose) && (value.startsWith(enclose) && value.endsWith(enclose))) {
-            return this.escaped(value.substring(enclose.length() - 1, value.length() - enclose.length()).replace("\\", "\\\\").replace(escape, "\\"));
+            return escaped(value.substring(enclose.length() - 1, value.length() - enclose.length()).replace("\\", "\\\\").replace(escape, "\\"));
         }
         //else replace escape because \ is used as escape in insert.
-        return this.escaped(value.replace("\\", "\\\\").replace(escape, "\\"));
+        return escaped(value.replace("\\", "\\\\").replace(escape, "\\"));
     }
 
 
-    private String escaped(String input) {
+    private static String escaped(String input) {
         StringBuilder output = new StringBuilder();
         char[] x = input.toCharArray();
         for (int i = 0; i < x.length; i++) {
@@ -527,68 +574,43 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
     public void end(byte packId) {
         isStartLoadData = false;
         this.packID = packId;
-        //empty packet for end
-        saveByteOrToFile(null, true);
-
-        List<SQLExpr> columns = statement.getColumns();
-        String tableSimpleName = statement.getTableName().getSimpleName();
-        if (isHasStoreToFile) {
-            parseFileByLine(tempFile, loadData.getCharset(), loadData.getLineTerminatedBy());
-        } else {
-            String content = new String(tempByteBuffer.toByteArray(), Charset.forName(loadData.getCharset()));
-
-            // List<String> lines = Splitter.on(loadData.getLineTerminatedBy()).omitEmptyStrings().splitToList(content);
-            CsvParserSettings settings = new CsvParserSettings();
-            settings.setMaxColumns(65535);
-            settings.setMaxCharsPerColumn(65535);
-            settings.getFormat().setLineSeparator(loadData.getLineTerminatedBy());
-            settings.getFormat().setDelimiter(loadData.getFieldTerminatedBy().charAt(0));
-            if (loadData.getEnclose() != null) {
-                settings.getFormat().setQuote(loadData.getEnclose().charAt(0));
-            }
-            if (loadData.getEscape() != null) {
-                settings.getFormat().setQuoteEscape(loadData.getEscape().charAt(0));
+        if (aborted) {
+            return;
+        }
+        try {
+            decode(new byte[0], true);
+            if (lineScanner.pendingLength() > 0) {
+                parseRows(new StringReader(lineScanner.pollAll()));
             }
-            settings.getFormat().setNormalizedNewline(loadData.getLineTerminatedBy().charAt(0));
-            /*
-             *  fix bug #1074 : LOAD DATA local INFILE导入的所有Boolean类型全部变成了false
-             *  不可见字符将在CsvParser被当成whitespace过滤掉, 使用settings.trimValues(false)来避免被过滤掉
-             *  FIXME : 设置trimValues(false)之后, 会引起字段值前后的空白字符无法被过滤!
-             */
-            settings.trimValues(false);
-
-            CsvParser parser = new CsvParser(settings);
-            try {
-                parser.beginParsing(new StringReader(content));
-                String[] row = null;
+        } catch (RuntimeException e) {
+            abort(e);
+            return;
+        }
+        lineScanner = null;
+        finishStreams();
+    }
 
-                int ignoreNumber = 0;
-                if (statement.getIgnoreLinesNumber() != null && !"".equals(statement.getIgnoreLinesNumber().toString())) {
-                    ignoreNumber = Integer.parseInt(statement.getIgnoreLinesNumber().toString());
-                }
-                while ((row = parser.parseNext()) != null) {
-                    if (ignoreNumber == 0) {
-                        parseOneLine(columns, tableSimpleName, row, true, loadData.getLineTerminatedBy());
-                    } else {
-                        ignoreNumber--;
-                    }
+
+    private void parseFileByLine(String file) {
+        InputStreamReader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(file), fileCharset);
+            parseRows(reader);
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
                 }
-            } finally {
-                parser.stopParsing();
             }
         }
-
-        RouteResultset rrs = buildResultSet(routeResultMap);
-        if (rrs != null) {
-            flushDataToFile();
-            serverConnection.getSession2().execute(rrs);
-        }
-
-        // sendOk(++packID);
     }
 
 
-    private void parseFileByLine(String file, String encode, String split) {
+    private void parseRows(Reader reader) {
         List<SQLExpr> columns = statement.getColumns();
 
         CsvParserSettings settings = new CsvParserSettings();
@@ -599,53 +621,33 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
         if (loadData.getEnclose() != null) {
             settings.getFormat().setQuote(loadData.getEnclose().charAt(0));
         }
+        if (loadData.getEscape() != null) {
+            settings.getFormat().setQuoteEscape(loadData.getEscape().charAt(0));
+        }
         settings.getFormat().setNormalizedNewline(loadData.getLineTerminatedBy().charAt(0));
-
         /*
-         *  fix #1074 : LOAD DATA local INFILE导入的所有Boolean类型全部变成了false
+         *  fix bug #1074 : LOAD DATA local INFILE导入的所有Boolean类型全部变成了false
          *  不可见字符将在CsvParser被当成whitespace过滤掉, 使用settings.trimValues(false)来避免被过滤掉
          *  FIXME : 设置trimValues(false)之后, 会引起字段值前后的空白字符无法被过滤!
          */
         settings.trimValues(false);
 
         CsvParser parser = new CsvParser(settings);
-        InputStreamReader reader = null;
-        FileInputStream fileInputStream = null;
         try {
-            fileInputStream = new FileInputStream(file);
-            reader = new InputStreamReader(fileInputStream, encode);
             parser.beginParsing(reader);
             String[] row = null;
-
-            int ignoreNumber = 0;
-            if (statement.getIgnoreLinesNumber() != null && !"".equals(statement.getIgnoreLinesNumber().toString())) {
-                ignoreNumber = Integer.parseInt(statement.getIgnoreLinesNumber().toString());
-            }
             while ((row = parser.parseNext()) != null) {
                 if (ignoreNumber == 0) {
-                    parseOneLine(columns, tableName, row, true, loadData.getLineTerminatedBy());
+                    parseOneLine(columns, tableName, row);
+                    if (fileInput != null) {
+                        fileInput.awaitResumed();
+                    }
                 } else {
                     ignoreNumber--;
                 }
             }
-        } catch (FileNotFoundException | UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
         } finally {
             parser.stopParsing();
-            if (fileInputStream != null) {
-                try {
-                    fileInputStream.close();
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }
         }
     }
 
@@ -688,26 +690,26 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
         tableId2DataNodeCache = null;
         schema = null;
         tableConfig = null;
-        isHasStoreToFile = false;
+        partitionRuleTC = null;
         packID = 0;
-        tempByteBufferSize = 0;
         tableName = null;
         partitionColumnIndex = -1;
-        if (tempFile != null) {
-            File temp = new File(tempFile);
-            if (temp.exists()) {
-                temp.delete();
-            }
-        }
-        if (tempPath != null && new File(tempPath).exists()) {
-            deleteFile(tempPath);
-        }
-        tempByteBuffer = null;
+        for (LoadDataStream stream : nodeStreams.values()) {
+            stream.abort("load data is stopped");
+        }
+        fileInput = null;
+        aborted = false;
+        decoder = null;
+        undecodedBytes = null;
+        lineScanner = null;
+        ignoreNumber = 0;
+        fileCharset = null;
+        lineEndBytes = null;
         loadData = null;
         sql = null;
         fileName = null;
         statement = null;
-        routeResultMap.clear();
+        nodeStreams.clear();
     }
 
 
@@ -723,44 +725,112 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
     }
 
 
-    private String getPartitionColumn() {
+    /**
+     * @return the column whose value routes the rows, the join key of the child table whose rows are routed by the
+     * partition function of the root parent directly, null if the rows of the child table need the parent rows
+     */
+    static String getPartitionColumn(TableConfig tableConfig) {
         String pColumn;
-        if (tableConfig.getDirectRouteTC() != null) {
-            pColumn = tableConfig.getJoinKey();
+        if (tableConfig.getParentTC() != null) {
+            pColumn = tableConfig.getDirectRouteTC() != null ? tableConfig.getJoinKey() : null;
         } else {
             pColumn = tableConfig.getPartitionColumn();
         }
         return pColumn;
     }
 
+    /**
+     * @return the index of the column in the lines, the columns of the table are used if the columns are not given
+     */
+    private int getColumnIndex(String columnName) {
+        List<SQLExpr> columns = statement.getColumns();
+        if (columns != null && columns.size() > 0) {
+            for (int i = 0, columnsSize = columns.size(); i < columnsSize; i++) {
+                String column = StringUtil.removeBackQuote(columns.get(i).toString());
+                if (columnName.equalsIgnoreCase(column)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        StructureMeta.TableMeta tableMeta = DbleServer.getInstance().getTmManager().getSyncTableMeta(schema.getName(), tableName);
+        if (tableMeta != null) {
+            for (int i = 0; i < tableMeta.getColumnsList().size(); i++) {
+                if (columnName.equalsIgnoreCase(tableMeta.getColumnsList().get(i).getName())) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
 
     /**
-     * deleteFile and its children
-     *
-     * @param dirPath
-     * @throws Exception
+     * the packets of the file are not read from the client while the input is paused
      */
-    private static void deleteFile(String dirPath) {
-        File fileDirToDel = new File(dirPath);
-        if (!fileDirToDel.exists()) {
-            return;
+    private static final class ClientInput implements LoadDataStream.Input {
+        private final ServerConnection connection;
+
+        private ClientInput(ServerConnection connection) {
+            this.connection = connection;
         }
-        if (fileDirToDel.isFile()) {
-            fileDirToDel.delete();
-            return;
+
+        @Override
+        public void pause() {
+            connection.disableRead();
         }
-        File[] fileList = fileDirToDel.listFiles();
-        if (fileList != null) {
-            for (File file : fileList) {
-                if (file.isFile() && file.exists()) {
-                    boolean delete = file.delete();
-                } else if (file.isDirectory()) {
-                    deleteFile(file.getAbsolutePath());
-                    file.delete();
+
+        @Override
+        public void resume() {
+            connection.enableRead();
+        }
+    }
+
+    /**
+     * the file on the server is parsed by the thread executing the load data, it waits while the input is paused
+     */
+    private static final class FileInput implements LoadDataStream.Input {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition resumed = lock.newCondition();
+        private volatile int pauses = 0;
+
+        @Override
+        public void pause() {
+            lock.lock();
+            try {
+                pauses++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void resume() {
+            lock.lock();
+            try {
+                if (pauses > 0 && --pauses == 0) {
+                    resumed.signalAll();
                 }
+            } finally {
+                lock.unlock();
             }
         }
-        fileDirToDel.delete();
-    }
 
+        private void awaitResumed() {
+            if (pauses == 0) {
+                return;
+            }
+            lock.lock();
+            try {
+                while (pauses > 0) {
+                    resumed.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 }
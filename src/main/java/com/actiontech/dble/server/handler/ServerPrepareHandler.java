@@ -16,6 +16,7 @@ import com.actiontech.dble.net.mysql.ExecutePacket;
 import com.actiontech.dble.net.mysql.LongDataPacket;
 import com.actiontech.dble.net.mysql.OkPacket;
 import com.actiontech.dble.net.mysql.ResetPacket;
+import com.actiontech.dble.server.PreparedPlan;
 import com.actiontech.dble.server.ServerConnection;
 import com.actiontech.dble.server.response.PreparedStmtResponse;
 import com.actiontech.dble.util.HexFormatUtil;
@@ -28,7 +29,9 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -68,6 +71,7 @@ public class ServerPrepareHandler implements FrontendPrepareHandler {
             int columnCount = getColumnCount(sql);
             int paramCount = getParamCount(sql);
             pStmt = new PreparedStatement(++pStmtId, sql, columnCount, paramCount);
+            pStmt.setPlan(PreparedPlan.create(sql));
             pStmtForSql.put(pStmt.getStatement(), pStmt);
             pStmtForId.put(pStmt.getId(), pStmt);
         }
@@ -125,13 +129,24 @@ public class ServerPrepareHandler implements FrontendPrepareHandler {
                 return;
             }
             BindValue[] bindValues = packet.getValues();
+            PreparedPlan plan = pStmt.getPlan();
+            List<String> boundValues = null;
+            List<Boolean> plainBoundValues = null;
+            if (plan != null) {
+                boundValues = new ArrayList<>(bindValues.length);
+                plainBoundValues = new ArrayList<>(bindValues.length);
+            }
             // reset the Parameter
-            String sql = prepareStmtBindValue(pStmt, bindValues);
+            String sql = prepareStmtBindValue(pStmt, bindValues, boundValues, plainBoundValues);
             source.getSession2().setPrepared(true);
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("execute prepare sql: " + sql);
             }
-            source.query(sql);
+            if (plan != null) {
+                source.executePrepared(sql, plan, plan.bind(boundValues, plainBoundValues));
+            } else {
+                source.query(sql);
+            }
         }
     }
 
@@ -176,9 +191,12 @@ public class ServerPrepareHandler implements FrontendPrepareHandler {
      *
      * @param pStmt
      * @param bindValues
+     * @param boundValues      the values for the route plan, null if not needed
+     * @param plainBoundValues whether the values are the same as the ones druid extracts from the sql
      * @return
      */
-    private String prepareStmtBindValue(PreparedStatement pStmt, BindValue[] bindValues) {
+    private String prepareStmtBindValue(PreparedStatement pStmt, BindValue[] bindValues,
+                                        List<String> boundValues, List<Boolean> plainBoundValues) {
         String sql = pStmt.getStatement();
         int[] paramTypes = pStmt.getParametersType();
         StringBuilder sb = new StringBuilder();
@@ -196,20 +214,28 @@ public class ServerPrepareHandler implements FrontendPrepareHandler {
             // if field is empty
             if (bindValue.isNull()) {
                 sb.append("NULL");
+                addBoundValue(boundValues, plainBoundValues, null, false);
                 continue;
             }
+            if (!isPlainType(paramType)) {
+                addBoundValue(boundValues, plainBoundValues, null, false);
+            }
             switch (paramType & 0xff) {
                 case Fields.FIELD_TYPE_TINY:
                     sb.append(String.valueOf(bindValue.getByteBinding()));
+                    addBoundValue(boundValues, plainBoundValues, String.valueOf(bindValue.getByteBinding()), true);
                     break;
                 case Fields.FIELD_TYPE_SHORT:
                     sb.append(String.valueOf(bindValue.getShortBinding()));
+                    addBoundValue(boundValues, plainBoundValues, String.valueOf(bindValue.getShortBinding()), true);
                     break;
                 case Fields.FIELD_TYPE_LONG:
                     sb.append(String.valueOf(bindValue.getIntBinding()));
+                    addBoundValue(boundValues, plainBoundValues, String.valueOf(bindValue.getIntBinding()), true);
                     break;
                 case Fields.FIELD_TYPE_LONGLONG:
                     sb.append(String.valueOf(bindValue.getLongBinding()));
+                    addBoundValue(boundValues, plainBoundValues, String.valueOf(bindValue.getLongBinding()), true);
                     break;
                 case Fields.FIELD_TYPE_FLOAT:
                     sb.append(String.valueOf(bindValue.getFloatBinding()));
@@ -220,6 +246,8 @@ public class ServerPrepareHandler implements FrontendPrepareHandler {
                 case Fields.FIELD_TYPE_VAR_STRING:
                 case Fields.FIELD_TYPE_STRING:
                 case Fields.FIELD_TYPE_VARCHAR:
+                    String value = String.valueOf(bindValue.getValue());
+                    addBoundValue(boundValues, plainBoundValues, value, value.indexOf('\\') < 0 && value.indexOf('\'') < 0);
                     bindValue.setValue(varcharEscape.asFunction().apply(String.valueOf(bindValue.getValue())));
                     sb.append("'" + bindValue.getValue() + "'");
                     break;
@@ -250,4 +278,28 @@ public class ServerPrepareHandler implements FrontendPrepareHandler {
         return sb.toString();
     }
 
+    /**
+     * the types whose value is the one druid extracts from the sql, except the string with escapes
+     */
+    private static boolean isPlainType(int paramType) {
+        switch (paramType & 0xff) {
+            case Fields.FIELD_TYPE_TINY:
+            case Fields.FIELD_TYPE_SHORT:
+            case Fields.FIELD_TYPE_LONG:
+            case Fields.FIELD_TYPE_LONGLONG:
+            case Fields.FIELD_TYPE_VAR_STRING:
+            case Fields.FIELD_TYPE_STRING:
+            case Fields.FIELD_TYPE_VARCHAR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void addBoundValue(List<String> boundValues, List<Boolean> plainBoundValues, String value, boolean plain) {
+        if (boundValues != null) {
+            boundValues.add(value);
+            plainBoundValues.add(plain);
+        }
+    }
 }
@@ -67,7 +67,12 @@ public final class QueryConditionAnalyzer implements QueryResultListener {
         int sqlType = queryResult.getSqlType();
         String sql = queryResult.getSql();
         if (sqlType == ServerParse.SELECT) {
-            List<Object> values = sqlParser.parseConditionValues(sql, this.tableName, this.columnName);
+            List<Object> values;
+            if (queryResult.getConditions() != null) {
+                values = sqlParser.getConditionValues(queryResult.getConditions(), this.tableName, this.columnName);
+            } else {
+                values = sqlParser.parseConditionValues(sql, this.tableName, this.columnName);
+            }
             if (values != null) {
                 if (this.map.size() < MAX_QUERY_MAP_SIZE) {
                     for (Object value : values) {
@@ -149,6 +154,23 @@ public final class QueryConditionAnalyzer implements QueryResultListener {
             return table;
         }
 
+        /**
+         * get the values from the conditions found by the router
+         */
+        public List<Object> getConditionValues(List<Condition> conditions, String table, String column) {
+            if (table == null || column == null) {
+                return null;
+            }
+            List<Object> values = new ArrayList<>();
+            for (Condition condition : conditions) {
+                if (table.equalsIgnoreCase(fixName(condition.getColumn().getTable())) &&
+                        column.equalsIgnoreCase(fixName(condition.getColumn().getName()))) {
+                    values.addAll(condition.getValues());
+                }
+            }
+            return values;
+        }
+
         /**
          * parseConditionValues
          *
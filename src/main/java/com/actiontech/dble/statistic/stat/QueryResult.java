@@ -5,6 +5,11 @@
 
 package com.actiontech.dble.statistic.stat;
 
+import com.actiontech.dble.route.RouteResultset;
+import com.alibaba.druid.stat.TableStat.Condition;
+
+import java.util.List;
+
 /**
  * QueryResult
  *
@@ -21,6 +26,8 @@ public class QueryResult {
     private long startTime;
     private long endTime;
     private int resultSize;
+    private List<String> tables;
+    private List<Condition> conditions;
 
     public QueryResult(String user, int sqlType, String sql, long sqlRows,
                        long netInBytes, long netOutBytes, long startTime, long endTime, int resultSize) {
@@ -36,6 +43,13 @@ public class QueryResult {
         this.resultSize = resultSize;
     }
 
+    public QueryResult(String user, RouteResultset rrs, long sqlRows,
+                       long netInBytes, long netOutBytes, long startTime, long endTime, int resultSize) {
+        this(user, rrs.getSqlType(), rrs.getStatement(), sqlRows, netInBytes, netOutBytes, startTime, endTime, resultSize);
+        this.tables = rrs.getStatTables();
+        this.conditions = rrs.getStatConditions();
+    }
+
     public String getUser() {
         return user;
     }
@@ -71,4 +85,18 @@ public class QueryResult {
     public int getResultSize() {
         return resultSize;
     }
+
+    /**
+     * @return the tables found by the router, null if the sql should be parsed
+     */
+    public List<String> getTables() {
+        return tables;
+    }
+
+    /**
+     * @return the conditions found by the router, null if the sql should be parsed
+     */
+    public List<Condition> getConditions() {
+        return conditions;
+    }
 }
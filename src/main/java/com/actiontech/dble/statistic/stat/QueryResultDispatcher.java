@@ -5,15 +5,22 @@
 
 package com.actiontech.dble.statistic.stat;
 
-import com.actiontech.dble.DbleServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * QueryResultDispatcher
+ * <p>
+ * the query results are put into a fixed size ring without lock, and the SqlStatAggregator thread
+ * passes them to the listeners. The result is dropped if the ring is full, the query never waits for the statistics.
  *
  * @author zhuam
  */
@@ -23,8 +30,21 @@ public final class QueryResultDispatcher {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(QueryResultDispatcher.class);
 
+    private static final int RING_SIZE = 1 << 14;
+    private static final int RING_MASK = RING_SIZE - 1;
+    private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long DROP_WARN_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
     private static List<QueryResultListener> listeners = new CopyOnWriteArrayList<>();
 
+    private static final AtomicReferenceArray<QueryResult> RING = new AtomicReferenceArray<>(RING_SIZE);
+    // the next slot to put, increased by the query threads
+    private static final AtomicLong TAIL = new AtomicLong(0);
+    // the next slot to take, only changed by the aggregator
+    private static volatile long head = 0;
+    private static final AtomicLong DROPPED = new AtomicLong(0);
+    private static final AtomicBoolean STARTED = new AtomicBoolean(false);
+
     // load in int
     static {
         listeners.add(UserStatAnalyzer.getInstance());
@@ -48,19 +68,77 @@ public final class QueryResultDispatcher {
     }
 
     public static void dispatchQuery(final QueryResult queryResult) {
-        DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
+        if (!STARTED.get() && STARTED.compareAndSet(false, true)) {
+            startAggregator();
+        }
+        long slot;
+        do {
+            slot = TAIL.get();
+            if (slot - head >= RING_SIZE) {
+                DROPPED.incrementAndGet();
+                return;
+            }
+        } while (!TAIL.compareAndSet(slot, slot + 1));
+        RING.lazySet((int) (slot & RING_MASK), queryResult);
+    }
 
-            public void run() {
+    /**
+     * @return the count of the query results dropped because the aggregator can't keep up
+     */
+    public static long getDroppedCount() {
+        return DROPPED.get();
+    }
 
-                for (QueryResultListener listener : listeners) {
-                    try {
-                        listener.onQueryResult(queryResult);
-                    } catch (Exception e) {
-                        LOGGER.info("error:", e);
-                    }
+    /**
+     * pass the query results in the ring to the listeners, only called by one thread at a time
+     *
+     * @return the count of the query results passed
+     */
+    static int drain() {
+        int count = 0;
+        long current = head;
+        while (current < TAIL.get()) {
+            int index = (int) (current & RING_MASK);
+            QueryResult queryResult = RING.get(index);
+            if (queryResult == null) {
+                // the slot is taken but the result is not set yet
+                break;
+            }
+            RING.lazySet(index, null);
+            head = ++current;
+            count++;
+            for (QueryResultListener listener : listeners) {
+                try {
+                    listener.onQueryResult(queryResult);
+                } catch (Exception e) {
+                    LOGGER.info("error:", e);
                 }
             }
-        });
+        }
+        return count;
     }
 
+    private static void startAggregator() {
+        Thread aggregator = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long lastDropped = 0;
+                long lastWarnTime = 0;
+                while (true) {
+                    if (drain() == 0) {
+                        LockSupport.parkNanos(IDLE_WAIT);
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now - lastWarnTime >= DROP_WARN_INTERVAL && DROPPED.get() > lastDropped) {
+                        LOGGER.warn("the sql statistics can't keep up with the queries, " +
+                                (DROPPED.get() - lastDropped) + " query results are dropped");
+                        lastDropped = DROPPED.get();
+                        lastWarnTime = now;
+                    }
+                }
+            }
+        }, "SqlStatAggregator");
+        aggregator.setDaemon(true);
+        aggregator.start();
+    }
 }
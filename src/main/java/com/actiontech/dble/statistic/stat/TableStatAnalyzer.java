@@ -61,7 +61,8 @@ public final class TableStatAnalyzer implements QueryResultListener {
                 String masterTable = null;
                 List<String> relationTables = new ArrayList<>();
 
-                List<String> tables = sqlParser.parseTableNames(sql);
+                List<String> tables = queryResult.getTables() != null ?
+                        sqlParser.fixNames(queryResult.getTables()) : sqlParser.parseTableNames(sql);
                 for (int i = 0; i < tables.size(); i++) {
                     String table = tables.get(i);
                     if (i == 0) {
@@ -149,6 +150,14 @@ public final class TableStatAnalyzer implements QueryResultListener {
             return tableName;
         }
 
+        private List<String> fixNames(List<String> tableNames) {
+            List<String> tables = new ArrayList<>(tableNames.size());
+            for (String tableName : tableNames) {
+                tables.add(fixName(tableName));
+            }
+            return tables;
+        }
+
         /**
          * PARSER SQL table name
          */
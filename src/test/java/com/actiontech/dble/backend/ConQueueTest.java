@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend;
+
+import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
+import com.actiontech.dble.server.ServerConnection;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConQueueTest {
+    private ConQueue queue;
+    private ServerConnection sc;
+
+    @Before
+    public void setUp() {
+        queue = new ConQueue();
+        sc = mock(ServerConnection.class);
+    }
+
+    private MySQLConnection idleCon(boolean sameState, boolean autoCommit) {
+        MySQLConnection con = mock(MySQLConnection.class);
+        when(con.isSameState(sc)).thenReturn(sameState);
+        if (autoCommit) {
+            queue.getAutoCommitCons().offer(con);
+        } else {
+            queue.getManCommitCons().offer(con);
+        }
+        return con;
+    }
+
+    @Test
+    public void testTakeSameStateCon() {
+        MySQLConnection con1 = idleCon(false, true);
+        MySQLConnection con2 = idleCon(true, true);
+        MySQLConnection con3 = idleCon(false, true);
+        Assert.assertSame(con2, queue.takeIdleCon(true, sc));
+        // the others are kept in their order
+        Assert.assertEquals(Arrays.asList(con1, con3), new ArrayList<>(queue.getAutoCommitCons()));
+        Assert.assertSame(con1, queue.takeIdleCon(true, sc));
+    }
+
+    @Test
+    public void testNoFrontConnection() {
+        MySQLConnection con1 = idleCon(false, true);
+        idleCon(true, true);
+        Assert.assertSame(con1, queue.takeIdleCon(true, null));
+        verify(con1, never()).isSameState(any(ServerConnection.class));
+    }
+
+    @Test
+    public void testFallBackAfterMaxLookup() {
+        List<MySQLConnection> cons = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            cons.add(idleCon(false, true));
+        }
+        MySQLConnection sameStateCon = idleCon(true, true);
+        // the same state connection is out of the lookup, the first one is taken
+        Assert.assertSame(cons.get(0), queue.takeIdleCon(true, sc));
+        verify(sameStateCon, never()).isSameState(sc);
+
+        // one connection less, it's in the lookup now
+        Assert.assertSame(sameStateCon, queue.takeIdleCon(true, sc));
+    }
+
+    @Test
+    public void testClosedSameStateConSkipped() {
+        MySQLConnection con1 = idleCon(false, true);
+        MySQLConnection con2 = idleCon(true, true);
+        when(con2.isClosedOrQuit()).thenReturn(true);
+        Assert.assertSame(con1, queue.takeIdleCon(true, sc));
+        Assert.assertEquals(1, queue.getAutoCommitCons().size());
+    }
+
+    @Test
+    public void testOtherQueueWithoutStateLookup() {
+        MySQLConnection con1 = idleCon(false, false);
+        MySQLConnection con2 = idleCon(true, false);
+        // only the queue of the wanted autocommit is looked up
+        Assert.assertSame(con1, queue.takeIdleCon(true, sc));
+        Assert.assertSame(con2, queue.takeIdleCon(false, sc));
+        Assert.assertNull(queue.takeIdleCon(false, sc));
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.datasource;
+
+import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.mysql.nio.MySQLDataSource;
+import com.actiontech.dble.backend.mysql.nio.handler.ResponseHandler;
+import com.actiontech.dble.config.model.DBHostConfig;
+import com.actiontech.dble.config.model.DataHostConfig;
+import com.actiontech.dble.config.model.SystemConfig;
+import com.actiontech.dble.util.TimeUtil;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PhysicalDatasourceTest {
+    private SystemConfig system;
+    private DBHostConfig config;
+    private TestDataSource ds;
+
+    @Before
+    public void setUp() {
+        system = new SystemConfig();
+        system.setConnectionWaitTimeout(1000);
+        system.setConnectionWaitQueueSize(10);
+        config = new DBHostConfig("host1", "127.0.0.1", 3306, "127.0.0.1:3306", "root", "123456");
+        config.setMaxCon(1);
+        DataHostConfig hostConfig = new DataHostConfig("dh1", new DBHostConfig[]{config},
+                new HashMap<Integer, DBHostConfig[]>(), DataHostConfig.NOT_SWITCH_DS, -1, false);
+        ds = new TestDataSource(config, hostConfig, system);
+    }
+
+    /**
+     * a borrowed connection of the datasource, it's counted as active like MySQLConnection.setBorrowed
+     */
+    private BackendConnection borrow() {
+        BackendConnection conn = mock(BackendConnection.class);
+        when(conn.getSchema()).thenReturn("db1");
+        when(conn.isBorrowed()).thenReturn(true);
+        ds.increaseActiveCount();
+        return conn;
+    }
+
+    @Test
+    public void testActiveCountIncremental() throws Exception {
+        BackendConnection conn = borrow();
+        Assert.assertEquals(1, ds.getActiveCount());
+        ResponseHandler handler = mock(ResponseHandler.class);
+        ds.getConnection("db1", true, handler, null);
+        Assert.assertEquals(1, ds.getWaitingCount());
+
+        // the active connection is closed, a new connection is created for the waiter
+        ds.decreaseActiveCount();
+        ds.connectionClosed(conn);
+        Assert.assertEquals(0, ds.getActiveCount());
+        Assert.assertEquals(0, ds.getWaitingCount());
+        Assert.assertEquals(1, ds.getCreatedCount());
+        // the creating is failed in the test, the reserved one is released
+        verify(handler).connectionError(any(IOException.class), (BackendConnection) isNull());
+        ds.getConnection("db1", true, handler, null);
+        Assert.assertEquals(2, ds.getCreatedCount());
+        Assert.assertEquals(0, ds.getWaitingCount());
+    }
+
+    @Test
+    public void testWaiterHandoffOnRelease() throws Exception {
+        BackendConnection conn = borrow();
+        ResponseHandler handler = mock(ResponseHandler.class);
+        ds.getConnection("db1", true, handler, "attachment");
+        Assert.assertEquals(1, ds.getWaitingCount());
+        verify(handler, never()).connectionAcquired(any(BackendConnection.class));
+
+        ds.releaseChannel(conn);
+        // the connection is handed over to the waiter, and it is still active
+        verify(handler).connectionAcquired(conn);
+        verify(conn).setAttachment("attachment");
+        verify(conn, never()).setBorrowed(false);
+        Assert.assertEquals(1, ds.getActiveCount());
+        Assert.assertEquals(0, ds.getWaitingCount());
+        Assert.assertEquals(1, ds.getWaitCount());
+        Assert.assertEquals(0, ds.getWaitTimeoutCount());
+    }
+
+    @Test
+    public void testWaitTimeout() throws Exception {
+        system.setConnectionWaitTimeout(1);
+        borrow();
+        ResponseHandler handler = mock(ResponseHandler.class);
+        ds.getConnection("db1", true, handler, null);
+        Assert.assertEquals(1, ds.getWaitingCount());
+
+        Thread.sleep(10);
+        TimeUtil.update();
+        ds.checkWaitTimeout();
+        verify(handler).connectionError(any(IOException.class), (BackendConnection) isNull());
+        verify(handler, never()).connectionAcquired(any(BackendConnection.class));
+        Assert.assertEquals(0, ds.getWaitingCount());
+        Assert.assertEquals(1, ds.getWaitTimeoutCount());
+    }
+
+    @Test
+    public void testWaitQueueFull() throws Exception {
+        system.setConnectionWaitQueueSize(1);
+        borrow();
+        ds.getConnection("db1", true, mock(ResponseHandler.class), null);
+        try {
+            ds.getConnection("db1", true, mock(ResponseHandler.class), null);
+            Assert.fail("the waiting queue is full");
+        } catch (IOException e) {
+            Assert.assertEquals(1, ds.getWaitingCount());
+        }
+    }
+
+    @Test
+    public void testNoWaiting() throws Exception {
+        system.setConnectionWaitTimeout(0);
+        borrow();
+        try {
+            ds.getConnection("db1", true, mock(ResponseHandler.class), null);
+            Assert.fail("the waiting is not allowed");
+        } catch (IOException e) {
+            Assert.assertEquals(0, ds.getWaitingCount());
+        }
+    }
+
+    @Test
+    public void testResponseTimeEwma() {
+        Assert.assertEquals(0, ds.getResponseTime(), 0);
+        // the first sample is taken as it is
+        ds.recordResponseTime(100);
+        Assert.assertEquals(100, ds.getResponseTime(), 0.0001);
+        // old + 0.2 * (sample - old)
+        ds.recordResponseTime(200);
+        Assert.assertEquals(120, ds.getResponseTime(), 0.0001);
+        ds.recordResponseTime(0);
+        Assert.assertEquals(96, ds.getResponseTime(), 0.0001);
+    }
+
+    @Test
+    public void testLoadCost() throws Exception {
+        // (response time + 1) * (active + waiting + 1)
+        Assert.assertEquals(1, ds.getLoadCost(), 0.0001);
+        ds.recordResponseTime(9);
+        Assert.assertEquals(10, ds.getLoadCost(), 0.0001);
+        borrow();
+        Assert.assertEquals(20, ds.getLoadCost(), 0.0001);
+        ds.getConnection("db1", true, mock(ResponseHandler.class), null);
+        Assert.assertEquals(1, ds.getWaitingCount());
+        Assert.assertEquals(30, ds.getLoadCost(), 0.0001);
+
+        // the slave delay in seconds is added to the response time
+        ds.getHeartbeat().setSlaveBehindMaster(2);
+        Assert.assertEquals(2010 * 3, ds.getLoadCost(), 0.0001);
+        ds.getHeartbeat().setSlaveBehindMaster(0);
+        Assert.assertEquals(30, ds.getLoadCost(), 0.0001);
+
+        // divided by the weight if it is set
+        config.setWeight(3);
+        Assert.assertEquals(10, ds.getLoadCost(), 0.0001);
+    }
+
+    private static class TestDataSource extends MySQLDataSource {
+        private final SystemConfig system;
+        private int createdCount = 0;
+
+        TestDataSource(DBHostConfig config, DataHostConfig hostConfig, SystemConfig system) {
+            super(config, hostConfig, false);
+            this.system = system;
+        }
+
+        @Override
+        Executor getExecutor() {
+            return new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            };
+        }
+
+        @Override
+        SystemConfig getSystemConfig() {
+            return system;
+        }
+
+        private int getCreatedCount() {
+            return createdCount;
+        }
+
+        @Override
+        public void createNewConnection(ResponseHandler handler, String schema) throws IOException {
+            createdCount++;
+            throw new IOException("no backend in the test");
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql;
+
+import com.actiontech.dble.net.BackendAIOConnection;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LoadDataStreamTest {
+    private static final byte[] LINE_END = new byte[]{'\n'};
+
+    private static class CountingInput implements LoadDataStream.Input {
+        private int pauses = 0;
+
+        @Override
+        public void pause() {
+            pauses++;
+        }
+
+        @Override
+        public void resume() {
+            pauses--;
+        }
+    }
+
+    private CountingInput input;
+    private BackendAIOConnection conn;
+    private ConcurrentLinkedQueue<ByteBuffer> writeQueue;
+    /* the packets are copied for the stream reuses the array */
+    private List<byte[]> packets;
+
+    @Before
+    public void setUp() {
+        input = new CountingInput();
+        conn = mock(BackendAIOConnection.class);
+        writeQueue = new ConcurrentLinkedQueue<>();
+        when(conn.getWriteQueue()).thenReturn(writeQueue);
+        packets = new ArrayList<>();
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                byte[] packet = (byte[]) invocation.getArguments()[0];
+                packets.add(Arrays.copyOf(packet, packet.length));
+                return null;
+            }
+        }).when(conn).write(any(byte[].class));
+    }
+
+    private void verifyWritten(int count) {
+        verify(conn, times(count)).write(any(byte[].class));
+        Assert.assertEquals(count, packets.size());
+    }
+
+    private static void assertPacket(String data, int packetId, byte[] packet) {
+        byte[] bytes = data.getBytes();
+        Assert.assertEquals(bytes.length + 4, packet.length);
+        Assert.assertEquals(bytes.length, packet[0] & 0xff);
+        Assert.assertEquals(0, packet[1]);
+        Assert.assertEquals(0, packet[2]);
+        Assert.assertEquals(packetId, packet[3]);
+        Assert.assertEquals(data, new String(packet, 4, bytes.length));
+    }
+
+    @Test
+    public void testKeptUntilConnected() {
+        LoadDataStream stream = new LoadDataStream(input, 8);
+        stream.append("1,abc".getBytes(), LINE_END);
+        stream.append("2,de".getBytes(), LINE_END);
+        verify(conn, never()).write(any(byte[].class));
+
+        stream.connect((byte) 1, conn);
+        verifyWritten(1);
+        assertPacket("1,abc\n2,", 2, packets.get(0));
+
+        // the lines are written at once after the backend requests the file
+        stream.append("3,fghij".getBytes(), LINE_END);
+        verifyWritten(2);
+        assertPacket("de\n3,fgh", 3, packets.get(1));
+
+        stream.finish();
+        verifyWritten(4);
+        assertPacket("ij\n", 4, packets.get(2));
+        assertPacket("", 5, packets.get(3));
+        Assert.assertEquals(0, input.pauses);
+    }
+
+    @Test
+    public void testFinishedBeforeConnected() {
+        LoadDataStream stream = new LoadDataStream(input, 8);
+        stream.append("1,abc".getBytes(), LINE_END);
+        stream.finish();
+        stream.append("2,de".getBytes(), LINE_END);
+        verify(conn, never()).write(any(byte[].class));
+
+        stream.connect((byte) 1, conn);
+        verifyWritten(2);
+        assertPacket("1,abc\n", 2, packets.get(0));
+        assertPacket("", 3, packets.get(1));
+    }
+
+    @Test
+    public void testNoLines() {
+        LoadDataStream stream = new LoadDataStream(input, 8);
+        stream.connect((byte) 1, conn);
+        stream.finish();
+        verifyWritten(1);
+        assertPacket("", 2, packets.get(0));
+    }
+
+    @Test
+    public void testPausedWhileWriteQueueFull() {
+        LoadDataStream stream = new LoadDataStream(input, 8);
+        stream.connect((byte) 1, conn);
+        for (int i = 0; i <= LoadDataStream.MAX_WRITE_QUEUE_SIZE; i++) {
+            writeQueue.add(ByteBuffer.allocate(1));
+        }
+        stream.append("1,abc".getBytes(), LINE_END);
+        Assert.assertTrue(stream.isPaused());
+        Assert.assertEquals(1, input.pauses);
+        // paused once whatever the lines appended
+        stream.append("2,abc".getBytes(), LINE_END);
+        Assert.assertEquals(1, input.pauses);
+
+        stream.writeQueueAvailable();
+        Assert.assertTrue(stream.isPaused());
+
+        writeQueue.clear();
+        stream.writeQueueAvailable();
+        Assert.assertFalse(stream.isPaused());
+        Assert.assertEquals(0, input.pauses);
+        stream.writeQueueAvailable();
+        Assert.assertEquals(0, input.pauses);
+    }
+
+    @Test
+    public void testPausedUntilConnected() {
+        LoadDataStream stream = new LoadDataStream(input, 1024);
+        byte[] line = new byte[1023];
+        int lines = LoadDataStream.MAX_UNSENT_SIZE / 1024;
+        for (int i = 0; i < lines - 8; i++) {
+            stream.append(line, LINE_END);
+        }
+        Assert.assertFalse(stream.isPaused());
+        for (int i = 0; i < 8; i++) {
+            stream.append(line, LINE_END);
+        }
+        Assert.assertTrue(stream.isPaused());
+        Assert.assertEquals(1, input.pauses);
+
+        stream.connect((byte) 1, conn);
+        Assert.assertFalse(stream.isPaused());
+        Assert.assertEquals(0, input.pauses);
+    }
+
+    @Test
+    public void testAbort() {
+        LoadDataStream stream = new LoadDataStream(input, 8);
+        stream.connect((byte) 1, conn);
+        for (int i = 0; i <= LoadDataStream.MAX_WRITE_QUEUE_SIZE; i++) {
+            writeQueue.add(ByteBuffer.allocate(1));
+        }
+        stream.append("1,abc".getBytes(), LINE_END);
+        Assert.assertEquals(1, input.pauses);
+
+        stream.abort("parse error");
+        // the backend can't finish the loading
+        verify(conn).close("parse error");
+        Assert.assertEquals(0, input.pauses);
+        stream.append("2,abc".getBytes(), LINE_END);
+        stream.finish();
+        verify(conn, never()).write(any(byte[].class));
+    }
+
+    @Test
+    public void testAbortBeforeConnected() {
+        LoadDataStream stream = new LoadDataStream(input, 8);
+        stream.append("1,abc".getBytes(), LINE_END);
+        stream.abort("parse error");
+        stream.connect((byte) 1, conn);
+        verify(conn).close("parse error");
+        verify(conn, never()).write(any(byte[].class));
+    }
+
+    @Test
+    public void testFinishedNotAborted() {
+        LoadDataStream stream = new LoadDataStream(input, 8);
+        stream.connect((byte) 1, conn);
+        stream.finish();
+        stream.abort("stopped");
+        verify(conn, never()).close(anyString());
+    }
+
+    @Test
+    public void testClose() {
+        LoadDataStream stream = new LoadDataStream(input, 8);
+        stream.connect((byte) 1, conn);
+        stream.append("1,abc".getBytes(), LINE_END);
+        stream.close();
+        stream.append("2,abc".getBytes(), LINE_END);
+        stream.finish();
+        stream.abort("stopped");
+        // the connection is not the one of the load data any more
+        verify(conn, never()).close(anyString());
+        verify(conn, never()).write(any(byte[].class));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio;
+
+import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.mysql.nio.handler.ResponseHandler;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.StatusFlags;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class MySQLConnectionHandlerTest {
+    private MySQLConnection source;
+    private ResponseHandler responseHandler;
+    private MySQLConnectionHandler handler;
+
+    @Before
+    public void setUp() {
+        source = mock(MySQLConnection.class);
+        responseHandler = mock(ResponseHandler.class);
+        handler = new MySQLConnectionHandler(source);
+        handler.setResponseHandler(responseHandler);
+    }
+
+    @Test
+    public void testOkEndsQuery() {
+        byte[] ok = okPacket(StatusFlags.SERVER_STATUS_AUTOCOMMIT);
+        handler.handleData(ok);
+        verify(source).endQuery();
+        verify(responseHandler).okResponse(ok, source);
+    }
+
+    @Test
+    public void testMoreResultsAfterOk() {
+        byte[] ok = okPacket(StatusFlags.SERVER_STATUS_AUTOCOMMIT | StatusFlags.SERVER_MORE_RESULTS_EXISTS);
+        handler.handleData(ok);
+        // the response of the multi statements is not finished yet
+        verify(source, never()).endQuery();
+        verify(responseHandler).okResponse(ok, source);
+
+        handler.handleData(okPacket(StatusFlags.SERVER_STATUS_AUTOCOMMIT));
+        verify(source, times(1)).endQuery();
+    }
+
+    @Test
+    public void testMoreResultsAfterResultSet() {
+        handler.handleData(new byte[]{1, 0, 0, 1, 1});
+        handler.handleData(new byte[]{1, 0, 0, 2, 3});
+        handler.handleData(eofPacket(3, 0));
+        handler.handleData(new byte[]{2, 0, 0, 4, 1, 0x31});
+        handler.handleData(eofPacket(5, StatusFlags.SERVER_MORE_RESULTS_EXISTS));
+        verify(responseHandler).fieldEofResponse(any(byte[].class), anyListOf(byte[].class), anyListOf(FieldPacket.class),
+                any(byte[].class), anyBoolean(), any(BackendConnection.class));
+        verify(responseHandler).rowEofResponse(any(byte[].class), anyBoolean(), any(BackendConnection.class));
+        verify(source, never()).endQuery();
+
+        // the last result set ends the query
+        handler.handleData(new byte[]{1, 0, 0, 1, 1});
+        handler.handleData(new byte[]{1, 0, 0, 2, 3});
+        handler.handleData(eofPacket(3, 0));
+        handler.handleData(eofPacket(4, StatusFlags.SERVER_STATUS_AUTOCOMMIT));
+        verify(source, times(1)).endQuery();
+    }
+
+    @Test
+    public void testErrorEndsQuery() {
+        handler.handleData(new byte[]{3, 0, 0, 1, (byte) 0xff, 0x15, 0x04});
+        verify(source).endQuery();
+        verify(responseHandler).errorResponse(any(byte[].class), any(BackendConnection.class));
+    }
+
+    /**
+     * OK packet with 0 affected rows, 0 insert id, the status and 0 warnings
+     */
+    private static byte[] okPacket(int status) {
+        return new byte[]{7, 0, 0, 1, 0, 0, 0, (byte) (status & 0xff), (byte) (status >>> 8), 0, 0};
+    }
+
+    /**
+     * EOF packet with 0 warnings and the status
+     */
+    private static byte[] eofPacket(int packetId, int status) {
+        return new byte[]{5, 0, 0, (byte) packetId, (byte) 0xfe, 0, 0, (byte) (status & 0xff), (byte) (status >>> 8)};
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio;
+
+import com.actiontech.dble.backend.mysql.xa.TxState;
+import com.actiontech.dble.config.Isolations;
+import com.actiontech.dble.net.AbstractConnection;
+import com.actiontech.dble.net.mysql.CharsetNames;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.server.parser.ServerParse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MySQLConnectionTest {
+    private final Map<String, String> scSysVariables = new HashMap<>();
+    private final Map<String, String> conSysVariables = new LinkedHashMap<>();
+    private CharsetNames charset;
+    private MySQLDataSource pool;
+    private NonBlockingSession session;
+    private ServerConnection sc;
+    private MySQLConnection con;
+
+    @Before
+    public void setUp() throws Exception {
+        scSysVariables.clear();
+        conSysVariables.clear();
+        charset = mock(CharsetNames.class);
+        pool = mock(MySQLDataSource.class);
+        session = mock(NonBlockingSession.class);
+        sc = mock(ServerConnection.class);
+        when(sc.getCharset()).thenReturn(charset);
+        when(sc.getTxIsolation()).thenReturn(Isolations.REPEATABLE_READ);
+        when(sc.getSysVariables()).thenReturn(scSysVariables);
+        when(sc.getUsrVariables()).thenReturn(new HashMap<String, String>());
+
+        // only the state of the connection, the others need the server
+        con = mock(MySQLConnection.class, Mockito.CALLS_REAL_METHODS);
+        doNothing().when(con).sendQueryCmd(anyString(), any(CharsetNames.class));
+        setField(AbstractConnection.class, "charsetName", charset);
+        setField(AbstractConnection.class, "sysVariables", conSysVariables);
+        setField(AbstractConnection.class, "usrVariables", new LinkedHashMap<String, String>());
+        setField(MySQLConnection.class, "txIsolation", Isolations.REPEATABLE_READ);
+        setField(MySQLConnection.class, "autocommit", true);
+        setField(MySQLConnection.class, "schema", "db1");
+        setField(MySQLConnection.class, "oldSchema", "db1");
+        setField(MySQLConnection.class, "xaStatus", TxState.TX_INITIALIZE_STATE);
+        setField(MySQLConnection.class, "pool", pool);
+        setField(MySQLConnection.class, "session", session);
+    }
+
+    private void setField(Class<?> clazz, String name, Object value) throws Exception {
+        Field field = clazz.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(con, value);
+    }
+
+    private void execute(boolean autoCommit) {
+        con.execute(new RouteResultsetNode("dn1", ServerParse.SELECT, "select 1"), sc, autoCommit);
+    }
+
+    @Test
+    public void testSameState() {
+        scSysVariables.put("sql_mode", "STRICT_TRANS_TABLES");
+        conSysVariables.put("sql_mode", "strict_trans_tables");
+        Assert.assertTrue(con.isSameState(sc));
+
+        scSysVariables.put("sql_mode", "ANSI");
+        Assert.assertFalse(con.isSameState(sc));
+        scSysVariables.put("sql_mode", "STRICT_TRANS_TABLES");
+        scSysVariables.put("autocommit_ext", "1");
+        Assert.assertFalse(con.isSameState(sc));
+        scSysVariables.remove("autocommit_ext");
+        Assert.assertTrue(con.isSameState(sc));
+    }
+
+    @Test
+    public void testDifferentIsolationOrCharset() {
+        when(sc.getTxIsolation()).thenReturn(Isolations.READ_COMMITTED);
+        Assert.assertFalse(con.isSameState(sc));
+        when(sc.getTxIsolation()).thenReturn(Isolations.REPEATABLE_READ);
+        when(sc.getCharset()).thenReturn(mock(CharsetNames.class));
+        Assert.assertFalse(con.isSameState(sc));
+    }
+
+    @Test
+    public void testNoSync() {
+        execute(true);
+        verify(pool).recordQuery(false);
+        verify(con).sendQueryCmd("select 1", charset);
+    }
+
+    @Test
+    public void testSyncCounted() {
+        when(sc.getTxIsolation()).thenReturn(Isolations.READ_COMMITTED);
+        execute(true);
+        verify(pool).recordQuery(true);
+        verify(con).sendQueryCmd("SET SESSION TRANSACTION ISOLATION LEVEL READ COMMITTED;select 1;", charset);
+    }
+
+    @Test
+    public void testXaStartNotCounted() throws Exception {
+        // the autocommit is already off, only the XA START is sent before the query
+        setField(MySQLConnection.class, "autocommit", false);
+        when(session.getSessionXaID()).thenReturn("'Dble_Server.1'");
+        execute(false);
+        verify(pool).recordQuery(false);
+        verify(con).sendQueryCmd("XA START 'Dble_Server.1.db1';select 1;", charset);
+        Assert.assertEquals(TxState.TX_STARTED_STATE, con.getXaStatus());
+    }
+
+    @Test
+    public void testXaStartWithSyncCounted() throws Exception {
+        setField(MySQLConnection.class, "autocommit", false);
+        when(session.getSessionXaID()).thenReturn("'Dble_Server.1'");
+        when(sc.getTxIsolation()).thenReturn(Isolations.READ_COMMITTED);
+        execute(false);
+        verify(pool).recordQuery(true);
+    }
+}
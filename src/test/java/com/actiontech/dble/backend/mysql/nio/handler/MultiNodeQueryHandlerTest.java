@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler;
+
+import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.net.AbstractConnection;
+import com.actiontech.dble.net.SocketWR;
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.server.parser.ServerParse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MultiNodeQueryHandlerTest {
+    private static final int NODES = 4;
+    private static final int ROWS_PER_NODE = 2000;
+
+    /* the packets written to the frontend buffer, in the order of writing */
+    private final List<byte[]> packets = Collections.synchronizedList(new ArrayList<byte[]>());
+    private final ConcurrentLinkedQueue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    private NonBlockingSession session;
+    private ServerConnection source;
+    /* blocks the writing of the packet with the payload, null if no packet is blocked */
+    private volatile String blockedPayload;
+    private volatile CountDownLatch blocking;
+    private volatile CountDownLatch unblock;
+
+    @Before
+    public void setUp() throws Exception {
+        packets.clear();
+        writeQueue.clear();
+        blockedPayload = null;
+        session = mock(NonBlockingSession.class);
+        source = mock(ServerConnection.class);
+        when(session.getSource()).thenReturn(source);
+        when(source.isAutocommit()).thenReturn(true);
+        when(source.allocate()).thenReturn(ByteBuffer.allocate(16));
+        when(source.writeToBuffer(any(byte[].class), any(ByteBuffer.class))).thenAnswer(new Answer<ByteBuffer>() {
+            @Override
+            public ByteBuffer answer(InvocationOnMock invocation) throws InterruptedException {
+                byte[] packet = ((byte[]) invocation.getArguments()[0]).clone();
+                if (payload(packet).equals(blockedPayload)) {
+                    blocking.countDown();
+                    Assert.assertTrue(unblock.await(10, TimeUnit.SECONDS));
+                }
+                packets.add(packet);
+                return (ByteBuffer) invocation.getArguments()[1];
+            }
+        });
+        // the frontend buffer is written by the final write(ByteBuffer) of the connection
+        setField(source, "writeQueue", writeQueue);
+        setField(source, "socketWR", mock(SocketWR.class));
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = AbstractConnection.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static byte[] packet(String payload) {
+        byte[] data = payload.getBytes();
+        byte[] packet = new byte[4 + data.length];
+        packet[0] = (byte) data.length;
+        System.arraycopy(data, 0, packet, 4, data.length);
+        return packet;
+    }
+
+    private static String payload(byte[] packet) {
+        return new String(packet, 4, packet.length - 4);
+    }
+
+    private TestHandler startedHandler(int nodes) {
+        RouteResultset rrs = new RouteResultset("select * from t", ServerParse.SELECT);
+        RouteResultsetNode[] routeNodes = new RouteResultsetNode[nodes];
+        for (int i = 0; i < nodes; i++) {
+            routeNodes[i] = new RouteResultsetNode("dn" + i, ServerParse.SELECT, "select * from t");
+        }
+        rrs.setNodes(routeNodes);
+        TestHandler handler = new TestHandler(rrs, session);
+        handler.reset(nodes);
+        return handler;
+    }
+
+    private static void sendFields(TestHandler handler, BackendConnection conn) {
+        handler.fieldEofResponse(packet("header"), new ArrayList<byte[]>(), null, packet("fields eof"), false, conn);
+    }
+
+    /**
+     * every packet id is the one of the packet before it plus 1
+     */
+    private void assertPacketIds() {
+        for (int i = 0; i < packets.size(); i++) {
+            Assert.assertEquals((byte) (i + 1), packets.get(i)[3]);
+        }
+    }
+
+    @Test
+    public void testRowsOfNodesInParallel() throws Exception {
+        final TestHandler handler = startedHandler(NODES);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            final int node = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        BackendConnection conn = mock(BackendConnection.class);
+                        start.await();
+                        sendFields(handler, conn);
+                        for (int j = 0; j < ROWS_PER_NODE; j++) {
+                            handler.rowResponse(packet("dn" + node + "-" + j), null, false, conn);
+                        }
+                        handler.rowEofResponse(packet("eof"), false, conn);
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(30000);
+        }
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+
+        // the header once, before any row, and the eof after all rows
+        Assert.assertEquals(NODES * ROWS_PER_NODE + 3, packets.size());
+        Assert.assertEquals("header", payload(packets.get(0)));
+        Assert.assertEquals("fields eof", payload(packets.get(1)));
+        Assert.assertEquals("eof", payload(packets.get(packets.size() - 1)));
+        Set<String> rows = new HashSet<>();
+        List<Integer> lastRows = new ArrayList<>(Collections.nCopies(NODES, -1));
+        for (byte[] packet : packets.subList(2, packets.size() - 1)) {
+            String row = payload(packet);
+            Assert.assertTrue("duplicated " + row, rows.add(row));
+            // the rows of one node keep their order
+            int node = Integer.parseInt(row.substring(2, row.indexOf('-')));
+            int index = Integer.parseInt(row.substring(row.indexOf('-') + 1));
+            Assert.assertTrue(row, index > lastRows.get(node));
+            lastRows.set(node, index);
+        }
+        Assert.assertEquals(NODES * ROWS_PER_NODE, rows.size());
+        assertPacketIds();
+        Assert.assertEquals(1, writeQueue.size());
+        Assert.assertEquals(1, handler.sqlStats);
+    }
+
+    @Test
+    public void testRowQueuedWhileDraining() throws Exception {
+        final TestHandler handler = startedHandler(2);
+        final BackendConnection conn1 = mock(BackendConnection.class);
+        BackendConnection conn2 = mock(BackendConnection.class);
+        sendFields(handler, conn1);
+        sendFields(handler, conn2);
+
+        blockedPayload = "dn0-0";
+        blocking = new CountDownLatch(1);
+        unblock = new CountDownLatch(1);
+        Thread drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                handler.rowResponse(packet("dn0-0"), null, false, conn1);
+            }
+        });
+        drainer.start();
+        Assert.assertTrue(blocking.await(10, TimeUnit.SECONDS));
+
+        // the other thread is draining, the row is queued and the backend thread goes on without waiting
+        handler.rowResponse(packet("dn1-0"), null, false, conn2);
+        handler.rowResponse(packet("dn1-1"), null, false, conn2);
+        Assert.assertEquals(2, packets.size());
+
+        unblock.countDown();
+        drainer.join(10000);
+        Assert.assertEquals(5, packets.size());
+        Assert.assertEquals("dn0-0", payload(packets.get(2)));
+        Assert.assertEquals("dn1-0", payload(packets.get(3)));
+        Assert.assertEquals("dn1-1", payload(packets.get(4)));
+
+        handler.rowEofResponse(packet("eof"), false, conn1);
+        Assert.assertTrue(writeQueue.isEmpty());
+        handler.rowEofResponse(packet("eof"), false, conn2);
+        Assert.assertEquals(6, packets.size());
+        Assert.assertEquals("eof", payload(packets.get(5)));
+        assertPacketIds();
+        Assert.assertEquals(1, writeQueue.size());
+    }
+
+    @Test
+    public void testLimitWindow() {
+        RouteResultset rrs = new RouteResultset("select * from t limit 3,2", ServerParse.SELECT);
+        rrs.setNodes(new RouteResultsetNode[]{new RouteResultsetNode("dn0", ServerParse.SELECT, "select * from t")});
+        rrs.setLimitStart(3);
+        rrs.setLimitSize(2);
+        TestHandler handler = new TestHandler(rrs, session);
+        handler.reset(1);
+        BackendConnection conn = mock(BackendConnection.class);
+        sendFields(handler, conn);
+        for (int i = 0; i < 10; i++) {
+            handler.rowResponse(packet("dn0-" + i), null, false, conn);
+        }
+        handler.rowEofResponse(packet("eof"), false, conn);
+        Assert.assertEquals(5, packets.size());
+        Assert.assertEquals("dn0-3", payload(packets.get(2)));
+        Assert.assertEquals("dn0-4", payload(packets.get(3)));
+        assertPacketIds();
+    }
+
+    private static class TestHandler extends MultiNodeQueryHandler {
+        private int sqlStats = 0;
+
+        TestHandler(RouteResultset rrs, NonBlockingSession session) {
+            super(rrs, session);
+        }
+
+        @Override
+        protected void doSqlStat(ServerConnection source) {
+            sqlStats++;
+        }
+    }
+}
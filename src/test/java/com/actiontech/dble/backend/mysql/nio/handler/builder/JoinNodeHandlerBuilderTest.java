@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.builder;
+
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.ItemField;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncIn;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public class JoinNodeHandlerBuilderTest {
+    private final Item keyInBig = new ItemField(null, "b", "id");
+
+    @Test
+    public void testInFiltersOfNodes() {
+        Set<String> node0 = values(0, 7);
+        Set<String> node1 = values(100, 3);
+        Set<String> unrouted = values(200, 1);
+        List<Set<String>> valueSets = Arrays.asList(node0, node1, unrouted);
+        List<Item> filters = JoinNodeHandlerBuilder.buildInFilters(keyInBig, valueSets, 3);
+        // 7 values are 3 + 3 + 1, the values of every node are never mixed
+        Assert.assertEquals(3 + 1 + 1, filters.size());
+        List<Set<String>> inLists = new ArrayList<>();
+        for (Item filter : filters) {
+            ItemFuncIn in = (ItemFuncIn) filter;
+            Assert.assertSame(keyInBig, in.arguments().get(0));
+            Assert.assertTrue(in.getArgCount() - 1 <= 3);
+            Set<String> inList = new HashSet<>();
+            for (int i = 1; i < in.getArgCount(); i++) {
+                inList.add(in.arguments().get(i).valStr());
+            }
+            inLists.add(inList);
+        }
+        Assert.assertEquals(node0, union(inLists.subList(0, 3)));
+        Assert.assertEquals(node1, inLists.get(3));
+        Assert.assertEquals(unrouted, inLists.get(4));
+    }
+
+    @Test
+    public void testNoValues() {
+        List<Set<String>> valueSets = new ArrayList<>();
+        Assert.assertTrue(JoinNodeHandlerBuilder.buildInFilters(keyInBig, valueSets, 3).isEmpty());
+        valueSets.add(new HashSet<String>());
+        Assert.assertTrue(JoinNodeHandlerBuilder.buildInFilters(keyInBig, valueSets, 3).isEmpty());
+    }
+
+    private static Set<String> values(int start, int count) {
+        Set<String> values = new LinkedHashSet<>();
+        for (int i = start; i < start + count; i++) {
+            values.add(String.valueOf(i));
+        }
+        return values;
+    }
+
+    private static Set<String> union(List<Set<String>> sets) {
+        Set<String> values = new HashSet<>();
+        for (Set<String> set : sets) {
+            Assert.assertTrue(Collections.disjoint(values, set));
+            values.addAll(set);
+        }
+        return values;
+    }
+}
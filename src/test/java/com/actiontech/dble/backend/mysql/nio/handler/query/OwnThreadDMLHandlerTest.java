@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.query;
+
+import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class OwnThreadDMLHandlerTest {
+    private static final int QUEUE_SIZE = 10;
+
+    /* the steps submitted to the executor, run by the test */
+    private final Queue<Runnable> tasks = new LinkedList<>();
+    private BackendConnection conn;
+
+    @Before
+    public void setUp() {
+        tasks.clear();
+        conn = mock(BackendConnection.class);
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private TestHandler startedHandler() {
+        TestHandler handler = new TestHandler();
+        handler.startOwnThread();
+        runTasks();
+        return handler;
+    }
+
+    @Test
+    public void testNoStepBeforeStart() {
+        TestHandler handler = new TestHandler();
+        handler.push(conn, 1);
+        handler.push(conn, 2);
+        Assert.assertTrue(tasks.isEmpty());
+
+        handler.startOwnThread();
+        Assert.assertEquals(1, tasks.size());
+        runTasks();
+        Assert.assertEquals(2, handler.consumed.size());
+    }
+
+    @Test
+    public void testOneStepScheduledAtATime() {
+        TestHandler handler = startedHandler();
+        handler.push(conn, 1);
+        handler.push(conn, 2);
+        handler.push(conn, 3);
+        // the pushes after the first one are run by the step already scheduled
+        Assert.assertEquals(1, tasks.size());
+        runTasks();
+        Assert.assertTrue(tasks.isEmpty());
+        Assert.assertEquals(3, handler.consumed.size());
+
+        handler.push(conn, 4);
+        Assert.assertEquals(1, tasks.size());
+        runTasks();
+        Assert.assertEquals(4, handler.consumed.size());
+        Assert.assertEquals(4, handler.consumed.get(3).intValue());
+    }
+
+    @Test
+    public void testPauseAndResumeWithFullQueue() {
+        TestHandler handler = startedHandler();
+        handler.stepSize = 2;
+        for (int i = 0; i < QUEUE_SIZE - 1; i++) {
+            handler.push(conn, i);
+        }
+        verify(conn, never()).disableRead();
+        handler.push(conn, QUEUE_SIZE - 1);
+        verify(conn, times(1)).disableRead();
+        // paused once, the rows already read are still pushed
+        handler.push(conn, QUEUE_SIZE);
+        verify(conn, times(1)).disableRead();
+
+        // 2 steps run for the 11 pushes, 7 rows are left which are more than the half
+        runTasks();
+        Assert.assertEquals(7, handler.queue.size());
+        verify(conn, never()).enableRead();
+
+        handler.push(conn, QUEUE_SIZE + 1);
+        runTasks();
+        Assert.assertEquals(6, handler.queue.size());
+        verify(conn, never()).enableRead();
+        handler.push(conn, QUEUE_SIZE + 2);
+        runTasks();
+        Assert.assertEquals(5, handler.queue.size());
+        verify(conn, times(1)).enableRead();
+
+        // full again
+        handler.stepSize = 0;
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            handler.push(conn, i);
+        }
+        runTasks();
+        verify(conn, times(2)).disableRead();
+        verify(conn, times(1)).enableRead();
+    }
+
+    @Test
+    public void testResumeWhenFinished() {
+        TestHandler handler = startedHandler();
+        handler.stepSize = 0;
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            handler.push(conn, i);
+        }
+        runTasks();
+        verify(conn, times(1)).disableRead();
+        verify(conn, never()).enableRead();
+
+        handler.terminate();
+        runTasks();
+        verify(conn, times(1)).enableRead();
+        Assert.assertTrue(handler.recycled);
+        // no more steps after finished
+        handler.push(conn, 1);
+        Assert.assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void testTerminatedAfterStepsFinish() {
+        TestHandler handler = startedHandler();
+        CountingCallback callback = new CountingCallback();
+        handler.push(conn, 1);
+        handler.terminate();
+        // the step scheduled is still to run
+        handler.whenTerminated(callback);
+        Assert.assertEquals(0, callback.runs);
+        runTasks();
+        Assert.assertTrue(handler.recycled);
+        Assert.assertEquals(1, callback.runs);
+
+        handler.whenTerminated(callback);
+        Assert.assertEquals(2, callback.runs);
+    }
+
+    @Test
+    public void testTerminatedBeforeStart() {
+        TestHandler handler = new TestHandler();
+        CountingCallback callback = new CountingCallback();
+        handler.terminate();
+        handler.whenTerminated(callback);
+        Assert.assertEquals(1, callback.runs);
+        // no steps after terminated
+        handler.startOwnThread();
+        Assert.assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void testPausesOfHandlersOnSameConnection() {
+        TestHandler handler1 = startedHandler();
+        TestHandler handler2 = startedHandler();
+        handler1.stepSize = 0;
+        handler2.stepSize = 0;
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            handler1.push(conn, i);
+            handler2.push(conn, i);
+        }
+        runTasks();
+        // every handler pauses the connection by itself
+        verify(conn, times(2)).disableRead();
+
+        // one handler consumes its rows, it only resumes its own pause
+        handler1.stepSize = QUEUE_SIZE;
+        handler1.push(conn, QUEUE_SIZE);
+        runTasks();
+        verify(conn, times(1)).enableRead();
+        handler1.push(conn, QUEUE_SIZE + 1);
+        runTasks();
+        verify(conn, times(1)).enableRead();
+
+        handler2.stepSize = QUEUE_SIZE;
+        handler2.push(conn, QUEUE_SIZE);
+        runTasks();
+        verify(conn, times(2)).enableRead();
+    }
+
+    private static class CountingCallback implements Runnable {
+        private int runs = 0;
+
+        @Override
+        public void run() {
+            runs++;
+        }
+    }
+
+    private class TestHandler extends OwnThreadDMLHandler {
+        private final Queue<Integer> queue = new ConcurrentLinkedQueue<>();
+        private final List<Integer> consumed = new ArrayList<>();
+        private int stepSize = Integer.MAX_VALUE;
+        private boolean recycled = false;
+
+        TestHandler() {
+            super(0, null);
+        }
+
+        @Override
+        protected Executor getStepExecutor() {
+            return new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    tasks.add(command);
+                }
+            };
+        }
+
+        void push(BackendConnection connection, int row) {
+            queue.offer(row);
+            pauseReadIfFull(connection, queue, QUEUE_SIZE);
+            scheduleStep();
+        }
+
+        @Override
+        protected boolean ownThreadStep(Object... objects) {
+            Integer row;
+            for (int i = 0; i < stepSize && (row = queue.poll()) != null; i++) {
+                consumed.add(row);
+            }
+            return false;
+        }
+
+        @Override
+        protected void terminateThread() throws Exception {
+            scheduleStep();
+        }
+
+        @Override
+        protected void recycleResources() {
+            recycled = true;
+        }
+
+        @Override
+        public HandlerType type() {
+            return HandlerType.ORDERBY;
+        }
+
+        @Override
+        public void fieldEofResponse(byte[] header, List<byte[]> fields, List<FieldPacket> fieldPackets, byte[] eof,
+                                     boolean isLeft, BackendConnection connection) {
+        }
+
+        @Override
+        public boolean rowResponse(byte[] rowNull, RowDataPacket rowPacket, boolean isLeft, BackendConnection connection) {
+            return false;
+        }
+
+        @Override
+        public void rowEofResponse(byte[] eof, boolean isLeft, BackendConnection connection) {
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.query.impl;
+
+import com.actiontech.dble.plan.common.exception.TempTableException;
+import com.actiontech.dble.plan.common.item.ItemField;
+import com.actiontech.dble.route.function.PartitionByLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class TempTableHandlerTest {
+
+    @Test
+    public void testSplitByPartition() {
+        TempTableHandler handler = createHandler();
+        // 4 partitions of 256 values, but only 3 nodes
+        handler.setPartition(createAlgorithm(), 3);
+        for (String value : new String[]{"1", "300", "513", "1", "1024", "800", "abc", "-1"}) {
+            handler.addValue(value, null);
+        }
+        Map<Integer, Set<String>> valueSets = handler.getValueSets();
+        Assert.assertEquals(set("1", "1024"), valueSets.get(0));
+        Assert.assertEquals(set("300"), valueSets.get(1));
+        Assert.assertEquals(set("513"), valueSets.get(2));
+        // the value which is not a number or out of the nodes is left to the router
+        Assert.assertEquals(set("800", "abc", "-1"), valueSets.get(-1));
+        Assert.assertEquals(4, valueSets.size());
+    }
+
+    @Test
+    public void testNoPartition() {
+        TempTableHandler handler = createHandler();
+        for (String value : new String[]{"1", "300", "abc", "1"}) {
+            handler.addValue(value, null);
+        }
+        Map<Integer, Set<String>> valueSets = handler.getValueSets();
+        Assert.assertEquals(1, valueSets.size());
+        Assert.assertEquals(set("1", "300", "abc"), valueSets.get(-1));
+    }
+
+    @Test
+    public void testRowsBound() {
+        TempTableHandler handler = createHandler();
+        Assert.assertEquals(4, handler.getMaxRows());
+        for (int i = 0; i < 4; i++) {
+            handler.countRow(null);
+        }
+        // the duplicated values don't grow the value sets, but the rows are kept in the temp table
+        try {
+            handler.countRow(null);
+            Assert.fail("the rows beyond the bound are kept");
+        } catch (TempTableException e) {
+            Assert.assertTrue(e.getMessage().contains("too much rows"));
+        }
+    }
+
+    @Test
+    public void testRowsBoundByPartition() {
+        TempTableHandler handler = createHandler();
+        handler.setPartition(createAlgorithm(), 3);
+        // every node can get its own values
+        Assert.assertEquals(12, handler.getMaxRows());
+        for (int i = 0; i < 12; i++) {
+            handler.countRow(null);
+        }
+        try {
+            handler.countRow(null);
+            Assert.fail("the rows beyond the bound are kept");
+        } catch (TempTableException e) {
+            Assert.assertTrue(e.getMessage().contains("too much rows"));
+        }
+    }
+
+    private static TempTableHandler createHandler() {
+        return new TempTableHandler(1, null, new ItemField(null, "t", "id"), 2, 2);
+    }
+
+    private static PartitionByLong createAlgorithm() {
+        PartitionByLong algorithm = new PartitionByLong();
+        algorithm.setPartitionCount("4");
+        algorithm.setPartitionLength("256");
+        algorithm.init();
+        return algorithm;
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.query.impl;
+
+import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.mysql.nio.handler.query.BaseDMLHandler;
+import com.actiontech.dble.backend.mysql.nio.handler.util.RowDataComparator;
+import com.actiontech.dble.backend.mysql.store.SortedLocalResult;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.Order;
+import com.actiontech.dble.plan.common.item.FieldTypes;
+import com.actiontech.dble.plan.common.item.ItemField;
+import com.alibaba.druid.sql.ast.SQLOrderingSpecification;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TopNHandlerTest {
+    private final List<FieldPacket> fieldPackets = new ArrayList<>();
+    private final List<RowDataPacket> rows = new ArrayList<>();
+
+    public TopNHandlerTest() {
+        fieldPackets.add(createFieldPacket("k", FieldTypes.MYSQL_TYPE_LONG.numberValue()));
+        fieldPackets.add(createFieldPacket("id", FieldTypes.MYSQL_TYPE_VAR_STRING.numberValue()));
+        String[] keys = {"3", null, "1", "3", "2", null, "1", "3", "2", "5", "1", "3"};
+        for (int i = 0; i < keys.length; i++) {
+            rows.add(row(keys[i], String.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void testLimitLargerThanRows() {
+        assertSameAsOrderBy(SQLOrderingSpecification.ASC, 0, 100);
+        assertSameAsOrderBy(SQLOrderingSpecification.ASC, 10, 5);
+        Assert.assertEquals(0, topN(orders(SQLOrderingSpecification.ASC), 20, 5).size());
+    }
+
+    @Test
+    public void testLimitZero() {
+        Assert.assertEquals(0, topN(orders(SQLOrderingSpecification.ASC), 0, 0).size());
+        Assert.assertEquals(0, topN(orders(SQLOrderingSpecification.ASC), 3, 0).size());
+    }
+
+    @Test
+    public void testTies() {
+        // the rows with the same key are cut at the boundaries of offset and limit
+        for (int offset = 0; offset < rows.size(); offset++) {
+            for (int count = 1; count <= rows.size() - offset; count++) {
+                assertSameAsOrderBy(SQLOrderingSpecification.ASC, offset, count);
+            }
+        }
+    }
+
+    @Test
+    public void testDescWithNull() {
+        for (int count = 1; count <= rows.size(); count++) {
+            assertSameAsOrderBy(SQLOrderingSpecification.DESC, 0, count);
+        }
+        // the nulls are the smallest, so they are the last ones of desc
+        List<String> ids = topN(orders(SQLOrderingSpecification.DESC), rows.size() - 2, 2);
+        Assert.assertEquals("1", ids.get(0));
+        Assert.assertEquals("5", ids.get(1));
+    }
+
+    private void assertSameAsOrderBy(SQLOrderingSpecification sortOrder, int offset, int count) {
+        List<Order> orders = orders(sortOrder);
+        // OrderByHandler sorts the rows by SortedLocalResult
+        SortedLocalResult result = new SortedLocalResult(null, fieldPackets.size(),
+                new RowDataComparator(fieldPackets, orders, false, BaseDMLHandler.HandlerType.ORDERBY), "UTF-8");
+        for (RowDataPacket row : rows) {
+            result.add(row);
+        }
+        result.done();
+        List<String> expected = new ArrayList<>();
+        RowDataPacket row;
+        for (int i = 0; (row = result.next()) != null; i++) {
+            if (i >= offset && i < offset + count) {
+                expected.add(new String(row.getValue(1)));
+            }
+        }
+        result.close();
+        Assert.assertEquals("offset " + offset + ", count " + count, expected, topN(orders, offset, count));
+    }
+
+    private List<String> topN(List<Order> orders, long offset, long count) {
+        TopNHandler handler = new TopNHandler(1, null, orders, offset, count);
+        RowCollector collector = new RowCollector();
+        handler.setNextHandler(collector);
+        handler.fieldEofResponse(null, null, fieldPackets, null, false, null);
+        for (RowDataPacket row : rows) {
+            handler.rowResponse(null, row, false, null);
+        }
+        handler.rowEofResponse(null, false, null);
+        Assert.assertTrue(collector.eof);
+        return collector.ids;
+    }
+
+    private static List<Order> orders(SQLOrderingSpecification sortOrder) {
+        return Collections.singletonList(new Order(new ItemField(null, "t", "k"), sortOrder));
+    }
+
+    private static FieldPacket createFieldPacket(String name, int type) {
+        FieldPacket fp = new FieldPacket();
+        fp.setName(name.getBytes());
+        fp.setTable("t".getBytes());
+        fp.setOrgTable("t".getBytes());
+        fp.setType(type);
+        fp.setCharsetIndex(33);
+        fp.setLength(20);
+        return fp;
+    }
+
+    private static RowDataPacket row(String key, String id) {
+        RowDataPacket row = new RowDataPacket(2);
+        row.add(key == null ? null : key.getBytes());
+        row.add(id.getBytes());
+        return row;
+    }
+
+    private static class RowCollector extends BaseDMLHandler {
+        private final List<String> ids = new ArrayList<>();
+        private boolean eof = false;
+
+        RowCollector() {
+            super(2, null);
+        }
+
+        @Override
+        public HandlerType type() {
+            return HandlerType.FINAL;
+        }
+
+        @Override
+        public void fieldEofResponse(byte[] header, List<byte[]> fields, List<FieldPacket> fieldPacketsList,
+                                     byte[] eofNull, boolean isLeft, BackendConnection conn) {
+        }
+
+        @Override
+        public boolean rowResponse(byte[] rowNull, RowDataPacket rowPacket, boolean isLeft, BackendConnection conn) {
+            ids.add(new String(rowPacket.getValue(1)));
+            return false;
+        }
+
+        @Override
+        public void rowEofResponse(byte[] eofNull, boolean isLeft, BackendConnection conn) {
+            this.eof = true;
+        }
+
+        @Override
+        protected void onTerminate() {
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.query.impl.join;
+
+import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
+import com.actiontech.dble.backend.mysql.nio.handler.query.BaseDMLHandler;
+import com.actiontech.dble.backend.mysql.nio.handler.query.DMLResponseHandler;
+import com.actiontech.dble.buffer.BufferPool;
+import com.actiontech.dble.config.model.SystemConfig;
+import com.actiontech.dble.net.mysql.CharsetNames;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.Order;
+import com.actiontech.dble.plan.common.item.FieldTypes;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.ItemField;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncNe;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.alibaba.druid.sql.ast.SQLOrderingSpecification;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HashJoinHandlerTest {
+    /* the executor running the steps in the thread of the caller */
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final List<FieldPacket> leftFields = new ArrayList<>();
+    private final List<FieldPacket> rightFields = new ArrayList<>();
+    /* sorted by the join column, as the merge join needs */
+    private final List<RowDataPacket> leftRows = new ArrayList<>();
+    private final List<RowDataPacket> rightRows = new ArrayList<>();
+    /* the compare of a null key is never 0, a right null key stops the merge join, so they are left out */
+    private final List<RowDataPacket> rightRowsWithKey = new ArrayList<>();
+    private SystemConfig system;
+    private NonBlockingSession session;
+    private MySQLConnection conn;
+
+    public HashJoinHandlerTest() {
+        leftFields.add(createFieldPacket("t1", "id", FieldTypes.MYSQL_TYPE_LONG));
+        leftFields.add(createFieldPacket("t1", "name", FieldTypes.MYSQL_TYPE_VAR_STRING));
+        rightFields.add(createFieldPacket("t2", "a_id", FieldTypes.MYSQL_TYPE_LONG));
+        rightFields.add(createFieldPacket("t2", "title", FieldTypes.MYSQL_TYPE_VAR_STRING));
+        String[][] left = {{null, "n0"}, {null, "x"}, {"1", "n1"}, {"2", "n2"}, {"2", "x"}, {"3", "n3"}, {"5", "n5"}};
+        String[][] right = {{null, "x"}, {null, "t0"}, {"1", "t1"}, {"2", "x"}, {"2", "t2"}, {"2", "t3"}, {"4", "t4"}};
+        for (String[] values : left) {
+            leftRows.add(row(values));
+        }
+        for (String[] values : right) {
+            rightRows.add(row(values));
+            if (values[0] != null) {
+                rightRowsWithKey.add(row(values));
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        system = new SystemConfig();
+        session = mock(NonBlockingSession.class);
+        conn = mock(MySQLConnection.class);
+        when(conn.getCharset()).thenReturn(mock(CharsetNames.class));
+    }
+
+    @Test
+    public void testInnerJoin() {
+        List<String> expected = mergeJoin(false, null);
+        Assert.assertEquals(7, expected.size());
+        Assert.assertEquals(expected, hashJoin(false, true, null));
+        Assert.assertEquals(expected, hashJoin(false, false, null));
+    }
+
+    @Test
+    public void testLeftJoin() {
+        List<String> expected = mergeJoin(true, null);
+        // the rows of null, 3 and 5 have no match
+        Assert.assertEquals(11, expected.size());
+        Assert.assertTrue(expected.contains("null|x|null|null"));
+        Assert.assertEquals(expected, hashJoin(true, false, null));
+    }
+
+    @Test
+    public void testNullKeysNeverMatch() {
+        for (String row : hashJoin(false, true, null)) {
+            Assert.assertFalse(row, row.startsWith("null"));
+        }
+        for (String row : hashJoin(true, false, null)) {
+            Assert.assertFalse(row, row.startsWith("null") && !row.endsWith("null|null"));
+        }
+    }
+
+    @Test
+    public void testOtherJoinOn() {
+        Item otherJoinOn = new ItemFuncNe(new ItemField(null, "t1", "name"), new ItemField(null, "t2", "title"));
+        List<String> inner = mergeJoin(false, otherJoinOn);
+        Assert.assertEquals(6, inner.size());
+        Assert.assertFalse(inner.contains("2|x|2|x"));
+        Assert.assertEquals(inner, hashJoin(false, true, otherJoinOn));
+        Assert.assertEquals(inner, hashJoin(false, false, otherJoinOn));
+        Assert.assertEquals(mergeJoin(true, otherJoinOn), hashJoin(true, false, otherJoinOn));
+    }
+
+    @Test
+    public void testDuplicateKeys() {
+        List<String> rows = hashJoin(false, true, null);
+        // 2 left rows by 3 right rows
+        int count = 0;
+        for (String row : rows) {
+            if (row.startsWith("2|")) {
+                count++;
+            }
+        }
+        Assert.assertEquals(6, count);
+    }
+
+    @Test
+    public void testJoinByPartitions() {
+        // every build row is larger than joinMemSize
+        system.setJoinMemSize(0);
+        Assert.assertEquals(mergeJoin(false, null), hashJoin(false, true, null));
+        Assert.assertEquals(mergeJoin(false, null), hashJoin(false, false, null));
+        Assert.assertEquals(mergeJoin(true, null), hashJoin(true, false, null));
+    }
+
+    @Test
+    public void testProbeRowsBeforeBuildEof() {
+        List<String> expected = mergeJoin(true, null);
+        HashJoinHandler handler = new TestHashJoinHandler(session, system, true, false, null);
+        RowCollector collector = start(handler);
+        // the probe rows are buffered until the build rows are finished
+        List<RowDataPacket> probe = reversed(leftRows);
+        for (int i = 0; i < 3; i++) {
+            handler.rowResponse(null, probe.get(i), true, conn);
+        }
+        send(handler, reversed(rightRows), false);
+        for (int i = 3; i < probe.size(); i++) {
+            handler.rowResponse(null, probe.get(i), true, conn);
+        }
+        handler.rowEofResponse(null, true, conn);
+        Assert.assertTrue(collector.eof);
+        Assert.assertEquals(expected, collector.sortedRows());
+    }
+
+    private List<String> mergeJoin(boolean isLeftJoin, Item otherJoinOn) {
+        JoinHandler handler = new JoinHandler(1, session, isLeftJoin, orders("t1", "id"), orders("t2", "a_id"),
+                otherJoinOn, system) {
+            @Override
+            protected Executor getStepExecutor() {
+                return DIRECT_EXECUTOR;
+            }
+
+            @Override
+            BufferPool getBufferPool() {
+                return mock(BufferPool.class);
+            }
+        };
+        RowCollector collector = start(handler);
+        send(handler, leftRows, true);
+        send(handler, rightRowsWithKey, false);
+        Assert.assertTrue(collector.eof);
+        verify(session, never()).onQueryError(any(byte[].class));
+        return collector.sortedRows();
+    }
+
+    /**
+     * the rows are not sorted
+     */
+    private List<String> hashJoin(boolean isLeftJoin, boolean isLeftBuild, Item otherJoinOn) {
+        HashJoinHandler handler = new TestHashJoinHandler(session, system, isLeftJoin, isLeftBuild, otherJoinOn);
+        RowCollector collector = start(handler);
+        if (isLeftBuild) {
+            send(handler, reversed(leftRows), true);
+            send(handler, reversed(rightRows), false);
+        } else {
+            send(handler, reversed(rightRows), false);
+            send(handler, reversed(leftRows), true);
+        }
+        Assert.assertTrue(collector.eof);
+        verify(session, never()).onQueryError(any(byte[].class));
+        return collector.sortedRows();
+    }
+
+    private RowCollector start(DMLResponseHandler handler) {
+        RowCollector collector = new RowCollector();
+        handler.setNextHandler(collector);
+        handler.fieldEofResponse(null, null, leftFields, null, true, conn);
+        handler.fieldEofResponse(null, null, rightFields, null, false, conn);
+        return collector;
+    }
+
+    private void send(DMLResponseHandler handler, List<RowDataPacket> rows, boolean isLeft) {
+        for (RowDataPacket row : rows) {
+            handler.rowResponse(null, row, isLeft, conn);
+        }
+        handler.rowEofResponse(null, isLeft, conn);
+    }
+
+    private static List<RowDataPacket> reversed(List<RowDataPacket> rows) {
+        List<RowDataPacket> result = new ArrayList<>(rows);
+        Collections.reverse(result);
+        return result;
+    }
+
+    private static List<Order> orders(String table, String column) {
+        return Collections.singletonList(new Order(new ItemField(null, table, column), SQLOrderingSpecification.ASC));
+    }
+
+    private static FieldPacket createFieldPacket(String table, String name, FieldTypes type) {
+        FieldPacket fp = new FieldPacket();
+        fp.setName(name.getBytes());
+        fp.setTable(table.getBytes());
+        fp.setOrgTable(table.getBytes());
+        fp.setType(type.numberValue());
+        fp.setCharsetIndex(33);
+        fp.setLength(20);
+        return fp;
+    }
+
+    private static RowDataPacket row(String... values) {
+        RowDataPacket row = new RowDataPacket(values.length);
+        for (String value : values) {
+            row.add(value == null ? null : value.getBytes());
+        }
+        return row;
+    }
+
+    private static class TestHashJoinHandler extends HashJoinHandler {
+        TestHashJoinHandler(NonBlockingSession session, SystemConfig system, boolean isLeftJoin, boolean isLeftBuild,
+                            Item otherJoinOn) {
+            super(1, session, isLeftJoin, isLeftBuild, orders("t1", "id"), orders("t2", "a_id"), otherJoinOn, system);
+        }
+
+        @Override
+        protected Executor getStepExecutor() {
+            return DIRECT_EXECUTOR;
+        }
+
+        @Override
+        BufferPool getBufferPool() {
+            return mock(BufferPool.class);
+        }
+    }
+
+    private static class RowCollector extends BaseDMLHandler {
+        private final List<String> rows = new ArrayList<>();
+        private boolean eof = false;
+
+        RowCollector() {
+            super(2, null);
+        }
+
+        List<String> sortedRows() {
+            List<String> sorted = new ArrayList<>(rows);
+            Collections.sort(sorted);
+            return sorted;
+        }
+
+        @Override
+        public HandlerType type() {
+            return HandlerType.FINAL;
+        }
+
+        @Override
+        public void fieldEofResponse(byte[] header, List<byte[]> fields, List<FieldPacket> fieldPacketsList,
+                                     byte[] eofNull, boolean isLeft, BackendConnection connection) {
+        }
+
+        @Override
+        public boolean rowResponse(byte[] rowNull, RowDataPacket rowPacket, boolean isLeft, BackendConnection connection) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < rowPacket.getFieldCount(); i++) {
+                if (i > 0) {
+                    sb.append('|');
+                }
+                byte[] value = rowPacket.getValue(i);
+                sb.append(value == null ? "null" : new String(value));
+            }
+            rows.add(sb.toString());
+            return false;
+        }
+
+        @Override
+        public void rowEofResponse(byte[] eofNull, boolean isLeft, BackendConnection connection) {
+            this.eof = true;
+        }
+
+        @Override
+        protected void onTerminate() {
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.transaction.xa;
+
+import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
+import com.actiontech.dble.backend.mysql.xa.TxState;
+import com.actiontech.dble.config.ErrorCode;
+import com.actiontech.dble.net.mysql.CharsetNames;
+import com.actiontech.dble.net.mysql.OkPacket;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.server.parser.ServerParse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class XACommitNodesHandlerTest {
+    private static final String XID = "'Dble_Server.1'";
+
+    private final Map<RouteResultsetNode, BackendConnection> target = new LinkedHashMap<>();
+    private final TxState[] sessionState = new TxState[1];
+    private NonBlockingSession session;
+    private ServerConnection source;
+    private TestHandler handler;
+
+    @Before
+    public void setUp() {
+        target.clear();
+        session = mock(NonBlockingSession.class);
+        source = mock(ServerConnection.class);
+        when(source.getCharset()).thenReturn(mock(CharsetNames.class));
+        when(session.getSource()).thenReturn(source);
+        when(session.getSessionXaID()).thenReturn(XID);
+        when(session.cancelableStatusSet(anyInt())).thenReturn(true);
+        when(session.getTargetKeys()).thenReturn(target.keySet());
+        when(session.getTargetCount()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                return target.size();
+            }
+        });
+        when(session.getTarget(any(RouteResultsetNode.class))).thenAnswer(new Answer<BackendConnection>() {
+            @Override
+            public BackendConnection answer(InvocationOnMock invocation) {
+                return target.get(invocation.getArguments()[0]);
+            }
+        });
+        when(session.getXaState()).thenAnswer(new Answer<TxState>() {
+            @Override
+            public TxState answer(InvocationOnMock invocation) {
+                return sessionState[0];
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                sessionState[0] = (TxState) invocation.getArguments()[0];
+                return null;
+            }
+        }).when(session).setXaState(any(TxState.class));
+        sessionState[0] = TxState.TX_STARTED_STATE;
+        handler = new TestHandler(session);
+    }
+
+    private MySQLConnection addConnection(String dataNode) {
+        MySQLConnection conn = mock(MySQLConnection.class);
+        final TxState[] state = {TxState.TX_STARTED_STATE};
+        when(conn.getXaStatus()).thenAnswer(new Answer<TxState>() {
+            @Override
+            public TxState answer(InvocationOnMock invocation) {
+                return state[0];
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                state[0] = (TxState) invocation.getArguments()[0];
+                return null;
+            }
+        }).when(conn).setXaStatus(any(TxState.class));
+        when(conn.getConnXID(session)).thenReturn("'Dble_Server.1." + dataNode + "'");
+        target.put(new RouteResultsetNode(dataNode, ServerParse.SELECT, "select 1"), conn);
+        return conn;
+    }
+
+    private static String xid(String dataNode) {
+        return "'Dble_Server.1." + dataNode + "'";
+    }
+
+    private static byte[] error(int errNo, String message) {
+        byte[] msg = message.getBytes();
+        byte[] data = new byte[7 + msg.length];
+        int length = data.length - 4;
+        data[0] = (byte) length;
+        data[1] = (byte) (length >>> 8);
+        data[2] = (byte) (length >>> 16);
+        data[3] = 1;
+        data[4] = (byte) 0xff;
+        data[5] = (byte) errNo;
+        data[6] = (byte) (errNo >>> 8);
+        System.arraycopy(msg, 0, data, 7, msg.length);
+        return data;
+    }
+
+    @Test
+    public void testOnePhaseCommit() {
+        MySQLConnection conn = addConnection("dn1");
+        handler.commit();
+        verify(conn).execCmd("XA END " + xid("dn1") + ";XA COMMIT " + xid("dn1") + " ONE PHASE");
+
+        // the OK of XA END
+        handler.okResponse(OkPacket.OK, conn);
+        Assert.assertEquals(TxState.TX_ENDED_STATE, conn.getXaStatus());
+        verify(source, never()).write(any(byte[].class));
+
+        // the OK of XA COMMIT ONE PHASE
+        handler.okResponse(OkPacket.OK, conn);
+        Assert.assertEquals(TxState.TX_INITIALIZE_STATE, conn.getXaStatus());
+        Assert.assertEquals(TxState.TX_INITIALIZE_STATE, sessionState[0]);
+        // nothing is prepared, so the preparing and committing states are not logged
+        Assert.assertEquals(Arrays.asList(TxState.TX_COMMITTED_STATE), handler.sessionLogs);
+        Assert.assertEquals(Arrays.asList(TxState.TX_ENDED_STATE, TxState.TX_COMMITTED_STATE), handler.connLogs);
+        verify(session).clearResources(false);
+        verify(source).write(OkPacket.OK);
+    }
+
+    @Test
+    public void testEndAndPreparePipelined() {
+        MySQLConnection conn1 = addConnection("dn1");
+        MySQLConnection conn2 = addConnection("dn2");
+        handler.commit();
+        Assert.assertEquals(Arrays.asList(TxState.TX_PREPARING_STATE), handler.sessionLogs);
+        verify(conn1).execCmd("XA END " + xid("dn1") + ";XA PREPARE " + xid("dn1"));
+        verify(conn2).execCmd("XA END " + xid("dn2") + ";XA PREPARE " + xid("dn2"));
+
+        handler.okResponse(OkPacket.OK, conn1);
+        handler.okResponse(OkPacket.OK, conn1);
+        Assert.assertEquals(TxState.TX_PREPARED_STATE, conn1.getXaStatus());
+        handler.okResponse(OkPacket.OK, conn2);
+        Assert.assertEquals(TxState.TX_ENDED_STATE, conn2.getXaStatus());
+        verify(conn1, never()).execCmd("XA COMMIT " + xid("dn1"));
+
+        // all prepared, the commit is sent
+        handler.okResponse(OkPacket.OK, conn2);
+        Assert.assertEquals(TxState.TX_PREPARED_STATE, sessionState[0]);
+        Assert.assertEquals(Arrays.asList(TxState.TX_PREPARING_STATE, TxState.TX_COMMITTING_STATE), handler.sessionLogs);
+        verify(conn1).execCmd("XA COMMIT " + xid("dn1"));
+        verify(conn2).execCmd("XA COMMIT " + xid("dn2"));
+
+        handler.okResponse(OkPacket.OK, conn1);
+        handler.okResponse(OkPacket.OK, conn2);
+        Assert.assertEquals(TxState.TX_INITIALIZE_STATE, sessionState[0]);
+        Assert.assertEquals(TxState.TX_COMMITTED_STATE, handler.sessionLogs.get(2));
+        verify(source).write(OkPacket.OK);
+    }
+
+    @Test
+    public void testEndFailure() {
+        MySQLConnection conn1 = addConnection("dn1");
+        MySQLConnection conn2 = addConnection("dn2");
+        handler.commit();
+        handler.okResponse(OkPacket.OK, conn2);
+        handler.okResponse(OkPacket.OK, conn2);
+
+        // the prepare sent with the failed XA END is not executed
+        handler.errorResponse(error(ErrorCode.ER_XAER_RMFAIL, "end failed"), conn1);
+        verify(conn1).quit();
+        Assert.assertEquals(TxState.TX_CONN_QUIT, conn1.getXaStatus());
+        Assert.assertEquals(TxState.TX_PREPARED_STATE, conn2.getXaStatus());
+        // the other participant is prepared
+        Assert.assertEquals(TxState.TX_PREPARED_STATE, sessionState[0]);
+        verify(source).setTxInterrupt("end failed");
+        verify(source).write(handler.errorPacket);
+        Assert.assertEquals(ErrorCode.ER_UNKNOWN_ERROR, handler.errNo);
+        verify(conn2, never()).execCmd("XA COMMIT " + xid("dn2"));
+    }
+
+    @Test
+    public void testConnectionClosedInOnePhaseCommit() {
+        MySQLConnection conn = addConnection("dn1");
+        handler.commit();
+        handler.okResponse(OkPacket.OK, conn);
+
+        handler.connectionError(new IOException("connection closed"), conn);
+        assertUnknownResult(conn);
+    }
+
+    @Test
+    public void testConnectionClosedBeforeEndInOnePhaseCommit() {
+        MySQLConnection conn = addConnection("dn1");
+        handler.commit();
+
+        handler.connectionError(new IOException("connection closed"), conn);
+        assertUnknownResult(conn);
+    }
+
+    private void assertUnknownResult(MySQLConnection conn) {
+        Assert.assertEquals(TxState.TX_CONN_QUIT, conn.getXaStatus());
+        // not rolled back as an unconnected prepare
+        Assert.assertEquals(TxState.TX_INITIALIZE_STATE, sessionState[0]);
+        Assert.assertFalse(handler.sessionLogs.contains(TxState.TX_PREPARE_UNCONNECT_STATE));
+        Assert.assertEquals(ErrorCode.ER_ERROR_DURING_COMMIT, handler.errNo);
+        Assert.assertTrue(handler.errMsg.contains("unknown"));
+        verify(session).clearResources(false);
+        verify(source).write(handler.errorPacket);
+        verify(source, never()).write(OkPacket.OK);
+    }
+
+    private static class TestHandler extends XACommitNodesHandler {
+        private final List<TxState> sessionLogs = new ArrayList<>();
+        private final List<TxState> connLogs = new ArrayList<>();
+        private final byte[] errorPacket = new byte[]{1};
+        private int errNo;
+        private String errMsg;
+
+        TestHandler(NonBlockingSession session) {
+            super(session);
+        }
+
+        @Override
+        byte[] makeErrorPacket(int no, String msg) {
+            errNo = no;
+            errMsg = msg;
+            return errorPacket;
+        }
+
+        @Override
+        boolean saveXARecoveryLog(TxState state) {
+            sessionLogs.add(state);
+            return true;
+        }
+
+        @Override
+        void saveXARecoveryLog(MySQLConnection mysqlCon) {
+            connLogs.add(mysqlCon.getXaStatus());
+        }
+
+        @Override
+        void initParticipantsLog() {
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.util;
+
+import com.actiontech.dble.plan.common.field.Field;
+import com.actiontech.dble.plan.common.item.FieldTypes;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.ItemField;
+import com.actiontech.dble.plan.common.item.ItemInt;
+import com.actiontech.dble.plan.common.item.ItemNull;
+import com.actiontech.dble.plan.common.item.ItemString;
+import com.actiontech.dble.plan.common.item.function.mathsfunc.operator.ItemFuncMul;
+import com.actiontech.dble.plan.common.item.function.mathsfunc.operator.ItemFuncPlus;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncEqual;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncGe;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncGt;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncIn;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncIsnotnull;
+import com.actiontech.dble.plan.common.item.function.operator.logic.ItemCondAnd;
+import com.actiontech.dble.plan.common.item.function.operator.logic.ItemCondOr;
+import com.actiontech.dble.plan.common.item.function.operator.logic.ItemFuncNot;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CompiledConditionTest {
+    private final List<Field> fields = Arrays.asList(
+            createField("a", FieldTypes.MYSQL_TYPE_LONG),
+            createField("b", FieldTypes.MYSQL_TYPE_LONGLONG),
+            createField("d", FieldTypes.MYSQL_TYPE_DATE));
+    private final List<List<byte[]>> rows = Arrays.asList(
+            row("1", "9", "2017-12-31"),
+            row("3", "7", "2018-01-01"),
+            row("5", null, "2018-06-30"),
+            row("8", "2", null),
+            row(null, "-4", "2018-01-02"),
+            row("2000000000", "4000000000000000000", "2019-01-01"));
+
+    @Test
+    public void testCompiled() {
+        assertSameResult(new ItemCondAnd(items(new ItemFuncGt(column(0), new ItemInt(2)),
+                new ItemFuncIsnotnull(column(1)))), true);
+        assertSameResult(new ItemFuncNot(new ItemFuncEqual(new ItemFuncPlus(column(0), column(1)), new ItemInt(10))), true);
+        assertSameResult(new ItemFuncIn(items(column(0), new ItemInt(1), new ItemInt(8), new ItemNull()), false), true);
+        assertSameResult(new ItemFuncIn(items(column(0), new ItemInt(1), new ItemInt(8)), true), true);
+        assertSameResult(new ItemFuncGe(column(2), new ItemString("2018-01-01")), true);
+        assertSameResult(new ItemCondOr(items(new ItemFuncGt(new ItemInt(7), column(1)),
+                new ItemFuncGe(new ItemString("2018-01-01"), column(2)))), true);
+    }
+
+    @Test
+    public void testFallback() {
+        // overflow of long
+        assertSameResult(new ItemFuncGt(new ItemFuncMul(column(0), column(1)), new ItemInt(0)), true);
+        // not a strict date
+        assertSameResult(new ItemFuncGe(column(2), new ItemString("2018-1-1")), false);
+        assertSameResult(new ItemCondAnd(items(new ItemFuncGt(column(0), new ItemInt(2)),
+                new ItemFuncGe(column(2), new ItemString("2018-1-1")))), true);
+        assertSameResult(new ItemFuncNot(new ItemCondAnd(items(new ItemFuncGt(column(0), new ItemInt(2)),
+                new ItemFuncGe(column(2), new ItemString("2018-1-1"))))), false);
+    }
+
+    private void assertSameResult(Item item, boolean compiled) {
+        item.fixFields();
+        CompiledCondition condition = CompiledCondition.compile(item, fields);
+        Assert.assertEquals(compiled, condition.isCompiled());
+        for (List<byte[]> values : rows) {
+            HandlerTool.initFields(fields, values);
+            boolean expected = item.valBool();
+            HandlerTool.initFields(fields, row(null, null, null));
+            Assert.assertEquals(expected, condition.match(values));
+        }
+    }
+
+    private ItemField column(int index) {
+        return new ItemField(fields.get(index));
+    }
+
+    private static List<Item> items(Item... items) {
+        return new ArrayList<>(Arrays.asList(items));
+    }
+
+    private static List<byte[]> row(String... values) {
+        List<byte[]> row = new ArrayList<>(values.length);
+        for (String value : values) {
+            row.add(value == null ? null : value.getBytes());
+        }
+        return row;
+    }
+
+    private static Field createField(String name, FieldTypes type) {
+        return Field.getFieldItem(name, null, "t", "t", type.numberValue(), 33, 20, 0, 0);
+    }
+}
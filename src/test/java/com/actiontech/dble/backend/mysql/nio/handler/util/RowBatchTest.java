@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.util;
+
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+public class RowBatchTest {
+
+    @Test
+    public void testAddRowPacket() {
+        RowBatch batch = new RowBatch(3);
+        batch.add(rowPacket("1", null, ""));
+        batch.add(rowPacket(repeat('x', 300), "abc", null));
+        Assert.assertEquals(2, batch.size());
+        Assert.assertArrayEquals("1".getBytes(), batch.getValue(0, 0));
+        Assert.assertTrue(batch.isNull(0, 1));
+        Assert.assertNull(batch.getValue(0, 1));
+        Assert.assertFalse(batch.isNull(0, 2));
+        Assert.assertEquals(0, batch.getValue(0, 2).length);
+        Assert.assertArrayEquals(repeat('x', 300).getBytes(), batch.getValue(1, 0));
+        Assert.assertArrayEquals("abc".getBytes(), batch.getValue(1, 1));
+        Assert.assertTrue(batch.isNull(1, 2));
+
+        RowDataPacket row = batch.getRow(1);
+        Assert.assertEquals(3, row.getFieldCount());
+        Assert.assertArrayEquals("abc".getBytes(), row.getValue(1));
+        Assert.assertNull(row.getValue(2));
+    }
+
+    @Test
+    public void testGrow() {
+        RowBatch batch = new RowBatch(2, 100);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(batch.isFull());
+            RowDataPacket row = new RowDataPacket(2);
+            row.add(String.valueOf(i).getBytes());
+            row.add(i % 3 == 0 ? null : repeat('v', i).getBytes());
+            batch.add(row);
+        }
+        Assert.assertTrue(batch.isFull());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertArrayEquals(String.valueOf(i).getBytes(), batch.getValue(i, 0));
+            if (i % 3 == 0) {
+                Assert.assertTrue(batch.isNull(i, 1));
+            } else {
+                Assert.assertArrayEquals(repeat('v', i).getBytes(), batch.getValue(i, 1));
+            }
+        }
+    }
+
+    private static byte[] rowPacket(String... values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0);
+        out.write(0);
+        out.write(0);
+        out.write(1);
+        for (String value : values) {
+            if (value == null) {
+                out.write(251);
+            } else if (value.length() < 251) {
+                out.write(value.length());
+                out.write(value.getBytes(), 0, value.length());
+            } else {
+                out.write(252);
+                out.write(value.length() & 0xff);
+                out.write(value.length() >>> 8);
+                out.write(value.getBytes(), 0, value.length());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
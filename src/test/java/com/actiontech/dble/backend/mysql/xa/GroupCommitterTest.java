@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.xa;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class GroupCommitterTest {
+
+    /**
+     * takes the changed xids, the first write waits until it is released after that
+     */
+    private static class BlockingWriter implements GroupCommitter.Writer {
+        private final Set<String> changed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final LinkedBlockingQueue<Set<String>> batches = new LinkedBlockingQueue<>();
+        private final LinkedBlockingQueue<Boolean> results = new LinkedBlockingQueue<>();
+        private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        private final CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        private final AtomicBoolean first = new AtomicBoolean(true);
+
+        @Override
+        public boolean write(String leaderId) {
+            Set<String> batch = new HashSet<>(changed);
+            changed.removeAll(batch);
+            batches.add(batch);
+            if (first.compareAndSet(true, false)) {
+                firstWriteStarted.countDown();
+                try {
+                    releaseFirstWrite.await();
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+            Boolean result = results.poll();
+            if (result == null) {
+                throw new RuntimeException("write failed");
+            }
+            return result;
+        }
+    }
+
+    private static class Committer extends Thread {
+        private final GroupCommitter committer;
+        private final BlockingWriter writer;
+        private final String xid;
+        private volatile Boolean result;
+        private volatile Throwable error;
+
+        Committer(GroupCommitter committer, BlockingWriter writer, String xid) {
+            this.committer = committer;
+            this.writer = writer;
+            this.xid = xid;
+        }
+
+        @Override
+        public void run() {
+            writer.changed.add(xid);
+            try {
+                result = committer.commit(xid);
+            } catch (Throwable e) {
+                error = e;
+            }
+        }
+    }
+
+    private static Committer start(GroupCommitter committer, BlockingWriter writer, String xid) {
+        Committer thread = new Committer(committer, writer, xid);
+        thread.start();
+        return thread;
+    }
+
+    private static void waitUntilWaiting(List<Committer> threads) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        for (Committer thread : threads) {
+            while (thread.getState() != Thread.State.WAITING) {
+                Assert.assertTrue("the committer doesn't wait for the writing", System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static void join(List<Committer> threads) throws InterruptedException {
+        for (Committer thread : threads) {
+            thread.join(10000);
+            Assert.assertFalse(thread.isAlive());
+        }
+    }
+
+    @Test
+    public void testCommittersWaitingAreWrittenTogether() throws InterruptedException {
+        BlockingWriter writer = new BlockingWriter();
+        writer.results.add(true);
+        writer.results.add(true);
+        GroupCommitter committer = new GroupCommitter(writer);
+        Committer leader = start(committer, writer, "xid.0");
+        Assert.assertTrue(writer.firstWriteStarted.await(10, TimeUnit.SECONDS));
+
+        List<Committer> followers = new ArrayList<>();
+        Set<String> followerXids = new HashSet<>();
+        for (int i = 1; i <= 4; i++) {
+            followers.add(start(committer, writer, "xid." + i));
+            followerXids.add("xid." + i);
+        }
+        waitUntilWaiting(followers);
+        writer.releaseFirstWrite.countDown();
+        leader.join(10000);
+        join(followers);
+
+        // the first write and one write for all the followers
+        Assert.assertEquals(2, writer.batches.size());
+        writer.batches.poll();
+        Assert.assertEquals(followerXids, writer.batches.poll());
+        Assert.assertTrue(leader.result);
+        for (Committer follower : followers) {
+            Assert.assertTrue(follower.result);
+        }
+    }
+
+    @Test
+    public void testEveryGroupGetsItsOwnResult() throws InterruptedException {
+        BlockingWriter writer = new BlockingWriter();
+        writer.results.add(true);
+        writer.results.add(false);
+        GroupCommitter committer = new GroupCommitter(writer);
+        Committer leader = start(committer, writer, "xid.0");
+        Assert.assertTrue(writer.firstWriteStarted.await(10, TimeUnit.SECONDS));
+        List<Committer> followers = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            followers.add(start(committer, writer, "xid." + i));
+        }
+        waitUntilWaiting(followers);
+        writer.releaseFirstWrite.countDown();
+        leader.join(10000);
+        join(followers);
+
+        Assert.assertTrue(leader.result);
+        // the write of the followers failed, all of them know it
+        for (Committer follower : followers) {
+            Assert.assertNull(follower.error);
+            Assert.assertFalse(follower.result);
+        }
+        // the failure is not given to the later writers
+        writer.results.add(true);
+        Assert.assertTrue(committer.commit("xid.4"));
+    }
+
+    @Test
+    public void testWriteError() throws InterruptedException {
+        BlockingWriter writer = new BlockingWriter();
+        GroupCommitter committer = new GroupCommitter(writer);
+        // no result, the second write throws
+        writer.results.add(true);
+        Committer leader = start(committer, writer, "xid.0");
+        Assert.assertTrue(writer.firstWriteStarted.await(10, TimeUnit.SECONDS));
+        List<Committer> followers = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            followers.add(start(committer, writer, "xid." + i));
+        }
+        waitUntilWaiting(followers);
+        writer.releaseFirstWrite.countDown();
+        leader.join(10000);
+        join(followers);
+
+        Assert.assertTrue(leader.result);
+        // only the leader of the group gets the error, the others get the failure
+        int errors = 0;
+        for (Committer follower : followers) {
+            if (follower.error != null) {
+                errors++;
+            } else {
+                Assert.assertFalse(follower.result);
+            }
+        }
+        Assert.assertEquals(1, errors);
+        writer.results.add(true);
+        Assert.assertTrue(committer.commit("xid.4"));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.xa.recovery.impl;
+
+import com.actiontech.dble.backend.mysql.xa.CoordinatorLogEntry;
+import com.actiontech.dble.backend.mysql.xa.ParticipantLogEntry;
+import com.actiontech.dble.backend.mysql.xa.Serializer;
+import com.actiontech.dble.backend.mysql.xa.TxState;
+import com.actiontech.dble.backend.mysql.xa.recovery.DeserializationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FileSystemRepositoryTest {
+
+    @Test
+    public void testLogLine() throws DeserializationException {
+        CoordinatorLogEntry entry = createEntry();
+        String line = FileSystemRepository.toLogLine(entry);
+        Assert.assertTrue(line.endsWith(Serializer.LINE_SEPARATOR));
+        CoordinatorLogEntry read = FileSystemRepository.fromLogLine(line);
+        Assert.assertEquals(entry.getId(), read.getId());
+        Assert.assertEquals(TxState.TX_COMMITTING_STATE, read.getTxState());
+        Assert.assertEquals(2, read.getParticipants().length);
+        Assert.assertEquals("db2", read.getParticipants()[1].getSchema());
+        Assert.assertEquals(TxState.TX_PREPARED_STATE, read.getParticipants()[1].getTxState());
+    }
+
+    @Test
+    public void testBrokenLine() throws DeserializationException {
+        String line = FileSystemRepository.toLogLine(createEntry()).trim();
+        Assert.assertNull(FileSystemRepository.fromLogLine(line.replace("db2", "db3")));
+        // the line is not finished
+        Assert.assertNull(FileSystemRepository.fromLogLine(line.substring(0, line.length() - 1) + "x"));
+        Assert.assertNull(FileSystemRepository.fromLogLine(line.substring(0, line.indexOf("db2"))));
+        // the line written without checksum
+        Assert.assertNotNull(FileSystemRepository.fromLogLine(Serializer.toJson(createEntry())));
+    }
+
+    @Test(expected = DeserializationException.class)
+    public void testTornLine() throws DeserializationException {
+        String line = FileSystemRepository.toLogLine(createEntry());
+        FileSystemRepository.fromLogLine(line.substring(0, line.indexOf("db1")));
+    }
+
+    private static CoordinatorLogEntry createEntry() {
+        String xaId = "'Dble_Server.1.5'";
+        ParticipantLogEntry[] participants = new ParticipantLogEntry[]{
+                new ParticipantLogEntry(xaId, "127.0.0.1", 3306, 0, "db1", TxState.TX_COMMITTED_STATE),
+                new ParticipantLogEntry(xaId, "127.0.0.1", 3307, 0, "db2", TxState.TX_PREPARED_STATE)};
+        return new CoordinatorLogEntry(xaId, participants, TxState.TX_COMMITTING_STATE);
+    }
+}
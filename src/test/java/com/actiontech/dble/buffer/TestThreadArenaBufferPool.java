@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.buffer;
+
+import com.actiontech.dble.memory.unsafe.Platform;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TestThreadArenaBufferPool {
+    private static final String ARENA_THREAD = "$_test";
+
+    private static void runIn(String threadName, Runnable runnable) throws InterruptedException {
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread thread = new Thread(runnable, threadName);
+        thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                error.set(e);
+            }
+        });
+        thread.start();
+        thread.join();
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+    }
+
+    @Test
+    public void testReuseInArena() throws InterruptedException {
+        final ThreadArenaBufferPool pool = new ThreadArenaBufferPool(1024 * 16, (short) 256, (short) 2, ARENA_THREAD);
+        runIn(ARENA_THREAD, new Runnable() {
+            @Override
+            public void run() {
+                ByteBuffer first = pool.allocate(300);
+                Assert.assertEquals(512, first.capacity());
+                long address = Platform.directBufferAddress(first);
+                first.put((byte) 1);
+                pool.recycle(first);
+                ByteBuffer second = pool.allocate(500);
+                Assert.assertEquals(address, Platform.directBufferAddress(second));
+                Assert.assertEquals(0, second.position());
+                Assert.assertEquals(512L, (long) pool.getNetDirectMemoryUsage().get(Thread.currentThread().getId()));
+                pool.recycle(second);
+                Assert.assertEquals(0L, (long) pool.getNetDirectMemoryUsage().get(Thread.currentThread().getId()));
+                Assert.assertEquals(pool.capacity(), pool.size());
+            }
+        });
+    }
+
+    @Test
+    public void testReclaimDeadArena() throws InterruptedException {
+        final ThreadArenaBufferPool pool = new ThreadArenaBufferPool(1024 * 16, (short) 256, (short) 2, ARENA_THREAD);
+        final List<ByteBuffer> buffers = new ArrayList<>();
+        final long[] owner = new long[1];
+        runIn(ARENA_THREAD, new Runnable() {
+            @Override
+            public void run() {
+                owner[0] = Thread.currentThread().getId();
+                buffers.add(pool.allocate());
+                ByteBuffer cached = pool.allocate();
+                pool.recycle(cached);
+            }
+        });
+        // the owner is dead, the buffer in its cache is given back, the allocated one is still in use
+        Assert.assertEquals(256L, (long) pool.getNetDirectMemoryUsage().get(owner[0]));
+        Assert.assertEquals(pool.capacity() - 256, pool.size());
+
+        runIn("recycler", new Runnable() {
+            @Override
+            public void run() {
+                pool.recycle(buffers.get(0));
+            }
+        });
+        Assert.assertEquals(pool.capacity(), pool.size());
+        Assert.assertNull(pool.getNetDirectMemoryUsage().get(owner[0]));
+    }
+
+    @Test
+    public void testReturnQueueServesOwner() throws InterruptedException {
+        final ThreadArenaBufferPool pool = new ThreadArenaBufferPool(1024 * 16, (short) 256, (short) 2, ARENA_THREAD);
+        final Object lock = new Object();
+        final ByteBuffer[] handOver = new ByteBuffer[1];
+        final boolean[] recycled = new boolean[1];
+        final long[] address = new long[1];
+        Thread recycler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    while (handOver[0] == null) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    pool.recycle(handOver[0]);
+                    recycled[0] = true;
+                    lock.notifyAll();
+                }
+            }
+        }, "recycler");
+        recycler.start();
+        runIn(ARENA_THREAD, new Runnable() {
+            @Override
+            public void run() {
+                ByteBuffer buffer = pool.allocate();
+                address[0] = Platform.directBufferAddress(buffer);
+                synchronized (lock) {
+                    handOver[0] = buffer;
+                    lock.notifyAll();
+                    while (!recycled[0]) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+                Assert.assertEquals(0L, (long) pool.getNetDirectMemoryUsage().get(Thread.currentThread().getId()));
+                ByteBuffer again = pool.allocate();
+                Assert.assertEquals(address[0], Platform.directBufferAddress(again));
+                pool.recycle(again);
+            }
+        });
+        recycler.join();
+    }
+
+    @Test
+    public void testSharedPagesForOtherThreads() throws InterruptedException {
+        final ThreadArenaBufferPool pool = new ThreadArenaBufferPool(1024, (short) 256, (short) 2, ARENA_THREAD);
+        runIn("plain", new Runnable() {
+            @Override
+            public void run() {
+                List<ByteBuffer> buffers = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    ByteBuffer buffer = pool.allocate(256);
+                    Assert.assertTrue(buffer.isDirect());
+                    buffers.add(buffer);
+                }
+                Assert.assertEquals(0L, pool.size());
+                Assert.assertFalse(pool.allocate(256).isDirect());
+                for (ByteBuffer buffer : buffers) {
+                    pool.recycle(buffer);
+                }
+                Assert.assertEquals(pool.capacity(), pool.size());
+            }
+        });
+    }
+
+    @Test
+    public void testNoArenaForOtherThreads() throws InterruptedException {
+        final ThreadArenaBufferPool pool = new ThreadArenaBufferPool(1024 * 16, (short) 256, (short) 2, ARENA_THREAD);
+        final List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            runIn("plain" + i, new Runnable() {
+                @Override
+                public void run() {
+                    buffers.add(pool.allocate());
+                    pool.recycle(pool.allocate());
+                }
+            });
+        }
+        // the threads come and go, none of them is kept
+        Assert.assertEquals(0, pool.getArenaCount());
+        Assert.assertEquals(1, pool.getNetDirectMemoryUsage().size());
+        Assert.assertEquals(256L * 5, (long) pool.getNetDirectMemoryUsage().get(ThreadArenaBufferPool.SHARED_ARENA_ID));
+        for (ByteBuffer buffer : buffers) {
+            pool.recycle(buffer);
+        }
+        Assert.assertEquals(0L, (long) pool.getNetDirectMemoryUsage().get(ThreadArenaBufferPool.SHARED_ARENA_ID));
+        Assert.assertEquals(pool.capacity(), pool.size());
+    }
+
+    @Test
+    public void testDeadArenaReclaimedByNewArena() throws InterruptedException {
+        final ThreadArenaBufferPool pool = new ThreadArenaBufferPool(1024 * 16, (short) 256, (short) 2, ARENA_THREAD);
+        Runnable cacheOne = new Runnable() {
+            @Override
+            public void run() {
+                pool.recycle(pool.allocate());
+            }
+        };
+        runIn(ARENA_THREAD + 1, cacheOne);
+        Assert.assertEquals(1, pool.getArenaCount());
+        // the dead thread is replaced, its arena is reclaimed without the manager commands
+        runIn(ARENA_THREAD + 2, cacheOne);
+        Assert.assertEquals(1, pool.getArenaCount());
+    }
+
+    @Test
+    public void testLargeAllocateInArenaThread() throws InterruptedException {
+        final ThreadArenaBufferPool pool = new ThreadArenaBufferPool(1024 * 16, (short) 256, (short) 2, ARENA_THREAD);
+        runIn(ARENA_THREAD, new Runnable() {
+            @Override
+            public void run() {
+                ByteBuffer buffer = pool.allocate(256 * 20);
+                Assert.assertEquals(256 * 20, buffer.capacity());
+                pool.recycle(buffer);
+                Assert.assertEquals(pool.capacity(), pool.size());
+            }
+        });
+    }
+}
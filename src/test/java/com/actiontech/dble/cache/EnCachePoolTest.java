@@ -5,6 +5,7 @@
 */
 package com.actiontech.dble.cache;
 
+import com.actiontech.dble.cache.impl.EnchachePooFactory;
 import com.actiontech.dble.cache.impl.EnchachePool;
 import junit.framework.Assert;
 import net.sf.ehcache.Cache;
@@ -50,6 +51,25 @@ public class EnCachePoolTest {
         }
         Assert.assertEquals(null, enCachePool.get("2"));
         Assert.assertEquals(null, enCachePool.get("1"));
+        // the expired items are counted as evicted
+        Assert.assertEquals(2, enCachePool.getCacheStatic().getEvictTimes());
+    }
+
+    @Test
+    public void testEvictedBySize() {
+        // like pool.SQLPlanCache=encache,100,1800
+        CachePool pool = new EnchachePooFactory().createCachePool("testevictcache", 100, 1800);
+        for (int i = 0; i < 1000; i++) {
+            pool.putIfAbsent(String.valueOf(i), "dn" + i);
+        }
+        // ehcache keeps at most maxEntriesLocalHeap items, the other put items are evicted
+        CacheStatic statics = pool.getCacheStatic();
+        Assert.assertEquals(1000, statics.getPutTimes());
+        Assert.assertTrue(String.valueOf(statics.getItemSize()), statics.getItemSize() <= 100);
+        Assert.assertEquals(1000 - statics.getItemSize(), statics.getEvictTimes());
+
+        pool.clearCache();
+        Assert.assertEquals(0, pool.getCacheStatic().getEvictTimes());
     }
 
 }
\ No newline at end of file
@@ -169,6 +169,22 @@ public class ConfigTest {
         Assert.assertTrue(source != null);
     }
 
+    /**
+     * the less loaded one of two sources is selected
+     */
+    @Test
+    public void testReadHostLoad() {
+        PhysicalDBPool pool = this.dataHosts.get("localhost2");
+        ArrayList<PhysicalDatasource> okSources = new ArrayList<PhysicalDatasource>(pool.getAllDataSources());
+        Assert.assertTrue(okSources.size() >= 2);
+        okSources = new ArrayList<PhysicalDatasource>(okSources.subList(0, 2));
+        okSources.get(0).recordResponseTime(10000);
+        okSources.get(1).recordResponseTime(1);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(okSources.get(1), pool.loadSelect(okSources));
+        }
+    }
+
     private Map<String, PhysicalDBPool> initDataHosts(SchemaLoader schemaLoader) {
         Map<String, DataHostConfig> nodeConfs = schemaLoader.getDataHosts();
         Map<String, PhysicalDBPool> nodes = new HashMap<String, PhysicalDBPool>(
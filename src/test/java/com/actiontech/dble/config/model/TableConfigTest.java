@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.config.model;
+
+import com.actiontech.dble.config.model.TableConfig.TableTypeEnum;
+import com.actiontech.dble.config.model.rule.RuleConfig;
+import com.actiontech.dble.route.function.PartitionByLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TableConfigTest {
+
+    private static TableConfig company() {
+        PartitionByLong algorithm = new PartitionByLong();
+        algorithm.setPartitionCount("2");
+        algorithm.setPartitionLength("512");
+        algorithm.init();
+        return new TableConfig("Company", "id", false, false, TableTypeEnum.TYPE_SHARDING_TABLE, "dn$1-2",
+                new RuleConfig("id", "func", algorithm), true);
+    }
+
+    private static TableConfig child(String name, TableConfig parent, String joinKey, String parentKey) {
+        return new TableConfig(name, "id", false, false, TableTypeEnum.TYPE_SHARDING_TABLE, "dn$1-2",
+                null, false, parent, joinKey, parentKey);
+    }
+
+    @Test
+    public void testDirectRouteByPartitionColumn() {
+        TableConfig company = company();
+        TableConfig customer = child("customer", company, "company_id", "id");
+        TableConfig orders = child("orders", customer, "customer_id", "company_id");
+        Assert.assertSame(company, customer.getDirectRouteTC());
+        Assert.assertSame(company, orders.getDirectRouteTC());
+    }
+
+    @Test
+    public void testLocateSqlOfSecondLevel() {
+        TableConfig customer = child("Customer", company(), "company_name", "name");
+        Assert.assertNull(customer.getDirectRouteTC());
+        Assert.assertEquals("SELECT DISTINCT CONCAT_WS(',',IF(company.name='A',0,NULL))" +
+                        " FROM company WHERE company.name IN ('A')",
+                customer.getLocateRTableKeysSql(Collections.singletonList("'A'")));
+    }
+
+    @Test
+    public void testLocateSqlOfThirdLevel() {
+        TableConfig customer = child("Customer", company(), "company_name", "name");
+        TableConfig orders = child("orders", customer, "customer_id", "id");
+        Assert.assertNull(orders.getDirectRouteTC());
+        Assert.assertEquals("SELECT DISTINCT CONCAT_WS(',',IF(customer.id=1.50,0,NULL),IF(customer.id='b',1,NULL))" +
+                        " FROM customer,company WHERE company.name=customer.company_name AND customer.id IN (1.50,'b')",
+                orders.getLocateRTableKeysSql(Arrays.asList("1.50", "'b'")));
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.meta;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TableStatisticsTest {
+
+    private static TableStatistics nodeStatistics(long rows, long idCardinality) {
+        TableStatistics statistics = new TableStatistics();
+        statistics.setRowCount(rows);
+        statistics.addCardinality("ID", idCardinality);
+        return statistics;
+    }
+
+    @Test
+    public void testShardingTable() {
+        TableStatistics statistics = new TableStatistics();
+        statistics.add(nodeStatistics(100, 100), false);
+        statistics.add(nodeStatistics(50, 60), false);
+        Assert.assertEquals(150, statistics.getRowCount());
+        Assert.assertEquals(150, statistics.getCardinality("id"));
+        Assert.assertEquals(-1, statistics.getCardinality("name"));
+    }
+
+    @Test
+    public void testGlobalTable() {
+        TableStatistics statistics = new TableStatistics();
+        statistics.add(nodeStatistics(100, 10), true);
+        statistics.add(nodeStatistics(98, 12), true);
+        Assert.assertEquals(100, statistics.getRowCount());
+        Assert.assertEquals(12, statistics.getCardinality("Id"));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.meta.table;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TableMetaJobLimiterTest {
+
+    @Test
+    public void testLimit() {
+        TestHostJobs jobs = new TestHostJobs(2);
+        for (int i = 0; i < 5; i++) {
+            jobs.submit(request("dn1", "t" + i));
+        }
+        // the first two are started at once, the others wait for a release
+        Assert.assertEquals(2, jobs.batches.size());
+        Assert.assertEquals(2, jobs.getRunning());
+        jobs.release();
+        Assert.assertEquals(3, jobs.batches.size());
+        Assert.assertEquals(3, jobs.batches.get(2).size());
+        Assert.assertEquals(2, jobs.getRunning());
+        jobs.release();
+        jobs.release();
+        Assert.assertEquals(0, jobs.getRunning());
+        Assert.assertEquals(3, jobs.batches.size());
+        Assert.assertEquals(5, jobs.startedTables());
+    }
+
+    @Test
+    public void testBatchByDataNode() {
+        TestHostJobs jobs = new TestHostJobs(1);
+        jobs.submit(request("dn0", "t"));
+        for (int i = 0; i < TableMetaJobLimiter.MAX_BATCH_SIZE + 8; i++) {
+            jobs.submit(request("dn1", "t" + i));
+            if (i < 3) {
+                jobs.submit(request("dn2", "t" + i));
+            }
+        }
+        jobs.release();
+        jobs.release();
+        jobs.release();
+        Assert.assertEquals(4, jobs.batches.size());
+        // the data nodes take turns, a batch never mixes the data nodes
+        assertBatch(jobs.batches.get(1), "dn1", TableMetaJobLimiter.MAX_BATCH_SIZE);
+        assertBatch(jobs.batches.get(2), "dn2", 3);
+        assertBatch(jobs.batches.get(3), "dn1", 8);
+        Assert.assertEquals("t" + TableMetaJobLimiter.MAX_BATCH_SIZE, jobs.batches.get(3).get(0).getTableName());
+        Assert.assertEquals(1, jobs.getRunning());
+        jobs.release();
+        Assert.assertEquals(0, jobs.getRunning());
+    }
+
+    @Test
+    public void testSynchronousFailure() {
+        TestHostJobs jobs = new TestHostJobs(1);
+        jobs.submit(request("dn0", "t"));
+        int count = 20000;
+        for (int i = 0; i < count; i++) {
+            jobs.submit(request("dn" + (i + 1), "t"));
+        }
+        Assert.assertEquals(1, jobs.batches.size());
+        // every job fails in the thread starting it, the next ones are started by the loop instead of recursion
+        jobs.failInStart = true;
+        jobs.release();
+        Assert.assertEquals(count + 1, jobs.batches.size());
+        Assert.assertEquals(0, jobs.getRunning());
+        Assert.assertTrue(jobs.maxDepth <= 2);
+        // the slots released are usable
+        jobs.failInStart = false;
+        jobs.submit(request("dn1", "t"));
+        Assert.assertEquals(1, jobs.getRunning());
+    }
+
+    private static void assertBatch(List<TableMetaJobLimiter.TableRequest> batch, String dataNode, int size) {
+        Assert.assertEquals(size, batch.size());
+        for (TableMetaJobLimiter.TableRequest request : batch) {
+            Assert.assertEquals(dataNode, request.getDataNode());
+        }
+    }
+
+    private static TableMetaJobLimiter.TableRequest request(String dataNode, String table) {
+        return new TableMetaJobLimiter.TableRequest(dataNode, table, null);
+    }
+
+    private static class TestHostJobs extends TableMetaJobLimiter.HostJobs {
+        private final int maxRunning;
+        private final List<List<TableMetaJobLimiter.TableRequest>> batches = new ArrayList<>();
+        private boolean failInStart = false;
+        private int depth = 0;
+        private int maxDepth = 0;
+
+        TestHostJobs(int maxRunning) {
+            super("host");
+            this.maxRunning = maxRunning;
+        }
+
+        @Override
+        int getMaxRunning() {
+            return maxRunning;
+        }
+
+        @Override
+        void startJob(List<TableMetaJobLimiter.TableRequest> batch) {
+            batches.add(batch);
+            depth++;
+            maxDepth = Math.max(maxDepth, depth);
+            try {
+                if (failInStart) {
+                    release();
+                }
+            } finally {
+                depth--;
+            }
+        }
+
+        int startedTables() {
+            int tables = 0;
+            for (List<TableMetaJobLimiter.TableRequest> batch : batches) {
+                tables += batch.size();
+            }
+            return tables;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.net;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Field;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class AbstractConnectionTest {
+    private AbstractConnection con;
+    private SocketWR socketWR;
+
+    @Before
+    public void setUp() throws Exception {
+        // the fields used by the pausing, the others need the server
+        con = mock(AbstractConnection.class, Mockito.CALLS_REAL_METHODS);
+        socketWR = mock(SocketWR.class);
+        setField("socketWR", socketWR);
+        setField("readPauseLock", new Object());
+    }
+
+    private void setField(String name, Object value) throws Exception {
+        Field field = AbstractConnection.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(con, value);
+    }
+
+    @Test
+    public void testReadPausesCounted() {
+        con.disableRead();
+        con.disableRead();
+        verify(socketWR, times(1)).disableRead();
+
+        // one of the pauses is resumed, the other one still pauses the reading
+        con.enableRead();
+        verify(socketWR, never()).enableRead();
+        con.enableRead();
+        verify(socketWR, times(1)).enableRead();
+
+        // no pause to resume
+        con.enableRead();
+        verify(socketWR, times(1)).enableRead();
+        con.disableRead();
+        verify(socketWR, times(2)).disableRead();
+    }
+
+    @Test
+    public void testResetRead() {
+        con.resetRead();
+        verify(socketWR, never()).enableRead();
+
+        con.disableRead();
+        con.disableRead();
+        con.resetRead();
+        verify(socketWR, times(1)).enableRead();
+        // the pauses are cleared by the reset
+        con.enableRead();
+        verify(socketWR, times(1)).enableRead();
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.net;
+
+import com.actiontech.dble.buffer.BufferPool;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NIOSocketWRTest {
+    /* the most bytes accepted by one write of the channel */
+    private static final int BYTES_PER_WRITE = 7;
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    /* the count of the buffers passed to every write of the channel */
+    private final List<Integer> writeLengths = new ArrayList<>();
+    private final List<ByteBuffer> recycled = new ArrayList<>();
+    private final int[] interestOps = {SelectionKey.OP_READ};
+    /* the bytes the socket can still take, a write returns 0 when it's full */
+    private int socketSpace;
+    private AbstractConnection con;
+    private NIOSocketWR socketWR;
+
+    @Before
+    public void setUp() throws Exception {
+        output.reset();
+        writeLengths.clear();
+        recycled.clear();
+        interestOps[0] = SelectionKey.OP_READ;
+        socketSpace = Integer.MAX_VALUE;
+
+        SocketChannel channel = mock(SocketChannel.class);
+        when(channel.write(any(ByteBuffer[].class), anyInt(), anyInt())).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) {
+                Object[] args = invocation.getArguments();
+                ByteBuffer[] buffers = (ByteBuffer[]) args[0];
+                int offset = (Integer) args[1];
+                int length = (Integer) args[2];
+                writeLengths.add(length);
+                // a part of the bytes, it may end in the middle of a buffer
+                long written = 0;
+                for (int i = offset; i < offset + length; i++) {
+                    while (buffers[i].hasRemaining() && written < BYTES_PER_WRITE && socketSpace > 0) {
+                        output.write(buffers[i].get());
+                        written++;
+                        socketSpace--;
+                    }
+                }
+                return written;
+            }
+        });
+        BufferPool pool = mock(BufferPool.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                recycled.add((ByteBuffer) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(pool).recycle(any(ByteBuffer.class));
+        SelectionKey key = mock(SelectionKey.class);
+        when(key.isValid()).thenReturn(true);
+        when(key.interestOps()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                return interestOps[0];
+            }
+        });
+        when(key.interestOps(anyInt())).thenAnswer(new Answer<SelectionKey>() {
+            @Override
+            public SelectionKey answer(InvocationOnMock invocation) {
+                interestOps[0] = (Integer) invocation.getArguments()[0];
+                return (SelectionKey) invocation.getMock();
+            }
+        });
+
+        // only the fields used by the writing, the others need the server
+        con = mock(AbstractConnection.class, Mockito.CALLS_REAL_METHODS);
+        setField(AbstractConnection.class, con, "channel", channel);
+        setField(AbstractConnection.class, con, "writeQueue", new ConcurrentLinkedQueue<ByteBuffer>());
+        setField(AbstractConnection.class, con, "isClosed", new AtomicBoolean(false));
+        setField(AbstractConnection.class, con, "processor", new NIOProcessor("test", pool));
+        socketWR = new NIOSocketWR(con);
+        setField(NIOSocketWR.class, socketWR, "processKey", key);
+    }
+
+    private static void setField(Class<?> clazz, Object target, String name, Object value) throws Exception {
+        Field field = clazz.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    /**
+     * @return the buffer in the writing mode, as it is put into the write queue
+     */
+    private ByteBuffer queue(int length, int first) {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) (first + i));
+        }
+        con.writeQueue.offer(buffer);
+        return buffer;
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private boolean isWriteEnabled() {
+        return (interestOps[0] & SelectionKey.OP_WRITE) != 0;
+    }
+
+    @Test
+    public void testPartialWrites() {
+        ByteBuffer buffer1 = queue(10, 0);
+        ByteBuffer buffer2 = queue(20, 10);
+        ByteBuffer buffer3 = queue(30, 30);
+        socketSpace = 25;
+        socketWR.doNextWriteCheck();
+        // the socket is full in the middle of the second buffer
+        Assert.assertTrue(Arrays.equals(bytes(25), output.toByteArray()));
+        Assert.assertEquals(Arrays.asList(buffer1), recycled);
+        Assert.assertEquals(5, buffer2.remaining());
+        Assert.assertTrue(isWriteEnabled());
+        Assert.assertTrue((interestOps[0] & SelectionKey.OP_READ) != 0);
+        Assert.assertTrue(con.writeQueue.isEmpty());
+
+        // the buffer queued later is written after the pending ones
+        ByteBuffer buffer4 = queue(15, 60);
+        socketSpace = Integer.MAX_VALUE;
+        socketWR.doNextWriteCheck();
+        Assert.assertTrue(Arrays.equals(bytes(75), output.toByteArray()));
+        Assert.assertEquals(Arrays.asList(buffer1, buffer2, buffer3, buffer4), recycled);
+        Assert.assertFalse(isWriteEnabled());
+        Assert.assertTrue((interestOps[0] & SelectionKey.OP_READ) != 0);
+    }
+
+    @Test
+    public void testSocketFullWithoutProgress() {
+        ByteBuffer buffer1 = queue(10, 0);
+        socketSpace = 0;
+        socketWR.doNextWriteCheck();
+        Assert.assertEquals(0, output.size());
+        Assert.assertTrue(recycled.isEmpty());
+        Assert.assertTrue(isWriteEnabled());
+
+        // nothing written again, the pending buffer is kept
+        socketWR.doNextWriteCheck();
+        Assert.assertTrue(recycled.isEmpty());
+        Assert.assertTrue(isWriteEnabled());
+
+        socketSpace = Integer.MAX_VALUE;
+        socketWR.doNextWriteCheck();
+        Assert.assertTrue(Arrays.equals(bytes(10), output.toByteArray()));
+        Assert.assertEquals(Arrays.asList(buffer1), recycled);
+        Assert.assertFalse(isWriteEnabled());
+    }
+
+    @Test
+    public void testBuffersOverGatherLimit() {
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            buffers.add(queue(3, i * 3));
+        }
+        socketWR.doNextWriteCheck();
+        Assert.assertTrue(Arrays.equals(bytes(120), output.toByteArray()));
+        Assert.assertEquals(buffers, recycled);
+        for (int length : writeLengths) {
+            Assert.assertTrue(length <= 16);
+        }
+        Assert.assertFalse(isWriteEnabled());
+    }
+
+    @Test
+    public void testCleanupRecyclesPendingBuffers() {
+        ByteBuffer buffer1 = queue(10, 0);
+        ByteBuffer buffer2 = queue(10, 10);
+        ByteBuffer buffer3 = queue(10, 20);
+        socketSpace = 15;
+        socketWR.doNextWriteCheck();
+        Assert.assertEquals(Arrays.asList(buffer1), recycled);
+
+        socketWR.cleanup();
+        Assert.assertEquals(Arrays.asList(buffer1, buffer2, buffer3), recycled);
+        // nothing is left to recycle twice
+        socketWR.cleanup();
+        Assert.assertEquals(3, recycled.size());
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.net.mysql;
+
+import com.actiontech.dble.buffer.BufferPool;
+import com.actiontech.dble.net.AbstractConnection;
+import com.actiontech.dble.net.NIOProcessor;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CompressedPacketCodecTest {
+    private static final int CHUNK_SIZE = 1024;
+
+    private AbstractConnection con;
+
+    @Before
+    public void setUp() throws Exception {
+        BufferPool pool = mock(BufferPool.class);
+        when(pool.getChunkSize()).thenReturn(CHUNK_SIZE);
+        when(pool.allocate()).thenAnswer(new Answer<ByteBuffer>() {
+            @Override
+            public ByteBuffer answer(InvocationOnMock invocation) {
+                return ByteBuffer.allocate(CHUNK_SIZE);
+            }
+        });
+        when(pool.allocate(anyInt())).thenAnswer(new Answer<ByteBuffer>() {
+            @Override
+            public ByteBuffer answer(InvocationOnMock invocation) {
+                return ByteBuffer.allocate((Integer) invocation.getArguments()[0]);
+            }
+        });
+        // only the buffers of the connection are used by the codec
+        con = mock(AbstractConnection.class, Mockito.CALLS_REAL_METHODS);
+        Field processor = AbstractConnection.class.getDeclaredField("processor");
+        processor.setAccessible(true);
+        processor.set(con, new NIOProcessor("test", pool));
+    }
+
+    private static byte[] packet(int packetId, int length) {
+        byte[] packet = new byte[MySQLPacket.PACKET_HEADER_SIZE + length];
+        packet[0] = (byte) length;
+        packet[1] = (byte) (length >>> 8);
+        packet[2] = (byte) (length >>> 16);
+        packet[3] = (byte) packetId;
+        for (int i = MySQLPacket.PACKET_HEADER_SIZE; i < packet.length; i++) {
+            packet[i] = (byte) ('a' + i % 7);
+        }
+        return packet;
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            out.write(array, 0, array.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the compressed packets of the write
+     */
+    private List<byte[]> compress(CompressedPacketCodec codec, byte[] data) {
+        ByteBuffer input = ByteBuffer.allocate(data.length);
+        input.put(data);
+        ByteBuffer output = codec.compress(input, con);
+        List<byte[]> packets = new ArrayList<>();
+        if (output == null) {
+            return packets;
+        }
+        output.flip();
+        while (output.hasRemaining()) {
+            int length = (output.get(output.position()) & 0xff) | (output.get(output.position() + 1) & 0xff) << 8 |
+                    (output.get(output.position() + 2) & 0xff) << 16;
+            byte[] packet = new byte[CompressedPacketCodec.HEADER_SIZE + length];
+            output.get(packet);
+            packets.add(packet);
+        }
+        return packets;
+    }
+
+    private static List<byte[]> decompress(CompressedPacketCodec codec, List<byte[]> compressed) {
+        List<byte[]> packets = new ArrayList<>();
+        for (byte[] data : compressed) {
+            packets.addAll(codec.decompress(data));
+        }
+        return packets;
+    }
+
+    private static void assertPackets(List<byte[]> expected, List<byte[]> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertTrue("packet " + i, Arrays.equals(expected.get(i), actual.get(i)));
+        }
+    }
+
+    @Test
+    public void testMultiPacketsInOneWrite() {
+        CompressedPacketCodec writer = new CompressedPacketCodec(50, 6);
+        CompressedPacketCodec reader = new CompressedPacketCodec(50, 6);
+        List<byte[]> packets = Arrays.asList(packet(1, 10), packet(2, 300), packet(3, 0), packet(4, 2000));
+        List<byte[]> compressed = compress(writer, concat(packets.toArray(new byte[0][])));
+        Assert.assertEquals(1, compressed.size());
+        // the payload is compressed
+        Assert.assertTrue(compressed.get(0).length < 2310);
+        assertPackets(packets, decompress(reader, compressed));
+    }
+
+    @Test
+    public void testSmallPayloadNotCompressed() {
+        CompressedPacketCodec writer = new CompressedPacketCodec(50, 6);
+        byte[] packet = packet(1, 10);
+        List<byte[]> compressed = compress(writer, packet);
+        Assert.assertEquals(1, compressed.size());
+        byte[] data = compressed.get(0);
+        Assert.assertEquals(0, data[4] | data[5] | data[6]);
+        Assert.assertTrue(Arrays.equals(packet, Arrays.copyOfRange(data, CompressedPacketCodec.HEADER_SIZE, data.length)));
+    }
+
+    @Test
+    public void testHeaderSplitAcrossWrites() {
+        CompressedPacketCodec writer = new CompressedPacketCodec(50, 6);
+        CompressedPacketCodec reader = new CompressedPacketCodec(50, 6);
+        List<byte[]> packets = Arrays.asList(packet(1, 100), packet(2, 100), packet(3, 100));
+        byte[] all = concat(packets.toArray(new byte[0][]));
+        // the first write ends in the middle of the header of the second packet
+        int split1 = packets.get(0).length + 2;
+        // the second write ends in the middle of the payload of the third packet
+        int split2 = split1 + packets.get(1).length + 10;
+        List<byte[]> compressed = new ArrayList<>();
+        compressed.addAll(compress(writer, Arrays.copyOfRange(all, 0, split1)));
+        compressed.addAll(compress(writer, Arrays.copyOfRange(all, split1, split2)));
+        compressed.addAll(compress(writer, Arrays.copyOfRange(all, split2, all.length)));
+        Assert.assertEquals(3, compressed.size());
+        for (int i = 0; i < compressed.size(); i++) {
+            Assert.assertEquals(i, compressed.get(i)[3]);
+        }
+        assertPackets(packets, decompress(reader, compressed));
+    }
+
+    @Test
+    public void testPayloadOver16M() {
+        CompressedPacketCodec writer = new CompressedPacketCodec(50, 1);
+        CompressedPacketCodec reader = new CompressedPacketCodec(50, 1);
+        // a max length packet, followed by the empty packet which ends the large row
+        List<byte[]> packets = Arrays.asList(packet(1, 0xffffff), packet(2, 0), packet(3, 100));
+        List<byte[]> compressed = compress(writer, concat(packets.toArray(new byte[0][])));
+        Assert.assertEquals(2, compressed.size());
+        Assert.assertEquals(0, compressed.get(0)[3]);
+        Assert.assertEquals(1, compressed.get(1)[3]);
+        assertPackets(packets, decompress(reader, compressed));
+    }
+
+    @Test
+    public void testSequenceIdAcrossWrites() {
+        CompressedPacketCodec writer = new CompressedPacketCodec(50, 6);
+        CompressedPacketCodec reader = new CompressedPacketCodec(50, 6);
+        List<byte[]> packets = new ArrayList<>();
+        List<byte[]> compressed = new ArrayList<>();
+        // the packet id of mysql packets wraps, a write starting with the packet id 0 doesn't restart the sequence
+        for (int i = 1; i <= 600; i++) {
+            byte[] packet = packet(i & 0xff, 20 + i % 80);
+            packets.add(packet);
+            compressed.addAll(compress(writer, packet));
+        }
+        Assert.assertEquals(600, compressed.size());
+        for (int i = 0; i < compressed.size(); i++) {
+            Assert.assertEquals((byte) i, compressed.get(i)[3]);
+        }
+        assertPackets(packets, decompress(reader, compressed));
+
+        // a new command restarts the sequence
+        writer.startCommand();
+        Assert.assertEquals(0, compress(writer, packet(0, 100)).get(0)[3]);
+        Assert.assertEquals(1, compress(writer, packet(1, 100)).get(0)[3]);
+    }
+
+    @Test
+    public void testResponseFollowsRequestSequence() {
+        CompressedPacketCodec client = new CompressedPacketCodec(50, 6);
+        CompressedPacketCodec server = new CompressedPacketCodec(50, 6);
+        for (int i = 0; i < 3; i++) {
+            client.startCommand();
+            List<byte[]> request = compress(client, packet(0, 200));
+            Assert.assertEquals(0, request.get(0)[3]);
+            Assert.assertEquals(1, decompress(server, request).size());
+            // the response goes on from the sequence id of the request
+            List<byte[]> response = compress(server, concat(packet(1, 100), packet(2, 100)));
+            Assert.assertEquals(1, response.get(0)[3]);
+            Assert.assertEquals(2, decompress(client, response).size());
+        }
+    }
+
+    @Test
+    public void testCommandAfterResponse() {
+        CompressedPacketCodec client = new CompressedPacketCodec(50, 6);
+        CompressedPacketCodec server = new CompressedPacketCodec(50, 6);
+        client.startCommand();
+        decompress(server, compress(client, packet(0, 200)));
+        // a result set of several compressed packets
+        List<byte[]> response = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            response.addAll(compress(server, packet(i, 100)));
+        }
+        Assert.assertEquals(5, decompress(client, response).size());
+
+        // a command of one packet written after the response, like the COM_PING of the heartbeat
+        client.startCommand();
+        List<byte[]> ping = compress(client, PingPacket.PING);
+        Assert.assertEquals(1, ping.size());
+        Assert.assertEquals(0, ping.get(0)[3]);
+        assertPackets(Collections.singletonList(PingPacket.PING), decompress(server, ping));
+    }
+
+    @Test
+    public void testEnd() {
+        CompressedPacketCodec writer = new CompressedPacketCodec(50, 6);
+        writer.end();
+        Assert.assertTrue(compress(writer, packet(1, 100)).isEmpty());
+        Assert.assertTrue(writer.decompress(packet(1, 100)).isEmpty());
+    }
+}
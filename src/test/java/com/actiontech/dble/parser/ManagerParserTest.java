@@ -137,6 +137,14 @@ public class ManagerParserTest {
         Assert.assertEquals(ManagerParseShow.SERVER, ManagerParseShow.parse("show @@SERVER", 5));
     }
 
+    @Test
+    public void testShowSequence() {
+        Assert.assertEquals(ManagerParseShow.SEQUENCE, ManagerParseShow.parse("show @@sequence", 5));
+        Assert.assertEquals(ManagerParseShow.SEQUENCE, ManagerParseShow.parse("SHOW @@SEQUENCE", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER, ManagerParseShow.parse("show @@sequences", 5));
+        Assert.assertEquals(ManagerParseShow.SESSION, ManagerParseShow.parse("show @@session", 5));
+    }
+
     @Test
     public void testShowThreadPool() {
         Assert.assertEquals(ManagerParseShow.THREADPOOL, ManagerParseShow.parse("show @@threadPool", 5));
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.plan.common.field;
+
+import com.actiontech.dble.plan.common.item.FieldTypes;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FieldHashKeyTest {
+    private static final int UTF8 = 33;
+
+    @Test
+    public void testSameKeyAsCompare() {
+        assertSameKey(FieldTypes.MYSQL_TYPE_VARCHAR, "abc", "ABC");
+        assertSameKey(FieldTypes.MYSQL_TYPE_NEWDECIMAL, "1.50", "1.5");
+        assertSameKey(FieldTypes.MYSQL_TYPE_DOUBLE, "0.00", "0");
+        assertSameKey(FieldTypes.MYSQL_TYPE_LONGLONG, "-12", "-12");
+        assertSameKey(FieldTypes.MYSQL_TYPE_DATETIME, "2018-01-02 03:04:05", "2018-01-02 03:04:05.000");
+        assertSameKey(FieldTypes.MYSQL_TYPE_TIME, "10:00:00", "10:00:00.0");
+    }
+
+    @Test
+    public void testDifferentKey() {
+        assertDifferentKey(FieldTypes.MYSQL_TYPE_VARCHAR, "abc", "abd");
+        assertDifferentKey(FieldTypes.MYSQL_TYPE_NEWDECIMAL, "1.5", "1.51");
+        assertDifferentKey(FieldTypes.MYSQL_TYPE_LONGLONG, "12", "-12");
+        assertDifferentKey(FieldTypes.MYSQL_TYPE_DATE, "2018-01-02", "2018-01-03");
+        Field field = createField(FieldTypes.MYSQL_TYPE_VARCHAR);
+        Assert.assertNull(field.getHashKey(null));
+        Assert.assertNotEquals(field.getHashKey(new byte[0]), field.getHashKey(null));
+    }
+
+    private static void assertSameKey(FieldTypes type, String v1, String v2) {
+        Field field = createField(type);
+        Assert.assertEquals(0, field.compare(v1.getBytes(), v2.getBytes()));
+        Assert.assertEquals(field.getHashKey(v1.getBytes()), field.getHashKey(v2.getBytes()));
+    }
+
+    private static void assertDifferentKey(FieldTypes type, String v1, String v2) {
+        Field field = createField(type);
+        Assert.assertNotEquals(0, field.compare(v1.getBytes(), v2.getBytes()));
+        Assert.assertNotEquals(field.getHashKey(v1.getBytes()), field.getHashKey(v2.getBytes()));
+    }
+
+    private static Field createField(FieldTypes type) {
+        return Field.getFieldItem("c", null, "t", "t", type.numberValue(), UTF8, 20, 2, 0);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.plan.optimizer;
+
+import com.actiontech.dble.config.model.ERTable;
+import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.meta.ProxyMetaManager;
+import com.actiontech.dble.meta.TableStatistics;
+import com.actiontech.dble.meta.table.MetaHelper;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncEqual;
+import com.actiontech.dble.plan.node.JoinNode;
+import com.actiontech.dble.plan.node.TableNode;
+import com.actiontech.dble.plan.visitor.MySQLItemVisitor;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.statement.SQLCreateTableStatement;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlExprParser;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ERJoinChooserTest {
+    private static final String SCHEMA = "testdb";
+
+    private ProxyMetaManager metaManager;
+    private Map<String, SchemaConfig> schemas;
+    private Map<String, TableStatistics> statistics;
+
+    @Before
+    public void setUp() {
+        metaManager = new ProxyMetaManager();
+        metaManager.createDatabase(SCHEMA);
+        addTable("create table a (id int, name varchar(20))");
+        addTable("create table b (id int, a_id int)");
+        addTable("create table c (id int, b_id int)");
+        schemas = new HashMap<>();
+        schemas.put(SCHEMA, new SchemaConfig(SCHEMA, "dn1", new HashMap<String, TableConfig>(), -1));
+        statistics = new HashMap<>();
+    }
+
+    private void addTable(String createSql) {
+        SQLCreateTableStatement statement = (SQLCreateTableStatement) new MySqlStatementParser(createSql).parseStatement();
+        String table = ((SQLIdentifierExpr) statement.getTableSource().getExpr()).getName();
+        metaManager.addTable(SCHEMA, MetaHelper.initTableMeta(table, statement, System.currentTimeMillis()));
+    }
+
+    private void addStatistics(String table, long rows, String indexColumn, long cardinality) {
+        TableStatistics tableStatistics = new TableStatistics();
+        tableStatistics.setRowCount(rows);
+        if (indexColumn != null) {
+            tableStatistics.addCardinality(indexColumn, cardinality);
+        }
+        statistics.put(ProxyMetaManager.getStatisticsKey(SCHEMA, table), tableStatistics);
+        metaManager.setTableStatistics(statistics);
+    }
+
+    private Item item(String expr) {
+        SQLExpr sqlExpr = new MySqlExprParser(expr).expr();
+        MySQLItemVisitor visitor = new MySQLItemVisitor(SCHEMA, 33, metaManager);
+        sqlExpr.accept(visitor);
+        return visitor.getItem();
+    }
+
+    /**
+     * a join b on a.id = b.a_id join c on b.id = c.b_id
+     */
+    private JoinNode buildJoin(String where) {
+        TableNode a = new TableNode(SCHEMA, "a", metaManager, schemas, false);
+        TableNode b = new TableNode(SCHEMA, "b", metaManager, schemas, false);
+        TableNode c = new TableNode(SCHEMA, "c", metaManager, schemas, false);
+        JoinNode ab = new JoinNode(a, b);
+        ab.setInnerJoin();
+        ab.addJoinFilter((ItemFuncEqual) item("a.id = b.a_id"));
+        JoinNode abc = new JoinNode(ab, c);
+        abc.setInnerJoin();
+        abc.addJoinFilter((ItemFuncEqual) item("b.id = c.b_id"));
+        if (where != null) {
+            abc.query(item(where));
+        }
+        abc.setUpFields();
+        return abc;
+    }
+
+    private static JoinNode choose(JoinNode join) {
+        return new ERJoinChooser(join, new HashMap<ERTable, Set<ERTable>>()).optimize();
+    }
+
+    private static String joinOrder(JoinNode join) {
+        List<String[]> joins = JoinCostModel.explain(join);
+        return joins.get(joins.size() - 1)[0];
+    }
+
+    @Test
+    public void testSmallestUnitFirst() {
+        addStatistics("a", 10000, null, 0);
+        addStatistics("b", 100, null, 0);
+        addStatistics("c", 10, null, 0);
+        JoinNode join = choose(buildJoin(null));
+        // c is the smallest, b is joined with c and a is joined with b
+        Assert.assertEquals("((c INNER JOIN b) INNER JOIN a)", joinOrder(join));
+        Assert.assertEquals(1, join.getJoinFilter().size());
+    }
+
+    @Test
+    public void testWhereOfUnit() {
+        addStatistics("a", 10000, "name", 10000);
+        addStatistics("b", 100, null, 0);
+        addStatistics("c", 10, null, 0);
+        // a.name = 'x' matches about one row of a
+        JoinNode join = choose(buildJoin("a.name = 'x'"));
+        Assert.assertEquals("((a INNER JOIN b) INNER JOIN c)", joinOrder(join));
+        List<String[]> joins = JoinCostModel.explain(join);
+        Assert.assertTrue(joins.get(0)[1], joins.get(0)[1].contains("left rows: 10000"));
+    }
+
+    @Test
+    public void testUnknownRows() {
+        addStatistics("a", 10000, null, 0);
+        addStatistics("b", 100, null, 0);
+        // the statistics of c are not collected, the join is kept as written
+        JoinNode join = buildJoin(null);
+        Assert.assertSame(join, choose(join));
+        Assert.assertEquals("((a INNER JOIN b) INNER JOIN c)", joinOrder(join));
+        Assert.assertTrue(JoinCostModel.explain(join).get(1)[1].contains("rows: unknown"));
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.plan.optimizer;
+
+import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.config.model.SystemConfig;
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.config.model.rule.RuleConfig;
+import com.actiontech.dble.meta.ProxyMetaManager;
+import com.actiontech.dble.meta.TableStatistics;
+import com.actiontech.dble.meta.table.MetaHelper;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.ItemField;
+import com.actiontech.dble.plan.common.item.ItemInt;
+import com.actiontech.dble.plan.common.item.function.mathsfunc.operator.ItemFuncPlus;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncEqual;
+import com.actiontech.dble.plan.node.JoinNode;
+import com.actiontech.dble.plan.node.TableNode;
+import com.actiontech.dble.plan.visitor.MySQLItemVisitor;
+import com.actiontech.dble.route.function.PartitionByLong;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.statement.SQLCreateTableStatement;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlExprParser;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class JoinStrategyChooserTest {
+    private static final String SCHEMA = "testdb";
+
+    private ProxyMetaManager metaManager;
+    private Map<String, SchemaConfig> schemas;
+    private Map<String, TableStatistics> statistics;
+
+    @Before
+    public void setUp() {
+        metaManager = new ProxyMetaManager();
+        metaManager.createDatabase(SCHEMA);
+        addTable("create table a (id int, name varchar(20))");
+        addTable("create table b (id int, a_id int)");
+        schemas = new HashMap<>();
+        schemas.put(SCHEMA, new SchemaConfig(SCHEMA, "dn1", new HashMap<String, TableConfig>(), -1));
+        statistics = new HashMap<>();
+    }
+
+    private void addTable(String createSql) {
+        SQLCreateTableStatement statement = (SQLCreateTableStatement) new MySqlStatementParser(createSql).parseStatement();
+        String table = ((SQLIdentifierExpr) statement.getTableSource().getExpr()).getName();
+        metaManager.addTable(SCHEMA, MetaHelper.initTableMeta(table, statement, System.currentTimeMillis()));
+    }
+
+    private void addStatistics(String table, long rows) {
+        TableStatistics tableStatistics = new TableStatistics();
+        tableStatistics.setRowCount(rows);
+        statistics.put(ProxyMetaManager.getStatisticsKey(SCHEMA, table), tableStatistics);
+        metaManager.setTableStatistics(statistics);
+    }
+
+    private Item item(String expr) {
+        SQLExpr sqlExpr = new MySqlExprParser(expr).expr();
+        MySQLItemVisitor visitor = new MySQLItemVisitor(SCHEMA, 33, metaManager);
+        sqlExpr.accept(visitor);
+        return visitor.getItem();
+    }
+
+    /**
+     * a join b on a.id = b.a_id, the where of b is pushed down already
+     */
+    private JoinNode buildJoin(boolean leftOuter, String whereOfB) {
+        TableNode a = new TableNode(SCHEMA, "a", metaManager, schemas, false);
+        TableNode b = new TableNode(SCHEMA, "b", metaManager, schemas, false);
+        if (whereOfB != null) {
+            b.query(item(whereOfB));
+        }
+        JoinNode join = new JoinNode(a, b);
+        if (leftOuter) {
+            join.setLeftOuterJoin();
+        } else {
+            join.setInnerJoin();
+        }
+        join.addJoinFilter((ItemFuncEqual) item("a.id = b.a_id"));
+        join.setUpFields();
+        return join;
+    }
+
+    private static JoinStrategyChooser chooser(JoinNode join) {
+        return new JoinStrategyChooser(join, new SystemConfig());
+    }
+
+    @Test
+    public void testNestLoopBySmallerRows() {
+        addStatistics("a", 100);
+        addStatistics("b", 100000);
+        JoinNode join = buildJoin(false, null);
+        Assert.assertTrue(chooser(join).tryNestLoop());
+        Assert.assertEquals(JoinNode.Strategy.NESTLOOP, join.getStrategy());
+        // the values of a are sent to b
+        Assert.assertNull(join.getLeftNode().getNestLoopFilters());
+        Assert.assertNotNull(join.getRightNode().getNestLoopFilters());
+
+        addStatistics("a", 100000);
+        addStatistics("b", 100);
+        join = buildJoin(false, null);
+        Assert.assertTrue(chooser(join).tryNestLoop());
+        Assert.assertNotNull(join.getLeftNode().getNestLoopFilters());
+        Assert.assertNull(join.getRightNode().getNestLoopFilters());
+    }
+
+    @Test
+    public void testNoNestLoopForTooManyRows() {
+        SystemConfig system = new SystemConfig();
+        addStatistics("a", (long) system.getNestLoopRowsSize() * system.getNestLoopConnSize() + 1);
+        addStatistics("b", 100000000);
+        JoinNode join = buildJoin(false, null);
+        Assert.assertFalse(chooser(join).tryNestLoop());
+        Assert.assertEquals(JoinNode.Strategy.SORTMERGE, join.getStrategy());
+        // left join only sends the values of the left node
+        addStatistics("a", 100000);
+        addStatistics("b", 100);
+        Assert.assertFalse(chooser(buildJoin(true, null)).tryNestLoop());
+    }
+
+    @Test
+    public void testNestLoopUnknownRows() {
+        addStatistics("a", 100);
+        // the statistics of b are not collected, the table with where is the small one
+        JoinNode join = buildJoin(false, "b.id = 1");
+        Assert.assertTrue(chooser(join).tryNestLoop());
+        Assert.assertNotNull(join.getLeftNode().getNestLoopFilters());
+        Assert.assertNull(join.getRightNode().getNestLoopFilters());
+        Assert.assertFalse(chooser(buildJoin(false, null)).tryNestLoop());
+    }
+
+    @Test
+    public void testHashBuildBySmallerRows() {
+        addStatistics("a", 100);
+        addStatistics("b", 100000);
+        JoinNode join = buildJoin(false, null);
+        Assert.assertTrue(chooser(join).tryHashJoin());
+        Assert.assertEquals(JoinNode.Strategy.HASHJOIN, join.getStrategy());
+        Assert.assertTrue(join.isLeftHashBuild());
+
+        addStatistics("a", 100000);
+        addStatistics("b", 100);
+        join = buildJoin(false, null);
+        Assert.assertTrue(chooser(join).tryHashJoin());
+        Assert.assertFalse(join.isLeftHashBuild());
+
+        // the right node of left join is always built
+        addStatistics("a", 100);
+        join = buildJoin(true, null);
+        Assert.assertTrue(chooser(join).tryHashJoin());
+        Assert.assertFalse(join.isLeftHashBuild());
+    }
+
+    @Test
+    public void testHashBuildUnknownRows() {
+        // no statistics, a is small by its limit and b is not
+        JoinNode join = buildJoin(false, null);
+        join.getLeftNode().setLimitTo(10);
+        Assert.assertTrue(chooser(join).tryHashJoin());
+        Assert.assertTrue(join.isLeftHashBuild());
+        // both are small
+        join = buildJoin(false, "b.id = 1");
+        join.getLeftNode().setLimitTo(10);
+        Assert.assertTrue(chooser(join).tryHashJoin());
+        Assert.assertFalse(join.isLeftHashBuild());
+    }
+
+    @Test
+    public void testLookupNodes() {
+        PartitionByLong algorithm = new PartitionByLong();
+        algorithm.setPartitionCount("4");
+        algorithm.setPartitionLength("256");
+        algorithm.init();
+        TableConfig big = new TableConfig("b", "id", false, false, TableConfig.TableTypeEnum.TYPE_SHARDING_TABLE,
+                "dn$1-4", new RuleConfig("ID", "func", algorithm), true);
+        // joined by the partition column, the values are split to 4 nodes
+        Assert.assertEquals(4, JoinStrategyChooser.getLookupNodes(big, Collections.<Item>singletonList(column("id"))));
+        Assert.assertEquals(4, JoinStrategyChooser.getLookupNodes(big, Arrays.<Item>asList(column("name"), column("ID"))));
+        // not joined by the partition column
+        Assert.assertEquals(1, JoinStrategyChooser.getLookupNodes(big, Collections.<Item>singletonList(column("name"))));
+        Assert.assertEquals(1, JoinStrategyChooser.getLookupNodes(big,
+                Collections.<Item>singletonList(new ItemFuncPlus(column("id"), new ItemInt(1)))));
+        // not sharded by a partition column
+        Assert.assertEquals(1, JoinStrategyChooser.getLookupNodes(null, Collections.<Item>singletonList(column("id"))));
+    }
+
+    private static Item column(String name) {
+        return new ItemField(null, "b", name);
+    }
+}
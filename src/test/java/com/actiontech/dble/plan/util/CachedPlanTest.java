@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.plan.util;
+
+import com.actiontech.dble.SimpleCachePool;
+import com.actiontech.dble.backend.mysql.nio.handler.builder.sqlvisitor.GlobalVisitor;
+import com.actiontech.dble.cache.CachePool;
+import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.meta.ProxyMetaManager;
+import com.actiontech.dble.meta.table.MetaHelper;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.ItemFuncEqual;
+import com.actiontech.dble.plan.node.JoinNode;
+import com.actiontech.dble.plan.node.PlanNode;
+import com.actiontech.dble.plan.node.TableNode;
+import com.actiontech.dble.plan.visitor.MySQLItemVisitor;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLOrderingSpecification;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.statement.SQLCreateTableStatement;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlExprParser;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+
+public class CachedPlanTest {
+    private static final String SCHEMA = "testdb";
+    private static final String SQL = "select a.name,count(b.id) as cnt from a join b on a.id=b.a_id group by a.name order by a.name desc";
+
+    private ProxyMetaManager metaManager;
+    private Map<String, SchemaConfig> schemas;
+    private CachePool pool;
+
+    @Before
+    public void setUp() {
+        metaManager = new ProxyMetaManager();
+        metaManager.createDatabase(SCHEMA);
+        addTable("create table a (id int, name varchar(20), age int)");
+        addTable("create table b (id int, a_id int, title varchar(20))");
+        schemas = new HashMap<>();
+        schemas.put(SCHEMA, new SchemaConfig(SCHEMA, "dn1", new HashMap<String, TableConfig>(), -1));
+        pool = new SimpleCachePool();
+    }
+
+    private void addTable(String createSql) {
+        SQLCreateTableStatement statement = (SQLCreateTableStatement) new MySqlStatementParser(createSql).parseStatement();
+        String table = ((SQLIdentifierExpr) statement.getTableSource().getExpr()).getName();
+        metaManager.addTable(SCHEMA, MetaHelper.initTableMeta(table, statement, System.currentTimeMillis()));
+    }
+
+    private Item item(String expr) {
+        SQLExpr sqlExpr = new MySqlExprParser(expr).expr();
+        MySQLItemVisitor visitor = new MySQLItemVisitor(SCHEMA, 33, metaManager);
+        sqlExpr.accept(visitor);
+        return visitor.getItem();
+    }
+
+    private Item selectItem(String expr, String alias) {
+        Item item = item(expr);
+        item.setAlias(alias);
+        return item;
+    }
+
+    private PlanNode buildPlan() {
+        TableNode a = new TableNode(SCHEMA, "a", metaManager, schemas, false);
+        TableNode b = new TableNode(SCHEMA, "b", metaManager, schemas, false);
+        JoinNode join = new JoinNode(a, b);
+        join.setInnerJoin();
+        join.addJoinFilter((ItemFuncEqual) item("a.id = b.a_id"));
+        List<Item> selects = new ArrayList<>();
+        selects.add(selectItem("a.name", null));
+        selects.add(selectItem("count(b.id)", "cnt"));
+        join.select(selects);
+        join.groupBy(item("a.name"), SQLOrderingSpecification.ASC);
+        join.orderBy(item("a.name"), SQLOrderingSpecification.DESC);
+        join.setUpFields();
+        return join;
+    }
+
+    private static String pushDown(PlanNode node) {
+        GlobalVisitor visitor = new GlobalVisitor(node, true);
+        visitor.visit();
+        return visitor.getSql().toString();
+    }
+
+    /**
+     * the handler builder writes the push down names into the items of the plan
+     */
+    private static void writePushDownNames(PlanNode node) {
+        int index = 0;
+        for (Item item : node.getColumnsSelected()) {
+            item.setPushDownName("rpda_" + index++);
+        }
+    }
+
+    private static SQLStatement parse(String sql) {
+        return new MySqlStatementParser(sql).parseStatement();
+    }
+
+    private CachedPlan take(int version, String sql) {
+        SQLStatement statement = parse(sql);
+        if (!CachedPlan.isCacheable(statement)) {
+            return null;
+        }
+        return CachedPlan.take(pool, version, SCHEMA, 33, statement);
+    }
+
+    private CachedPlan take(String sql) {
+        return take(metaManager.getVersion(), sql);
+    }
+
+    private CachedPlan take() {
+        return take(SQL);
+    }
+
+    @Test
+    public void testReusedPlanSameSql() {
+        String freshSql = pushDown(buildPlan());
+
+        CachedPlan plan = take();
+        Assert.assertNull(plan.getNode());
+        PlanNode node = buildPlan();
+        Assert.assertTrue(plan.setNode(node));
+        Assert.assertEquals(freshSql, pushDown(node));
+        writePushDownNames(node);
+        // the names left by the last query change the sql
+        Assert.assertNotEquals(freshSql, pushDown(node));
+        plan.giveBack();
+
+        CachedPlan reused = take();
+        Assert.assertSame(plan, reused);
+        Assert.assertSame(node, reused.getNode());
+        Assert.assertEquals(freshSql, pushDown(reused.getNode()));
+    }
+
+    @Test
+    public void testPlanUsedByOneQuery() {
+        CachedPlan plan = take();
+        plan.setNode(buildPlan());
+        plan.giveBack();
+
+        CachedPlan first = take();
+        Assert.assertSame(plan, first);
+        // the plan is in use, the other query optimizes its own plan
+        CachedPlan second = take();
+        Assert.assertNotSame(plan, second);
+        Assert.assertNull(second.getNode());
+        second.setNode(buildPlan());
+        second.giveBack();
+        first.giveBack();
+        Assert.assertSame(second, take());
+        Assert.assertSame(first, take());
+        Assert.assertNull(take().getNode());
+    }
+
+    @Test
+    public void testSessionGivesBackPlan() throws Exception {
+        CachedPlan plan = take();
+        plan.setNode(buildPlan());
+        NonBlockingSession session = mock(NonBlockingSession.class, Mockito.CALLS_REAL_METHODS);
+        Field field = NonBlockingSession.class.getDeclaredField("cachedPlan");
+        field.setAccessible(true);
+        field.set(session, plan);
+
+        Assert.assertSame(plan, session.takeCachedPlan());
+        Assert.assertNull(field.get(session));
+        // taken only once
+        Assert.assertNull(session.takeCachedPlan());
+        // given back by the output handler after the handlers are terminated
+        Assert.assertNull(take().getNode());
+        plan.giveBack();
+        Assert.assertSame(plan, take());
+    }
+
+    @Test
+    public void testFailedQueryDropsPlan() {
+        CachedPlan plan = take();
+        plan.setNode(buildPlan());
+        // not given back
+        Assert.assertNull(take().getNode());
+    }
+
+    @Test
+    public void testDdlInvalidatesPlan() {
+        CachedPlan plan = take();
+        plan.setNode(buildPlan());
+        plan.giveBack();
+        int version = metaManager.getVersion();
+
+        // the ddl applied by updateMetaData replaces the meta of the table
+        addTable("create table b (id int, a_id int, title varchar(20), price int)");
+        Assert.assertNotEquals(version, metaManager.getVersion());
+        Assert.assertNull(take().getNode());
+        Assert.assertSame(plan, take(version, SQL));
+
+        // the meta manager created by reloading goes on with the version
+        ProxyMetaManager reloaded = new ProxyMetaManager(metaManager.getVersion() + 1);
+        Assert.assertTrue(reloaded.getVersion() > metaManager.getVersion());
+    }
+
+    @Test
+    public void testLiteralsNotCached() {
+        // the literals folded by the optimizer can't be bound into a cached plan
+        Assert.assertFalse(CachedPlan.isCacheable(parse(SQL + " limit 10")));
+        Assert.assertFalse(CachedPlan.isCacheable(parse("select a.name from a join b on a.id=b.a_id where b.price > 10.5")));
+        Assert.assertFalse(CachedPlan.isCacheable(parse("select a.name from a join b on a.id=b.a_id where a.name in ('x', 'y')")));
+        Assert.assertFalse(CachedPlan.isCacheable(parse("select a.name from a join b on a.id=b.a_id where a.flag = true")));
+        Assert.assertFalse(CachedPlan.isCacheable(parse("select a.name from a join b on a.id=b.a_id where a.bits = 0x1f")));
+        Assert.assertTrue(CachedPlan.isCacheable(parse(SQL)));
+        Assert.assertTrue(CachedPlan.isCacheable(parse("select a.name from a join b on a.id=b.a_id where a.name is null")));
+        Assert.assertNotNull(take());
+    }
+
+    @Test
+    public void testVariablesAndNonDeterministicNotCached() {
+        Assert.assertFalse(CachedPlan.isCacheable(parse("select a.name from a join b on a.id=b.a_id where a.id = @id")));
+        Assert.assertFalse(CachedPlan.isCacheable(parse("select a.name, @@autocommit from a join b on a.id=b.a_id")));
+        Assert.assertFalse(CachedPlan.isCacheable(parse("select a.name from a join b on a.id=b.a_id where a.id = ?")));
+        Assert.assertFalse(CachedPlan.isCacheable(parse("select a.name, now() from a join b on a.id=b.a_id")));
+        Assert.assertFalse(CachedPlan.isCacheable(parse("select a.name from a join b on a.id=b.a_id order by rand()")));
+        Assert.assertFalse(CachedPlan.isCacheable(parse("select a.name from a join b on a.id=b.a_id where b.created < current_timestamp")));
+        Assert.assertFalse(CachedPlan.isCacheable(parse("select a.name, uuid() from a join b on a.id=b.a_id")));
+        // the deterministic functions and the columns named like the functions
+        Assert.assertTrue(CachedPlan.isCacheable(parse("select upper(a.name) from a join b on a.id=b.a_id")));
+        Assert.assertTrue(CachedPlan.isCacheable(parse("select a.version from a join b on a.id=b.a_id")));
+    }
+
+    @Test
+    public void testKeyNormalized() {
+        CachedPlan plan = take();
+        plan.setNode(buildPlan());
+        plan.giveBack();
+        // the same statement in other case of the keywords and spaces
+        Assert.assertSame(plan, take("SELECT a.name, COUNT(b.id) AS cnt\nFROM a JOIN b ON a.id = b.a_id GROUP BY a.name ORDER BY a.name DESC"));
+        plan.giveBack();
+        // the names of the sharding tables and the aliases are kept
+        Assert.assertNull(take("select a.name,count(b.id) as cnt from a_01 a join b on a.id=b.a_id group by a.name order by a.name desc").getNode());
+        Assert.assertNull(take("select A.name,count(b.id) as cnt from a A join b on A.id=b.a_id group by A.name order by A.name desc").getNode());
+        Assert.assertSame(plan, take());
+    }
+
+    @Test
+    public void testNestLoopNotCacheable() {
+        JoinNode join = (JoinNode) buildPlan();
+        Assert.assertTrue(CachedPlan.isCacheable(join));
+        join.setStrategy(JoinNode.Strategy.NESTLOOP);
+        Assert.assertFalse(CachedPlan.isCacheable(join));
+        Assert.assertFalse(take().setNode(join));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route;
+
+import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.config.model.TableConfig.TableTypeEnum;
+import com.actiontech.dble.config.model.rule.RuleConfig;
+import com.actiontech.dble.route.function.PartitionByLong;
+import com.actiontech.dble.route.util.ParameterizedSql;
+import com.actiontech.dble.route.util.RouterUtil;
+import com.actiontech.dble.server.parser.ServerParse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class RouteShapeTest {
+    private final Map<String, SchemaConfig> schemaMap = new HashMap<>();
+    private final TableConfig table;
+
+    public RouteShapeTest() {
+        PartitionByLong algorithm = new PartitionByLong();
+        algorithm.setPartitionCount("2");
+        algorithm.setPartitionLength("512");
+        algorithm.init();
+        table = new TableConfig("travelrecord", "id", false, false, TableTypeEnum.TYPE_SHARDING_TABLE, "dn$1-2",
+                new RuleConfig("id", "func", algorithm), true);
+        Map<String, TableConfig> tables = new HashMap<>();
+        tables.put(table.getName(), table);
+        schemaMap.put("testdb", new SchemaConfig("testdb", null, tables, -1));
+    }
+
+    /**
+     * the route of the parser: the sql to the data node of the sharding value
+     */
+    private RouteShape create(String sql, String shardingValue) {
+        RouteResultset rrs = new RouteResultset(sql, ServerParse.SELECT);
+        rrs.setSchema("testdb");
+        rrs.setTable(table.getName());
+        RouterUtil.routeToSingleNode(rrs, "dn1");
+        rrs.setShardingValue(shardingValue);
+        return RouteShape.create(ParameterizedSql.parse(sql), rrs, schemaMap);
+    }
+
+    @Test
+    public void testPartitionColumnLiteral() {
+        Assert.assertNotNull(create("select * from travelrecord where id=5", "5"));
+        Assert.assertNotNull(create("select * from travelrecord t where status=5 and t.id = 5 limit 10", "5"));
+        Assert.assertNotNull(create("select * from travelrecord where `ID`='5' and name='a'", "5"));
+    }
+
+    @Test
+    public void testPartitionValueNotLiteral() {
+        // the hex value is kept in the shape, the other literal of the same value is not the partition column's
+        Assert.assertNull(create("select * from travelrecord where id=0x5 and status=5", "5"));
+        Assert.assertNull(create("select * from travelrecord where id=2+3 and status=5", "5"));
+        Assert.assertNull(create("select * from travelrecord where id in (5) and status=5", "5"));
+        Assert.assertNull(create("select * from travelrecord where pid=5 and id=0x5", "5"));
+        Assert.assertNull(create("select * from travelrecord where id=5 or id=5", "5"));
+        Assert.assertNull(create("select * from travelrecord where id>=5 and id<=5", "5"));
+    }
+}
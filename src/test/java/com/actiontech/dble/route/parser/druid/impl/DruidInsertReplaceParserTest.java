@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route.parser.druid.impl;
+
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.config.model.TableConfig.TableTypeEnum;
+import com.actiontech.dble.config.model.rule.RuleConfig;
+import com.actiontech.dble.route.function.PartitionByLong;
+import com.alibaba.druid.sql.ast.statement.SQLInsertStatement.ValuesClause;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlInsertStatement;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DruidInsertReplaceParserTest {
+
+    private static List<ValuesClause> parseRows(String sql) {
+        MySqlInsertStatement insert = (MySqlInsertStatement) new MySqlStatementParser(sql).parseStatement();
+        return insert.getValuesList();
+    }
+
+    @Test
+    public void testGroupByKeyNodes() {
+        List<ValuesClause> rows = parseRows("insert into orders (id,customer_id) values (1,1),(2,'a'),(3,1),(4,3)");
+        Map<String, String> keyNodes = new HashMap<>();
+        keyNodes.put("1", "dn1");
+        keyNodes.put("'a'", "dn2");
+        keyNodes.put("3", "dn1");
+        Map<String, List<ValuesClause>> nodeRows = DruidInsertReplaceParser.groupByKeyNodes(rows, 1, keyNodes);
+        Assert.assertEquals(Arrays.asList("dn1", "dn2"), Arrays.asList(nodeRows.keySet().toArray()));
+        Assert.assertEquals(Arrays.asList(rows.get(0), rows.get(2), rows.get(3)), nodeRows.get("dn1"));
+        Assert.assertEquals(Arrays.asList(rows.get(1)), nodeRows.get("dn2"));
+    }
+
+    @Test
+    public void testGroupByKeyNodesMissingKey() {
+        List<ValuesClause> rows = parseRows("insert into orders (id,customer_id) values (1,1),(2,2)");
+        Map<String, String> keyNodes = new HashMap<>();
+        keyNodes.put("1", "dn1");
+        Assert.assertNull(DruidInsertReplaceParser.groupByKeyNodes(rows, 1, keyNodes));
+    }
+
+    @Test
+    public void testRouteByERParentKey() throws Exception {
+        PartitionByLong algorithm = new PartitionByLong();
+        algorithm.setPartitionCount("2");
+        algorithm.setPartitionLength("512");
+        algorithm.init();
+        TableConfig customer = new TableConfig("customer", "id", false, false, TableTypeEnum.TYPE_SHARDING_TABLE,
+                "dn$1-2", new RuleConfig("id", "func", algorithm), true);
+        TableConfig orders = new TableConfig("orders", "id", false, false, TableTypeEnum.TYPE_SHARDING_TABLE,
+                "dn$1-2", null, false, customer, "customer_id", "id");
+        List<ValuesClause> rows = parseRows("insert into orders (id,customer_id) values (1,1),(2,600),(3,'2')");
+        Map<String, List<ValuesClause>> nodeRows = DruidInsertReplaceParser.routeByERParentKey(orders, rows, 1);
+        Assert.assertEquals(Arrays.asList(rows.get(0), rows.get(2)), nodeRows.get("dn1"));
+        Assert.assertEquals(Arrays.asList(rows.get(1)), nodeRows.get("dn2"));
+    }
+}
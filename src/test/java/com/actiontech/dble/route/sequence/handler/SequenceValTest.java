@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route.sequence.handler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.SQLNonTransientException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class SequenceValTest {
+
+    @Test
+    public void testPrefetch() throws SQLNonTransientException {
+        SequenceVal seqVal = new SequenceVal("`testdb`.`GLOBAL`", "dn1");
+        seqVal.setSegmentConfig(50, 0);
+        FakeFetcher fetcher = new FakeFetcher(10, false);
+        for (long i = 1; i <= 35; i++) {
+            Assert.assertEquals(i, seqVal.nextValue(fetcher));
+        }
+        Assert.assertEquals(4, seqVal.getFetchCount());
+        // only the first value waits for fetching
+        Assert.assertEquals(1, seqVal.getStallCount());
+        Assert.assertEquals(5, seqVal.getRemaining());
+    }
+
+    @Test
+    public void testAdaptiveSegmentSize() throws SQLNonTransientException {
+        SequenceVal seqVal = new SequenceVal("`testdb`.`GLOBAL`", "dn1");
+        seqVal.setSegmentConfig(0, 80);
+        FakeFetcher fetcher = new FakeFetcher(10, false);
+        for (long i = 1; i <= 300; i++) {
+            Assert.assertEquals(i, seqVal.nextValue(fetcher));
+        }
+        Assert.assertEquals(80, seqVal.getSegmentSize());
+        Assert.assertEquals(10 + 20 + 40 + 80 + 80 + 80, fetcher.current.get());
+    }
+
+    @Test(expected = SQLNonTransientException.class)
+    public void testNotSet() throws SQLNonTransientException {
+        SequenceVal seqVal = new SequenceVal("`testdb`.`NOT_SET`", "dn1");
+        seqVal.nextValue(new FakeFetcher(0, false));
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        final SequenceVal seqVal = new SequenceVal("`testdb`.`GLOBAL`", "dn1");
+        seqVal.setSegmentConfig(50, 1000);
+        final FakeFetcher fetcher = new FakeFetcher(7, true);
+        final Set<Long> values = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final CountDownLatch latch = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            values.add(seqVal.nextValue(fetcher));
+                        }
+                    } catch (SQLNonTransientException e) {
+                        Assert.fail(e.getMessage());
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+        latch.await();
+        Assert.assertEquals(16000, values.size());
+    }
+
+    @Test
+    public void testFetchedTwice() throws SQLNonTransientException {
+        SequenceVal seqVal = new SequenceVal("`testdb`.`GLOBAL`", "dn1");
+        seqVal.setSegmentConfig(50, 0);
+        // every fetching is answered twice, like a prefetching which raced with the last fetching
+        FakeFetcher fetcher = new FakeFetcher(10, false, 2);
+        for (long i = 1; i <= 35; i++) {
+            Assert.assertEquals(i, seqVal.nextValue(fetcher));
+        }
+        // the segment fetched while the next one is waiting is kept
+        Assert.assertEquals(4, seqVal.getFetchCount());
+        Assert.assertEquals(40, fetcher.current.get());
+        Assert.assertEquals(5, seqVal.getRemaining());
+    }
+
+    @Test
+    public void testConcurrentFetch() throws InterruptedException {
+        final SequenceVal seqVal = new SequenceVal("`testdb`.`GLOBAL`", "dn1");
+        seqVal.setSegmentConfig(50, 0);
+        final FakeFetcher fetcher = new FakeFetcher(5, true);
+        final Set<Long> values = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final CountDownLatch latch = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            values.add(seqVal.nextValue(fetcher));
+                        }
+                    } catch (SQLNonTransientException e) {
+                        Assert.fail(e.getMessage());
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+        latch.await();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (fetcher.answering.get() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(0, fetcher.answering.get());
+        Assert.assertEquals(16000, values.size());
+        // no fetched value is lost, the ones not taken are still in the segments
+        Assert.assertEquals(fetcher.current.get() - 16000, seqVal.getRemaining());
+    }
+
+    /**
+     * answers dble_seq_nextval and dble_seq_nextvals like dbseq.sql
+     */
+    private static class FakeFetcher extends FetchMySQLSequenceHandler {
+        private static final Pattern NEXT_VALS = Pattern.compile("dble_seq_nextvals\\('.*', (\\d+)\\)");
+        private final long increment;
+        private final boolean async;
+        /* the times every synchronous fetching is answered */
+        private final int answers;
+        private final AtomicLong current = new AtomicLong(0);
+        private final AtomicInteger answering = new AtomicInteger(0);
+
+        FakeFetcher(long increment, boolean async) {
+            this(increment, async, 1);
+        }
+
+        FakeFetcher(long increment, boolean async, int answers) {
+            this.increment = increment;
+            this.async = async;
+            this.answers = answers;
+        }
+
+        @Override
+        public void execute(final SequenceVal seqVal) {
+            if (async) {
+                answering.incrementAndGet();
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            answer(seqVal);
+                        } finally {
+                            answering.decrementAndGet();
+                        }
+                    }
+                }).start();
+            } else {
+                for (int i = 0; i < answers; i++) {
+                    answer(seqVal);
+                }
+            }
+        }
+
+        private void answer(SequenceVal seqVal) {
+            Matcher matcher = NEXT_VALS.matcher(seqVal.getFetchSql());
+            if (matcher.find()) {
+                long count = Long.parseLong(matcher.group(1));
+                long val = current.addAndGet(count);
+                seqVal.dbretVal = (val - count + 1) + "," + val;
+            } else {
+                long val = current.addAndGet(increment);
+                seqVal.dbretVal = (val - increment + 1) + "," + increment;
+            }
+            seqVal.fetchFinished();
+        }
+    }
+}
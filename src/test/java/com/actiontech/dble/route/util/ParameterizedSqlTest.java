@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class ParameterizedSqlTest {
+
+    @Test
+    public void testSameShape() {
+        ParameterizedSql sql1 = ParameterizedSql.parse("select * from  travelrecord where id=1");
+        ParameterizedSql sql2 = ParameterizedSql.parse("select * from travelrecord\n where id = 20");
+        ParameterizedSql sql3 = ParameterizedSql.parse("select * from travelrecord where id =20");
+        Assert.assertEquals("select * from travelrecord where id=?", sql1.getShape());
+        Assert.assertEquals("select * from travelrecord where id = ?", sql2.getShape());
+        Assert.assertEquals(sql1.getShape(), sql3.getShape().replace(" =", "="));
+        Assert.assertEquals(1, sql1.getParameterCount());
+        Assert.assertEquals("1", sql1.getValue(0));
+        Assert.assertEquals("20", sql2.getValue(0));
+    }
+
+    @Test
+    public void testStringLiteral() {
+        ParameterizedSql sql = ParameterizedSql.parse("select * from t where name='abc' and id in (3, 4) limit 10");
+        Assert.assertEquals("select * from t where name='?' and id in (?, ?) limit ?", sql.getShape());
+        Assert.assertEquals(4, sql.getParameterCount());
+        Assert.assertEquals("abc", sql.getValue(0));
+        Assert.assertTrue(sql.isPlainValue(0));
+        Assert.assertEquals("10", sql.getValue(3));
+    }
+
+    @Test
+    public void testKeptInShape() {
+        ParameterizedSql sql = ParameterizedSql.parse("select `c1`, \"a'b\", t1.c2 from t1 /* 1 */ where c3=1.5 and c4=0x1F and c5=1e3 # 2\n");
+        Assert.assertEquals("select `c1`, \"a'b\", t1.c2 from t1 /* 1 */ where c3=1.5 and c4=0x1F and c5=1e3 # 2\n", sql.getShape());
+        Assert.assertEquals(0, sql.getParameterCount());
+    }
+
+    @Test
+    public void testNotPlainValue() {
+        ParameterizedSql sql = ParameterizedSql.parse("select * from t where id=007 and name='a\\'b' and c='x''y'");
+        Assert.assertEquals(3, sql.getParameterCount());
+        Assert.assertFalse(sql.isPlainValue(0));
+        Assert.assertFalse(sql.isPlainValue(1));
+        Assert.assertFalse(sql.isPlainValue(2));
+        Assert.assertTrue(ParameterizedSql.parse("select * from t where id=0").isPlainValue(0));
+    }
+
+    @Test
+    public void testBind() {
+        ParameterizedSql template = ParameterizedSql.parse("select * from t where c=1 and id=? and name=?");
+        Assert.assertEquals("select * from t where c=? and id=? and name=?", template.getShape());
+        ParameterizedSql sql = template.bind(Arrays.asList("5", "a'b"), Arrays.asList(true, false));
+        Assert.assertEquals(template.getShape(), sql.getShape());
+        Assert.assertEquals(3, sql.getParameterCount());
+        Assert.assertEquals("1", sql.getValue(0));
+        Assert.assertEquals("5", sql.getValue(1));
+        Assert.assertTrue(sql.isPlainValue(1));
+        Assert.assertFalse(sql.isPlainValue(2));
+        Assert.assertEquals(1, template.getParameterCount());
+    }
+
+    @Test
+    public void testNotTerminated() {
+        Assert.assertNull(ParameterizedSql.parse("select * from t where name='abc"));
+        Assert.assertNull(ParameterizedSql.parse("select * from t /* where id=1"));
+    }
+
+    @Test
+    public void testColumn() {
+        ParameterizedSql sql = ParameterizedSql.parse("select * from t where t.id = 1 and `t`.`Name`='a' and c>=2 and d=3+1 " +
+                "and e in (4) and f<=>5 and (g=6) and 7=h and i=0x8 and j=9");
+        Assert.assertEquals(10, sql.getParameterCount());
+        Assert.assertEquals("id", sql.getColumn(0));
+        Assert.assertEquals("name", sql.getColumn(1));
+        Assert.assertNull(sql.getColumn(2));
+        Assert.assertNull(sql.getColumn(3));
+        Assert.assertNull(sql.getColumn(4));
+        Assert.assertNull(sql.getColumn(5));
+        Assert.assertNull(sql.getColumn(6));
+        Assert.assertEquals("g", sql.getColumn(7));
+        Assert.assertNull(sql.getColumn(8));
+        Assert.assertEquals("j", sql.getColumn(9));
+    }
+
+    @Test
+    public void testBoundColumn() {
+        ParameterizedSql template = ParameterizedSql.parse("select * from t where c=1 and id=? and name like ?");
+        ParameterizedSql sql = template.bind(Arrays.asList("5", "a%"), Arrays.asList(true, true));
+        Assert.assertEquals("c", sql.getColumn(0));
+        Assert.assertEquals("id", sql.getColumn(1));
+        Assert.assertNull(sql.getColumn(2));
+    }
+}
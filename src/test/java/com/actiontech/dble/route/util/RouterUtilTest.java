@@ -5,9 +5,21 @@
 
 package com.actiontech.dble.route.util;
 
+import com.actiontech.dble.backend.datasource.PhysicalDBNode;
+import com.actiontech.dble.backend.datasource.PhysicalDBPool;
+import com.actiontech.dble.config.model.TableConfig;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 /**
  * @author Hash Zhang
  * @version 1.0.0
@@ -134,4 +146,63 @@ public class RouterUtilTest {
         String sqlnew = RouterUtil.removeSchema(sql, "testx", true);
         Assert.assertEquals("EXECUTE ERROR:", sqltrue, sqlnew);
     }
+
+    @Test
+    public void testGlobalReadNodeByLoad() {
+        TableConfig tc = new TableConfig("t", "id", false, false, TableConfig.TableTypeEnum.TYPE_GLOBAL_TABLE,
+                "dn1,dn2,dn3", null, false);
+        Map<String, PhysicalDBNode> allNodes = new HashMap<>();
+        allNodes.put("dn1", mockNode(PhysicalDBPool.BALANCE_TYPE_LOAD, 30));
+        allNodes.put("dn2", mockNode(PhysicalDBPool.BALANCE_TYPE_LOAD, 10));
+        allNodes.put("dn3", mockNode(PhysicalDBPool.BALANCE_TYPE_LOAD, 20));
+        // the two choices are dn1 and dn2, or dn2 and dn1, the less loaded one is taken either way
+        Assert.assertEquals("dn2", RouterUtil.getGlobalReadNode(tc, allNodes, fixedRandom(0, 0)));
+        Assert.assertEquals("dn2", RouterUtil.getGlobalReadNode(tc, allNodes, fixedRandom(1, 0)));
+        // dn1 and dn3
+        Assert.assertEquals("dn3", RouterUtil.getGlobalReadNode(tc, allNodes, fixedRandom(0, 1)));
+    }
+
+    @Test
+    public void testGlobalReadNodeFallback() {
+        TableConfig tc = new TableConfig("t", "id", false, false, TableConfig.TableTypeEnum.TYPE_GLOBAL_TABLE,
+                "dn1,dn2", null, false);
+        Map<String, PhysicalDBNode> allNodes = new HashMap<>();
+        PhysicalDBNode loadNode = mockNode(PhysicalDBPool.BALANCE_TYPE_LOAD, 30);
+        allNodes.put("dn1", loadNode);
+        allNodes.put("dn2", mockNode(PhysicalDBPool.BALANCE_TYPE_RANDOM, 10));
+        // only one dataHost balances by the load, the costs are not comparable, the first random choice is taken
+        Assert.assertEquals("dn1", RouterUtil.getGlobalReadNode(tc, allNodes, fixedRandom(0, 0)));
+        Assert.assertEquals("dn2", RouterUtil.getGlobalReadNode(tc, allNodes, fixedRandom(1, 0)));
+        verify(loadNode.getDbPool(), never()).getReadLoadCost();
+    }
+
+    @Test
+    public void testGlobalReadNodeSingle() {
+        TableConfig tc = new TableConfig("t", "id", false, false, TableConfig.TableTypeEnum.TYPE_GLOBAL_TABLE,
+                "dn1", null, false);
+        Assert.assertEquals("dn1", RouterUtil.getGlobalReadNode(tc, new HashMap<String, PhysicalDBNode>(), new Random()));
+    }
+
+    private static PhysicalDBNode mockNode(int balanceType, double loadCost) {
+        PhysicalDBPool pool = mock(PhysicalDBPool.class);
+        when(pool.getBalanceType()).thenReturn(balanceType);
+        when(pool.getReadLoadCost()).thenReturn(loadCost);
+        PhysicalDBNode node = mock(PhysicalDBNode.class);
+        when(node.getDbPool()).thenReturn(pool);
+        return node;
+    }
+
+    /**
+     * @return the random which returns the values in order
+     */
+    private static Random fixedRandom(final int... values) {
+        return new Random() {
+            private int next = 0;
+
+            @Override
+            public int nextInt(int bound) {
+                return values[next++];
+            }
+        };
+    }
 }
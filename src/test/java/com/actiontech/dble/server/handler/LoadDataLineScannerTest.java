@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.server.handler;
+
+import com.actiontech.dble.sqlengine.mpp.LoadData;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoadDataLineScannerTest {
+
+    private static LoadDataLineScanner scanner(String lineEnd, String enclose) {
+        LoadData loadData = new LoadData();
+        loadData.setLineTerminatedBy(lineEnd);
+        loadData.setFieldTerminatedBy(",");
+        loadData.setEnclose(enclose);
+        loadData.setEscape("\\");
+        return new LoadDataLineScanner(loadData);
+    }
+
+    @Test
+    public void testLineSplitAcrossChunks() {
+        LoadDataLineScanner scanner = scanner("\n", null);
+        scanner.append("1,a\n2,b");
+        Assert.assertEquals("1,a\n", scanner.pollLines());
+        Assert.assertNull(scanner.pollLines());
+        scanner.append("b\n3,c");
+        Assert.assertEquals("2,bb\n", scanner.pollLines());
+        Assert.assertEquals("3,c", scanner.pollAll());
+        Assert.assertEquals(0, scanner.pendingLength());
+    }
+
+    @Test
+    public void testLargeChunks() {
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; file.length() < 3 * 1024 * 1024; i++) {
+            file.append(i).append(",\"name ").append(i).append("\"\n");
+        }
+        int chunkSize = 1024 * 1024;
+        LoadDataLineScanner scanner = scanner("\n", "\"");
+        StringBuilder parsed = new StringBuilder();
+        for (int start = 0; start < file.length(); start += chunkSize) {
+            scanner.append(file.substring(start, Math.min(start + chunkSize, file.length())));
+            String lines = scanner.pollLines();
+            Assert.assertNotNull(lines);
+            Assert.assertTrue(lines.endsWith("\"\n"));
+            parsed.append(lines);
+        }
+        parsed.append(scanner.pollAll());
+        Assert.assertEquals(file.toString(), parsed.toString());
+    }
+
+    @Test
+    public void testMultiCharLineEndSplit() {
+        LoadDataLineScanner scanner = scanner("\r\n", null);
+        scanner.append("1,a\r");
+        Assert.assertNull(scanner.pollLines());
+        scanner.append("\n2,b\r");
+        Assert.assertEquals("1,a\r\n", scanner.pollLines());
+        scanner.append("x\r\n");
+        Assert.assertEquals("2,b\rx\r\n", scanner.pollLines());
+    }
+
+    @Test
+    public void testEnclosedLineEnd() {
+        LoadDataLineScanner scanner = scanner("\n", "\"");
+        scanner.append("1,\"a\n");
+        Assert.assertNull(scanner.pollLines());
+        scanner.append("b\"\n2,\"c\"\"\n\"\n3,d\"\n");
+        // the enclose char is doubled in the second line, and it is not at the start of the field in the third line
+        Assert.assertEquals("1,\"a\nb\"\n2,\"c\"\"\n\"\n3,d\"\n", scanner.pollLines());
+    }
+
+    @Test
+    public void testEnclosedCharAtChunkEnd() {
+        LoadDataLineScanner scanner = scanner("\n", "\"");
+        scanner.append("1,\"a\"");
+        Assert.assertNull(scanner.pollLines());
+        scanner.append("\"\n\"\n");
+        Assert.assertEquals("1,\"a\"\"\n\"\n", scanner.pollLines());
+    }
+
+    @Test
+    public void testEscapedLineEnd() {
+        LoadDataLineScanner scanner = scanner("\n", null);
+        scanner.append("1,a\\\nb\n2,c\\");
+        Assert.assertEquals("1,a\\\nb\n", scanner.pollLines());
+        scanner.append("\n\n");
+        Assert.assertEquals("2,c\\\n\n", scanner.pollLines());
+        scanner.append("3,\\\\\n");
+        Assert.assertEquals("3,\\\\\n", scanner.pollLines());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.server.handler;
+
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.config.model.TableConfig.TableTypeEnum;
+import com.actiontech.dble.config.model.rule.RuleConfig;
+import com.actiontech.dble.route.function.PartitionByLong;
+import com.actiontech.dble.sqlengine.mpp.LoadData;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ServerLoadDataInfileHandlerTest {
+
+    private static TableConfig company() {
+        PartitionByLong algorithm = new PartitionByLong();
+        algorithm.setPartitionCount("2");
+        algorithm.setPartitionLength("512");
+        algorithm.init();
+        return new TableConfig("company", "id", false, false, TableTypeEnum.TYPE_SHARDING_TABLE, "dn$1-2",
+                new RuleConfig("id", "func", algorithm), true);
+    }
+
+    private static TableConfig child(String name, TableConfig parent, String joinKey, String parentKey) {
+        return new TableConfig(name, "id", false, false, TableTypeEnum.TYPE_SHARDING_TABLE, "dn$1-2",
+                null, false, parent, joinKey, parentKey);
+    }
+
+    private static LoadData loadData() {
+        LoadData loadData = new LoadData();
+        loadData.setLineTerminatedBy("\n");
+        loadData.setFieldTerminatedBy(",");
+        loadData.setEnclose("\"");
+        loadData.setEscape("\\");
+        return loadData;
+    }
+
+    @Test
+    public void testGetPartitionColumn() {
+        TableConfig company = company();
+        Assert.assertEquals("id", ServerLoadDataInfileHandler.getPartitionColumn(company));
+        // the join key of customer is the value of company.id
+        Assert.assertEquals("company_id", ServerLoadDataInfileHandler.getPartitionColumn(child("customer", company, "company_id", "id")));
+        // the rows of the complex ER child table are routed by the parent rows
+        Assert.assertNull(ServerLoadDataInfileHandler.getPartitionColumn(child("customer", company, "company_name", "name")));
+    }
+
+    @Test
+    public void testRouteByPartitionValue() {
+        TableConfig company = company();
+        LoadData loadData = loadData();
+        Assert.assertEquals("dn1", ServerLoadDataInfileHandler.routeByPartitionValue(company, 1, new String[]{"a", "1"}, loadData));
+        Assert.assertEquals("dn2", ServerLoadDataInfileHandler.routeByPartitionValue(company, 1, new String[]{"a", "600"}, loadData));
+        Assert.assertEquals("dn1", ServerLoadDataInfileHandler.routeByPartitionValue(company, 0, new String[]{"1024", "600"}, loadData));
+    }
+
+    @Test
+    public void testRouteByPartitionValueFallback() {
+        TableConfig company = company();
+        LoadData loadData = loadData();
+        Assert.assertNull(ServerLoadDataInfileHandler.routeByPartitionValue(null, 0, new String[]{"1"}, loadData));
+        Assert.assertNull(ServerLoadDataInfileHandler.routeByPartitionValue(company, -1, new String[]{"1"}, loadData));
+        Assert.assertNull(ServerLoadDataInfileHandler.routeByPartitionValue(company, 2, new String[]{"1", "2"}, loadData));
+        Assert.assertNull(ServerLoadDataInfileHandler.routeByPartitionValue(company, 0, new String[]{null, "2"}, loadData));
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2016-2018 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.statistic.stat;
+
+import com.actiontech.dble.route.parser.druid.ServerSchemaStatVisitor;
+import com.actiontech.dble.server.parser.ServerParse;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class QueryResultDispatcherTest {
+
+    @Test
+    public void testDispatch() throws InterruptedException {
+        final AtomicLong received = new AtomicLong(0);
+        QueryResultListener listener = new QueryResultListener() {
+            @Override
+            public void onQueryResult(QueryResult queryResult) {
+                received.incrementAndGet();
+            }
+        };
+        QueryResultDispatcher.addListener(listener);
+        try {
+            long dropped = QueryResultDispatcher.getDroppedCount();
+            for (int i = 0; i < 1000; i++) {
+                QueryResultDispatcher.dispatchQuery(new QueryResult("test", ServerParse.OTHER, "set autocommit=1", 0, 0, 0, 0, 0, 0));
+            }
+            for (int i = 0; i < 500 && received.get() + QueryResultDispatcher.getDroppedCount() - dropped < 1000; i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(1000, received.get() + QueryResultDispatcher.getDroppedCount() - dropped);
+        } finally {
+            QueryResultDispatcher.removeListener(listener);
+        }
+    }
+
+    @Test
+    public void testTablesInVisitOrder() {
+        SQLStatement stmt = new MySqlStatementParser("select * from tb_a a join tb_b b on a.id = b.id where b.id = 1").parseStatement();
+        ServerSchemaStatVisitor visitor = new ServerSchemaStatVisitor();
+        stmt.accept(visitor);
+        List<String> tables = visitor.getVisitedTables();
+        Assert.assertEquals("tb_a", tables.get(0));
+        Assert.assertEquals("tb_b", tables.get(1));
+    }
+}